@@ -67,6 +67,10 @@ public class CodeGenConfig extends XMLConfiguration {
      * flag whether to parse and generate views
      */
     private boolean generateRecords = true;
+    /**
+     * flag whether to generate bean classes with a bean list factory for each table
+     */
+    private boolean generateBeans = false;
 
     /**
      * Name of the identity column used for Autoincrement
@@ -108,6 +112,11 @@ public class CodeGenConfig extends XMLConfiguration {
 	 * name of the view target package
 	 */
 	private String viewPackageName;
+	
+	/**
+	 * name of the bean target package
+	 */
+	private String beanPackageName;
 
 	/**
 	 * Target name of the generated database class. This class extends
@@ -232,6 +241,12 @@ public class CodeGenConfig extends XMLConfiguration {
 	 */
 	private boolean createRecordProperties = false;
 	
+	/**
+	 * if TRUE record classes define a constant for the field index of each column.<br/>
+	 * The getters / setters then access the field values by index instead of by column.
+	 */
+	private boolean createRecordFieldIndexes = false;
+	
 	/**
 	 * true if names of tables and views should not be camel-cased
 	 */
@@ -377,6 +392,16 @@ public class CodeGenConfig extends XMLConfiguration {
         this.generateRecords = generateRecords;
     }
 
+    public boolean isGenerateBeans()
+    {
+        return generateBeans;
+    }
+
+    public void setGenerateBeans(boolean generateBeans)
+    {
+        this.generateBeans = generateBeans;
+    }
+
     public String getIdentityColumn()
     {
         return identityColumn;
@@ -444,6 +469,13 @@ public class CodeGenConfig extends XMLConfiguration {
 	public void setViewPackageName(String viewPackageName) {
 		this.viewPackageName = viewPackageName;
 	}
+	public String getBeanPackageName() {
+		return fallback(beanPackageName, "beans");
+	}
+
+	public void setBeanPackageName(String beanPackageName) {
+		this.beanPackageName = beanPackageName;
+	}
 
 	public String getDbClassName() {
 		return dbClassName;
@@ -567,6 +599,14 @@ public class CodeGenConfig extends XMLConfiguration {
 	public void setCreateRecordProperties(boolean createRecordProperties) {
 		this.createRecordProperties = createRecordProperties;
 	}
+
+	public boolean isCreateRecordFieldIndexes() {
+		return createRecordFieldIndexes;
+	}
+
+	public void setCreateRecordFieldIndexes(boolean createRecordFieldIndexes) {
+		this.createRecordFieldIndexes = createRecordFieldIndexes;
+	}
 	
 	public boolean isPreserverCharacterCase() {
 		return preserverCharacterCase;
@@ -74,6 +74,7 @@ public class CodeGenWriter {
 	public static final String VIEW_TEMPLATE = "View.vm";
 	public static final String BASE_RECORD_TEMPLATE = "BaseRecord.vm";
 	public static final String RECORD_TEMPLATE = "Record.vm";
+	public static final String BEAN_TEMPLATE = "Bean.vm";
 
 	// Services
 	private final WriterService writerService;
@@ -85,6 +86,7 @@ public class CodeGenWriter {
 	private File tableDir;
 	private File recordDir;
 	private File viewDir;
+	private File beanDir;
 
 	/**
      * Constructor
@@ -163,6 +165,10 @@ public class CodeGenWriter {
             if (config.isGenerateRecords()) {
                 // generate record 
                 generatedFiles.add(this.createRecordClass(db, table));
+            }
+            if (config.isGenerateBeans()) {
+                // generate bean and bean list factory
+                generatedFiles.add(this.createBeanClass(db, table));
             }
 		}
 		
@@ -206,6 +212,9 @@ public class CodeGenWriter {
 		
 		// Create the record package directory
 		this.viewDir = (createViews ? FileUtils.getFileFromPackage(targetDir, config.getViewPackageName()) : null);
+		
+		// Create the bean package directory
+		this.beanDir = (config.isGenerateBeans() ? FileUtils.getFileFromPackage(targetDir, config.getBeanPackageName()) : null);
 	}
 
 	private File createDatabaseClass(DBDatabase db) {
@@ -225,6 +234,8 @@ public class CodeGenWriter {
 		context.put("templateFolder", config.getTemplateFolder());
 		context.put("baseViewClassName", config.getViewBaseName());
 		context.put("preserveRelationNames", config.isPreserveRelationNames());
+		context.put("generateBeans", config.isGenerateBeans());
+		context.put("beanPackageName", config.getBeanPackageName());
 
 		writeFile(file, DATABASE_TEMPLATE, context);
 		return file;
@@ -312,12 +323,25 @@ public class CodeGenWriter {
 		context
 				.put("createRecordProperties", config
 						.isCreateRecordProperties());
+		context.put("createRecordFieldIndexes", config.isCreateRecordFieldIndexes());
 
 		context.put("table", table);
 		writeFile(file, RECORD_TEMPLATE, context);
 		return file;
 	}
 
+	private File createBeanClass(DBDatabase db, DBTable table) {
+		File file = new File(beanDir, writerService.getBeanClassName(table.getName()) + ".java");
+		VelocityContext context = new VelocityContext();
+		context.put("parser", writerService);
+		context.put("basePackageName", config.getPackageName());
+		context.put("beanPackageName", config.getBeanPackageName());
+		context.put("dbClassName", config.getDbClassName());
+		context.put("table", table);
+		writeFile(file, BEAN_TEMPLATE, context);
+		return file;
+	}
+
 	private void writeFile(File file, String template,
 			VelocityContext context) {
 	    
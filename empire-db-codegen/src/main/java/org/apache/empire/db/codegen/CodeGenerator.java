@@ -132,6 +132,8 @@ public class CodeGenerator {
 		log.info("NestTable=" + config.isNestTables());
 		log.info("NestViews=" + config.isNestViews());
 		log.info("CreateRecordProperties=" + config.isCreateRecordProperties());
+		log.info("CreateRecordFieldIndexes=" + config.isCreateRecordFieldIndexes());
+		log.info("GenerateBeans=" + config.isGenerateBeans());
 	}
     
     /**
@@ -143,6 +143,38 @@ public class WriterService {
 		return deriveClassName(tableName) + "Record";
 	}
 
+	/**
+	 * Returns the java bean class name for a given table name.
+	 * @param tableName the table name
+     * @return the bean class name
+	 */
+	public String getBeanClassName(String tableName)
+	{
+		return deriveClassName(tableName) + "Bean";
+	}
+
+	/**
+	 * Returns the name of the field index constant for a given DBColumn.
+	 * @param column the column
+     * @return the field index constant name
+	 */
+	public String getFieldIndexName(DBColumn column)
+	{
+		return "IDX_" + deriveAttributeName(column.getName()).toUpperCase();
+	}
+
+	/**
+	 * Returns the bean property name for a given DBColumn.
+	 * @param column the column
+     * @return the property name
+	 */
+	public String getPropertyName(DBColumn column)
+	{
+		String accessor = getAccessorName(column);
+		int prefix = getGetterPrefix(getJavaType(column)).length();
+		return Character.toLowerCase(accessor.charAt(prefix)) + accessor.substring(prefix+1);
+	}
+
 	/**
 	 * Returns the "getter" name for a given DBColumn.
 	 * @param column the column
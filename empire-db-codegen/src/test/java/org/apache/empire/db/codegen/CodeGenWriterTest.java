@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db.codegen;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.apache.empire.db.DBDatabase;
+import org.apache.empire.dbms.DBMSHandler;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Generates the code for the sample database from the templates and compiles it.
+ */
+public class CodeGenWriterTest {
+
+	private static final String TARGET_FOLDER = "target/generated-test/codegen";
+
+	private CodeGenConfig config;
+
+	@Before
+	public void setUp() {
+		config = new CodeGenConfig();
+		config.init("src/test/resources/testconfig.xml");
+		config.setDbSchema("PUBLIC");
+		config.setDbTablePattern("DEPARTMENTS,EMPLOYEES,ORGANIZATIONS");
+		config.setTargetFolder(TARGET_FOLDER + "/src");
+		config.setCreateRecordFieldIndexes(true);
+		config.setGenerateBeans(true);
+	}
+
+	@Test
+	public void testGenerateAndCompile() throws SQLException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		Assume.assumeNotNull(compiler);
+
+		// generate
+		CodeGenerator codeGen = new CodeGenerator();
+		DBMSHandler dbms = codeGen.getDBMSHandler(config);
+		Connection conn = codeGen.getJDBCConnection(config);
+		try {
+			codeGen.generate(dbms, conn, config);
+		} finally {
+			conn.close();
+		}
+
+		// collect sources
+		List<File> sources = new ArrayList<File>();
+		collectSources(new File(TARGET_FOLDER + "/src"), sources);
+		assertTrue("No sources generated", sources.size() > 0);
+		assertTrue("Bean not generated", containsFile(sources, "DepartmentsBean.java"));
+
+		// compile
+		File classes = new File(TARGET_FOLDER + "/classes");
+		classes.mkdirs();
+		String classPath = System.getProperty("java.class.path") + File.pathSeparator
+		                 + new File(DBDatabase.class.getProtectionDomain().getCodeSource().getLocation().getPath()).getPath();
+		StringWriter out = new StringWriter();
+		StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+		try {
+			Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(sources);
+			List<String> options = Arrays.asList("-classpath", classPath, "-d", classes.getPath(), "-proc:none");
+			boolean success = compiler.getTask(out, fileManager, null, options, null, units).call();
+			assertTrue("Generated code does not compile:\n" + out, success);
+		} finally {
+			try {
+				fileManager.close();
+			} catch (IOException e) {
+				System.err.println("Unable to close file manager");
+			}
+		}
+	}
+
+	private static void collectSources(File dir, List<File> sources) {
+		File[] files = dir.listFiles();
+		if (files == null)
+			return;
+		for (File file : files) {
+			if (file.isDirectory())
+				collectSources(file, sources);
+			else if (file.getName().endsWith(".java"))
+				sources.add(file);
+		}
+	}
+
+	private static boolean containsFile(List<File> files, String name) {
+		for (File file : files)
+			if (file.getName().equals(name))
+				return true;
+		return false;
+	}
+}
@@ -65,5 +65,18 @@ public class WriterServiceTest {
 		Mockito.when(col.getName()).thenReturn("name");
 		assertEquals("setName", service.getMutatorName(col));		
 	}
+	
+	@Test
+	public void testGetFieldIndexName(){
+		CodeGenConfig config = new CodeGenConfig();
+		WriterService service = new WriterService(config);
+		
+		DBTableColumn col = Mockito.mock(DBTableColumn.class);
+		Mockito.when(col.getDataType()).thenReturn(DataType.INTEGER);
+		Mockito.when(col.getName()).thenReturn("department_id");
+		assertEquals("IDX_DEPARTMENT_ID", service.getFieldIndexName(col));
+		assertEquals("departmentId", service.getPropertyName(col));
+		assertEquals("DepartmentsBean", service.getBeanClassName("DEPARTMENTS"));
+	}
 
 }
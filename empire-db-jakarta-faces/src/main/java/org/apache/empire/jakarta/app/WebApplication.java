@@ -823,8 +823,11 @@ public abstract class WebApplication
             return; // Nothing to do
         // Walk the connection map
         DBRollbackManager dbrm = getRollbackManagerForRequest(fc, false);
-        for (Connection conn : connMap.values())
-        {
+        for (Map.Entry<DBDatabase, Connection> entry : connMap.entrySet())
+        {   // release dbms resources (e.g. cached statements)
+            Connection conn = entry.getValue();
+            if (entry.getKey().getDbms()!=null)
+                entry.getKey().getDbms().releaseConnection(conn);
             releaseConnection(conn, commit, dbrm);
         }
         // remove from request map
@@ -857,6 +860,8 @@ public abstract class WebApplication
         DBRollbackManager dbrm = getRollbackManagerForRequest(fc, false);
         // Release Connection   
         Connection conn = connMap.get(db);
+        if (db.getDbms()!=null)
+            db.getDbms().releaseConnection(conn);
         releaseConnection(conn, commit, dbrm);
         // Remove from map
         connMap.remove(db);
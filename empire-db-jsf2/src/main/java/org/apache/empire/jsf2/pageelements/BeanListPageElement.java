@@ -31,6 +31,7 @@ import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBColumnExpr;
 import org.apache.empire.db.DBCommand;
 import org.apache.empire.db.DBContext;
+import org.apache.empire.db.DBKeyset;
 import org.apache.empire.db.DBReader;
 import org.apache.empire.db.DBRecordData;
 import org.apache.empire.db.DBRowSet;
@@ -71,6 +72,8 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
     protected DBOrderByExpr     secondarySortOrder   = null;
 
     protected int               maxItemCount         = 1000;
+
+    protected boolean           queryTotalCount      = false;
     
     /**
      * Extended ListTableInfo
@@ -81,6 +84,10 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
 
         private DBCommand         queryCmd         = null;
 
+        private DBKeyset          keyset           = null;
+
+        private int               keysetPosition   = -1;
+
         public DBCommand getQueryCmd()
         {
             return queryCmd;
@@ -89,6 +96,37 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
         public void setQueryCmd(DBCommand queryCmd)
         {
             this.queryCmd = queryCmd;
+            resetKeyset();
+        }
+
+        /**
+         * Returns the keyset of the last page loaded
+         * @return the keyset or null
+         */
+        public DBKeyset getKeyset()
+        {
+            return keyset;
+        }
+
+        /**
+         * Returns the position of the page following the keyset
+         * @return the position or -1 if no keyset is available
+         */
+        public int getKeysetPosition()
+        {
+            return keysetPosition;
+        }
+
+        public void setKeyset(DBKeyset keyset, int keysetPosition)
+        {
+            this.keyset = keyset;
+            this.keysetPosition = keysetPosition;
+        }
+
+        public void resetKeyset()
+        {
+            this.keyset = null;
+            this.keysetPosition = -1;
         }
     }
 
@@ -214,6 +252,22 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
         this.secondarySortOrder = secondarySortOrder;
     }
 
+    public boolean isQueryTotalCount()
+    {
+        return queryTotalCount;
+    }
+
+    /**
+     * Sets whether the item count should be obtained with the page query.<BR>
+     * If enabled and the dbms supports window functions, no separate count query is executed
+     * and the count command passed to initItems() is ignored.
+     * @param queryTotalCount true if the item count should be obtained with the page query
+     */
+    public void setQueryTotalCount(boolean queryTotalCount)
+    {
+        this.queryTotalCount = queryTotalCount;
+    }
+
     /** session scoped properties **/
     @Override
     public ListTableInfo getTableInfo()
@@ -257,7 +311,11 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
         // Init List Table Info
         BeanListTableInfo lti = (BeanListTableInfo) getTableInfo();
         lti.setQueryCmd(queryCmd);
-        if (pageSize > 0)
+        if (pageSize > 0 && queryTotalCount && context.getDbms().isSupported(DBMSFeature.WINDOW_FUNCTIONS))
+        { // The item count is obtained with the first page
+            lti.init(0, pageSize);
+        }
+        else if (pageSize > 0)
         { // Negative count means: loadItems should load all items.
             countCmd.clearSelect();
             countCmd.select(rowset.count());
@@ -341,11 +399,13 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
             { // Set Sort order
                 setOrderBy(queryCmd);
                 lti.setSortOrderChanged(false);
+                lti.resetKeyset();
             }
             
             int position = 0;
             int skipRows = 0;
             int maxItems = maxItemCount;
+            DBCommand pageCmd = queryCmd;
             if (loadPageFromPosition)
             {   // detect position
                 position = lti.getPosition();
@@ -363,7 +423,13 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
                 // constraint
                 queryCmd.clearLimit();
                 DBMSHandler dbms = r.getContext().getDbms(); 
-                if (dbms.isSupported(DBMSFeature.QUERY_LIMIT_ROWS))
+                DBKeyset keyset = lti.getKeyset();
+                if (position>0 && position==lti.getKeysetPosition() && keyset.matches(queryCmd))
+                {   // next page: seek from the last row of the previous page
+                    pageCmd = keyset.getPageCommand(queryCmd, dbms, maxItems);
+                    skipRows = 0;
+                }
+                else if (dbms.isSupported(DBMSFeature.QUERY_LIMIT_ROWS))
                 {   // let the database limit the rows
                     if (dbms.isSupported(DBMSFeature.QUERY_SKIP_ROWS))
                     {   // let the database skip the rows
@@ -375,7 +441,8 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
             }
 
             // DBReader.open must always be surrounded with a try {} finally {} block!
-            r.open(queryCmd);
+            r.setQueryTotalCount(loadPageFromPosition && queryTotalCount);
+            r.open(pageCmd);
 
             // get position from the session
             if (skipRows>0)
@@ -394,7 +461,14 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
             // set position at session object
             if (loadPageFromPosition)
             { // set valid
-                if (position + items.size() > lti.getItemCount())
+                int totalCount = r.getTotalCount();
+                if (totalCount >= 0)
+                { // Item count obtained with the page (keyset pages count the following rows only)
+                    if (pageCmd != queryCmd)
+                        totalCount += position;
+                    lti.init(totalCount, lti.getPageSize());
+                }
+                else if (position + items.size() > lti.getItemCount())
                 { // Oops: More items than expected.
                     log.warn("Item count of {} has changed. Adjusting item count.", getPropertyName());
                     lti.init(position + items.size(), lti.getPageSize());
@@ -402,6 +476,8 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
                 lti.setPosition(position);
                 lti.setModified(false);
                 lti.setValid(true);
+                // remember the keyset for the next page
+                updateKeyset(lti, queryCmd, position);
             }
             else
             { // Init the list
@@ -427,6 +503,55 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
         }
     }
 
+    /**
+     * Remembers the sort key values of the last item in order to load the next page using keyset pagination.<BR>
+     * Keyset pagination is only used if the sort order is unique, i.e. contains all key columns of the rowset.
+     * @param lti the table info
+     * @param queryCmd the query command
+     * @param position the position of the current page
+     */
+    protected void updateKeyset(BeanListTableInfo lti, DBCommand queryCmd, int position)
+    {
+        lti.resetKeyset();
+        if (items.isEmpty() || !isUniqueSortOrder(queryCmd))
+            return;
+        // get sort columns
+        DBKeyset keyset = new DBKeyset(queryCmd);
+        DBOrderByExpr[] orderBy = keyset.getOrderBy();
+        Column[] sortCols = new Column[orderBy.length];
+        for (int i=0; i<orderBy.length; i++)
+        {   // must be a column
+            sortCols[i] = orderBy[i].getColumn().getUpdateColumn();
+            if (sortCols[i]==null)
+                return; // not supported
+        }
+        // set last values
+        keyset.setLastValues(getItemKey(sortCols, items.get(items.size()-1)));
+        lti.setKeyset(keyset, position + items.size());
+    }
+
+    /**
+     * Returns whether the order of a command is unique
+     * @param cmd the command
+     * @return true if the ORDER BY contains all key columns of the rowset
+     */
+    protected boolean isUniqueSortOrder(DBCommand cmd)
+    {
+        DBColumn[] keyCols = rowset.getKeyColumns();
+        if (keyCols == null || !cmd.hasOrderBy())
+            return false;
+        for (DBColumn keyCol : keyCols)
+        {   // find key column
+            boolean found = false;
+            for (DBOrderByExpr ob : cmd.getOrderBy())
+                if (keyCol.equals(ob.getColumn()))
+                    found = true;
+            if (!found)
+                return false;
+        }
+        return true;
+    }
+
     /**
      * set order by for db queries
      * 
@@ -0,0 +1,639 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.data.list;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.apache.empire.exceptions.InvalidArgumentException;
+
+/**
+ * ColumnarDataList
+ * A list of DataListEntry items which stores the values column by column instead of row by row.<BR>
+ * Integer, Long and Double values are stored in primitive arrays, Boolean values in a bitmap
+ * and Strings are dictionary encoded. Null values are kept in a separate bitmap per column.<BR>
+ * All other values are stored in an Object array.<BR>
+ * The storage type of a column is determined by the first non-null value.
+ * If a later value does not fit, the column is converted to an Object array.<BR>
+ * <P>
+ * The items returned by get() are lightweight views of a particular row.
+ * They do not hold any values themselves and modifications are written through to the list.<BR>
+ * In order to iterate without creating an item for each row, use {@link #cursor()} and {@link Row#moveTo(int)}.<BR>
+ * Views refer to a row by its index, hence they must not be used after rows have been removed.
+ */
+public class ColumnarDataList extends AbstractList<DataListEntry> implements RandomAccess, Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Row
+     * A DataListEntry which reads and writes its values from and to the list
+     */
+    public static class Row extends DataListEntry
+    {
+        private static final long serialVersionUID = 1L;
+
+        protected final ColumnarDataList list;
+
+        public Row(ColumnarDataList list, int rownum)
+        {
+            super(list.getHead(), rownum);
+            this.list = list;
+        }
+
+        /**
+         * Moves the entry to another row of the list
+         * @param rownum the index of the row
+         */
+        public void moveTo(int rownum)
+        {
+            list.checkIndex(rownum);
+            this.rownum = rownum;
+        }
+
+        @Override
+        public Object getValue(int index)
+        {
+            if (index<0 || index>=getFieldCount())
+                throw new InvalidArgumentException("index", index);
+            return list.getValue(rownum, index);
+        }
+
+        @Override
+        protected void setValue(int index, Object value)
+        {
+            if (index<0 || index>=getFieldCount())
+                throw new InvalidArgumentException("index", index);
+            list.setValue(rownum, index, value);
+        }
+
+        /**
+         * Serializes a detached copy of the row instead of the entire list
+         * @return the detached entry
+         */
+        protected Object writeReplace()
+        {
+            return new DataListEntry(head, list.getRowValues(rownum), rownum);
+        }
+    }
+
+    /**
+     * ColumnVector
+     * Stores the values of a single column and a bitmap for null values
+     */
+    protected static abstract class ColumnVector implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private long[] nulls;
+
+        protected ColumnVector(int capacity)
+        {
+            this.nulls = new long[(capacity>>6)+1];
+        }
+
+        public final boolean isNull(int row)
+        {
+            return (nulls[row>>6] & (1L<<row))!=0;
+        }
+
+        public final Object get(int row)
+        {
+            return (isNull(row) ? null : getValue(row));
+        }
+
+        /**
+         * Sets the value of a row
+         * @param row the row
+         * @param value the value
+         * @return false if the value cannot be stored in this vector or true otherwise
+         */
+        public final boolean set(int row, Object value)
+        {
+            if (value==null)
+            {   // set null
+                nulls[row>>6] |= (1L<<row);
+                return true;
+            }
+            if (!setValue(row, value))
+                return false;
+            nulls[row>>6] &= ~(1L<<row);
+            return true;
+        }
+
+        public void ensureCapacity(int capacity)
+        {
+            int len = (capacity>>6)+1;
+            if (len>nulls.length)
+                nulls = Arrays.copyOf(nulls, len);
+            growValues(capacity);
+        }
+
+        public void remove(int row, int size)
+        {
+            for (int i=row; i<size-1; i++)
+                set(i, get(i+1));
+            set(size-1, null);
+        }
+
+        protected abstract Object getValue(int row);
+
+        protected abstract boolean setValue(int row, Object value);
+
+        protected abstract void growValues(int capacity);
+    }
+
+    protected static class IntVector extends ColumnVector
+    {
+        private static final long serialVersionUID = 1L;
+        private int[] values;
+
+        public IntVector(int capacity)
+        {
+            super(capacity);
+            this.values = new int[capacity];
+        }
+
+        @Override
+        protected Object getValue(int row)
+        {
+            return values[row];
+        }
+
+        @Override
+        protected boolean setValue(int row, Object value)
+        {
+            if (!(value instanceof Integer))
+                return false;
+            values[row] = ((Integer)value).intValue();
+            return true;
+        }
+
+        @Override
+        protected void growValues(int capacity)
+        {
+            if (capacity>values.length)
+                values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    protected static class LongVector extends ColumnVector
+    {
+        private static final long serialVersionUID = 1L;
+        private long[] values;
+
+        public LongVector(int capacity)
+        {
+            super(capacity);
+            this.values = new long[capacity];
+        }
+
+        @Override
+        protected Object getValue(int row)
+        {
+            return values[row];
+        }
+
+        @Override
+        protected boolean setValue(int row, Object value)
+        {
+            if (!(value instanceof Long))
+                return false;
+            values[row] = ((Long)value).longValue();
+            return true;
+        }
+
+        @Override
+        protected void growValues(int capacity)
+        {
+            if (capacity>values.length)
+                values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    protected static class DoubleVector extends ColumnVector
+    {
+        private static final long serialVersionUID = 1L;
+        private double[] values;
+
+        public DoubleVector(int capacity)
+        {
+            super(capacity);
+            this.values = new double[capacity];
+        }
+
+        @Override
+        protected Object getValue(int row)
+        {
+            return values[row];
+        }
+
+        @Override
+        protected boolean setValue(int row, Object value)
+        {
+            if (!(value instanceof Double))
+                return false;
+            values[row] = ((Double)value).doubleValue();
+            return true;
+        }
+
+        @Override
+        protected void growValues(int capacity)
+        {
+            if (capacity>values.length)
+                values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    protected static class BooleanVector extends ColumnVector
+    {
+        private static final long serialVersionUID = 1L;
+        private long[] bits;
+
+        public BooleanVector(int capacity)
+        {
+            super(capacity);
+            this.bits = new long[(capacity>>6)+1];
+        }
+
+        @Override
+        protected Object getValue(int row)
+        {
+            return ((bits[row>>6] & (1L<<row))!=0);
+        }
+
+        @Override
+        protected boolean setValue(int row, Object value)
+        {
+            if (!(value instanceof Boolean))
+                return false;
+            if (((Boolean)value).booleanValue())
+                bits[row>>6] |= (1L<<row);
+            else
+                bits[row>>6] &= ~(1L<<row);
+            return true;
+        }
+
+        @Override
+        protected void growValues(int capacity)
+        {
+            int len = (capacity>>6)+1;
+            if (len>bits.length)
+                bits = Arrays.copyOf(bits, len);
+        }
+    }
+
+    protected static class StringVector extends ColumnVector
+    {
+        private static final long serialVersionUID = 1L;
+        private final int maxDictionarySize;
+        private final List<String> dictionary = new ArrayList<String>();
+        private final Map<String, Integer> codeMap = new HashMap<String, Integer>();
+        private int[] codes;
+
+        public StringVector(int capacity, int maxDictionarySize)
+        {
+            super(capacity);
+            this.maxDictionarySize = maxDictionarySize;
+            this.codes = new int[capacity];
+        }
+
+        @Override
+        protected Object getValue(int row)
+        {
+            return dictionary.get(codes[row]);
+        }
+
+        @Override
+        protected boolean setValue(int row, Object value)
+        {
+            if (!(value instanceof String))
+                return false;
+            Integer code = codeMap.get(value);
+            if (code==null)
+            {   // add to dictionary
+                if (dictionary.size()>=maxDictionarySize)
+                    return false;
+                code = dictionary.size();
+                dictionary.add((String)value);
+                codeMap.put((String)value, code);
+            }
+            codes[row] = code.intValue();
+            return true;
+        }
+
+        @Override
+        protected void growValues(int capacity)
+        {
+            if (capacity>codes.length)
+                codes = Arrays.copyOf(codes, capacity);
+        }
+    }
+
+    protected static class ObjectVector extends ColumnVector
+    {
+        private static final long serialVersionUID = 1L;
+        private Object[] values;
+
+        public ObjectVector(int capacity)
+        {
+            super(capacity);
+            this.values = new Object[capacity];
+        }
+
+        @Override
+        protected Object getValue(int row)
+        {
+            return values[row];
+        }
+
+        @Override
+        protected boolean setValue(int row, Object value)
+        {
+            values[row] = value;
+            return true;
+        }
+
+        @Override
+        protected void growValues(int capacity)
+        {
+            if (capacity>values.length)
+                values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    /**
+     * Default maximum number of distinct values for a dictionary encoded string column
+     */
+    public static final int DEFAULT_MAX_DICTIONARY_SIZE = 0x10000;
+
+    protected final DataListHead head;
+    protected final ColumnVector[] vectors;
+    protected int maxDictionarySize = DEFAULT_MAX_DICTIONARY_SIZE;
+    private int capacity;
+    private int size;
+
+    /**
+     * Constructs a ColumnarDataList
+     * @param head the list head
+     * @param initialCapacity the initial capacity
+     */
+    public ColumnarDataList(DataListHead head, int initialCapacity)
+    {
+        if (head==null)
+            throw new InvalidArgumentException("head", head);
+        this.head = head;
+        this.vectors = new ColumnVector[head.getColumns().length];
+        this.capacity = Math.max(initialCapacity, 16);
+        this.size = 0;
+    }
+
+    public ColumnarDataList(DataListHead head)
+    {
+        this(head, 16);
+    }
+
+    public DataListHead getHead()
+    {
+        return head;
+    }
+
+    public int getMaxDictionarySize()
+    {
+        return maxDictionarySize;
+    }
+
+    /**
+     * Sets the maximum number of distinct values for a dictionary encoded string column.<BR>
+     * If the dictionary is full, the column is converted to an Object array.
+     * @param maxDictionarySize the maximum dictionary size
+     */
+    public void setMaxDictionarySize(int maxDictionarySize)
+    {
+        this.maxDictionarySize = maxDictionarySize;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns a view of the given row
+     */
+    @Override
+    public DataListEntry get(int index)
+    {
+        checkIndex(index);
+        return newRow(index);
+    }
+
+    /**
+     * Returns a single entry that can be moved to any row using moveTo()
+     * @return the cursor positioned on the first row
+     */
+    public Row cursor()
+    {
+        return newRow(0);
+    }
+
+    /**
+     * Returns the raw value of a particular field
+     * @param row the row index
+     * @param index the field index
+     * @return the value
+     */
+    public Object getValue(int row, int index)
+    {
+        checkIndex(row);
+        ColumnVector vector = vectors[index];
+        return (vector!=null ? vector.get(row) : null);
+    }
+
+    /**
+     * Sets the raw value of a particular field
+     * @param row the row index
+     * @param index the field index
+     * @param value the new value
+     */
+    public void setValue(int row, int index, Object value)
+    {
+        checkIndex(row);
+        storeValue(row, index, value);
+    }
+
+    /**
+     * Returns a copy of all values of a row
+     * @param row the row index
+     * @return the values
+     */
+    public Object[] getRowValues(int row)
+    {
+        Object[] values = new Object[vectors.length];
+        for (int i=0; i<values.length; i++)
+            values[i] = getValue(row, i);
+        return values;
+    }
+
+    /**
+     * Appends the values of an entry to the list
+     */
+    @Override
+    public boolean add(DataListEntry entry)
+    {
+        checkEntry(entry);
+        ensureCapacity(size+1);
+        for (int i=0; i<vectors.length; i++)
+            storeValue(size, i, entry.getValue(i));
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Replaces the values of a row with the values of an entry
+     * @return a detached copy of the previous row
+     */
+    @Override
+    public DataListEntry set(int index, DataListEntry entry)
+    {
+        checkIndex(index);
+        checkEntry(entry);
+        DataListEntry prev = new DataListEntry(head, getRowValues(index), index);
+        Object[] values = new Object[vectors.length];
+        for (int i=0; i<values.length; i++)
+            values[i] = entry.getValue(i);
+        for (int i=0; i<values.length; i++)
+            storeValue(index, i, values[i]);
+        return prev;
+    }
+
+    /**
+     * Removes a row
+     * @return a detached copy of the removed row
+     */
+    @Override
+    public DataListEntry remove(int index)
+    {
+        checkIndex(index);
+        DataListEntry prev = new DataListEntry(head, getRowValues(index), index);
+        for (int i=0; i<vectors.length; i++)
+        {
+            if (vectors[i]!=null)
+                vectors[i].remove(index, size);
+        }
+        size--;
+        modCount++;
+        return prev;
+    }
+
+    @Override
+    public void clear()
+    {
+        Arrays.fill(vectors, null);
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Creates a row view
+     * @param rownum the row index
+     * @return the row
+     */
+    protected Row newRow(int rownum)
+    {
+        return new Row(this, rownum);
+    }
+
+    /**
+     * Creates the vector for a column depending on the first non-null value
+     * @param index the field index
+     * @param value the value
+     * @param capacity the initial capacity
+     * @return the vector
+     */
+    protected ColumnVector createVector(int index, Object value, int capacity)
+    {
+        if (value instanceof Integer)
+            return new IntVector(capacity);
+        if (value instanceof Long)
+            return new LongVector(capacity);
+        if (value instanceof Double)
+            return new DoubleVector(capacity);
+        if (value instanceof Boolean)
+            return new BooleanVector(capacity);
+        if (value instanceof String && maxDictionarySize>0)
+            return new StringVector(capacity, maxDictionarySize);
+        return new ObjectVector(capacity);
+    }
+
+    protected void storeValue(int row, int index, Object value)
+    {
+        ColumnVector vector = vectors[index];
+        if (vector==null)
+        {   // all values are null so far
+            if (value==null)
+                return;
+            vector = createVector(index, value, capacity);
+            for (int i=0; i<size; i++)
+                vector.set(i, null);
+            vectors[index] = vector;
+        }
+        if (vector.set(row, value))
+            return;
+        // convert to object vector
+        ColumnVector objects = new ObjectVector(capacity);
+        for (int i=0; i<size; i++)
+            objects.set(i, vector.get(i));
+        objects.set(row, value);
+        vectors[index] = objects;
+    }
+
+    protected void ensureCapacity(int minCapacity)
+    {
+        if (minCapacity<=capacity)
+            return;
+        int newCapacity = Math.max(minCapacity, capacity + (capacity >> 1));
+        for (int i=0; i<vectors.length; i++)
+        {
+            if (vectors[i]!=null)
+                vectors[i].ensureCapacity(newCapacity);
+        }
+        this.capacity = newCapacity;
+    }
+
+    protected void checkIndex(int index)
+    {
+        if (index<0 || index>=size)
+            throw new InvalidArgumentException("index", index);
+    }
+
+    protected void checkEntry(DataListEntry entry)
+    {
+        if (entry==null || entry.getFieldCount()!=vectors.length)
+            throw new InvalidArgumentException("entry", entry);
+    }
+}
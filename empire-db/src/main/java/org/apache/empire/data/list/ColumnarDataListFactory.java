@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.data.list;
+
+import java.util.List;
+
+import org.apache.empire.data.ColumnExpr;
+import org.apache.empire.data.RecordData;
+import org.apache.empire.exceptions.InvalidArgumentException;
+
+/**
+ * ColumnarDataListFactory
+ * Creates a ColumnarDataList which stores the query result column by column
+ */
+public class ColumnarDataListFactory implements DataListFactory<DataListEntry>
+{
+    protected final DataListHead head;
+    protected int maxDictionarySize = ColumnarDataList.DEFAULT_MAX_DICTIONARY_SIZE;
+
+    /**
+     * Constructs a ColumnarDataListFactory
+     * @param head the listHead object
+     */
+    public ColumnarDataListFactory(DataListHead head)
+    {
+        this.head = head;
+    }
+
+    public int getMaxDictionarySize()
+    {
+        return maxDictionarySize;
+    }
+
+    /**
+     * Sets the maximum number of distinct values for a dictionary encoded string column
+     * @param maxDictionarySize the maximum dictionary size or 0 to disable dictionary encoding
+     */
+    public void setMaxDictionarySize(int maxDictionarySize)
+    {
+        this.maxDictionarySize = maxDictionarySize;
+    }
+
+    @Override
+    public void prepareQuery(Object cmd, Object context)
+    {
+        /* Nothing */
+    }
+
+    @Override
+    public List<DataListEntry> newList(int capacity)
+    {
+        ColumnarDataList list = new ColumnarDataList(head, capacity);
+        list.setMaxDictionarySize(maxDictionarySize);
+        return list;
+    }
+
+    /**
+     * Returns a temporary entry for the current row.<BR>
+     * The values are copied into the column storage when the entry is added to the list.
+     */
+    @Override
+    public DataListEntry newEntry(int rownum, RecordData dataRow)
+    {   // check
+        ColumnExpr[] columns = head.getColumns();
+        if (columns.length!=dataRow.getFieldCount())
+            throw new InvalidArgumentException("dataRow", dataRow);
+        // copy values
+        Object[] values = new Object[columns.length];
+        for (int i=0; i<columns.length; i++)
+            values[i] = dataRow.getValue(i);
+        return new DataListEntry(head, values, rownum);
+    }
+
+    @Override
+    public void completeQuery(List<DataListEntry> list)
+    {
+        /* Nothing */
+    }
+
+}
@@ -67,6 +67,19 @@ public class DataListEntry implements RecordData, Serializable
         this(head, values, -1);
     }
     
+    /**
+     * Constructor for subclasses that provide their own value storage.<BR>
+     * Subclasses must override getValue(int) and setValue(int, Object).
+     * @param head the list head
+     * @param rownum the row number
+     */
+    protected DataListEntry(DataListHead head, int rownum)
+    {
+        this.head = head;
+        this.values = null;
+        this.rownum = rownum;
+    }
+    
     @SuppressWarnings("unchecked")
     public <T extends DataListHead> T getHead()
     {
@@ -119,7 +132,7 @@ public class DataListEntry implements RecordData, Serializable
             if (index<0)
                 throw new ItemNotFoundException(keyColumns[i].getName());
             // compare
-            if (!ObjectUtils.compareEqual(values[index], key[i]))
+            if (!ObjectUtils.compareEqual(getValue(index), key[i]))
                 return false; // not equal
         }
         // found
@@ -152,7 +165,7 @@ public class DataListEntry implements RecordData, Serializable
                 if (dbrb!=null && !dbrb.isValueValid(ri))
                     continue;
                 // set data
-                values[i] = recData.getValue(ri);
+                setValue(i, recData.getValue(ri));
             } catch(Exception e) {
                 log.error("Failed to update value for column {}", cols[i].getName());
             }
@@ -170,7 +183,19 @@ public class DataListEntry implements RecordData, Serializable
         if (i<0)
             throw new ItemNotFoundException(col);
         // update
-        values[i] = value;
+        setValue(i, value);
+    }
+    
+    /**
+     * Sets the raw field value based on the field index.
+     * @param index the field index
+     * @param value the new value
+     */
+    protected void setValue(int index, Object value)
+    {
+        if (index<0 || index>=values.length)
+            throw new InvalidArgumentException("index", index);
+        values[index] = value;
     }
     
     /**
@@ -209,7 +234,7 @@ public class DataListEntry implements RecordData, Serializable
     @Override
     public ColumnExpr getColumn(int index)
     {
-        if (index<0 || index>=values.length)
+        if (index<0 || index>=getFieldCount())
             throw new InvalidArgumentException("index", index);
         return head.columns[index];
     }
@@ -647,7 +672,7 @@ public class DataListEntry implements RecordData, Serializable
         if (index < 0)
             throw new InvalidArgumentException("column", (column!=null ? column.getName() : StringUtils.NULL));
         // return text for column value
-        return head.getText(index, values[index]);
+        return head.getText(index, getValue(index));
     }
 
     /**
@@ -733,9 +758,9 @@ public class DataListEntry implements RecordData, Serializable
     public String toString()
     {
         StringBuilder b = new StringBuilder();
-        for (int i=0; i<values.length; i++)
+        for (int i=0; i<getFieldCount(); i++)
         {
-            b.append(head.getText(i, values[i]));
+            b.append(head.getText(i, getValue(i)));
             b.append(head.columnSeparator);
         }
         return b.toString();
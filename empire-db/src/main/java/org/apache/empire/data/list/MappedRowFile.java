@@ -0,0 +1,407 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.data.list;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.empire.exceptions.FileReadException;
+import org.apache.empire.exceptions.FileWriteException;
+import org.apache.empire.exceptions.ObjectNotValidException;
+import org.apache.empire.exceptions.UnsupportedTypeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MappedRowFile
+ * Stores rows of values in a compact binary format in a memory-mapped temporary file.<BR>
+ * Each row is appended to the file and identified by the address returned from {@link #write(Object[])}.<BR>
+ * The file is divided into segments which are mapped into memory on demand. A row never spans two segments.<BR>
+ * Supported value types are String, Integer, Long, Short, Double, Float, Boolean, BigDecimal, byte[],
+ * java.util.Date and its java.sql subclasses, LocalDate and LocalDateTime.
+ * Other Serializable values are stored using Java serialization.<BR>
+ * The temporary file is deleted on close().
+ */
+public class MappedRowFile implements Closeable
+{
+    private static final Logger log = LoggerFactory.getLogger(MappedRowFile.class);
+
+    /**
+     * Default segment size (64 MB)
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    // value type tags
+    private static final byte TYPE_NULL         = 0;
+    private static final byte TYPE_STRING       = 1;
+    private static final byte TYPE_INTEGER      = 2;
+    private static final byte TYPE_LONG         = 3;
+    private static final byte TYPE_SHORT        = 4;
+    private static final byte TYPE_DOUBLE       = 5;
+    private static final byte TYPE_FLOAT        = 6;
+    private static final byte TYPE_BOOLEAN      = 7;
+    private static final byte TYPE_DECIMAL      = 8;
+    private static final byte TYPE_BYTES        = 9;
+    private static final byte TYPE_DATE         = 10;
+    private static final byte TYPE_SQL_DATE     = 11;
+    private static final byte TYPE_SQL_TIME     = 12;
+    private static final byte TYPE_TIMESTAMP    = 13;
+    private static final byte TYPE_LOCAL_DATE   = 14;
+    private static final byte TYPE_LOCAL_DATETIME = 15;
+    private static final byte TYPE_SERIALIZED   = 99;
+
+    /**
+     * RowOutput
+     * Provides access to the internal buffer
+     */
+    private static class RowOutput extends ByteArrayOutputStream
+    {
+        public RowOutput()
+        {
+            super(1024);
+        }
+        public byte[] getBuffer()
+        {
+            return buf;
+        }
+    }
+
+    private final File file;
+    private final int segmentSize;
+    private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+    private final RowOutput rowOutput = new RowOutput();
+    private final DataOutputStream dataOutput = new DataOutputStream(rowOutput);
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private long fileSize = 0;
+    private int writeOffset = 0;
+
+    /**
+     * Creates a new MappedRowFile
+     * @param directory the directory for the temporary file or null to use the default temp directory
+     * @param segmentSize the size of the mapped segments
+     */
+    public MappedRowFile(File directory, int segmentSize)
+    {
+        try
+        {   // create temp file
+            this.file = File.createTempFile("empire-db-", ".rows", directory);
+            this.segmentSize = segmentSize;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+            log.debug("Temporary row file {} created", file.getAbsolutePath());
+        }
+        catch (IOException e)
+        {
+            throw new FileWriteException(String.valueOf(directory), e);
+        }
+    }
+
+    public MappedRowFile(File directory)
+    {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Returns the temporary file
+     * @return the file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Returns the number of bytes allocated in the file
+     * @return the file size
+     */
+    public long getFileSize()
+    {
+        return fileSize;
+    }
+
+    /**
+     * Returns whether the file is open
+     * @return true if the file is open or false if it has been closed
+     */
+    public boolean isOpen()
+    {
+        return (channel!=null);
+    }
+
+    /**
+     * Appends a row to the file
+     * @param values the row values
+     * @return the address of the row
+     */
+    public long write(Object[] values)
+    {
+        checkOpen();
+        try
+        {   // encode row
+            rowOutput.reset();
+            dataOutput.writeInt(values.length);
+            for (int i=0; i<values.length; i++)
+                writeValue(dataOutput, values[i]);
+            dataOutput.flush();
+            int length = rowOutput.size();
+            // find segment
+            int index = segments.size()-1;
+            if (index<0 || writeOffset+length > segments.get(index).capacity())
+            {   // map a new segment
+                int size = Math.max(segmentSize, length);
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, fileSize, size));
+                fileSize += size;
+                writeOffset = 0;
+                index++;
+            }
+            // write
+            ByteBuffer buffer = segments.get(index).duplicate();
+            ((Buffer)buffer).position(writeOffset); // cast for Java 8 compatibility
+            buffer.put(rowOutput.getBuffer(), 0, length);
+            long address = (((long)index)<<32) | writeOffset;
+            writeOffset += length;
+            return address;
+        }
+        catch (IOException e)
+        {
+            throw new FileWriteException(file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Reads a row from the file
+     * @param address the address of the row as returned by write()
+     * @return the row values
+     */
+    public Object[] read(long address)
+    {
+        checkOpen();
+        ByteBuffer buffer = segments.get((int)(address>>>32)).duplicate();
+        ((Buffer)buffer).position((int)address);
+        Object[] values = new Object[buffer.getInt()];
+        for (int i=0; i<values.length; i++)
+            values[i] = readValue(buffer);
+        return values;
+    }
+
+    /**
+     * Releases the mapped segments and deletes the temporary file
+     */
+    @Override
+    public void close()
+    {
+        if (channel==null)
+            return;
+        segments.clear();
+        try
+        {   // close
+            channel.close();
+            raf.close();
+        }
+        catch (IOException e)
+        {
+            log.warn("Failed to close temporary row file {}: {}", file.getAbsolutePath(), e.getMessage());
+        }
+        finally
+        {
+            channel = null;
+            raf = null;
+        }
+        // Mapped segments are not released before garbage collection, which prevents deletion on some platforms
+        if (!file.delete())
+        {   log.info("Temporary row file {} will be deleted on exit", file.getAbsolutePath());
+            file.deleteOnExit();
+        }
+    }
+
+    protected void checkOpen()
+    {
+        if (channel==null)
+            throw new ObjectNotValidException(this, "The row file has been closed");
+    }
+
+    protected void writeValue(DataOutputStream out, Object value)
+        throws IOException
+    {
+        if (value==null)
+        {   out.writeByte(TYPE_NULL);
+        }
+        else if (value instanceof String)
+        {   byte[] bytes = ((String)value).getBytes(StandardCharsets.UTF_8);
+            out.writeByte(TYPE_STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        else if (value instanceof Integer)
+        {   out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer)value);
+        }
+        else if (value instanceof Long)
+        {   out.writeByte(TYPE_LONG);
+            out.writeLong((Long)value);
+        }
+        else if (value instanceof Short)
+        {   out.writeByte(TYPE_SHORT);
+            out.writeShort((Short)value);
+        }
+        else if (value instanceof Double)
+        {   out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double)value);
+        }
+        else if (value instanceof Float)
+        {   out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float)value);
+        }
+        else if (value instanceof Boolean)
+        {   out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean)value);
+        }
+        else if (value.getClass()==BigDecimal.class)
+        {   byte[] bytes = ((BigDecimal)value).toString().getBytes(StandardCharsets.US_ASCII);
+            out.writeByte(TYPE_DECIMAL);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        else if (value instanceof byte[])
+        {   out.writeByte(TYPE_BYTES);
+            out.writeInt(((byte[])value).length);
+            out.write((byte[])value);
+        }
+        else if (value.getClass()==java.sql.Timestamp.class)
+        {   out.writeByte(TYPE_TIMESTAMP);
+            out.writeLong(((java.sql.Timestamp)value).getTime());
+            out.writeInt(((java.sql.Timestamp)value).getNanos());
+        }
+        else if (value.getClass()==java.sql.Date.class)
+        {   out.writeByte(TYPE_SQL_DATE);
+            out.writeLong(((Date)value).getTime());
+        }
+        else if (value.getClass()==java.sql.Time.class)
+        {   out.writeByte(TYPE_SQL_TIME);
+            out.writeLong(((Date)value).getTime());
+        }
+        else if (value.getClass()==Date.class)
+        {   out.writeByte(TYPE_DATE);
+            out.writeLong(((Date)value).getTime());
+        }
+        else if (value instanceof LocalDate)
+        {   out.writeByte(TYPE_LOCAL_DATE);
+            out.writeLong(((LocalDate)value).toEpochDay());
+        }
+        else if (value instanceof LocalDateTime)
+        {   out.writeByte(TYPE_LOCAL_DATETIME);
+            out.writeLong(((LocalDateTime)value).toLocalDate().toEpochDay());
+            out.writeLong(((LocalDateTime)value).toLocalTime().toNanoOfDay());
+        }
+        else if (value instanceof Serializable)
+        {   // use Java serialization
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bytes);
+            oos.writeObject(value);
+            oos.close();
+            out.writeByte(TYPE_SERIALIZED);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        }
+        else
+            throw new UnsupportedTypeException(value.getClass());
+    }
+
+    protected Object readValue(ByteBuffer in)
+    {
+        byte type = in.get();
+        switch(type)
+        {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return new String(readBytes(in), StandardCharsets.UTF_8);
+            case TYPE_INTEGER:
+                return in.getInt();
+            case TYPE_LONG:
+                return in.getLong();
+            case TYPE_SHORT:
+                return in.getShort();
+            case TYPE_DOUBLE:
+                return in.getDouble();
+            case TYPE_FLOAT:
+                return in.getFloat();
+            case TYPE_BOOLEAN:
+                return (in.get()!=0);
+            case TYPE_DECIMAL:
+                return new BigDecimal(new String(readBytes(in), StandardCharsets.US_ASCII));
+            case TYPE_BYTES:
+                return readBytes(in);
+            case TYPE_TIMESTAMP:
+            {   java.sql.Timestamp ts = new java.sql.Timestamp(in.getLong());
+                ts.setNanos(in.getInt());
+                return ts;
+            }
+            case TYPE_SQL_DATE:
+                return new java.sql.Date(in.getLong());
+            case TYPE_SQL_TIME:
+                return new java.sql.Time(in.getLong());
+            case TYPE_DATE:
+                return new Date(in.getLong());
+            case TYPE_LOCAL_DATE:
+                return LocalDate.ofEpochDay(in.getLong());
+            case TYPE_LOCAL_DATETIME:
+                return LocalDateTime.of(LocalDate.ofEpochDay(in.getLong()), LocalTime.ofNanoOfDay(in.getLong()));
+            case TYPE_SERIALIZED:
+                try
+                {   // use Java serialization
+                    ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)));
+                    return ois.readObject();
+                }
+                catch (IOException | ClassNotFoundException e)
+                {
+                    throw new FileReadException(file.getAbsolutePath(), e);
+                }
+            default:
+                throw new FileReadException(file.getAbsolutePath(), new IOException("Invalid value type "+type));
+        }
+    }
+
+    private byte[] readBytes(ByteBuffer in)
+    {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return bytes;
+    }
+}
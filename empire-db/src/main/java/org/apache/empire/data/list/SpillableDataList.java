@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.data.list;
+
+import java.io.File;
+
+import org.apache.empire.exceptions.InvalidArgumentException;
+
+/**
+ * SpillableDataList
+ * A list of DataListEntry items which writes all items beyond the heap limit to a memory-mapped temporary file.<BR>
+ * Entries of spilled rows are read back on access. Modifications of these entries are written back to the file.
+ * @see SpillableList
+ */
+public class SpillableDataList extends SpillableList<DataListEntry>
+{
+    /**
+     * SpilledEntry
+     * A DataListEntry which writes modifications back to the list
+     */
+    public static class SpilledEntry extends DataListEntry
+    {
+        private static final long serialVersionUID = 1L;
+
+        private transient final SpillableDataList list;
+
+        public SpilledEntry(SpillableDataList list, Object[] values, int rownum)
+        {
+            super(list.getHead(), values, rownum);
+            this.list = list;
+        }
+
+        @Override
+        protected void setValue(int index, Object value)
+        {
+            super.setValue(index, value);
+            if (list!=null)
+                list.updateRow(rownum, values);
+        }
+    }
+
+    protected final DataListHead head;
+
+    /**
+     * Creates a SpillableDataList
+     * @param head the list head
+     * @param heapLimit the maximum number of items kept on the heap
+     * @param tempDirectory the directory for the temporary file or null to use the default temp directory
+     */
+    public SpillableDataList(DataListHead head, int heapLimit, File tempDirectory)
+    {
+        super(heapLimit, tempDirectory);
+        if (head==null)
+            throw new InvalidArgumentException("head", head);
+        this.head = head;
+    }
+
+    public DataListHead getHead()
+    {
+        return head;
+    }
+
+    @Override
+    protected Object[] toRow(DataListEntry entry)
+    {
+        Object[] values = new Object[head.getColumns().length];
+        for (int i=0; i<values.length; i++)
+            values[i] = entry.getValue(i);
+        return values;
+    }
+
+    @Override
+    protected DataListEntry fromRow(Object[] values, int index)
+    {
+        return new SpilledEntry(this, values, index);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.data.list;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import org.apache.empire.exceptions.InvalidArgumentException;
+
+/**
+ * SpillableList
+ * A list which keeps the first items on the heap and writes all further items to a {@link MappedRowFile}.<BR>
+ * Spilled items are converted to an array of values and read back on access. Only the file address is kept on the heap.<BR>
+ * Items returned for spilled rows are new objects. Changes to these objects are not written back unless the subclass does so.<BR>
+ * Items refer to spilled rows by index, hence they must not be modified after rows have been removed.<BR>
+ * The list must be closed in order to delete the temporary file. Closing removes all spilled items from the list.
+ */
+public abstract class SpillableList<T> extends AbstractList<T> implements RandomAccess, Closeable
+{
+    protected final int heapLimit;
+    protected final File tempDirectory;
+    protected final ArrayList<T> heapItems;
+    private MappedRowFile rowFile;
+    private long[] addresses;
+    private int spillCount;
+
+    /**
+     * Creates a SpillableList
+     * @param heapLimit the maximum number of items kept on the heap
+     * @param tempDirectory the directory for the temporary file or null to use the default temp directory
+     */
+    protected SpillableList(int heapLimit, File tempDirectory)
+    {
+        if (heapLimit<0)
+            throw new InvalidArgumentException("heapLimit", heapLimit);
+        this.heapLimit = heapLimit;
+        this.tempDirectory = tempDirectory;
+        this.heapItems = new ArrayList<T>(Math.min(heapLimit, 1024));
+        this.addresses = new long[0];
+        this.spillCount = 0;
+    }
+
+    /**
+     * Returns the maximum number of items kept on the heap
+     * @return the heap limit
+     */
+    public int getHeapLimit()
+    {
+        return heapLimit;
+    }
+
+    /**
+     * Returns the number of items that have been written to the temporary file
+     * @return the number of spilled items
+     */
+    public int getSpillCount()
+    {
+        return spillCount;
+    }
+
+    /**
+     * Returns whether items have been written to a temporary file
+     * @return true if the list has spilled items
+     */
+    public boolean isSpilled()
+    {
+        return (spillCount>0);
+    }
+
+    @Override
+    public int size()
+    {
+        return heapItems.size() + spillCount;
+    }
+
+    @Override
+    public T get(int index)
+    {
+        int heapSize = heapItems.size();
+        if (index<heapSize)
+            return heapItems.get(index);
+        // spilled
+        checkIndex(index);
+        return fromRow(rowFile.read(addresses[index-heapSize]), index);
+    }
+
+    @Override
+    public boolean add(T item)
+    {
+        if (spillCount==0 && heapItems.size()<heapLimit)
+        {   modCount++;
+            return heapItems.add(item);
+        }
+        // spill
+        if (rowFile==null)
+            rowFile = createRowFile();
+        if (spillCount==addresses.length)
+            addresses = Arrays.copyOf(addresses, Math.max(1024, spillCount + (spillCount >> 1)));
+        addresses[spillCount++] = rowFile.write(toRow(item));
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public T set(int index, T item)
+    {
+        int heapSize = heapItems.size();
+        if (index<heapSize)
+            return heapItems.set(index, item);
+        // spilled
+        T prev = get(index);
+        addresses[index-heapSize] = rowFile.write(toRow(item));
+        return prev;
+    }
+
+    @Override
+    public T remove(int index)
+    {
+        int heapSize = heapItems.size();
+        if (index<heapSize)
+        {   modCount++;
+            return heapItems.remove(index);
+        }
+        // spilled
+        T prev = get(index);
+        int pos = index-heapSize;
+        System.arraycopy(addresses, pos+1, addresses, pos, spillCount-pos-1);
+        spillCount--;
+        modCount++;
+        return prev;
+    }
+
+    @Override
+    public void clear()
+    {
+        heapItems.clear();
+        close();
+    }
+
+    /**
+     * Deletes the temporary file and removes all spilled items from the list
+     */
+    @Override
+    public void close()
+    {
+        if (rowFile!=null)
+        {   rowFile.close();
+            rowFile = null;
+        }
+        addresses = new long[0];
+        spillCount = 0;
+        modCount++;
+    }
+
+    /**
+     * Creates the temporary file for spilled items
+     * @return the row file
+     */
+    protected MappedRowFile createRowFile()
+    {
+        return new MappedRowFile(tempDirectory);
+    }
+
+    /**
+     * Rewrites a spilled row
+     * @param index the item index
+     * @param values the new row values
+     */
+    protected void updateRow(int index, Object[] values)
+    {
+        int heapSize = heapItems.size();
+        if (index<heapSize)
+            throw new InvalidArgumentException("index", index);
+        checkIndex(index);
+        addresses[index-heapSize] = rowFile.write(values);
+    }
+
+    protected void checkIndex(int index)
+    {
+        if (index<0 || index>=size())
+            throw new InvalidArgumentException("index", index);
+    }
+
+    /**
+     * Converts an item to an array of values
+     * @param item the item
+     * @return the row values
+     */
+    protected abstract Object[] toRow(T item);
+
+    /**
+     * Creates an item from an array of values
+     * @param values the row values
+     * @param index the item index
+     * @return the item
+     */
+    protected abstract T fromRow(Object[] values, int index);
+
+}
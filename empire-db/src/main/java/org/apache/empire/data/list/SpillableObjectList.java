@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.data.list;
+
+import java.io.File;
+
+/**
+ * SpillableObjectList
+ * A list of object arrays which writes all rows beyond the heap limit to a memory-mapped temporary file.<BR>
+ * Arrays of spilled rows are read back on access. Changes to these arrays must be stored with set().
+ * @see SpillableList
+ */
+public class SpillableObjectList extends SpillableList<Object[]>
+{
+    /**
+     * Creates a SpillableObjectList
+     * @param heapLimit the maximum number of rows kept on the heap
+     * @param tempDirectory the directory for the temporary file or null to use the default temp directory
+     */
+    public SpillableObjectList(int heapLimit, File tempDirectory)
+    {
+        super(heapLimit, tempDirectory);
+    }
+
+    @Override
+    protected Object[] toRow(Object[] item)
+    {
+        return item;
+    }
+
+    @Override
+    protected Object[] fromRow(Object[] values, int index)
+    {
+        return values;
+    }
+}
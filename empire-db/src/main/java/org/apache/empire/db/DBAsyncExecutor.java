@@ -0,0 +1,549 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.sql.DataSource;
+
+import org.apache.empire.data.list.DataListEntry;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.db.exceptions.EmpireSQLException;
+import org.apache.empire.dbms.DBMSHandler;
+import org.apache.empire.exceptions.InternalException;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.InvalidOperationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBAsyncExecutor
+ * Runs queries and statements asynchronously on an executor and returns a CompletableFuture for the result.<BR>
+ * If a DataSource is provided, each task obtains its own connection, hence independent queries run concurrently
+ * (see fanOut()). Update tasks are committed on success and rolled back on failure.
+ * Cancelling the future of a running task aborts its connection and thereby the running statement.<BR>
+ * If a DBContext is provided instead, the tasks share its connection and are executed one after the other.
+ * The context must then be confined to this executor, i.e. it must not be used by other threads while tasks are pending,
+ * and cancelling a future only prevents a task from being started.<BR>
+ * By default tasks run on virtual threads if available (Java 21+) or on a cached pool of daemon threads otherwise.
+ */
+public class DBAsyncExecutor
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBAsyncExecutor.class);
+
+    private static ExecutorService defaultExecutor = null;
+
+    /**
+     * Returns the default executor which is shared by all instances
+     * @return the default executor
+     */
+    public static synchronized Executor getDefaultExecutor()
+    {
+        if (defaultExecutor==null)
+            defaultExecutor = createDefaultExecutor();
+        return defaultExecutor;
+    }
+
+    /**
+     * Creates an executor using virtual threads if available (Java 21+) or a cached pool of daemon threads otherwise
+     * @return the executor
+     */
+    protected static ExecutorService createDefaultExecutor()
+    {
+        try
+        {   // Java 21+
+            Object executor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            log.info("DBAsyncExecutor uses virtual threads.");
+            return (ExecutorService)executor;
+        }
+        catch (NoSuchMethodException e)
+        {   // Java 8 to 20
+            log.info("Virtual threads are not available. DBAsyncExecutor uses a cached thread pool.");
+        }
+        catch (IllegalAccessException | InvocationTargetException e)
+        {   // should not happen
+            log.warn("Failed to create a virtual thread executor: {}", e.getMessage());
+        }
+        // cached daemon threads
+        final AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "empire-db-async-"+threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * AsyncTask
+     * Runs a task and completes its future. The connection of a running task is aborted if the future is cancelled.
+     */
+    private class AsyncTask<T> implements Runnable
+    {
+        private final Function<DBContext, T> task;
+        private final boolean update;
+        private final CompletableFuture<T> future;
+        private volatile Connection connection = null;
+        private volatile boolean cancelled = false;
+
+        public AsyncTask(Function<DBContext, T> task, boolean update)
+        {
+            this.task = task;
+            this.update = update;
+            this.future = new CompletableFuture<T>() {
+                @Override
+                public boolean cancel(boolean mayInterruptIfRunning)
+                {
+                    boolean result = super.cancel(mayInterruptIfRunning);
+                    AsyncTask.this.cancel();
+                    return result;
+                }
+            };
+        }
+
+        @Override
+        public void run()
+        {
+            if (future.isDone())
+                return; // cancelled before start
+            try
+            {   // run
+                future.complete((dataSource==null) ? runShared() : runSeparate());
+            }
+            catch (Throwable e)
+            {   // failed
+                future.completeExceptionally(e);
+            }
+        }
+
+        private T runShared()
+        {
+            synchronized(context)
+            {   // shared connection
+                return task.apply(context);
+            }
+        }
+
+        private T runSeparate()
+        {
+            DBContext taskContext = createTaskContext(getConnection());
+            try
+            {   // publish connection for cancel
+                connection = taskContext.getConnection();
+                if (cancelled)
+                    throw new InvalidOperationException("The task has been cancelled.");
+                // run
+                T result = task.apply(taskContext);
+                if (update)
+                    taskContext.commit();
+                return result;
+            }
+            catch (RuntimeException e)
+            {   // rollback
+                if (update && !cancelled)
+                    taskContext.rollback();
+                throw e;
+            }
+            finally
+            {   // release connection
+                connection = null;
+                taskContext.discard();
+            }
+        }
+
+        private void cancel()
+        {
+            cancelled = true;
+            Connection conn = connection;
+            if (conn!=null)
+                abortConnection(conn);
+        }
+    }
+
+    /**
+     * FanOut
+     * Collects the futures of independent tasks which run concurrently and waits for all of them.
+     */
+    public class FanOut
+    {
+        private final List<CompletableFuture<?>> futures = new ArrayList<CompletableFuture<?>>();
+
+        /**
+         * Adds a task
+         * @param task the task
+         * @return the future result
+         */
+        public <T> CompletableFuture<T> submit(Function<DBContext, T> task)
+        {
+            return add(DBAsyncExecutor.this.submit(task));
+        }
+
+        /**
+         * Adds a query for a list of DataListEntry items
+         * @param cmd the command
+         * @return the future list of items
+         */
+        public CompletableFuture<List<DataListEntry>> queryDataList(DBCommandExpr cmd)
+        {
+            return add(DBAsyncExecutor.this.queryDataList(cmd));
+        }
+
+        /**
+         * Adds a query for a list of beans
+         * @param cmd the command
+         * @param beanType the bean type
+         * @return the future list of beans
+         */
+        public <T> CompletableFuture<List<T>> queryBeanList(DBCommandExpr cmd, Class<T> beanType)
+        {
+            return add(DBAsyncExecutor.this.queryBeanList(cmd, beanType));
+        }
+
+        /**
+         * Adds a query for a single value
+         * @param cmd the command
+         * @param resultType the type of the value
+         * @return the future value
+         */
+        public <T> CompletableFuture<T> querySingleValue(DBCommandExpr cmd, Class<T> resultType)
+        {
+            return add(DBAsyncExecutor.this.querySingleValue(cmd, resultType));
+        }
+
+        /**
+         * Waits until all tasks have completed.<BR>
+         * If a task fails, the remaining tasks are cancelled and the exception of the task is thrown.
+         * Running tasks are stopped by aborting their connection.
+         */
+        public void join()
+        {
+            try
+            {   // wait for all
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).join();
+            }
+            catch (CompletionException e)
+            {   // cancel remaining
+                for (CompletableFuture<?> future : futures)
+                    future.cancel(false);
+                throw unwrap(e);
+            }
+        }
+
+        private <T> CompletableFuture<T> add(CompletableFuture<T> future)
+        {
+            futures.add(future);
+            return future;
+        }
+    }
+
+    protected final DBContext context;
+    protected final DBMSHandler dbms;
+    protected final DataSource dataSource;
+    protected final Executor executor;
+
+    /**
+     * Creates an executor for tasks which share the connection of a context.<BR>
+     * The tasks are executed one after the other.
+     * The context must not be used by other threads while tasks are pending.
+     * @param context the context
+     * @param executor the executor
+     */
+    public DBAsyncExecutor(DBContext context, Executor executor)
+    {
+        if (context==null)
+            throw new InvalidArgumentException("context", context);
+        if (executor==null)
+            throw new InvalidArgumentException("executor", executor);
+        this.context = context;
+        this.dbms = context.getDbms();
+        this.dataSource = null;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates an executor for tasks which share the connection of a context using the default executor.
+     * The context must not be used by other threads while tasks are pending.
+     * @param context the context
+     */
+    public DBAsyncExecutor(DBContext context)
+    {
+        this(context, getDefaultExecutor());
+    }
+
+    /**
+     * Creates an executor for tasks which obtain a separate connection from a DataSource.
+     * @param dbms the dbms handler
+     * @param dataSource the data source
+     * @param executor the executor
+     */
+    public DBAsyncExecutor(DBMSHandler dbms, DataSource dataSource, Executor executor)
+    {
+        if (dbms==null)
+            throw new InvalidArgumentException("dbms", dbms);
+        if (dataSource==null)
+            throw new InvalidArgumentException("dataSource", dataSource);
+        if (executor==null)
+            throw new InvalidArgumentException("executor", executor);
+        this.context = null;
+        this.dbms = dbms;
+        this.dataSource = dataSource;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates an executor for tasks which obtain a separate connection from a DataSource using the default executor.
+     * @param dbms the dbms handler
+     * @param dataSource the data source
+     */
+    public DBAsyncExecutor(DBMSHandler dbms, DataSource dataSource)
+    {
+        this(dbms, dataSource, getDefaultExecutor());
+    }
+
+    /**
+     * Returns the executor on which the tasks are run
+     * @return the executor
+     */
+    public Executor getExecutor()
+    {
+        return executor;
+    }
+
+    /**
+     * Returns a new fan out for running independent tasks concurrently.<BR>
+     * A fan out requires a DataSource, since tasks sharing the connection of a context cannot run concurrently.
+     * @return the fan out
+     */
+    public FanOut fanOut()
+    {
+        if (dataSource==null)
+            throw new InvalidOperationException("A fan out requires a DataSource. The tasks of a shared context cannot run concurrently.");
+        return new FanOut();
+    }
+
+    /**
+     * Runs a read task asynchronously
+     * @param task the task
+     * @return the future result
+     */
+    public <T> CompletableFuture<T> submit(Function<DBContext, T> task)
+    {
+        return execute(new AsyncTask<T>(task, false));
+    }
+
+    /**
+     * Runs an update task asynchronously.<BR>
+     * If the task uses a separate connection it is committed on success and rolled back on failure.
+     * @param task the task
+     * @return the future result
+     */
+    public <T> CompletableFuture<T> submitUpdate(Function<DBContext, T> task)
+    {
+        return execute(new AsyncTask<T>(task, true));
+    }
+
+    /**
+     * Runs a query for a list of DataListEntry items asynchronously
+     * @param cmd the command
+     * @return the future list of items
+     */
+    public CompletableFuture<List<DataListEntry>> queryDataList(final DBCommandExpr cmd)
+    {
+        return submit(new Function<DBContext, List<DataListEntry>>() {
+            @Override
+            public List<DataListEntry> apply(DBContext context)
+            {
+                return context.getUtils().queryDataList(cmd);
+            }
+        });
+    }
+
+    /**
+     * Runs a query for a list of beans asynchronously
+     * @param cmd the command
+     * @param beanType the bean type
+     * @return the future list of beans
+     */
+    public <T> CompletableFuture<List<T>> queryBeanList(final DBCommandExpr cmd, final Class<T> beanType)
+    {
+        return submit(new Function<DBContext, List<T>>() {
+            @Override
+            public List<T> apply(DBContext context)
+            {
+                return context.getUtils().queryBeanList(cmd, beanType, null);
+            }
+        });
+    }
+
+    /**
+     * Runs a query for a single value asynchronously
+     * @param cmd the command
+     * @param resultType the type of the value
+     * @return the future value or null if the query returns no rows
+     */
+    public <T> CompletableFuture<T> querySingleValue(final DBCommandExpr cmd, final Class<T> resultType)
+    {
+        return submit(new Function<DBContext, T>() {
+            @Override
+            public T apply(DBContext context)
+            {
+                return context.getUtils().querySingleValue(cmd, resultType, false);
+            }
+        });
+    }
+
+    /**
+     * Runs a query for the number of rows of a command asynchronously
+     * @param cmd the command
+     * @return the future row count
+     */
+    public CompletableFuture<Integer> queryRowCount(final DBCommand cmd)
+    {
+        return submit(new Function<DBContext, Integer>() {
+            @Override
+            public Integer apply(DBContext context)
+            {
+                return context.getUtils().queryRowCount(cmd);
+            }
+        });
+    }
+
+    /**
+     * Executes an insert, update or delete command asynchronously
+     * @param cmd the command
+     * @return the future number of affected rows
+     */
+    public CompletableFuture<Integer> executeUpdate(final DBCommand cmd)
+    {
+        return submitUpdate(new Function<DBContext, Integer>() {
+            @Override
+            public Integer apply(DBContext context)
+            {
+                return context.executeUpdate(cmd);
+            }
+        });
+    }
+
+    /**
+     * Executes a SQL statement asynchronously
+     * @param sqlCmd the SQL statement
+     * @param sqlParams the statement parameters or null
+     * @return the future number of affected rows
+     */
+    public CompletableFuture<Integer> executeSQL(final String sqlCmd, final Object[] sqlParams)
+    {
+        return submitUpdate(new Function<DBContext, Integer>() {
+            @Override
+            public Integer apply(DBContext context)
+            {
+                return context.executeSQL(sqlCmd, sqlParams);
+            }
+        });
+    }
+
+    /**
+     * Passes a task to the executor
+     * @param task the task
+     * @return the future result
+     */
+    private <T> CompletableFuture<T> execute(AsyncTask<T> task)
+    {
+        try
+        {   // run
+            executor.execute(task);
+        }
+        catch (RuntimeException e)
+        {   // rejected
+            task.future.completeExceptionally(e);
+        }
+        return task.future;
+    }
+
+    /**
+     * Aborts the connection of a running task which has been cancelled.<BR>
+     * The connection is aborted asynchronously on the executor, which terminates the running statement.
+     * @param conn the connection
+     */
+    protected void abortConnection(Connection conn)
+    {
+        try
+        {   // abort
+            conn.abort(executor);
+        }
+        catch (SQLException | RuntimeException e)
+        {   // not supported
+            log.warn("Failed to abort the connection of a cancelled task: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the context for a task with a separate connection
+     * @param conn the connection
+     * @return the context which closes the connection on discard
+     */
+    protected DBContext createTaskContext(Connection conn)
+    {
+        return new DBContextStatic(dbms, conn, true);
+    }
+
+    /**
+     * Obtains a connection from the data source
+     * @return the connection
+     */
+    protected Connection getConnection()
+    {
+        try
+        {   // get connection
+            return dataSource.getConnection();
+        }
+        catch (SQLException e)
+        {   // failed
+            throw new EmpireSQLException(dbms, e);
+        }
+    }
+
+    /**
+     * Returns the cause of a CompletionException
+     * @param e the completion exception
+     * @return the runtime exception to throw
+     */
+    public static RuntimeException unwrap(CompletionException e)
+    {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException)
+            return (RuntimeException)cause;
+        return new InternalException(cause!=null ? cause : e);
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.empire.db;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.empire.data.DataType;
 import org.apache.empire.exceptions.NotSupportedException;
@@ -35,6 +36,30 @@ public class DBCmdParamList implements DBCmdParams
 {
     protected static final Logger log = LoggerFactory.getLogger(DBCmdParamList.class);
 
+    /**
+     * DBCmdParamCopy
+     * A temporary copy of a command param which is used more than once in a statement
+     */
+    protected static class DBCmdParamCopy extends DBCmdParam
+    {
+        protected final DBCmdParam source;
+
+        public DBCmdParamCopy(DBCmdParam source)
+        {
+            super(null, source.getDataType(), source.getValue());
+            this.source = source;
+        }
+
+        /**
+         * Returns the command param this param is a copy of
+         * @return the source param
+         */
+        public DBCmdParam getSource()
+        {
+            return source;
+        }
+    }
+
     protected ArrayList<DBCmdParam> cmdParams;
     
     private int paramUsageCount = 0;
@@ -127,6 +152,16 @@ public class DBCmdParamList implements DBCmdParams
         return values;
     }
     
+    /**
+     * Adds all params used by the last statement in order of their occurrence to the supplied list
+     * @param list the list to which to add the params
+     */
+    public void addUsedParams(List<DBCmdParam> list)
+    {
+        for (int i=0; i<paramUsageCount; i++)
+            list.add(cmdParams.get(i));
+    }
+    
     /**
      * internally used to reset the command param usage count.
      * Note: Only one thread my generate an SQL statement 
@@ -193,7 +228,7 @@ public class DBCmdParamList implements DBCmdParams
         if (index < paramUsageCount)
         {   // Warn: parameter used twice in statement!
             log.debug("The DBCmdParam already been used. Adding a temporary copy");
-            cmdParams.add(paramUsageCount, new DBCmdParam(null, param.getDataType(), param.getValue()));
+            cmdParams.add(paramUsageCount, new DBCmdParamCopy(param));
         }
         else if (index > paramUsageCount)
         {   // Correct parameter order
@@ -196,6 +196,13 @@ public class DBCombinedCmd extends DBCommandExpr
         return allParams;
     }
     
+    @Override
+    protected void addStatementParams(List<DBCmdParam> list)
+    {
+        left.addStatementParams(list);
+        right.addStatementParams(list);
+    }
+    
     /**
     * @return the DataType of the selected expression or DataType.UNKNOWN
     */
@@ -1700,6 +1700,12 @@ public abstract class DBCommand extends DBCommandExpr
         return cmdParams.getParamValues();
     }
     
+    @Override
+    protected void addStatementParams(List<DBCmdParam> list)
+    {
+        cmdParams.addUsedParams(list);
+    }
+    
     /**
      * Creates a select SQL-Statement
      */
@@ -1738,6 +1744,18 @@ public abstract class DBCommand extends DBCommandExpr
      */
     // get Insert
     public String getInsert()
+    {
+        return getInsert(null);
+    }
+    
+    /**
+     * Creates an insert SQL-Statement which returns the values of database generated columns.<BR>
+     * Depending on the dbms the values are returned by a clause of the statement (e.g. OUTPUT or RETURNING)
+     * or by the JDBC driver (see DBMSHandler.executeInsertReturning()).
+     * @param returnColumns the columns for which to return the values (optional)
+     * @return an insert SQL-Statement
+     */
+    public String getInsert(DBColumn[] returnColumns)
     {
         resetParamUsage();
         if (set==null || set.get(0)==null)
@@ -1773,8 +1791,12 @@ public abstract class DBCommand extends DBCommandExpr
         }
         if (set != null)
             addListExpr(sql, set, CTX_NAME, ", ");
+        sql.append(")");
+        // Output
+        if (returnColumns!=null && returnColumns.length>0)
+            addInsertOutput(sql, returnColumns);
         // Values
-        sql.append(") VALUES ( ");
+        sql.append(" VALUES ( ");
         if (compexpr != null)
             addListExpr(sql, compexpr, CTX_VALUE, ", ");
         if (compexpr != null && set != null)
@@ -1783,10 +1805,256 @@ public abstract class DBCommand extends DBCommandExpr
             addListExpr(sql, set, CTX_VALUE, ", ");
         // End
         sql.append(")");
+        // Returning
+        if (returnColumns!=null && returnColumns.length>0)
+            addInsertReturning(sql, returnColumns);
+        // done
+        completeParamUsage();
+        return sql.toString();
+    }
+    
+    /**
+     * Appends a clause between the column list and the values of an insert statement which returns the values of the given columns.<BR>
+     * The default implementation does nothing.
+     * @param sql the SQL-Command
+     * @param returnColumns the columns for which to return the values
+     */
+    protected void addInsertOutput(DBSQLBuilder sql, DBColumn[] returnColumns)
+    {
+        /* Nothing */
+    }
+    
+    /**
+     * Appends a clause to the end of an insert statement which returns the values of the given columns.<BR>
+     * The default implementation does nothing.
+     * @param sql the SQL-Command
+     * @param returnColumns the columns for which to return the values
+     */
+    protected void addInsertReturning(DBSQLBuilder sql, DBColumn[] returnColumns)
+    {
+        /* Nothing */
+    }
+    
+    /**
+     * Creates an insert statement for multiple rows:
+     * <pre>
+     * INSERT INTO table ( col1, col2, ... ) VALUES ( v11, v12, ... ), ( v21, v22, ... ), ...
+     * </pre>
+     * Literal values are replaced by command params if prepared statements are enabled.<BR>
+     * Use getParamValues() to obtain the statement params.<BR>
+     * The set expressions and constraints of this command are ignored.<BR>
+     * This requires DBMSFeature.MULTI_ROW_INSERT. To respect the dbms limits use DBUtils.executeInsertRows()
+     * @param table the table into which to insert the rows
+     * @param columns the columns for which to provide values
+     * @param rows the row values in the order of the columns
+     * @return the insert SQL-Command
+     */
+    public String getInsertRows(DBTable table, DBColumn[] columns, List<Object[]> rows)
+    {
+        if (table==null)
+            throw new InvalidArgumentException("table", table);
+        if (columns==null || columns.length==0)
+            throw new InvalidArgumentException("columns", columns);
+        if (rows==null || rows.isEmpty())
+            throw new InvalidArgumentException("rows", rows);
+        resetParamUsage();
+        DBSQLBuilder sql = createSQLBuilder("INSERT INTO ");
+        table.addSQL(sql, CTX_FULLNAME);
+        // Column names
+        sql.append("( ");
+        for (int i=0; i<columns.length; i++)
+        {   // check column
+            if (columns[i].getRowSet()!=table)
+                throw new InvalidArgumentException("columns", columns[i]);
+            if (i>0)
+                sql.append(", ");
+            columns[i].addSQL(sql, CTX_NAME);
+        }
+        // Values
+        sql.append(") VALUES ");
+        for (int r=0; r<rows.size(); r++)
+        {   // check row
+            Object[] row = rows.get(r);
+            if (row==null || row.length!=columns.length)
+                throw new InvalidArgumentException("rows", r);
+            if (r>0)
+                sql.append(", ");
+            sql.append("( ");
+            for (int i=0; i<columns.length; i++)
+            {   // append value
+                Object value = row[i];
+                if (useCmdParam(columns[i], value))
+                    value = addParam(columns[i].getDataType(), value);
+                if (i>0)
+                    sql.append(", ");
+                sql.appendValue(columns[i].getDataType(), value, CTX_VALUE, "+");
+            }
+            sql.append(")");
+        }
+        // done
+        completeParamUsage();
+        return sql.toString();
+    }
+    
+    /**
+     * Creates a statement that inserts a row or updates the existing row with the same key (upsert).<BR>
+     * The column values are taken from the set expressions of this command which must include all key columns.<BR>
+     * The constraints of this command are ignored.<BR>
+     * The default implementation creates a MERGE statement. Override addUpsert() to provide dbms specific syntax.<BR>
+     * This requires DBMSFeature.UPSERT.
+     * @param keyColumns the columns which identify an existing row (usually the primary key or a unique index)
+     * @return the upsert SQL-Command
+     */
+    public String getUpsert(DBColumn[] keyColumns)
+    {
+        resetParamUsage();
+        if (set==null || set.isEmpty())
+            return null;
+        // check key columns
+        if (keyColumns==null || keyColumns.length==0)
+            throw new InvalidArgumentException("keyColumns", keyColumns);
+        for (DBColumn col : keyColumns)
+        {   // key value must be set
+            if (!hasSetExprOn(col))
+                throw new ItemNotFoundException(col.getName());
+        }
+        DBRowSet table = set.get(0).getTable();
+        DBSQLBuilder sql = createSQLBuilder(null);
+        addUpsert(sql, table, keyColumns);
         // done
         completeParamUsage();
         return sql.toString();
     }
+
+    /**
+     * Creates a statement that inserts a row or updates the existing row with the same primary key.
+     * @see DBCommand#getUpsert(DBColumn[])
+     * @return the upsert SQL-Command
+     */
+    public final String getUpsert()
+    {
+        if (set==null || set.isEmpty())
+            return null;
+        DBRowSet table = set.get(0).getTable();
+        DBColumn[] keyColumns = table.getKeyColumns();
+        if (keyColumns==null || keyColumns.length==0)
+            throw new NoPrimaryKeyException(table);
+        return getUpsert(keyColumns);
+    }
+    
+    /**
+     * Appends the upsert statement as a standard SQL MERGE statement:
+     * <pre>
+     * MERGE INTO table t USING (VALUES ( v1, v2, ... )) s0 ( col1, col2, ... ) ON ( t.key=s0.key )
+     * WHEN MATCHED THEN UPDATE SET col2=s0.col2, ...
+     * WHEN NOT MATCHED THEN INSERT ( col1, col2, ... ) VALUES ( s0.col1, s0.col2, ... )
+     * </pre>
+     * @param sql the SQL-Command
+     * @param table the table to insert into or update
+     * @param keyColumns the columns which identify an existing row
+     */
+    protected void addUpsert(DBSQLBuilder sql, DBRowSet table, DBColumn[] keyColumns)
+    {
+        sql.append("MERGE INTO ");
+        table.addSQL(sql, CTX_FULLNAME|CTX_ALIAS);
+        // Source
+        sql.append("\r\nUSING ");
+        addUpsertSource(sql, "s0");
+        // On
+        sql.append("\r\nON (");
+        for (int i=0; i<keyColumns.length; i++)
+        {   // key constraint
+            if (i>0)
+                sql.append(" AND ");
+            sql.append(table.getAlias());
+            sql.append(".");
+            keyColumns[i].addSQL(sql, CTX_NAME);
+            sql.append("=s0.");
+            keyColumns[i].addSQL(sql, CTX_NAME);
+        }
+        sql.append(")");
+        // Update
+        List<DBSetExpr> updateSet = getUpsertUpdateSet(keyColumns);
+        if (!updateSet.isEmpty())
+        {   // update all other columns
+            sql.append("\r\nWHEN MATCHED THEN UPDATE SET ");
+            for (int i=0; i<updateSet.size(); i++)
+            {
+                if (i>0)
+                    sql.append(", ");
+                updateSet.get(i).getColumn().addSQL(sql, CTX_NAME);
+                sql.append("=s0.");
+                updateSet.get(i).getColumn().addSQL(sql, CTX_NAME);
+            }
+        }
+        // Insert
+        sql.append("\r\nWHEN NOT MATCHED THEN INSERT ( ");
+        addListExpr(sql, set, CTX_NAME, ", ");
+        sql.append(") VALUES ( ");
+        for (int i=0; i<set.size(); i++)
+        {
+            if (i>0)
+                sql.append(", ");
+            sql.append("s0.");
+            set.get(i).getColumn().addSQL(sql, CTX_NAME);
+        }
+        sql.append(")");
+    }
+
+    /**
+     * Appends the source row of a MERGE statement:
+     * <pre>
+     * (VALUES ( v1, v2, ... )) alias ( col1, col2, ... )
+     * </pre>
+     * @param sql the SQL-Command
+     * @param alias the alias of the source row
+     */
+    protected void addUpsertSource(DBSQLBuilder sql, String alias)
+    {
+        sql.append("(VALUES ( ");
+        addListExpr(sql, set, CTX_VALUE, ", ");
+        sql.append(")) ");
+        sql.append(alias);
+        sql.append(" ( ");
+        addListExpr(sql, set, CTX_NAME, ", ");
+        sql.append(")");
+    }
+
+    /**
+     * Appends an insert statement for the set expressions of this command:
+     * <pre>
+     * INSERT INTO table( col1, col2, ... ) VALUES ( v1, v2, ... )
+     * </pre>
+     * This is used by dbms specific implementations of addUpsert()
+     * @param sql the SQL-Command
+     * @param table the table to insert into
+     */
+    protected void addUpsertInsert(DBSQLBuilder sql, DBRowSet table)
+    {
+        sql.append("INSERT INTO ");
+        table.addSQL(sql, CTX_FULLNAME);
+        sql.append("( ");
+        addListExpr(sql, set, CTX_NAME, ", ");
+        sql.append(") VALUES ( ");
+        addListExpr(sql, set, CTX_VALUE, ", ");
+        sql.append(")");
+    }
+
+    /**
+     * Returns the set expressions which are to be updated if the row already exists
+     * @param keyColumns the columns which identify an existing row
+     * @return the set expressions for all non-key columns
+     */
+    protected List<DBSetExpr> getUpsertUpdateSet(DBColumn[] keyColumns)
+    {
+        List<DBSetExpr> updateSet = new ArrayList<DBSetExpr>(set.size());
+        for (DBSetExpr setExpr : set)
+        {   // skip key columns
+            if (!ObjectUtils.contains(keyColumns, setExpr.getColumn()))
+                updateSet.add(setExpr);
+        }
+        return updateSet;
+    }
     
     /**
      * Appends all nested DBCompareColExpr for a particular RowSet to a list
@@ -422,6 +422,31 @@ public abstract class DBCommandExpr extends DBExpr
      */
     public abstract Object[] getParamValues();
 
+    /**
+     * Adds the command params used by the last statement in the order of their occurrence to the supplied list.
+     * To ensure the correct order, getSelect() must be called first.
+     * @param list the list to which to add the params
+     */
+    protected void addStatementParams(List<DBCmdParam> list)
+    {
+        DBCmdParams params = getParams();
+        if (params==null || params.isEmpty())
+            return;
+        for (DBCmdParam p : params)
+            list.add(p);
+    }
+
+    /**
+     * Compiles this command into an immutable DBCompiledCommand.<BR>
+     * The compiled command holds the SQL text and the parameter layout and may be shared and executed by several threads.<BR>
+     * Subsequent changes to this command have no effect on the compiled command.
+     * @return the compiled command
+     */
+    public DBCompiledCommand compile()
+    {
+        return new DBCompiledCommand(this);
+    }
+
     /**
      * Returns the DataType selected by this command if only one column is returned
      * If the command has more than one select expression DataType.UNKNOWN will be returned
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.empire.data.DataType;
+import org.apache.empire.db.DBCmdParamList.DBCmdParamCopy;
+import org.apache.empire.dbms.DBMSHandler;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.ItemNotFoundException;
+import org.apache.empire.exceptions.UnexpectedReturnValueException;
+
+/**
+ * DBCompiledCommand
+ * An immutable representation of a select command which holds the SQL text and the layout of the command parameters.<BR>
+ * A compiled command is created with DBCommandExpr.compile() and may be shared and executed by multiple threads.<BR>
+ * For every execution only the parameter values need to be supplied in the order of the first occurrence of each param in the SQL text.<BR>
+ * Use getParamIndex() to obtain the index of a particular param.<BR>
+ * <P>
+ * Parameters of subqueries are not part of the parameter layout and keep the value they had when the command was compiled.
+ * <P>
+ * A compiled command can be executed using DBReader.open(), DBUtils.querySingleValue(), DBUtils.querySingleRow() and DBUtils.queryObjectList()
+ */
+public class DBCompiledCommand
+{
+    private final DBMSHandler    dbms;
+    private final DBDatabase     db;
+    private final String         sqlCmd;
+    private final DataType       dataType;
+    private final DBColumnExpr[] selectExprList;
+    // the command params
+    private final DBCmdParam[]   params;
+    private final Object[]       defaultValues;
+    // the statement params
+    private final int[]          paramIndex;
+    private final Object[]       fixedValues;
+
+    /**
+     * Compiles a command.<BR>
+     * Instead of calling this constructor directly use DBCommandExpr.compile()
+     * @param cmd the command to compile
+     */
+    public DBCompiledCommand(DBCommandExpr cmd)
+    {
+        if (cmd==null || !cmd.isValid())
+            throw new InvalidArgumentException("cmd", cmd);
+        // build the statement
+        this.dbms = cmd.getDbms();
+        this.db = cmd.getDatabase();
+        this.sqlCmd = cmd.getSelect();
+        this.dataType = cmd.getDataType();
+        this.selectExprList = cmd.getSelectExprList();
+        // collect statement params
+        List<DBCmdParam> stmtParams = new ArrayList<DBCmdParam>();
+        cmd.addStatementParams(stmtParams);
+        Object[] stmtValues = cmd.getParamValues();
+        int count = (stmtValues!=null ? stmtValues.length : 0);
+        if (stmtParams.size()!=count)
+            throw new UnexpectedReturnValueException(stmtParams.size(), "addStatementParams");
+        // build parameter layout
+        List<DBCmdParam> cmdParams = new ArrayList<DBCmdParam>(count);
+        this.paramIndex  = new int[count];
+        this.fixedValues = new Object[count];
+        for (int i=0; i<count; i++)
+        {   // the param
+            DBCmdParam param = stmtParams.get(i);
+            if (param instanceof DBCmdParamCopy)
+                param = ((DBCmdParamCopy)param).getSource();
+            if (param.getCmd()==null)
+            {   // subquery param: keep value
+                paramIndex[i]  = -1;
+                fixedValues[i] = stmtValues[i];
+                continue;
+            }
+            // find param
+            int index = indexOf(cmdParams, param);
+            if (index<0)
+            {   // add param
+                index = cmdParams.size();
+                cmdParams.add(param);
+            }
+            paramIndex[i] = index;
+        }
+        this.params = cmdParams.toArray(new DBCmdParam[cmdParams.size()]);
+        // default values
+        this.defaultValues = new Object[params.length];
+        for (int i=0; i<params.length; i++)
+            defaultValues[i] = params[i].getValue();
+    }
+
+    /**
+     * Returns the DBMSHandler this command was compiled for
+     * @return the dbms handler
+     */
+    public DBMSHandler getDbms()
+    {
+        return dbms;
+    }
+
+    /**
+     * Returns the database
+     * @return the database
+     */
+    public DBDatabase getDatabase()
+    {
+        return db;
+    }
+
+    /**
+     * Returns the SQL text of the compiled command
+     * @return the SQL-Command
+     */
+    public String getSelect()
+    {
+        return sqlCmd;
+    }
+
+    /**
+     * Returns the DataType selected by this command if only one column is returned
+     * @return the DataType of the selected expression or DataType.UNKNOWN
+     */
+    public DataType getDataType()
+    {
+        return dataType;
+    }
+
+    /**
+     * Returns the select expressions of this command
+     * @return a copy of the select expression list
+     */
+    public DBColumnExpr[] getSelectExprList()
+    {
+        return selectExprList.clone();
+    }
+
+    /**
+     * Returns the number of parameter values required to execute this command
+     * @return the number of parameters
+     */
+    public int getParamCount()
+    {
+        return params.length;
+    }
+
+    /**
+     * Returns the index of a command param in the array of parameter values
+     * @param param the command param
+     * @return the param index
+     */
+    public int getParamIndex(DBCmdParam param)
+    {
+        int index = indexOf(params, param);
+        if (index<0)
+            throw new ItemNotFoundException(param);
+        return index;
+    }
+
+    /**
+     * Returns the data type of a parameter
+     * @param index the param index
+     * @return the parameter data type
+     */
+    public DataType getParamType(int index)
+    {
+        return params[index].getDataType();
+    }
+
+    /**
+     * Returns the parameter values the command params had when the command was compiled
+     * @return a new array of parameter values
+     */
+    public Object[] getDefaultParamValues()
+    {
+        return defaultValues.clone();
+    }
+
+    /**
+     * Returns the values for the prepared statement in the order of their occurrence in the SQL text
+     * @param values the parameter values in the order of their param index.
+     *        If null the values the params had when the command was compiled are used.
+     * @return the statement parameter values or null if the statement has no parameters
+     */
+    public Object[] getStatementParams(Object[] values)
+    {
+        if (values==null)
+            values = defaultValues;
+        else if (values.length!=params.length)
+            throw new InvalidArgumentException("values", values.length);
+        // no params
+        if (paramIndex.length==0)
+            return null;
+        // convert
+        Object[] stmtValues = new Object[paramIndex.length];
+        for (int i=0; i<stmtValues.length; i++)
+        {
+            int index = paramIndex[i];
+            stmtValues[i] = (index<0 ? fixedValues[i] : params[index].getCmdParamValue(values[index]));
+        }
+        return stmtValues;
+    }
+
+    @Override
+    public String toString()
+    {
+        return sqlCmd;
+    }
+
+    private static int indexOf(List<DBCmdParam> list, DBCmdParam param)
+    {
+        for (int i=0; i<list.size(); i++)
+            if (list.get(i)==param)
+                return i;
+        return -1;
+    }
+
+    private static int indexOf(DBCmdParam[] array, DBCmdParam param)
+    {
+        for (int i=0; i<array.length; i++)
+            if (array[i]==param)
+                return i;
+        return -1;
+    }
+}
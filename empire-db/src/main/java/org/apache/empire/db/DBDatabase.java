@@ -178,6 +178,11 @@ public abstract class DBDatabase extends DBObject
      */
     protected boolean legacyDate  = true; 
 
+    /**
+     * The query cache (optional)
+     */
+    private DBQueryCache queryCache = null;
+
     /**
      * Constructs a new DBDatabase object and sets the specified schema object.
      * 
@@ -345,6 +350,26 @@ public abstract class DBDatabase extends DBObject
         log.info("PreparedStatementsEnabled is " + autoPrepareStmt);
     }
 
+    /**
+     * Returns the query cache used for caching the results of queries on this database
+     * @return the query cache or null if query results are not cached
+     */
+    public DBQueryCache getQueryCache()
+    {
+        return queryCache;
+    }
+
+    /**
+     * Sets a query cache for caching the results of queries on this database.<BR>
+     * Cached results are invalidated when rows of a dependent table are modified through Empire-db.
+     * See {@link DBQueryCache} for details and limitations.
+     * @param queryCache the query cache or null to disable caching
+     */
+    public void setQueryCache(DBQueryCache queryCache)
+    {
+        this.queryCache = queryCache;
+    }
+
     /**
      * Checks if the database exists
      * The implementation depends on the DBMSHandler
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.empire.data.DataType;
+import org.apache.empire.data.RecordData;
+import org.apache.empire.db.expr.compare.DBCompareExpr;
+import org.apache.empire.db.expr.order.DBOrderByExpr;
+import org.apache.empire.dbms.DBMSFeature;
+import org.apache.empire.dbms.DBMSHandler;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.ItemNotFoundException;
+
+/**
+ * DBKeyset
+ * Holds the sort key values of the last row of a page for keyset (seek) pagination.<BR>
+ * Instead of skipping the rows of all previous pages, the next page is selected with a constraint on the sort keys:
+ * <pre>
+ * WHERE (col1 &gt; last1) OR (col1 = last1 AND col2 &gt; last2) OR ...
+ * </pre>
+ * The keyset is obtained from the ORDER BY of a command. Descending sort orders and null values are supported.<BR>
+ * IMPORTANT: The sort order must be unique, i.e. the last sort key should be the primary key.
+ * All sort expressions must be selected by the command in order to obtain the last values.
+ * <P>
+ * Usage:
+ * <pre>
+ * DBKeyset keyset = new DBKeyset(cmd);
+ * List&lt;DataListEntry&gt; page1 = context.getUtils().queryDataList(cmd, factory, keyset, 50);
+ * List&lt;DataListEntry&gt; page2 = context.getUtils().queryDataList(cmd, factory, keyset, 50);
+ * </pre>
+ */
+public class DBKeyset
+{
+    private final DBOrderByExpr[] orderBy;
+    private Object[] lastValues = null;
+
+    /**
+     * Creates a keyset for the ORDER BY of a command
+     * @param cmd the command
+     */
+    public DBKeyset(DBCommandExpr cmd)
+    {
+        List<DBOrderByExpr> list = cmd.getOrderBy();
+        if (list==null || list.isEmpty())
+            throw new InvalidArgumentException("cmd", cmd);
+        this.orderBy = list.toArray(new DBOrderByExpr[list.size()]);
+    }
+
+    /**
+     * Returns the sort order of the keyset
+     * @return the order by expressions
+     */
+    public DBOrderByExpr[] getOrderBy()
+    {
+        return orderBy;
+    }
+
+    /**
+     * Returns the sort key values of the last row or null if no page has been loaded
+     * @return the last values
+     */
+    public Object[] getLastValues()
+    {
+        return lastValues;
+    }
+
+    /**
+     * Sets the sort key values of the last row
+     * @param lastValues the last values
+     */
+    public void setLastValues(Object[] lastValues)
+    {
+        if (lastValues!=null && lastValues.length!=orderBy.length)
+            throw new InvalidArgumentException("lastValues", lastValues);
+        this.lastValues = lastValues;
+    }
+
+    /**
+     * Sets the sort key values from the last row of a page
+     * @param data the last row
+     */
+    public void setLastValues(RecordData data)
+    {
+        Object[] values = new Object[orderBy.length];
+        for (int i=0; i<orderBy.length; i++)
+        {   // find sort column
+            int index = data.getFieldIndex(orderBy[i].getColumn());
+            if (index<0)
+                throw new ItemNotFoundException(orderBy[i].getColumn().getName());
+            values[i] = data.getValue(index);
+        }
+        this.lastValues = values;
+    }
+
+    /**
+     * Returns true if no page has been loaded yet
+     * @return true if the next page is the first page
+     */
+    public boolean isFirstPage()
+    {
+        return (lastValues==null);
+    }
+
+    /**
+     * Resets the keyset to the first page
+     */
+    public void reset()
+    {
+        this.lastValues = null;
+    }
+
+    /**
+     * Returns whether the keyset matches the sort order of a command
+     * @param cmd the command
+     * @return true if the command has the same ORDER BY
+     */
+    public boolean matches(DBCommandExpr cmd)
+    {
+        List<DBOrderByExpr> list = cmd.getOrderBy();
+        if (list==null || list.size()!=orderBy.length)
+            return false;
+        for (int i=0; i<orderBy.length; i++)
+        {
+            DBOrderByExpr ob = list.get(i);
+            if (!ob.getColumn().equals(orderBy[i].getColumn()) || ob.isDescending()!=orderBy[i].isDescending())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the constraint that selects all rows following the last row
+     * @param nullsFirst flag whether null values are sorted before other values in ascending order (see DBMSFeature.ORDER_NULLS_FIRST)
+     * @param nullsFirstDesc flag whether null values are sorted before other values in descending order (see DBMSFeature.ORDER_NULLS_FIRST_DESC)
+     * @return the seek constraint or null if no page has been loaded
+     */
+    public DBCompareExpr getSeekConstraint(boolean nullsFirst, boolean nullsFirstDesc)
+    {
+        if (lastValues==null)
+            return null;
+        DBCompareExpr seek = null;
+        DBCompareExpr equal = null;
+        for (int i=0; i<orderBy.length; i++)
+        {
+            DBColumnExpr col = orderBy[i].getColumn();
+            Object value = lastValues[i];
+            // nulls are visited first
+            boolean nullsBefore = (orderBy[i].isDescending() ? nullsFirstDesc : nullsFirst);
+            boolean nullable = isNullable(col);
+            // rows after the last value
+            DBCompareExpr after;
+            if (value==null)
+                after = (nullsBefore && nullable ? col.isNot(null) : null);
+            else
+            {   // compare value
+                after = (orderBy[i].isDescending() ? col.isSmallerThan(value) : col.isGreaterThan(value));
+                if (!nullsBefore && nullable)
+                    after = after.or(col.is(null));
+            }
+            // add term
+            if (after!=null)
+            {   // (equal AND after)
+                DBCompareExpr term = (equal!=null ? equal.and(after) : after);
+                seek = (seek!=null ? seek.or(term) : term);
+            }
+            // equal so far
+            DBCompareExpr eq = col.is(value);
+            equal = (equal!=null ? equal.and(eq) : eq);
+        }
+        if (seek==null)
+        {   // no more rows
+            DBDatabase db = orderBy[0].getDatabase();
+            seek = db.getValueExpr(1, DataType.INTEGER).is(0);
+        }
+        return seek;
+    }
+
+    /**
+     * Creates a command that selects the rows of the next page.<BR>
+     * The command is a clone of the given command with the seek constraint and a row limit.
+     * @param cmd the query command
+     * @param dbms the dbms handler
+     * @param pageSize the page size or -1 for no limit
+     * @return the command for the next page
+     */
+    public DBCommand getPageCommand(DBCommand cmd, DBMSHandler dbms, int pageSize)
+    {
+        if (!matches(cmd))
+            throw new InvalidArgumentException("cmd", cmd);
+        DBCommand pageCmd = cmd.clone();
+        pageCmd.clearLimit();
+        DBCompareExpr seek = getSeekConstraint(dbms.isSupported(DBMSFeature.ORDER_NULLS_FIRST), dbms.isSupported(DBMSFeature.ORDER_NULLS_FIRST_DESC));
+        if (seek!=null)
+        {   // must not replace an existing constraint on the same column
+            if (pageCmd.isPreparedStatementsEnabled())
+                seek.prepareParams(pageCmd, pageCmd);
+            pageCmd.addWhereConstraints(Collections.singletonList(seek));
+        }
+        if (pageSize>0 && dbms.isSupported(DBMSFeature.QUERY_LIMIT_ROWS))
+            pageCmd.limitRows(pageSize);
+        return pageCmd;
+    }
+
+    /**
+     * Returns whether a sort expression may be null
+     * @param col the sort expression
+     * @return false if the expression is a required column or true otherwise
+     */
+    protected boolean isNullable(DBColumnExpr col)
+    {
+        if (col instanceof DBColumn)
+            return !((DBColumn)col).isRequired();
+        return true;
+    }
+}
@@ -0,0 +1,679 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import org.apache.empire.commons.ObjectUtils;
+import org.apache.empire.data.DataType;
+import org.apache.empire.data.list.DataListEntry;
+import org.apache.empire.data.list.DataListFactory;
+import org.apache.empire.data.list.DataListFactoryImpl;
+import org.apache.empire.data.list.DataListHead;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.db.exceptions.EmpireSQLException;
+import org.apache.empire.db.expr.compare.DBCompareExpr;
+import org.apache.empire.db.expr.order.DBOrderByExpr;
+import org.apache.empire.dbms.DBMSHandler;
+import org.apache.empire.exceptions.InternalException;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.InvalidOperationException;
+import org.apache.empire.exceptions.NotSupportedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBPartitionedQuery
+ * Executes a query in several partitions concurrently, each on a separate connection obtained from a DataSource.<BR>
+ * The partitions are defined by constraints on a column which are added to the where clause of the command:
+ * <ul>
+ *  <li>MODULO: ABS(MOD(column, n)) = i for integer columns</li>
+ *  <li>HASH: ABS(MOD(hashExpr, n)) = i for a dbms specific hash expression (see getHashExpr())</li>
+ *  <li>RANGE: column &gt;= lower bound and column &lt; upper bound for explicit bounds or evenly distributed between MIN and MAX of a numeric column</li>
+ * </ul>
+ * Rows with a null partition value are added to the first partition.<BR>
+ * The rows of the partitions are merged either by concatenation in the order of the partitions
+ * or by a k-way merge according to the ORDER BY of the command.<BR>
+ * Note: the ordered merge compares the values in Java, which may differ from the database collation for strings and for the position of null values.
+ */
+public class DBPartitionedQuery
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBPartitionedQuery.class);
+
+    /**
+     * The partitioning type
+     */
+    public enum PartitionType
+    {
+        RANGE,
+        HASH,
+        MODULO
+    }
+
+    /**
+     * The merge mode for the rows of the partitions
+     */
+    public enum MergeMode
+    {
+        /**
+         * Concatenates the rows in the order of the partitions
+         */
+        CONCAT,
+        /**
+         * Merges the rows according to the ORDER BY of the command
+         */
+        ORDERED
+    }
+
+    /**
+     * Marks the end of the rows of a partition
+     */
+    private static final Object END_OF_PARTITION = new Object();
+
+    /**
+     * Reads the rows of a partition into a queue.<BR>
+     * The rows are queued as raw values and converted by the factory on the merging thread,
+     * so that the row numbers are continuous across all partitions.
+     */
+    private class PartitionReader implements Runnable
+    {
+        private final int index;
+        private final DBCommand cmd;
+        private final DataListHead head;
+        private final BlockingQueue<Object> queue;
+        private volatile Throwable error = null;
+        private volatile boolean cancelled = false;
+
+        public PartitionReader(int index, DBCommand cmd, DataListHead head)
+        {
+            this.index = index;
+            this.cmd = cmd;
+            this.head = head;
+            this.queue = new ArrayBlockingQueue<Object>(queueCapacity);
+        }
+
+        @Override
+        public void run()
+        {
+            long start = System.currentTimeMillis();
+            int rownum = 0;
+            try
+            {   // read rows
+                DBContext context = createPartitionContext(getConnection());
+                try
+                {
+                    DBReader r = new DBReader(context);
+                    try
+                    {   // stream rows
+                        r.setFetchSize(DBReader.FETCH_SIZE_ADAPTIVE);
+                        r.open(cmd);
+                        int fieldCount = r.getFieldCount();
+                        while (!cancelled && r.moveNext())
+                        {   // copy values
+                            Object[] values = new Object[fieldCount];
+                            for (int i=0; i<fieldCount; i++)
+                                values[i] = r.getValue(i);
+                            put(new DataListEntry(head, values, rownum));
+                            rownum++;
+                        }
+                    }
+                    finally
+                    {   // close reader
+                        r.close();
+                    }
+                }
+                finally
+                {   // release connection
+                    context.discard();
+                }
+            }
+            catch (Throwable e)
+            {   // remember error
+                log.error("Partition {} failed: {}", index, e.getMessage());
+                error = e;
+            }
+            finally
+            {   // done
+                put(END_OF_PARTITION);
+            }
+            if (log.isDebugEnabled())
+                log.debug("Partition {} read {} rows in {} ms.", index, rownum, System.currentTimeMillis() - start);
+        }
+
+        public void cancel()
+        {
+            cancelled = true;
+        }
+
+        public DataListEntry take()
+        {
+            try
+            {   // wait for the next row
+                Object item = queue.take();
+                if (item!=END_OF_PARTITION)
+                    return (DataListEntry)item;
+                // check error
+                if (error instanceof RuntimeException)
+                    throw (RuntimeException)error;
+                if (error!=null)
+                    throw new InternalException(error);
+                return null;
+            }
+            catch (InterruptedException e)
+            {   // interrupted
+                Thread.currentThread().interrupt();
+                throw new InternalException(e);
+            }
+        }
+
+        private void put(Object item)
+        {
+            try
+            {   // wait until the consumer has taken enough rows or the query is cancelled
+                while (!cancelled)
+                {
+                    if (queue.offer(item, 100, TimeUnit.MILLISECONDS))
+                        return;
+                }
+            }
+            catch (InterruptedException e)
+            {   // stop
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            }
+        }
+    }
+
+    /**
+     * The current row of a partition for the ordered merge
+     */
+    private static class MergeHead
+    {
+        private final PartitionReader reader;
+        private DataListEntry row;
+
+        public MergeHead(PartitionReader reader, DataListEntry row)
+        {
+            this.reader = reader;
+            this.row = row;
+        }
+    }
+
+    protected final DBMSHandler dbms;
+    protected final DataSource dataSource;
+    private ExecutorService executor = null;
+    private int queueCapacity = 1000;
+
+    /**
+     * Constructs a partitioned query
+     * @param dbms the dbms handler
+     * @param dataSource the data source providing a connection for each partition
+     */
+    public DBPartitionedQuery(DBMSHandler dbms, DataSource dataSource)
+    {
+        if (dbms==null)
+            throw new InvalidArgumentException("dbms", dbms);
+        if (dataSource==null)
+            throw new InvalidArgumentException("dataSource", dataSource);
+        this.dbms = dbms;
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Returns the executor used to run the partitions
+     * @return the executor or null if a new thread pool is created for each query
+     */
+    public ExecutorService getExecutor()
+    {
+        return executor;
+    }
+
+    /**
+     * Sets the executor used to run the partitions.<BR>
+     * The executor must be able to run all partitions of a query concurrently, since the merge waits for the rows of
+     * every partition while the running partitions wait for the merge to take their rows.
+     * In particular the query must not be executed on a thread of a bounded executor which is also used for the partitions.<BR>
+     * If a ThreadPoolExecutor or ForkJoinPool does not have enough idle threads for all partitions of a query,
+     * a temporary thread pool is used instead (see canRunPartitions()).
+     * @param executor the executor or null if a new thread pool should be created for each query
+     */
+    public void setExecutor(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the maximum number of rows which are buffered for each partition
+     * @return the queue capacity
+     */
+    public int getQueueCapacity()
+    {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of rows which are buffered for each partition
+     * @param queueCapacity the queue capacity
+     */
+    public void setQueueCapacity(int queueCapacity)
+    {
+        if (queueCapacity<1)
+            throw new InvalidArgumentException("queueCapacity", queueCapacity);
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Creates the partition constraints for a column
+     * @param cmd the command (used to determine the value range for RANGE partitions)
+     * @param type the partition type
+     * @param column the partition column
+     * @param partitions the number of partitions
+     * @return the partition constraints
+     */
+    public DBCompareExpr[] createPartitions(DBCommand cmd, PartitionType type, DBColumnExpr column, int partitions)
+    {
+        switch(type)
+        {
+            case MODULO:
+                return partitionByModulo(column, partitions);
+            case HASH:
+                return partitionByModulo(getHashExpr(column), partitions);
+            case RANGE:
+                return partitionByRange(cmd, column, partitions);
+            default:
+                throw new NotSupportedException(this, "createPartitions "+type);
+        }
+    }
+
+    /**
+     * Creates partition constraints using the modulo of an integer expression
+     * @param expr the integer expression
+     * @param partitions the number of partitions
+     * @return the partition constraints
+     */
+    public DBCompareExpr[] partitionByModulo(DBColumnExpr expr, int partitions)
+    {
+        if (partitions<1)
+            throw new InvalidArgumentException("partitions", partitions);
+        DBColumnExpr modExpr = expr.modulo(partitions).abs();
+        DBCompareExpr[] constraints = new DBCompareExpr[partitions];
+        for (int i=0; i<partitions; i++)
+            constraints[i] = modExpr.is(i);
+        // null values
+        constraints[0] = constraints[0].or(expr.is(null));
+        return constraints;
+    }
+
+    /**
+     * Creates partition constraints for the given range bounds.<BR>
+     * The number of partitions is the number of bounds plus one.
+     * @param column the partition column
+     * @param bounds the ascending bounds (each bound is the lower bound of a partition)
+     * @return the partition constraints
+     */
+    public DBCompareExpr[] partitionByRange(DBColumnExpr column, Object... bounds)
+    {
+        if (bounds==null || bounds.length==0)
+            throw new InvalidArgumentException("bounds", bounds);
+        DBCompareExpr[] constraints = new DBCompareExpr[bounds.length+1];
+        constraints[0] = column.isSmallerThan(bounds[0]).or(column.is(null));
+        for (int i=1; i<bounds.length; i++)
+            constraints[i] = column.isMoreOrEqual(bounds[i-1]).and(column.isSmallerThan(bounds[i]));
+        constraints[bounds.length] = column.isMoreOrEqual(bounds[bounds.length-1]);
+        return constraints;
+    }
+
+    /**
+     * Creates partition constraints for evenly distributed ranges between the minimum and maximum value of a numeric column.<BR>
+     * The minimum and maximum are obtained by a query with the constraints of the command.
+     * @param cmd the command
+     * @param column the numeric partition column
+     * @param partitions the number of partitions
+     * @return the partition constraints
+     */
+    public DBCompareExpr[] partitionByRange(DBCommand cmd, DBColumnExpr column, int partitions)
+    {
+        if (partitions<1)
+            throw new InvalidArgumentException("partitions", partitions);
+        if (!column.getDataType().isNumeric())
+            throw new InvalidArgumentException("column", column);
+        // query range
+        DBCommand rangeCmd = cmd.clone();
+        rangeCmd.clearSelect();
+        rangeCmd.clearOrderBy();
+        rangeCmd.clearLimit();
+        rangeCmd.select(column.min(), column.max());
+        Object[] range;
+        DBContext context = createPartitionContext(getConnection());
+        try
+        {   // query
+            range = context.getUtils().querySingleRow(rangeCmd);
+        }
+        finally
+        {   // release connection
+            context.discard();
+        }
+        if (range[0]==null || range[1]==null || partitions==1)
+        {   // no partitioning required
+            return new DBCompareExpr[] { null };
+        }
+        // calculate bounds
+        Object[] bounds = new Object[partitions-1];
+        if (isIntegral(range[0]) && isIntegral(range[1]))
+        {   // integer values
+            long min = ((Number)range[0]).longValue();
+            long max = ((Number)range[1]).longValue();
+            for (int i=1; i<partitions; i++)
+                bounds[i-1] = min + (long)((max - min + 1d) * i / partitions);
+        }
+        else
+        {   // decimal values
+            double min = ((Number)range[0]).doubleValue();
+            double max = ((Number)range[1]).doubleValue();
+            for (int i=1; i<partitions; i++)
+                bounds[i-1] = min + (max - min) * i / partitions;
+        }
+        return partitionByRange(column, bounds);
+    }
+
+    /**
+     * Executes the partitions of a query concurrently and passes the merged rows to a consumer.<BR>
+     * The rows are passed on the calling thread while the partitions are still being read.<BR>
+     * The items are created on the calling thread in the order of the merge, hence the row numbers are continuous.
+     * @param cmd the command
+     * @param partitions the partition constraints
+     * @param merge the merge mode
+     * @param factory the factory used to create the items
+     * @param consumer the consumer of the merged items
+     * @return the number of items
+     */
+    public <T extends DataListEntry> int query(DBCommand cmd, DBCompareExpr[] partitions, MergeMode merge, DataListFactory<T> factory, Consumer<? super T> consumer)
+    {
+        if (partitions==null || partitions.length==0)
+            throw new InvalidArgumentException("partitions", partitions);
+        if (merge==MergeMode.ORDERED && !cmd.hasOrderBy())
+            throw new InvalidOperationException("An ordered merge requires a command with ORDER BY.");
+        // prepare the partition commands
+        DataListHead head = new DataListHead(cmd.getSelectExprList());
+        List<PartitionReader> readers = new ArrayList<PartitionReader>(partitions.length);
+        for (int i=0; i<partitions.length; i++)
+        {   // add constraint
+            DBCommand partCmd = cmd.clone();
+            if (partitions[i]!=null)
+                partCmd.where(partitions[i]);
+            readers.add(new PartitionReader(i, partCmd, head));
+        }
+        // run
+        ExecutorService exec = this.executor;
+        if (exec!=null && !canRunPartitions(exec, partitions.length))
+        {   // avoid deadlock
+            log.warn("The executor cannot run {} partitions concurrently. Using a temporary thread pool instead.", partitions.length);
+            exec = null;
+        }
+        if (exec==null)
+            exec = Executors.newFixedThreadPool(partitions.length);
+        List<Future<?>> futures = new ArrayList<Future<?>>(readers.size());
+        try
+        {   // start partitions
+            for (PartitionReader reader : readers)
+                futures.add(exec.submit(reader));
+            // merge
+            if (merge==MergeMode.ORDERED)
+                return mergeOrdered(readers, cmd.getOrderBy(), factory, consumer);
+            else
+                return concat(readers, factory, consumer);
+        }
+        finally
+        {   // stop and wait for the partitions to release their connections
+            for (PartitionReader reader : readers)
+                reader.cancel();
+            waitForPartitions(futures);
+            if (exec!=this.executor)
+                exec.shutdown();
+        }
+    }
+
+    /**
+     * Executes the partitions of a query concurrently and returns the merged list of DataListEntry items
+     * @param cmd the command
+     * @param partitions the partition constraints
+     * @param merge the merge mode
+     * @param factory the factory used to create the items
+     * @return the list of items
+     */
+    public <T extends DataListEntry> List<T> queryDataList(DBCommand cmd, DBCompareExpr[] partitions, MergeMode merge, DataListFactory<T> factory)
+    {
+        final List<T> list = factory.newList(0);
+        query(cmd, partitions, merge, factory, new Consumer<T>() {
+            @Override
+            public void accept(T item)
+            {
+                list.add(item);
+            }
+        });
+        factory.completeQuery(list);
+        return list;
+    }
+
+    /**
+     * Executes the partitions of a query concurrently and returns the merged list of DataListEntry items
+     * @param cmd the command
+     * @param type the partition type
+     * @param column the partition column
+     * @param partitions the number of partitions
+     * @param merge the merge mode
+     * @return the list of items
+     */
+    public List<DataListEntry> queryDataList(DBCommand cmd, PartitionType type, DBColumnExpr column, int partitions, MergeMode merge)
+    {
+        DataListHead head = new DataListHead(cmd.getSelectExprList());
+        DataListFactory<DataListEntry> factory = new DataListFactoryImpl<DataListEntry>(DataListEntry.class, head);
+        return queryDataList(cmd, createPartitions(cmd, type, column, partitions), merge, factory);
+    }
+
+    /**
+     * Returns the hash expression for HASH partitioning.<BR>
+     * Since there is no portable hash function, only numeric columns are supported by default.
+     * Override this function to provide a dbms specific hash function, e.g. column.function("ORA_HASH(?)", DataType.INTEGER).
+     * @param column the partition column
+     * @return the integer hash expression
+     */
+    protected DBColumnExpr getHashExpr(DBColumnExpr column)
+    {
+        if (column.getDataType()!=DataType.INTEGER && column.getDataType()!=DataType.AUTOINC)
+            throw new NotSupportedException(this, "getHashExpr for "+column.getDataType());
+        return column;
+    }
+
+    /**
+     * Creates the context for a partition
+     * @param conn the connection
+     * @return the context which closes the connection on discard
+     */
+    protected DBContext createPartitionContext(Connection conn)
+    {
+        return new DBContextStatic(dbms, conn, true);
+    }
+
+    /**
+     * Obtains a connection from the data source
+     * @return the connection
+     */
+    protected Connection getConnection()
+    {
+        try
+        {   // get connection
+            return dataSource.getConnection();
+        }
+        catch (SQLException e)
+        {   // failed
+            throw new EmpireSQLException(dbms, e);
+        }
+    }
+
+    /**
+     * Checks whether an executor is able to run all partitions of a query concurrently.<BR>
+     * For a ThreadPoolExecutor or ForkJoinPool the number of idle threads must not be smaller than the number of partitions.
+     * Other executors are assumed to run all tasks concurrently.
+     * @param executor the executor
+     * @param partitions the number of partitions
+     * @return true if the executor can be used or false if a temporary thread pool should be used instead
+     */
+    protected boolean canRunPartitions(ExecutorService executor, int partitions)
+    {
+        if (executor instanceof ThreadPoolExecutor)
+        {   // bounded pool
+            ThreadPoolExecutor pool = (ThreadPoolExecutor)executor;
+            return (pool.getMaximumPoolSize() - pool.getActiveCount() >= partitions);
+        }
+        if (executor instanceof ForkJoinPool)
+        {   // blocked workers are not compensated
+            ForkJoinPool pool = (ForkJoinPool)executor;
+            return (pool.getParallelism() - pool.getActiveThreadCount() >= partitions);
+        }
+        return true;
+    }
+
+    private <T extends DataListEntry> int concat(List<PartitionReader> readers, DataListFactory<T> factory, Consumer<? super T> consumer)
+    {
+        int count = 0;
+        for (PartitionReader reader : readers)
+        {
+            for (DataListEntry row = reader.take(); row!=null; row = reader.take())
+            {
+                if (accept(factory, count, row, consumer))
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    private <T extends DataListEntry> int mergeOrdered(List<PartitionReader> readers, List<DBOrderByExpr> orderBy, DataListFactory<T> factory, Consumer<? super T> consumer)
+    {
+        // init heads
+        final int[] keyIndexes = new int[orderBy.size()];
+        final boolean[] descending = new boolean[orderBy.size()];
+        PriorityQueue<MergeHead> heads = null;
+        for (PartitionReader reader : readers)
+        {
+            DataListEntry row = reader.take();
+            if (row==null)
+                continue;
+            if (heads==null)
+            {   // find the order by columns
+                for (int i=0; i<keyIndexes.length; i++)
+                {
+                    DBOrderByExpr ob = orderBy.get(i);
+                    keyIndexes[i] = row.getFieldIndex(ob.getColumn());
+                    if (keyIndexes[i]<0)
+                        throw new InvalidOperationException("The ORDER BY expression "+ob.getColumn().getName()+" must be selected for an ordered merge.");
+                    descending[i] = ob.isDescending();
+                }
+                heads = new PriorityQueue<MergeHead>(readers.size(), new Comparator<MergeHead>() {
+                    @Override
+                    public int compare(MergeHead h1, MergeHead h2)
+                    {
+                        for (int i=0; i<keyIndexes.length; i++)
+                        {
+                            int result = ObjectUtils.compare(h1.row.getValue(keyIndexes[i]), h2.row.getValue(keyIndexes[i]));
+                            if (result!=0)
+                                return (descending[i] ? -result : result);
+                        }
+                        // keep the order of the partitions
+                        return h1.reader.index - h2.reader.index;
+                    }
+                });
+            }
+            heads.add(new MergeHead(reader, row));
+        }
+        if (heads==null)
+            return 0; // no rows
+        // merge
+        int count = 0;
+        while (!heads.isEmpty())
+        {
+            MergeHead head = heads.poll();
+            if (accept(factory, count, head.row, consumer))
+                count++;
+            // next row of this partition
+            DataListEntry next = head.reader.take();
+            if (next!=null)
+            {   head.row = next;
+                heads.add(head);
+            }
+        }
+        return count;
+    }
+
+    private <T extends DataListEntry> boolean accept(DataListFactory<T> factory, int rownum, DataListEntry row, Consumer<? super T> consumer)
+    {
+        T item = factory.newEntry(rownum, row);
+        if (item==null)
+            return false; // skip
+        consumer.accept(item);
+        return true;
+    }
+
+    private void waitForPartitions(List<Future<?>> futures)
+    {
+        for (Future<?> future : futures)
+        {
+            try
+            {   // wait
+                future.get();
+            }
+            catch (ExecutionException e)
+            {   // errors are reported by take()
+                log.debug("Partition failed: {}", e.getMessage());
+            }
+            catch (InterruptedException e)
+            {   // interrupted
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static boolean isIntegral(Object value)
+    {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof BigInteger)
+            return true;
+        return (value instanceof BigDecimal && ((BigDecimal)value).scale()<=0);
+    }
+}
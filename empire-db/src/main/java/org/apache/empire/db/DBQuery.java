@@ -624,6 +624,8 @@ public class DBQuery extends DBRowSet
             { // success
                 log.info("Record for table '" + table.getName() + " successfully updated!");
             }
+            // notify
+            table.onRowsModified(context);
             // Correct Timestamp
             if (timestampIndex >= 0)
             {   // Set the correct Timestamp
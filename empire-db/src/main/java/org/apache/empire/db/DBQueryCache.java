@@ -0,0 +1,509 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.empire.commons.ObjectUtils;
+import org.apache.empire.db.context.DBContextBase;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBQueryCache
+ * A bounded LRU cache for query results with table-level invalidation.<BR>
+ * Results are identified by the SQL text and the parameter values of a query and tagged with the rowsets referenced by the command.
+ * Whenever rows of a table are modified through Empire-db (DBRecord, DBContext.executeUpdate() etc.)
+ * all cached results that depend on this table are invalidated.
+ * Results that depend on views or sub-queries are invalidated by any modification.<BR>
+ * Entries are evicted when the maximum number of entries is exceeded or when their time to live has expired.
+ * <P>
+ * The cache is disabled by default and must be set on the database using DBDatabase.setQueryCache()<BR>
+ * It is used by DBUtils for querySingleValue(), querySimpleList(), queryDataList() and queryBeanList().
+ * Records are not cached.
+ * <P>
+ * While a context has uncommitted modifications, its query results are not cached.
+ * The modified tables are invalidated again when the context commits or rolls back (requires a context derived from DBContextBase).
+ * <P>
+ * IMPORTANT: Modifications made by plain SQL statements (DBContext.executeSQL()), by other applications or triggers are not detected.
+ * Use a time to live or call clear() or invalidate() in this case.
+ */
+public class DBQueryCache
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBQueryCache.class);
+
+    /**
+     * The key of a cached query result
+     */
+    public static final class QueryKey
+    {
+        private final String   kind;
+        private final String   sqlCmd;
+        private final Object[] params;
+        private final int      hashCode;
+
+        public QueryKey(String kind, String sqlCmd, Object[] params)
+        {
+            this.kind = kind;
+            this.sqlCmd = sqlCmd;
+            this.params = (params!=null && params.length>0 ? params.clone() : null);
+            this.hashCode = (kind.hashCode() * 31 + sqlCmd.hashCode()) * 31 + Arrays.deepHashCode(this.params);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (other==this)
+                return true;
+            if (!(other instanceof QueryKey))
+                return false;
+            QueryKey key = (QueryKey)other;
+            return (key.hashCode==hashCode && key.kind.equals(kind) && key.sqlCmd.equals(sqlCmd) && Arrays.deepEquals(key.params, params));
+        }
+
+        @Override
+        public String toString()
+        {
+            return kind+":"+sqlCmd;
+        }
+    }
+
+    /**
+     * A cached query result
+     */
+    protected static final class CacheEntry
+    {
+        private final Object       value;
+        private final Set<DBTable> tables;
+        private final long         expires;
+
+        public CacheEntry(Object value, Set<DBTable> tables, long expires)
+        {
+            this.value = value;
+            this.tables = tables;
+            this.expires = expires;
+        }
+    }
+
+    private final int  maxEntries;
+    private final int  maxRows;
+    private final long timeToLive;
+    // the cached results (in access order)
+    private final LinkedHashMap<QueryKey, CacheEntry> entryMap;
+    // the keys of all results depending on a table
+    private final Map<DBTable, Set<QueryKey>> tableMap;
+    // the keys of all results depending on a view or a query
+    private final Set<QueryKey> volatileKeys;
+    // the rowsets modified by contexts with uncommitted changes
+    private final Map<DBContext, Set<DBRowSet>> uncommittedMap;
+    // incremented on each invalidation
+    private long sequence = 0;
+    // statistics
+    private final AtomicLong hitCount          = new AtomicLong();
+    private final AtomicLong missCount         = new AtomicLong();
+    private final AtomicLong evictionCount     = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Creates a query cache
+     * @param maxEntries the maximum number of query results held by the cache
+     * @param maxRows the maximum number of rows of a single query result that may be cached
+     * @param timeToLive the time in milliseconds after which a result expires or 0 if results do not expire
+     */
+    public DBQueryCache(int maxEntries, int maxRows, long timeToLive)
+    {
+        if (maxEntries<1)
+            throw new InvalidArgumentException("maxEntries", maxEntries);
+        if (maxRows<1)
+            throw new InvalidArgumentException("maxRows", maxRows);
+        if (timeToLive<0)
+            throw new InvalidArgumentException("timeToLive", timeToLive);
+        // init
+        this.maxEntries = maxEntries;
+        this.maxRows = maxRows;
+        this.timeToLive = timeToLive;
+        this.entryMap = new LinkedHashMap<QueryKey, CacheEntry>(16, 0.75f, true);
+        this.tableMap = new HashMap<DBTable, Set<QueryKey>>();
+        this.volatileKeys = new HashSet<QueryKey>();
+        this.uncommittedMap = new HashMap<DBContext, Set<DBRowSet>>();
+    }
+
+    /**
+     * Creates a query cache without a time to live
+     * @param maxEntries the maximum number of query results held by the cache
+     * @param maxRows the maximum number of rows of a single query result that may be cached
+     */
+    public DBQueryCache(int maxEntries, int maxRows)
+    {
+        this(maxEntries, maxRows, 0);
+    }
+
+    /**
+     * Returns the maximum number of query results held by the cache
+     * @return the maximum number of entries
+     */
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the maximum number of rows of a query result that may be cached
+     * @return the maximum number of rows
+     */
+    public int getMaxRows()
+    {
+        return maxRows;
+    }
+
+    /**
+     * Returns the time in milliseconds after which a result expires
+     * @return the time to live or 0 if results do not expire
+     */
+    public long getTimeToLive()
+    {
+        return timeToLive;
+    }
+
+    /**
+     * Returns the number of queries that were served from the cache
+     * @return the hit count
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of queries that had to be executed
+     * @return the miss count
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the ratio of hits to all cache requests
+     * @return the hit rate between 0 and 1
+     */
+    public double getHitRate()
+    {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return (total>0 ? ((double)hits / total) : 0.0d);
+    }
+
+    /**
+     * Returns the number of results that have been evicted because of the size limit or the time to live
+     * @return the eviction count
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    /**
+     * Returns the number of results that have been invalidated by modifications
+     * @return the invalidation count
+     */
+    public long getInvalidationCount()
+    {
+        return invalidationCount.get();
+    }
+
+    /**
+     * Returns the number of results currently held by the cache
+     * @return the number of cached results
+     */
+    public synchronized int getSize()
+    {
+        return entryMap.size();
+    }
+
+    /**
+     * Resets the hit, miss, eviction and invalidation counters
+     */
+    public void resetStatistics()
+    {
+        hitCount.set(0);
+        missCount.set(0);
+        evictionCount.set(0);
+        invalidationCount.set(0);
+    }
+
+    /**
+     * Returns whether the result of a command may be cached
+     * @param cmd the command
+     * @return true if the result may be cached or false otherwise
+     */
+    public boolean isCacheable(DBCommandExpr cmd)
+    {
+        return (cmd instanceof DBCommand);
+    }
+
+    /**
+     * Returns the current invalidation sequence.<BR>
+     * The sequence must be obtained before a query is executed and passed to put()
+     * in order to detect modifications that occurred while the query was executed.
+     * @return the invalidation sequence
+     */
+    public synchronized long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Returns a cached query result
+     * @param key the query key
+     * @return the cached result (which may be null) or ObjectUtils.NO_VALUE if the result is not cached
+     */
+    public synchronized Object get(QueryKey key)
+    {
+        CacheEntry entry = entryMap.get(key);
+        if (entry!=null && entry.expires>0 && entry.expires<System.currentTimeMillis())
+        {   // expired
+            remove(key);
+            evictionCount.incrementAndGet();
+            entry = null;
+        }
+        if (entry==null)
+        {   // not cached
+            missCount.incrementAndGet();
+            return ObjectUtils.NO_VALUE;
+        }
+        hitCount.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Adds a query result to the cache.<BR>
+     * The result is ignored if any rowset has been modified since the sequence was obtained.
+     * @param key the query key
+     * @param value the query result which must not be modified once it has been cached
+     * @param cmd the command from which to obtain the rowsets on which the result depends
+     * @param sequence the invalidation sequence obtained before the query was executed
+     * @return true if the result has been added or false otherwise
+     */
+    public final boolean put(QueryKey key, Object value, DBCommandExpr cmd, long sequence)
+    {
+        return put(key, value, getRowSets(cmd), sequence);
+    }
+
+    /**
+     * Adds a query result to the cache.<BR>
+     * The result is ignored if any rowset has been modified since the sequence was obtained.
+     * @param key the query key
+     * @param value the query result which must not be modified once it has been cached
+     * @param rowsets the rowsets on which the result depends (see getRowSets())
+     * @param sequence the invalidation sequence obtained before the query was executed
+     * @return true if the result has been added or false otherwise
+     */
+    public synchronized boolean put(QueryKey key, Object value, List<DBRowSet> rowsets, long sequence)
+    {
+        if (sequence!=this.sequence)
+        {   // modified while executing the query
+            log.debug("Query result for {} not cached due to a concurrent modification.", key);
+            return false;
+        }
+        // find tables
+        Set<DBTable> tables = new HashSet<DBTable>();
+        boolean isVolatile = false;
+        for (DBRowSet rowset : rowsets)
+        {
+            if (rowset instanceof DBTable)
+                tables.add((DBTable)rowset);
+            else
+                isVolatile = true;
+        }
+        // add
+        remove(key);
+        long expires = (timeToLive>0 ? System.currentTimeMillis() + timeToLive : 0);
+        entryMap.put(key, new CacheEntry(value, tables, expires));
+        for (DBTable table : tables)
+        {
+            Set<QueryKey> keys = tableMap.get(table);
+            if (keys==null)
+            {   keys = new HashSet<QueryKey>();
+                tableMap.put(table, keys);
+            }
+            keys.add(key);
+        }
+        if (isVolatile)
+            volatileKeys.add(key);
+        // check size
+        if (entryMap.size()>maxEntries)
+            evictEldest();
+        return true;
+    }
+
+    /**
+     * Invalidates all cached results which depend on the given rowset.<BR>
+     * Results that depend on a view or a sub-query are always invalidated.
+     * @param rowset the rowset that has been modified
+     */
+    public synchronized void invalidate(DBRowSet rowset)
+    {
+        sequence++;
+        // find keys
+        Set<QueryKey> keys = new HashSet<QueryKey>(volatileKeys);
+        Set<QueryKey> tableKeys = tableMap.get(rowset);
+        if (tableKeys!=null)
+            keys.addAll(tableKeys);
+        if (keys.isEmpty())
+            return;
+        // remove
+        log.debug("Invalidating {} cached query results for {}.", keys.size(), rowset.getName());
+        for (QueryKey key : keys)
+            remove(key);
+        invalidationCount.addAndGet(keys.size());
+    }
+
+    /**
+     * Invalidates all cached results which depend on the given rowset after it has been modified by a context.<BR>
+     * If the modification has not been committed yet, results are not cached for this context
+     * and the rowset is invalidated again on commit or rollback (see endTransaction()).
+     * @param rowset the rowset that has been modified
+     * @param context the context which has modified the rowset
+     */
+    public void invalidate(DBRowSet rowset, DBContext context)
+    {
+        invalidate(rowset);
+        // uncommitted
+        if ((context instanceof DBContextBase) && ((DBContextBase)context).addUncommittedQueryCache(this))
+        {   synchronized(this)
+            {   // remember rowset
+                Set<DBRowSet> rowsets = uncommittedMap.get(context);
+                if (rowsets==null)
+                {   rowsets = new HashSet<DBRowSet>();
+                    uncommittedMap.put(context, rowsets);
+                }
+                rowsets.add(rowset);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a context has modified rowsets without having committed the changes yet
+     * @param context the context
+     * @return true if the context has uncommitted modifications or false otherwise
+     */
+    public synchronized boolean hasUncommittedModifications(DBContext context)
+    {
+        return uncommittedMap.containsKey(context);
+    }
+
+    /**
+     * Called by the context on commit or rollback.<BR>
+     * Invalidates all rowsets that have been modified by the context since results 
+     * cached by other contexts in the meantime may be outdated.
+     * @param context the context
+     */
+    public void endTransaction(DBContext context)
+    {
+        Set<DBRowSet> rowsets;
+        synchronized(this)
+        {
+            rowsets = uncommittedMap.remove(context);
+        }
+        if (rowsets==null)
+            return;
+        for (DBRowSet rowset : rowsets)
+            invalidate(rowset);
+    }
+
+    /**
+     * Removes all cached results
+     */
+    public synchronized void clear()
+    {
+        sequence++;
+        entryMap.clear();
+        tableMap.clear();
+        volatileKeys.clear();
+    }
+
+    /**
+     * Returns the rowsets on which the result of a command depends
+     * @param cmd the command
+     * @return the list of rowsets
+     */
+    public List<DBRowSet> getRowSets(DBCommandExpr cmd)
+    {
+        return ((DBCommand)cmd).getRowSetList();
+    }
+
+    /**
+     * Evicts the least recently used results
+     */
+    protected void evictEldest()
+    {
+        Iterator<Map.Entry<QueryKey, CacheEntry>> it = entryMap.entrySet().iterator();
+        while (entryMap.size()>maxEntries && it.hasNext())
+        {
+            Map.Entry<QueryKey, CacheEntry> e = it.next();
+            it.remove();
+            removeReferences(e.getKey(), e.getValue());
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes a cached result
+     * @param key the query key
+     */
+    private void remove(QueryKey key)
+    {
+        CacheEntry entry = entryMap.remove(key);
+        if (entry!=null)
+            removeReferences(key, entry);
+    }
+
+    /**
+     * Removes the table references of a cached result
+     * @param key the query key
+     * @param entry the cached result
+     */
+    private void removeReferences(QueryKey key, CacheEntry entry)
+    {
+        volatileKeys.remove(key);
+        for (DBTable table : entry.tables)
+        {
+            Set<QueryKey> keys = tableMap.get(table);
+            if (keys!=null && keys.remove(key) && keys.isEmpty())
+                tableMap.remove(table);
+        }
+    }
+}
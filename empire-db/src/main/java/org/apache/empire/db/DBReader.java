@@ -20,10 +20,11 @@ package org.apache.empire.db;
 
 import java.io.Closeable;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -33,13 +34,16 @@ import org.apache.empire.commons.ClassUtils;
 import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.data.Column;
 import org.apache.empire.data.ColumnExpr;
-import org.apache.empire.data.DataType;
 import org.apache.empire.data.Entity;
 import org.apache.empire.db.exceptions.EmpireSQLException;
 import org.apache.empire.db.exceptions.NoPrimaryKeyException;
 import org.apache.empire.db.exceptions.QueryNoResultException;
+import org.apache.empire.db.expr.column.DBTotalCountExpr;
+import org.apache.empire.db.list.DBBeanMapper;
 import org.apache.empire.db.list.DataBean;
+import org.apache.empire.dbms.DBMSFeature;
 import org.apache.empire.dbms.DBMSHandler;
+import org.apache.empire.dbms.DBValueExtractor;
 import org.apache.empire.exceptions.BeanInstantiationException;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.apache.empire.exceptions.InvalidOperationException;
@@ -200,7 +204,7 @@ public class DBReader extends DBRecordData implements Closeable
             // Check position
             if (curCount >= maxCount)
                 return false;
-            if (rset == null)
+            if (!isOpen())
                 throw new ObjectNotValidException(this);
             // Check next Record
             if (getCurrent == true)
@@ -238,6 +242,12 @@ public class DBReader extends DBRecordData implements Closeable
     // Logger
     protected static final Logger log = LoggerFactory.getLogger(DBReader.class);
     
+    /**
+     * Fetch size for streaming results where the number of rows per round trip 
+     * is determined from the estimated row width of the selected columns (see DBUtils.getStreamingFetchSize())
+     */
+    public static final int FETCH_SIZE_ADAPTIVE = -1;
+    
     private static boolean trackOpenResultSets = false; 
     
     /**
@@ -253,8 +263,25 @@ public class DBReader extends DBRecordData implements Closeable
     private DBColumnExpr[] columns = null;
     private ResultSet      rset    = null;
     private DBMSHandler    dbms    = null;
+    // the value extractors
+    private DBValueExtractor[] extractors = null;
     // the field index map
     private Map<ColumnExpr, Integer> fieldIndexMap = null;
+    // the fetch size
+    private int fetchSize = 0;
+    // the total count
+    private boolean queryTotalCount = false;
+    private int totalCountIndex = -1;
+    private int totalCount = -1;
+    // the query cache
+    private DBQueryCache queryCache = null;
+    private DBQueryCache.QueryKey cacheKey = null;
+    private List<DBRowSet> cacheRowSets = null;
+    private long cacheSequence = 0;
+    private List<Object[]> cachedRows = null;
+    private int cachedRowIndex = -1;
+    private List<Object[]> recordedRows = null;
+    private Object[] currentRow = null;
 
     /**
      * Constructs an empty DBRecordSet object.
@@ -301,6 +328,29 @@ public class DBReader extends DBRecordData implements Closeable
         return db;
     }
     
+    /**
+     * Returns the fetch size used for opening the reader
+     * @return the fetch size, 0 for the driver's default or FETCH_SIZE_ADAPTIVE
+     */
+    public int getFetchSize()
+    {
+        return fetchSize;
+    }
+
+    /**
+     * Sets the number of rows to fetch with each database round trip when the reader is opened.<BR>
+     * A positive value or FETCH_SIZE_ADAPTIVE enables the streaming mode of the JDBC driver (if available),
+     * which avoids that large results are fully loaded into memory.<BR>
+     * Note: Depending on the driver streaming might require a forward only reader or a connection with auto-commit disabled (PostgreSQL, see DBMSHandlerPostgreSQL.setStreamInTransaction()).<BR>
+     * @param fetchSize the fetch size, 0 for the driver's default or FETCH_SIZE_ADAPTIVE
+     */
+    public void setFetchSize(int fetchSize)
+    {
+        if (fetchSize<0 && fetchSize!=FETCH_SIZE_ADAPTIVE)
+            throw new InvalidArgumentException("fetchSize", fetchSize);
+        this.fetchSize = fetchSize;
+    }
+    
     public boolean getScrollable()
     {
         try
@@ -314,6 +364,58 @@ public class DBReader extends DBRecordData implements Closeable
         }
     }
 
+    /**
+     * Returns whether the total number of rows is queried with the rows
+     * @return true if the total count is queried or false otherwise
+     */
+    public boolean isQueryTotalCount()
+    {
+        return queryTotalCount;
+    }
+
+    /**
+     * Sets whether or not the total number of rows of a query should be obtained with the rows.<BR>
+     * If enabled and supported by the dbms, a window function "count(*) over()" is appended to the select list.
+     * The additional column is not part of the reader's columns and its value is available from getTotalCount().<BR>
+     * This allows to obtain the total count of a query with a row limit (e.g. a page of a list) in a single round trip.
+     * @param queryTotalCount true if the total count should be queried
+     */
+    public void setQueryTotalCount(boolean queryTotalCount)
+    {
+        this.queryTotalCount = queryTotalCount;
+    }
+
+    /**
+     * Returns the total number of rows of the query regardless of any row limit.<BR>
+     * The total count is available after the first row has been read and is retained after the reader has been closed.
+     * @return the total count or -1 if the total count is not available
+     */
+    public int getTotalCount()
+    {
+        return totalCount;
+    }
+
+    /**
+     * Returns the query cache used by this reader
+     * @return the query cache or null if rows are not cached
+     */
+    public DBQueryCache getQueryCache()
+    {
+        return queryCache;
+    }
+
+    /**
+     * Sets a query cache for this reader.<BR>
+     * If set, the rows of a forward only query are read from the cache if available.
+     * Otherwise the rows are recorded while reading and added to the cache once the last row has been read.<BR>
+     * Rows are not cached if the reader is closed before the end is reached or if the number of rows exceeds DBQueryCache.getMaxRows().
+     * @param queryCache the query cache or null if rows should not be cached
+     */
+    public void setQueryCache(DBQueryCache queryCache)
+    {
+        this.queryCache = queryCache;
+    }
+
     /**
      * Returns the index value by a specified DBColumnExpr object.
      * 
@@ -379,10 +481,11 @@ public class DBReader extends DBRecordData implements Closeable
             log.warn("Index {} is out of range", index);
             throw new InvalidArgumentException("index", index);
         }
+        if (currentRow != null)
+            return (currentRow[index] == null);
         try
         { // Check Value on Resultset
-            rset.getObject(index + 1);
-            return rset.wasNull();
+            return extractors[index].isNull(rset, index + 1);
         } catch (Exception e)
         {
             log.error("isNullValue exception", e);
@@ -402,11 +505,75 @@ public class DBReader extends DBRecordData implements Closeable
         // Check params
         if (index < 0 || index >= columns.length)
             throw new InvalidArgumentException("index", index);
+        if (currentRow != null)
+            return currentRow[index];
         try
         {   // Get Value from Resultset
-            DataType dataType = columns[index].getDataType();
-            return dbms.getResultValue(rset, index + 1, dataType);
+            return extractors[index].getValue(rset, index + 1);
+
+        } catch (SQLException e) {
+            // Operation failed
+            throw new EmpireSQLException(context.getDbms(), e);
+        }
+    }
+
+    /**
+     * Returns a data value identified by the column index as int.
+     * Numeric values are read directly from the Resultset.
+     * 
+     * @param index index of the column
+     * @return the value
+     */
+    @Override
+    public int getInt(int index)
+    {
+        if (index < 0 || index >= columns.length || currentRow != null || !extractors[index].isPrimitive())
+            return super.getInt(index);
+        try
+        {   // Get primitive value from Resultset
+            return extractors[index].getInt(rset, index + 1);
+        } catch (SQLException e) {
+            // Operation failed
+            throw new EmpireSQLException(context.getDbms(), e);
+        }
+    }
+
+    /**
+     * Returns a data value identified by the column index as long.
+     * Numeric values are read directly from the Resultset.
+     * 
+     * @param index index of the column
+     * @return the value
+     */
+    @Override
+    public long getLong(int index)
+    {
+        if (index < 0 || index >= columns.length || currentRow != null || !extractors[index].isPrimitive())
+            return super.getLong(index);
+        try
+        {   // Get primitive value from Resultset
+            return extractors[index].getLong(rset, index + 1);
+        } catch (SQLException e) {
+            // Operation failed
+            throw new EmpireSQLException(context.getDbms(), e);
+        }
+    }
 
+    /**
+     * Returns a data value identified by the column index as double.
+     * Numeric values are read directly from the Resultset.
+     * 
+     * @param index index of the column
+     * @return the value
+     */
+    @Override
+    public double getDouble(int index)
+    {
+        if (index < 0 || index >= columns.length || currentRow != null || !extractors[index].isPrimitive())
+            return super.getDouble(index);
+        try
+        {   // Get primitive value from Resultset
+            return extractors[index].getDouble(rset, index + 1);
         } catch (SQLException e) {
             // Operation failed
             throw new EmpireSQLException(context.getDbms(), e);
@@ -452,7 +619,7 @@ public class DBReader extends DBRecordData implements Closeable
      */
     public boolean isOpen()
     {
-        return (rset != null);
+        return (rset != null || cachedRows != null);
     }
     
     /**
@@ -472,8 +639,31 @@ public class DBReader extends DBRecordData implements Closeable
         if (isOpen())
             close();
         // Get the query statement
-        String sqlCmd = cmd.getSelect();
-        Object[] paramValues = cmd.getParamValues();
+        DBColumnExpr[] selectExprList = cmd.getSelectExprList();
+        DBCommandExpr queryCmd = cmd;
+        boolean totalCountColumn = (queryTotalCount && isTotalCountSupported(cmd));
+        if (totalCountColumn)
+        {   // add total count column
+            DBCommand countCmd = ((DBCommand)cmd).clone();
+            countCmd.select(new DBTotalCountExpr(cmd.getDatabase()));
+            queryCmd = countCmd;
+        }
+        String sqlCmd = queryCmd.getSelect();
+        Object[] paramValues = queryCmd.getParamValues();
+        // Check the query cache
+        DBQueryCache.QueryKey key = null;
+        long sequence = 0;
+        if (queryCache!=null && !scrollable && !totalCountColumn && queryCache.isCacheable(cmd))
+        {   // find cached rows
+            key = new DBQueryCache.QueryKey("rows", sqlCmd, paramValues);
+            Object rows = queryCache.get(key);
+            if (rows!=ObjectUtils.NO_VALUE)
+            {   // read rows from cache
+                initCachedRows(cmd.getDatabase(), selectExprList, (List<?>)rows);
+                return;
+            }
+            sequence = queryCache.getSequence();
+        }
         // Collect the query parameters
         /*
         List<Object> subqueryParamValues = (cmd instanceof DBCommand) ? findSubQueryParams((DBCommand)cmd) : null;
@@ -492,11 +682,85 @@ public class DBReader extends DBRecordData implements Closeable
         */
         // Execute the query
         DBUtils utils = context.getUtils();
-        ResultSet queryRset = utils.executeQuery(sqlCmd, paramValues, scrollable);
+        ResultSet queryRset = utils.executeQuery(sqlCmd, paramValues, scrollable, getQueryFetchSize(utils, selectExprList));
         if (queryRset==null)
             throw new QueryNoResultException(sqlCmd);
         // init
-        init(cmd.getDatabase(), cmd.getSelectExprList(), queryRset);
+        init(cmd.getDatabase(), selectExprList, queryRset);
+        // the total count column follows the reader columns
+        if (totalCountColumn)
+            totalCountIndex = selectExprList.length + 1;
+        // record rows for the cache
+        if (key!=null)
+        {   cacheKey = key;
+            cacheRowSets = queryCache.getRowSets(cmd);
+            cacheSequence = sequence;
+            recordedRows = new ArrayList<Object[]>();
+        }
+    }
+
+    /**
+     * Opens the reader by executing a compiled command with the given parameter values.<BR>
+     * <P>
+     * see {@link DBReader#open(DBCommandExpr, boolean)}
+     * </P>
+     * @param cmd the compiled command
+     * @param paramValues the parameter values in the order of their param index (see DBCompiledCommand.getParamIndex())
+     * @param scrollable true if the reader should be scrollable or false if not
+     */
+    public void open(DBCompiledCommand cmd, Object[] paramValues, boolean scrollable)
+    {
+        if (isOpen())
+            close();
+        // Get the query statement
+        String sqlCmd = cmd.getSelect();
+        Object[] stmtParams = cmd.getStatementParams(paramValues);
+        // Execute the query
+        DBUtils utils = context.getUtils();
+        DBColumnExpr[] selectExprList = cmd.getSelectExprList();
+        ResultSet queryRset = utils.executeQuery(sqlCmd, stmtParams, scrollable, getQueryFetchSize(utils, selectExprList));
+        if (queryRset==null)
+            throw new QueryNoResultException(sqlCmd);
+        // init
+        init(cmd.getDatabase(), selectExprList, queryRset);
+    }
+    
+    /**
+     * Returns whether the total count can be obtained with the rows of a command
+     * @param cmd the command
+     * @return true if a total count column can be added to the command
+     */
+    protected boolean isTotalCountSupported(DBCommandExpr cmd)
+    {
+        if (!(cmd instanceof DBCommand) || ((DBCommand)cmd).isSelectDistinct())
+            return false;
+        return context.getDbms().isSupported(DBMSFeature.WINDOW_FUNCTIONS);
+    }
+
+    /**
+     * Returns the fetch size for the query
+     * @param utils the DBUtils
+     * @param selectExprList the selected expressions
+     * @return the fetch size
+     */
+    protected int getQueryFetchSize(DBUtils utils, DBColumnExpr[] selectExprList)
+    {
+        if (fetchSize==FETCH_SIZE_ADAPTIVE)
+            return utils.getStreamingFetchSize(selectExprList);
+        return fetchSize;
+    }
+
+    /**
+     * Opens the reader by executing a compiled command with the given parameter values.<BR>
+     * <P>
+     * see {@link DBReader#open(DBCompiledCommand, Object[], boolean)}
+     * </P>
+     * @param cmd the compiled command
+     * @param paramValues the parameter values in the order of their param index
+     */
+    public final void open(DBCompiledCommand cmd, Object... paramValues)
+    {
+        open(cmd, paramValues, false);
     }
 
     /**
@@ -555,8 +819,16 @@ public class DBReader extends DBRecordData implements Closeable
             }
             // Detach columns
             columns = null;
+            extractors = null;
+            totalCountIndex = -1;
             rset = null;
             dbms = null;
+            // Release cached rows
+            cacheKey = null;
+            cacheRowSets = null;
+            cachedRows = null;
+            recordedRows = null;
+            currentRow = null;
             // clear FieldIndexMap
             if (fieldIndexMap!=null)
                 fieldIndexMap.clear();
@@ -578,10 +850,10 @@ public class DBReader extends DBRecordData implements Closeable
     {
         try
         {   // Check Recordset
-            if (rset == null)
+            if (!isOpen())
                 throw new ObjectNotValidException(this);
             // Forward only cursor?
-            int type = rset.getType();
+            int type = (rset != null ? rset.getType() : ResultSet.TYPE_FORWARD_ONLY);
             if (type == ResultSet.TYPE_FORWARD_ONLY)
             {
                 if (count < 0)
@@ -627,15 +899,27 @@ public class DBReader extends DBRecordData implements Closeable
     public boolean moveNext()
     {
         try
-        {   // Check Recordset
+        {   // Check cached rows
+            if (cachedRows != null)
+                return moveNextCachedRow();
+            // Check Recordset
             if (rset == null)
                 throw new ObjectNotValidException(this);
             // Move Next
             if (rset.next() == false)
-            { // Close recordset automatically after last record
+            { // Add recorded rows to cache
+                if (recordedRows != null)
+                    queryCache.put(cacheKey, Collections.unmodifiableList(recordedRows), cacheRowSets, cacheSequence);
+                // Close recordset automatically after last record
                 close();
                 return false;
             }
+            // read the total count
+            if (totalCountIndex > 0 && totalCount < 0)
+                totalCount = rset.getInt(totalCountIndex);
+            // record the row
+            if (recordedRows != null)
+                recordRow();
             return true;
 
         } catch (SQLException e) {
@@ -644,6 +928,40 @@ public class DBReader extends DBRecordData implements Closeable
         }
     }
 
+    /**
+     * Moves to the next cached row
+     * @return true if the reader is on a valid record or false otherwise
+     */
+    private boolean moveNextCachedRow()
+    {
+        if (++cachedRowIndex >= cachedRows.size())
+        {   // Close automatically after last record
+            close();
+            return false;
+        }
+        currentRow = cachedRows.get(cachedRowIndex);
+        return true;
+    }
+
+    /**
+     * Records the values of the current row for the query cache
+     * @throws SQLException thrown if a database access error occurs
+     */
+    private void recordRow() throws SQLException
+    {
+        if (recordedRows.size() >= queryCache.getMaxRows())
+        {   // Too many rows: stop recording
+            recordedRows = null;
+            currentRow = null;
+            return;
+        }
+        Object[] row = new Object[columns.length];
+        for (int i=0; i<columns.length; i++)
+            row[i] = extractors[i].getValue(rset, i + 1);
+        recordedRows.add(row);
+        currentRow = row;
+    }
+
     private DBReaderIterator iterator = null; // there can only be one!
 
     /**
@@ -655,7 +973,7 @@ public class DBReader extends DBRecordData implements Closeable
      */
     public Iterator<DBRecordData> iterator(int maxCount)
     {
-        if (iterator == null && rset != null)
+        if (iterator == null && isOpen())
         {
             if (getScrollable())
                 iterator = new DBReaderScrollableIterator(maxCount);
@@ -724,26 +1042,24 @@ public class DBReader extends DBRecordData implements Closeable
         // Query List
         try
         {   // Find Constructor
-            Constructor<?> ctor = findBeanConstructor(t);
-            Object[] args = (ctor!=null) ? new Object[getFieldCount()] : null; 
-            Class<?>[] ctorParamTypes = (ctor!=null) ? ctor.getParameterTypes() : null;
+            Constructor<T> ctor = (Constructor<T>)findBeanConstructor(t);
+            List<DBColumnExpr> ctorParams = null;
+            if (ctor!=null)
+            {   // Use Constructor
+                ctorParams = Arrays.asList(columns);
+            }
+            else
+            {   // Use Property Setters
+                ctor = t.getConstructor();
+            }
+            // Create the mapping plan
+            DBBeanMapper<T> mapper = new DBBeanMapper<T>(ctor, ctorParams, this);
             
             // Create a list of beans
             int rownum = 0;
             while (moveNext() && maxCount != 0)
             {   // Create bean an init
-                T bean;
-                if (ctor!=null)
-                {   // Use Constructor
-                    for (int i = 0; i < getFieldCount(); i++)
-                        args[i] = ObjectUtils.convert(ctorParamTypes[i], getValue(i));
-                    bean = (T)ctor.newInstance(args);
-                }
-                else
-                {   // Use Property Setters
-                    bean = t.newInstance();
-                    setBeanProperties(bean);
-                }
+                T bean = mapper.newItem(this);
                 // add
                 list.add(bean);
                 rownum++;
@@ -756,7 +1072,7 @@ public class DBReader extends DBRecordData implements Closeable
             }
             // done
             return list;
-        } catch (InvocationTargetException | IllegalAccessException | InstantiationException e) {
+        } catch (NoSuchMethodException e) {
             // ReflectiveOperationException
             throw new BeanInstantiationException(t, e);
         }
@@ -904,6 +1220,11 @@ public class DBReader extends DBRecordData implements Closeable
         this.dbms = db.getDbms();
         this.columns = columns;
         this.rset = rset;
+        this.totalCount = -1;
+        // resolve value extractors
+        this.extractors = new DBValueExtractor[columns.length];
+        for (int i=0; i<columns.length; i++)
+            extractors[i] = dbms.getValueExtractor(columns[i].getDataType());
         // clear fieldIndexMap         
         if (fieldIndexMap!=null)
             fieldIndexMap.clear();
@@ -911,6 +1232,26 @@ public class DBReader extends DBRecordData implements Closeable
         trackThisResultSet();
     }
 
+    /**
+     * Initialize the reader with rows obtained from the query cache 
+     * @param db the database
+     * @param columns the query column expressions
+     * @param rows the cached rows
+     */
+    @SuppressWarnings("unchecked")
+    private void initCachedRows(DBDatabase db, DBColumnExpr[] columns, List<?> rows)
+    {
+        this.db = db;
+        this.dbms = db.getDbms();
+        this.columns = columns;
+        this.cachedRows = (List<Object[]>)rows;
+        this.cachedRowIndex = -1;
+        this.totalCount = -1;
+        // clear fieldIndexMap         
+        if (fieldIndexMap!=null)
+            fieldIndexMap.clear();
+    }
+
     /**
      * Access the column expression list
      * @return the column expression list
@@ -939,6 +1280,17 @@ public class DBReader extends DBRecordData implements Closeable
     {
         if (columns == null)
             throw new ObjectNotValidException(this);
+        return findFieldIndex(columns, column);
+    }
+
+    /**
+     * finds the field Index of a given column expression in a list of column expressions
+     * @param columns the column expressions of the query
+     * @param column the column to find
+     * @return the index value
+     */
+    static int findFieldIndex(DBColumnExpr[] columns, ColumnExpr column)
+    {
         // First chance: Try to find an expression match
         int index = ObjectUtils.indexOf(columns, column);
         if (index>= 0)
@@ -0,0 +1,385 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.empire.data.ColumnExpr;
+import org.apache.empire.db.list.DBBeanListFactory;
+import org.apache.empire.db.list.DataBean;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.NotSupportedException;
+import org.apache.empire.exceptions.ObjectNotValidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * DBReaderPipeline
+ * Reads the rows of a DBReader and maps them to beans in parallel.<BR>
+ * The calling thread fetches the raw column values from the reader into chunks of rows.
+ * Each chunk is then mapped to beans by a task of a ForkJoinPool while the next chunk is fetched.
+ * The beans are added to the list in the order of the rows.<BR>
+ * The bean factory must be thread-safe since its newItem() method is called concurrently.<BR>
+ * If only a single processor is available, the rows are mapped on the calling thread without chunks (see setParallel()),
+ * since fetching and mapping cannot overlap and the chunks only add overhead.<BR>
+ * See DBReaderPipelineBenchmark in the test sources for measuring the effect of chunk size and parallelism.
+ * @param <T> the bean type
+ */
+public class DBReaderPipeline<T>
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBReaderPipeline.class);
+
+    /**
+     * The default number of rows per chunk.<BR>
+     * Chunks must be large enough to amortize the submission of a task (a few microseconds) over the mapping of the rows,
+     * while small chunks let the workers start early and limit the rows held in memory.
+     * In the benchmark the overhead compared to sequential mapping levels off at a few hundred rows per chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    /**
+     * RowData
+     * Provides the values of a row which has been fetched from a reader
+     */
+    protected static class RowData extends DBRecordData
+    {
+        private final DBDatabase db;
+        private final DBContext context;
+        private final DBColumnExpr[] columns;
+        private Object[] values;
+
+        public RowData(DBDatabase db, DBContext context, DBColumnExpr[] columns)
+        {
+            this.db = db;
+            this.context = context;
+            this.columns = columns;
+        }
+
+        public void setValues(Object[] values)
+        {
+            this.values = values;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <D extends DBDatabase> D getDatabase()
+        {
+            return (D)db;
+        }
+
+        @Override
+        public DBContext getContext()
+        {
+            return context;
+        }
+
+        @Override
+        public int getFieldCount()
+        {
+            return columns.length;
+        }
+
+        @Override
+        public int getFieldIndex(ColumnExpr column)
+        {
+            return DBReader.findFieldIndex(columns, column);
+        }
+
+        @Override
+        public int getFieldIndex(String column)
+        {
+            for (int i = 0; i < columns.length; i++)
+                if (columns[i].getName().equalsIgnoreCase(column))
+                    return i;
+            // not found
+            return -1;
+        }
+
+        @Override
+        public DBColumnExpr getColumn(int index)
+        {
+            if (index < 0 || index >= columns.length)
+                return null; // Index out of range
+            return columns[index];
+        }
+
+        @Override
+        public Object getValue(int index)
+        {
+            if (index < 0 || index >= columns.length)
+                throw new InvalidArgumentException("index", index);
+            return values[index];
+        }
+
+        @Override
+        public boolean isNull(int index)
+        {
+            return (getValue(index) == null);
+        }
+
+        @Override
+        public int addXmlMeta(Element parent)
+        {
+            throw new NotSupportedException(this, "addXmlMeta");
+        }
+
+        @Override
+        public int addXmlData(Element parent)
+        {
+            throw new NotSupportedException(this, "addXmlData");
+        }
+
+        @Override
+        public Document getXmlDocument()
+        {
+            throw new NotSupportedException(this, "getXmlDocument");
+        }
+    }
+
+    /**
+     * Maps a chunk of rows to beans
+     */
+    private class MapChunkTask extends RecursiveTask<List<T>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final RowData rowData;
+        private final Object[][] rows;
+        private final int count;
+        private final int firstRownum;
+        private final Object parent;
+
+        public MapChunkTask(RowData rowData, Object[][] rows, int count, int firstRownum, Object parent)
+        {
+            this.rowData = rowData;
+            this.rows = rows;
+            this.count = count;
+            this.firstRownum = firstRownum;
+            this.parent = parent;
+        }
+
+        @Override
+        protected List<T> compute()
+        {
+            List<T> items = new ArrayList<T>(count);
+            for (int i=0; i<count; i++)
+            {   // Create bean an init
+                int rownum = firstRownum + i;
+                rowData.setValues(rows[i]);
+                T item = factory.newItem(rownum, rowData);
+                if (item==null)
+                    continue;
+                // post processing
+                if (item instanceof DataBean<?>)
+                    ((DataBean<?>)item).initialize(rowData.getDatabase(), rowData.getContext(), rownum, parent);
+                items.add(item);
+            }
+            return items;
+        }
+    }
+
+    protected final DBBeanListFactory<T> factory;
+    protected final ForkJoinPool pool;
+    protected final int chunkSize;
+    private int maxPendingChunks;
+    private boolean parallel = (Runtime.getRuntime().availableProcessors()>1);
+
+    /**
+     * Constructs a pipeline
+     * @param factory the bean factory (must be thread-safe)
+     * @param pool the pool used for mapping the rows to beans
+     * @param chunkSize the number of rows per chunk
+     */
+    public DBReaderPipeline(DBBeanListFactory<T> factory, ForkJoinPool pool, int chunkSize)
+    {
+        if (factory==null)
+            throw new InvalidArgumentException("factory", factory);
+        if (pool==null)
+            throw new InvalidArgumentException("pool", pool);
+        if (chunkSize<1)
+            throw new InvalidArgumentException("chunkSize", chunkSize);
+        this.factory = factory;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.maxPendingChunks = pool.getParallelism() * 2;
+    }
+
+    /**
+     * Constructs a pipeline using the common pool and the default chunk size
+     * @param factory the bean factory (must be thread-safe)
+     */
+    public DBReaderPipeline(DBBeanListFactory<T> factory)
+    {
+        this(factory, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public ForkJoinPool getPool()
+    {
+        return pool;
+    }
+
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    /**
+     * Returns whether rows are mapped in parallel by the pool
+     * @return true if rows are mapped by the pool or false if they are mapped on the calling thread
+     */
+    public boolean isParallel()
+    {
+        return parallel;
+    }
+
+    /**
+     * Sets whether rows are mapped in parallel by the pool.<BR>
+     * The default is true if more than one processor is available.
+     * @param parallel true to map the rows by the pool or false to map them on the calling thread
+     */
+    public void setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Returns the maximum number of chunks which are fetched but not yet added to the list
+     * @return the maximum number of pending chunks
+     */
+    public int getMaxPendingChunks()
+    {
+        return maxPendingChunks;
+    }
+
+    /**
+     * Sets the maximum number of chunks which are fetched but not yet added to the list.<BR>
+     * This limits the memory required for fetched rows if mapping is slower than fetching.
+     * The default is twice the parallelism of the pool, so that each worker has a chunk queued
+     * while the calling thread waits for the oldest chunk. Hence at most 2 * parallelism * chunkSize rows are held in memory.
+     * @param maxPendingChunks the maximum number of pending chunks
+     */
+    public void setMaxPendingChunks(int maxPendingChunks)
+    {
+        if (maxPendingChunks<1)
+            throw new InvalidArgumentException("maxPendingChunks", maxPendingChunks);
+        this.maxPendingChunks = maxPendingChunks;
+    }
+
+    /**
+     * Reads the rows of an open reader and adds the beans to a list.<BR>
+     * The reader is not closed by this method.
+     * @param reader the open reader
+     * @param list the list to add the beans to
+     * @param parent (optional) the parent bean if any
+     * @param maxCount the maximum number of rows to read or -1 for all
+     * @return the list
+     */
+    public <L extends List<T>> L readList(DBReader reader, L list, Object parent, int maxCount)
+    {
+        // Check Open
+        if (!reader.isOpen())
+            throw new ObjectNotValidException(reader);
+        if (!parallel)
+            return readListSequential(reader, list, parent, maxCount);
+        DBColumnExpr[] columns = reader.getColumnExprList();
+        DBDatabase db = reader.getDatabase();
+        DBContext context = reader.getContext();
+        // fetch and map
+        ArrayDeque<ForkJoinTask<List<T>>> pending = new ArrayDeque<ForkJoinTask<List<T>>>();
+        try
+        {
+            int rownum = 0;
+            int chunks = 0;
+            boolean more = true;
+            while (more)
+            {   // fetch chunk
+                int size = (maxCount>=0 ? Math.min(chunkSize, maxCount - rownum) : chunkSize);
+                if (size<=0)
+                    break;
+                Object[][] rows = new Object[size][];
+                int count = 0;
+                while (count<size && reader.moveNext())
+                {
+                    Object[] values = new Object[columns.length];
+                    for (int i=0; i<values.length; i++)
+                        values[i] = reader.getValue(i);
+                    rows[count++] = values;
+                }
+                more = (count==size);
+                if (count==0)
+                    break;
+                // wait for the oldest chunk
+                if (pending.size()>=maxPendingChunks)
+                    list.addAll(pending.removeFirst().join());
+                // map chunk
+                pending.addLast(pool.submit(new MapChunkTask(new RowData(db, context, columns), rows, count, rownum, parent)));
+                rownum += count;
+                chunks++;
+            }
+            // add remaining chunks
+            while (!pending.isEmpty())
+                list.addAll(pending.removeFirst().join());
+            // done
+            if (log.isDebugEnabled())
+                log.debug("{} rows read in {} chunks.", rownum, chunks);
+            return list;
+        }
+        finally
+        {   // cancel pending tasks
+            for (ForkJoinTask<List<T>> task : pending)
+                task.cancel(false);
+        }
+    }
+
+    /**
+     * Reads the rows of an open reader and maps them to beans on the calling thread
+     * @param reader the open reader
+     * @param list the list to add the beans to
+     * @param parent (optional) the parent bean if any
+     * @param maxCount the maximum number of rows to read or -1 for all
+     * @return the list
+     */
+    protected <L extends List<T>> L readListSequential(DBReader reader, L list, Object parent, int maxCount)
+    {
+        int rownum = 0;
+        while ((maxCount<0 || rownum<maxCount) && reader.moveNext())
+        {   // Create bean an init
+            T item = factory.newItem(rownum, reader);
+            if (item!=null)
+            {   // post processing
+                if (item instanceof DataBean<?>)
+                    ((DataBean<?>)item).initialize(((DBObject)reader).getDatabase(), reader.getContext(), rownum, parent);
+                list.add(item);
+            }
+            rownum++;
+        }
+        // done
+        if (log.isDebugEnabled())
+            log.debug("{} rows read sequentially.", rownum);
+        return list;
+    }
+}
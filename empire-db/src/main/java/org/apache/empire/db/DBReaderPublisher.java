@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.util.function.Consumer;
+
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.InvalidOperationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBReaderPublisher
+ * Publishes the rows of a query to a subscriber with demand based backpressure.<BR>
+ * The Subscriber and Subscription interfaces follow the contract of java.util.concurrent.Flow (Java 9)
+ * and may easily be adapted to it.<BR>
+ * The query is executed when the subscriber requests the first items.
+ * Rows are fetched and delivered on the thread calling request() and only as many rows as requested are read.<BR>
+ * The reader is closed after the last row, on error and on cancel.<BR>
+ * A publisher can only be subscribed once.
+ * @param <T> the item type
+ */
+public abstract class DBReaderPublisher<T>
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBReaderPublisher.class);
+
+    /**
+     * Receives the items of a DBReaderPublisher
+     * @param <T> the item type
+     */
+    public interface Subscriber<T>
+    {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    /**
+     * Links a Subscriber to a DBReaderPublisher
+     */
+    public interface Subscription
+    {
+        /**
+         * Requests the next items
+         * @param n the number of items to deliver (must be positive)
+         */
+        void request(long n);
+
+        /**
+         * Stops the delivery of items and releases the query
+         */
+        void cancel();
+    }
+
+    /**
+     * The subscription implementation
+     */
+    private class ReaderSubscription implements Subscription, Consumer<T>
+    {
+        private final Subscriber<? super T> subscriber;
+        private DBReaderSpliterator<T> source = null;
+        private long demand = 0;
+        private boolean emitting = false;
+        private boolean done = false;
+
+        public ReaderSubscription(Subscriber<? super T> subscriber)
+        {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n)
+        {
+            if (done)
+                return;
+            if (n<=0)
+            {   // invalid request
+                terminate(new InvalidArgumentException("n", n));
+                return;
+            }
+            // add demand
+            demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+            if (emitting)
+                return; // request() was called from onNext()
+            // deliver
+            emitting = true;
+            try
+            {   // open the query
+                if (source==null)
+                    source = openQuery();
+                // read rows
+                while (demand>0 && !done)
+                {
+                    if (!source.tryAdvance(this))
+                    {   // all rows read
+                        done = true;
+                        subscriber.onComplete();
+                    }
+                }
+            }
+            catch (RuntimeException e)
+            {   // query failed
+                terminate(e);
+            }
+            finally
+            {
+                emitting = false;
+            }
+        }
+
+        @Override
+        public void cancel()
+        {
+            done = true;
+            releaseQuery();
+        }
+
+        @Override
+        public void accept(T item)
+        {
+            demand--;
+            subscriber.onNext(item);
+        }
+
+        private void terminate(Throwable e)
+        {
+            if (done)
+            {   // already cancelled
+                log.warn("Error after subscription has been terminated: {}", e.getMessage());
+                return;
+            }
+            done = true;
+            releaseQuery();
+            subscriber.onError(e);
+        }
+
+        private void releaseQuery()
+        {
+            if (source!=null)
+                source.reader.close();
+        }
+    }
+
+    private boolean subscribed = false;
+
+    /**
+     * Opens the query and returns the spliterator for the rows of the reader.<BR>
+     * This is called with the first request of the subscriber.
+     * @return the spliterator
+     */
+    protected abstract DBReaderSpliterator<T> openQuery();
+
+    /**
+     * Subscribes to this publisher
+     * @param subscriber the subscriber
+     */
+    public void subscribe(Subscriber<? super T> subscriber)
+    {
+        if (subscriber==null)
+            throw new InvalidArgumentException("subscriber", subscriber);
+        ReaderSubscription subscription = new ReaderSubscription(subscriber);
+        // check if already subscribed
+        boolean valid;
+        synchronized(this)
+        {   valid = !subscribed;
+            subscribed = true;
+        }
+        if (!valid)
+        {   // reject
+            subscription.done = true;
+            subscriber.onSubscribe(subscription);
+            subscriber.onError(new InvalidOperationException("A DBReaderPublisher can only be subscribed once."));
+            return;
+        }
+        subscriber.onSubscribe(subscription);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.empire.exceptions.InvalidArgumentException;
+
+/**
+ * DBReaderSpliterator
+ * Provides the rows of an open DBReader as a sequential and lazily fetched java.util.stream.Stream.<BR>
+ * The reader is closed when the last row has been read, when an exception occurs or when the stream is closed.<BR>
+ * Hence streams should be used in a try-with-resources block if not all rows are consumed.
+ * @param <T> the item type
+ */
+public abstract class DBReaderSpliterator<T> extends Spliterators.AbstractSpliterator<T>
+{
+    protected final DBReader reader;
+
+    private int rownum = 0;
+
+    /**
+     * Constructs a spliterator for an open reader
+     * @param reader the reader
+     */
+    protected DBReaderSpliterator(DBReader reader)
+    {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        if (reader==null)
+            throw new InvalidArgumentException("reader", reader);
+        this.reader = reader;
+    }
+
+    /**
+     * Creates the item for the current row of the reader
+     * @param reader the reader
+     * @param rownum the number of items returned so far
+     * @return the item or null if the row should be skipped
+     */
+    protected abstract T getItem(DBReader reader, int rownum);
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action)
+    {
+        try
+        {   // find next item
+            while (reader.isOpen() && reader.moveNext())
+            {   // create item
+                T item = getItem(reader, rownum);
+                if (item==null)
+                    continue;
+                rownum++;
+                action.accept(item);
+                return true;
+            }
+            // end reached (reader has been closed by moveNext)
+            return false;
+        }
+        catch (RuntimeException e)
+        {   // release the result set
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The rows of a reader are only available sequentially.
+     * @return always null
+     */
+    @Override
+    public Spliterator<T> trySplit()
+    {
+        return null;
+    }
+
+    /**
+     * Returns a sequential stream for this spliterator which closes the reader when the stream is closed.
+     * @return the stream
+     */
+    public Stream<T> stream()
+    {
+        return StreamSupport.stream(this, false).onClose(new Runnable() {
+            @Override
+            public void run()
+            {   // release the result set
+                reader.close();
+            }
+        });
+    }
+}
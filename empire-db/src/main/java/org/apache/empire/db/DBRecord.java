@@ -280,9 +280,7 @@ public class DBRecord extends DBRecordBase
      */
     public DBRecord read(Object[] key)
     {   // read
-        DBRowSet rs = getRowSet(); 
-        DBCompareExpr keyConstraints = rs.getKeyConstraints(key);
-        rs.readRecord(this, keyConstraints);
+        getRowSet().readRecord(this, key);
         return this;
     }
 
@@ -385,6 +383,28 @@ public class DBRecord extends DBRecordBase
         getRowSet().updateRecord(this);
     }
 
+    /**
+     * Inserts the record or updates an existing record with the same primary key using a single statement.<BR>
+     * All primary key fields must be set.
+     * @see org.apache.empire.db.DBRowSet#upsertRecord(DBRecordBase)
+     */
+    public void upsert()
+    {
+        if (!isValid())
+            throw new ObjectNotValidException(this);
+        if (!isModified())
+            return; /* Not modified. Nothing to do! */
+        // check updatable
+        checkUpdateable();
+        // allow rollback
+        if (isRollbackHandlingEnabled())
+            getContext().appendRollbackHandler(createRollbackHandler());
+        // set parent record identity
+        assignParentIdentities();
+        // upsert
+        getRowSet().upsertRecord(this);
+    }
+
     /**
      * This helper function calls the DBRowset.deleteRecord method 
      * to delete the record.
@@ -1180,6 +1180,15 @@ public abstract class DBRecordBase extends DBRecordData implements Record, Clone
         parentRecordMap.clear();
     }
     
+    /**
+     * Returns true if the identity of a parent record has to be assigned when the record is updated
+     * @return true if parent identities are pending or false otherwise
+     */
+    protected boolean hasPendingParentIdentities()
+    {
+        return (parentRecordMap!=null && !parentRecordMap.isEmpty());
+    }
+    
     /**
      * helper function to check if a given field index corresponds to one of the given columns
      * @param index the field index
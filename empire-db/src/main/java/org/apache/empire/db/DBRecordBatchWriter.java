@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.io.Closeable;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.empire.db.DBRowSet.DBRecordStatement;
+import org.apache.empire.dbms.DBMSFeature;
+import org.apache.empire.dbms.DBMSHandler;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.ObjectNotValidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBRecordBatchWriter
+ * Collects new and modified records and writes them to the database using JDBC batches.<BR>
+ * Records are grouped by their insert or update statement, i.e. by table and the set of changed columns.
+ * A group is executed as a single batch which avoids a database round trip for each record.<BR>
+ * <P>
+ * After a batch has been executed generated keys and update timestamps are set on the records
+ * and the records' state is changed just as with DBRecord.update().<BR>
+ * Generated keys of AUTOINC columns are obtained from the batch only if the dbms supports DBMSFeature.BATCH_GENERATED_KEYS.
+ * Otherwise such records are inserted one by one.<BR>
+ * <P>
+ * A record must not be modified while it is pending.
+ * Groups are flushed in the order in which they have been created.
+ * All pending records are flushed when one group reaches the batch size, when flush() or close() is called
+ * or when a record is added whose parent identities have to be assigned.<BR>
+ * <P>
+ * ATTENTION: The writer must be closed (or flushed) before the transaction is committed!<BR>
+ * Use <PRE>try { ... } finally { writer.close(); } </PRE> to make sure all records are written.<BR>
+ */
+public class DBRecordBatchWriter implements Closeable
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBRecordBatchWriter.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /**
+     * A group of records with the same statement
+     */
+    protected static class StatementGroup
+    {
+        private final String sqlCmd;
+        private final List<DBRecordStatement> statements = new ArrayList<DBRecordStatement>();
+
+        public StatementGroup(String sqlCmd)
+        {
+            this.sqlCmd = sqlCmd;
+        }
+
+        public String getSqlCmd()
+        {
+            return sqlCmd;
+        }
+
+        public List<DBRecordStatement> getStatements()
+        {
+            return statements;
+        }
+    }
+
+    protected final DBContext context;
+    protected int batchSize;
+
+    // the pending statements
+    private final Map<String, StatementGroup> groupMap = new LinkedHashMap<String, StatementGroup>();
+    private final Set<DBRecordBase> pendingRecords = Collections.newSetFromMap(new IdentityHashMap<DBRecordBase, Boolean>());
+    // statistics
+    private int batchCount  = 0;
+    private int recordCount = 0;
+
+    /**
+     * Creates a batch writer
+     * @param context the database context
+     * @param batchSize the maximum number of records per batch
+     */
+    public DBRecordBatchWriter(DBContext context, int batchSize)
+    {
+        if (context==null)
+            throw new InvalidArgumentException("context", context);
+        if (batchSize<1)
+            throw new InvalidArgumentException("batchSize", batchSize);
+        this.context = context;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Creates a batch writer with the default batch size
+     * @param context the database context
+     */
+    public DBRecordBatchWriter(DBContext context)
+    {
+        this(context, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Returns the context
+     * @return the database context
+     */
+    public DBContext getContext()
+    {
+        return context;
+    }
+
+    /**
+     * Returns the maximum number of records per batch
+     * @return the batch size
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    /**
+     * Sets the maximum number of records per batch
+     * @param batchSize the batch size
+     */
+    public void setBatchSize(int batchSize)
+    {
+        if (batchSize<1)
+            throw new InvalidArgumentException("batchSize", batchSize);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the number of records which have not yet been written
+     * @return the number of pending records
+     */
+    public int getPendingCount()
+    {
+        return pendingRecords.size();
+    }
+
+    /**
+     * Returns the number of statements or batches executed by this writer
+     * @return the number of executions
+     */
+    public int getBatchCount()
+    {
+        return batchCount;
+    }
+
+    /**
+     * Returns the number of records written by this writer
+     * @return the number of records
+     */
+    public int getRecordCount()
+    {
+        return recordCount;
+    }
+
+    /**
+     * Adds a new or modified record to the writer.<BR>
+     * The record is written with the next batch. Until then the record must not be modified.<BR>
+     * Records of rowsets other than tables are updated immediately.
+     * @param record the record to write
+     */
+    public void add(DBRecord record)
+    {
+        if (record==null || !record.isValid())
+            throw new ObjectNotValidException(record);
+        if (record.getContext()!=context)
+            throw new InvalidArgumentException("record", record);
+        if (!record.isModified())
+            return; /* Not modified. Nothing to do! */
+        // already pending or parent identities required?
+        if (pendingRecords.contains(record) || (record.hasPendingParentIdentities() && !pendingRecords.isEmpty()))
+            flush();
+        // Tables only
+        DBRowSet rowset = record.getRowSet();
+        if (!(rowset instanceof DBTable))
+        {   // update now
+            flush();
+            record.update();
+            return;
+        }
+        // check updatable
+        record.checkUpdateable();
+        rowset.checkParamRecord(record, true);
+        // allow rollback
+        if (record.isRollbackHandlingEnabled())
+            context.appendRollbackHandler(record.createRollbackHandler());
+        // set parent record identity
+        record.assignParentIdentities();
+        // prepare statement
+        DBCommand cmd = context.getDbms().createCommand(true);
+        DBRecordStatement stmt = rowset.prepareUpdateRecord(record, cmd);
+        if (stmt==null)
+            return; // Nothing to do
+        // add to group
+        StatementGroup group = groupMap.get(stmt.getSqlCmd());
+        if (group==null)
+        {   // new group
+            group = new StatementGroup(stmt.getSqlCmd());
+            groupMap.put(group.getSqlCmd(), group);
+        }
+        group.getStatements().add(stmt);
+        pendingRecords.add(record);
+        // check size
+        if (group.getStatements().size()>=batchSize)
+            flush();
+    }
+
+    /**
+     * Adds a list of new or modified records to the writer
+     * @param records the records to write
+     */
+    public void addAll(Iterable<? extends DBRecord> records)
+    {
+        for (DBRecord record : records)
+            add(record);
+    }
+
+    /**
+     * Writes all pending records to the database
+     */
+    public void flush()
+    {
+        if (pendingRecords.isEmpty())
+            return;
+        try
+        {   // execute all groups
+            log.debug("Flushing {} records in {} groups", pendingRecords.size(), groupMap.size());
+            for (StatementGroup group : groupMap.values())
+                executeGroup(group);
+        } finally {
+            groupMap.clear();
+            pendingRecords.clear();
+        }
+    }
+
+    /**
+     * Flushes all pending records
+     */
+    @Override
+    public void close()
+    {
+        flush();
+    }
+
+    /**
+     * Executes the statements of a group
+     * @param group the statement group
+     */
+    protected void executeGroup(StatementGroup group)
+    {
+        DBUtils utils = context.getUtils();
+        final List<DBRecordStatement> list = group.getStatements();
+        boolean genKeys = (list.get(0).getSetGenKeys()!=null);
+        boolean returning = (list.get(0).getReturnFields()!=null);
+        if (list.size()==1 || returning || (genKeys && !context.getDbms().isSupported(DBMSFeature.BATCH_GENERATED_KEYS)))
+        {   // execute one by one
+            for (DBRecordStatement stmt : list)
+            {
+                DBRowSet rowset = stmt.getRecord().getRowSet();
+                int affected = rowset.executeRecordStatement(stmt, utils);
+                rowset.completeUpdateRecord(stmt, affected);
+                batchCount++;
+                recordCount++;
+            }
+            return;
+        }
+        // execute batch
+        Object[][] params = new Object[list.size()][];
+        for (int i=0; i<params.length; i++)
+            params[i] = list.get(i).getSqlParams();
+        DBMSHandler.DBSetGenKeys setGenKeys = null;
+        if (genKeys)
+        {   // set generated keys
+            setGenKeys = new DBMSHandler.DBSetGenKeys() {
+                @Override
+                public void set(int rownum, Object value)
+                {
+                    list.get(rownum).getSetGenKeys().set(0, value);
+                }
+            };
+        }
+        int[] result = utils.executeBatch(group.getSqlCmd(), params, setGenKeys);
+        batchCount++;
+        // complete
+        for (int i=0; i<list.size(); i++)
+        {   // SUCCESS_NO_INFO is treated as success
+            int affected = (i<result.length ? result[i] : Statement.EXECUTE_FAILED);
+            if (affected==Statement.SUCCESS_NO_INFO)
+                affected = 1;
+            DBRecordStatement stmt = list.get(i);
+            stmt.getRecord().getRowSet().completeUpdateRecord(stmt, affected);
+            recordCount++;
+        }
+    }
+}
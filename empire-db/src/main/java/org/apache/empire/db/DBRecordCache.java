@@ -0,0 +1,420 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.empire.commons.ObjectUtils;
+import org.apache.empire.commons.StringUtils;
+import org.apache.empire.data.DataType;
+import org.apache.empire.exceptions.InvalidArgumentException;
+
+/**
+ * DBRecordCache
+ * A bounded cache for the field values of the records of a table identified by their primary key.<BR>
+ * The cache is set on a table using DBTable.setRecordCache() and is used by DBTable.readRecord() and DBTable.recordExists().
+ * A cache must not be shared by several tables.<BR>
+ * It is populated when a record is read and invalidated when a record is updated or deleted,
+ * since the database may have changed field values which are not known to the record (e.g. by expressions, defaults or triggers).
+ * Set based modifications of the table (e.g. DBContext.executeUpdate()) clear the cache.<BR>
+ * Since the cached values include the update timestamp, concurrent changes are still detected when a cached record is updated.
+ * If a record update fails the record is removed from the cache.
+ * <P>
+ * The cache is intended for tables with rarely changing master data.
+ * Modifications made by plain SQL statements or other applications are not detected.
+ * After a rollback the cache should be cleared.
+ */
+public class DBRecordCache
+{
+    /**
+     * The eviction policy
+     */
+    public enum EvictionPolicy
+    {
+        /**
+         * Evicts the least recently used record
+         */
+        LRU,
+        /**
+         * Evicts the least frequently used record
+         */
+        LFU
+    }
+
+    /**
+     * The key of a cached record
+     */
+    protected static final class RecordKey
+    {
+        private final Object[] key;
+        private final int      hashCode;
+
+        /**
+         * Creates a key from the values of the given columns.<BR>
+         * The values are converted to a uniform type for the data type of the columns. 
+         * @param columns the key columns
+         * @param key the key values
+         */
+        public RecordKey(DBColumn[] columns, Object[] key)
+        {
+            if (columns==null || key==null || columns.length!=key.length)
+                throw new InvalidArgumentException("key", key);
+            this.key = new Object[key.length];
+            for (int i=0; i<key.length; i++)
+                this.key[i] = getKeyValue(columns[i].getDataType(), key[i]);
+            this.hashCode = Arrays.hashCode(this.key);
+        }
+
+        public RecordKey(Object[] key)
+        {
+            this.key = new Object[key.length];
+            for (int i=0; i<key.length; i++)
+            {   // integer types are compared as long values
+                Object value = key[i];
+                if ((value instanceof Integer) || (value instanceof Short) || (value instanceof Byte))
+                    value = ((Number)value).longValue();
+                this.key[i] = value;
+            }
+            this.hashCode = Arrays.hashCode(this.key);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (other==this)
+                return true;
+            if (!(other instanceof RecordKey))
+                return false;
+            return Arrays.equals(((RecordKey)other).key, key);
+        }
+    }
+
+    /**
+     * A cached record
+     */
+    protected static final class RecordEntry
+    {
+        private final Object[] fields;
+        private long useCount = 0;
+
+        public RecordEntry(Object[] fields)
+        {
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * Converts a key value to a uniform type for a data type.<BR>
+     * Hence values of different java types (e.g. Integer, Long or BigDecimal) are equal if they represent the same key.
+     * @param dataType the data type of the key column
+     * @param value the key value
+     * @return the converted value
+     */
+    public static Object getKeyValue(DataType dataType, Object value)
+    {
+        if (value==null || value==ObjectUtils.NO_VALUE || (value instanceof DBExpr))
+            return value;
+        switch (dataType)
+        {
+            case AUTOINC:
+            case INTEGER:
+                return ObjectUtils.getLong(value);
+            case FLOAT:
+                return ObjectUtils.getDouble(value);
+            case DECIMAL:
+                BigDecimal decimal = ObjectUtils.getDecimal(value);
+                return (decimal.signum()==0 ? BigDecimal.ZERO : decimal.stripTrailingZeros());
+            case BOOL:
+                return ObjectUtils.getBoolean(value);
+            case CHAR:
+            case VARCHAR:
+            case CLOB:
+                return StringUtils.toString(value);
+            default:
+                return ObjectUtils.convertValue(dataType, value);
+        }
+    }
+
+    private final int maxRecords;
+    private final EvictionPolicy evictionPolicy;
+    // the key columns of the table
+    private DBColumn[] keyColumns = null;
+    // the cached records (in access order)
+    private final LinkedHashMap<RecordKey, RecordEntry> recordMap;
+    // incremented on each modification
+    private long sequence = 0;
+    // statistics
+    private final AtomicLong hitCount      = new AtomicLong();
+    private final AtomicLong missCount     = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Creates a record cache
+     * @param maxRecords the maximum number of records held by the cache
+     * @param evictionPolicy the policy for evicting records when the cache is full
+     */
+    public DBRecordCache(int maxRecords, EvictionPolicy evictionPolicy)
+    {
+        if (maxRecords<1)
+            throw new InvalidArgumentException("maxRecords", maxRecords);
+        if (evictionPolicy==null)
+            throw new InvalidArgumentException("evictionPolicy", evictionPolicy);
+        // init
+        this.maxRecords = maxRecords;
+        this.evictionPolicy = evictionPolicy;
+        this.recordMap = new LinkedHashMap<RecordKey, RecordEntry>(16, 0.75f, true);
+    }
+
+    /**
+     * Creates a record cache with a least recently used eviction policy
+     * @param maxRecords the maximum number of records held by the cache
+     */
+    public DBRecordCache(int maxRecords)
+    {
+        this(maxRecords, EvictionPolicy.LRU);
+    }
+
+    /**
+     * Returns the maximum number of records held by the cache
+     * @return the maximum number of records
+     */
+    public int getMaxRecords()
+    {
+        return maxRecords;
+    }
+
+    /**
+     * Returns the eviction policy
+     * @return the eviction policy
+     */
+    public EvictionPolicy getEvictionPolicy()
+    {
+        return evictionPolicy;
+    }
+
+    /**
+     * Returns the number of reads that were served from the cache
+     * @return the hit count
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of reads that required a database query
+     * @return the miss count
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of records that have been evicted from the cache
+     * @return the eviction count
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    /**
+     * Returns the number of records currently held by the cache
+     * @return the number of cached records
+     */
+    public synchronized int getSize()
+    {
+        return recordMap.size();
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters
+     */
+    public void resetStatistics()
+    {
+        hitCount.set(0);
+        missCount.set(0);
+        evictionCount.set(0);
+    }
+
+    /**
+     * Returns the key columns of the records
+     * @return the key columns or null if not set
+     */
+    public DBColumn[] getKeyColumns()
+    {
+        return keyColumns;
+    }
+
+    /**
+     * Sets the key columns of the records.<BR>
+     * This is called by DBTable.setRecordCache(). 
+     * The key values are converted according to the data type of the key columns.
+     * @param keyColumns the key columns
+     */
+    public synchronized void setKeyColumns(DBColumn[] keyColumns)
+    {
+        if (this.keyColumns!=null && !Arrays.equals(this.keyColumns, keyColumns))
+            throw new InvalidArgumentException("keyColumns", keyColumns);
+        this.keyColumns = keyColumns;
+    }
+
+    /**
+     * Returns the current modification sequence.<BR>
+     * The sequence must be obtained before a record is read from the database and passed to put()
+     * in order to detect modifications that occurred while the record was read.
+     * @return the modification sequence
+     */
+    public synchronized long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Returns a copy of the field values of a cached record
+     * @param key the record key
+     * @return the field values or null if the record is not cached
+     */
+    public synchronized Object[] get(Object[] key)
+    {
+        RecordEntry entry = recordMap.get(createKey(key));
+        if (entry==null)
+        {   // not cached
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        entry.useCount++;
+        return entry.fields.clone();
+    }
+
+    /**
+     * Returns whether a record is cached.<BR>
+     * Other than get() this does not affect the statistics or the eviction order.
+     * @param key the record key
+     * @return true if the record is cached or false otherwise
+     */
+    public synchronized boolean contains(Object[] key)
+    {
+        return recordMap.containsKey(createKey(key));
+    }
+
+    /**
+     * Adds or replaces the field values of a record.<BR>
+     * Records with fields that have not been loaded (ObjectUtils.NO_VALUE) are not cached.
+     * @param key the record key
+     * @param fields the field values
+     * @param sequence the modification sequence obtained before the record was read
+     * @return true if the record has been added or false otherwise
+     */
+    public synchronized boolean put(Object[] key, Object[] fields, long sequence)
+    {
+        RecordKey recordKey = createKey(key);
+        if (sequence!=this.sequence)
+            fields = null;   // modified while reading
+        if (fields==null || ObjectUtils.contains(fields, ObjectUtils.NO_VALUE))
+        {   // cannot cache
+            recordMap.remove(recordKey);
+            return false;
+        }
+        RecordEntry entry = new RecordEntry(fields.clone());
+        RecordEntry prev = recordMap.put(recordKey, entry);
+        if (prev!=null)
+            entry.useCount = prev.useCount;
+        // check size
+        if (recordMap.size()>maxRecords)
+            evict(recordKey);
+        return true;
+    }
+
+    /**
+     * Removes a record from the cache
+     * @param key the record key
+     */
+    public synchronized void remove(Object[] key)
+    {
+        sequence++;
+        recordMap.remove(createKey(key));
+    }
+
+    /**
+     * Removes all records from the cache
+     */
+    public synchronized void clear()
+    {
+        sequence++;
+        recordMap.clear();
+    }
+
+    /**
+     * Creates the internal key for a record key
+     * @param key the record key
+     * @return the internal key
+     */
+    protected RecordKey createKey(Object[] key)
+    {
+        if (keyColumns!=null)
+            return new RecordKey(keyColumns, key);
+        return new RecordKey(key);
+    }
+
+    /**
+     * Evicts records according to the eviction policy until the maximum size is reached
+     * @param keep the key of the record that has just been added and must not be evicted
+     */
+    protected void evict(RecordKey keep)
+    {
+        while (recordMap.size()>maxRecords)
+        {
+            Iterator<Map.Entry<RecordKey, RecordEntry>> it = recordMap.entrySet().iterator();
+            if (evictionPolicy==EvictionPolicy.LFU)
+            {   // find least frequently used (the least recently used one for equal counts)
+                RecordKey lfuKey = null;
+                long lfuCount = Long.MAX_VALUE;
+                while (it.hasNext())
+                {
+                    Map.Entry<RecordKey, RecordEntry> e = it.next();
+                    if (e.getValue().useCount<lfuCount && !e.getKey().equals(keep))
+                    {   lfuKey = e.getKey();
+                        lfuCount = e.getValue().useCount;
+                    }
+                }
+                recordMap.remove(lfuKey);
+            }
+            else
+            {   // least recently used
+                it.next();
+                it.remove();
+            }
+            evictionCount.incrementAndGet();
+        }
+    }
+}
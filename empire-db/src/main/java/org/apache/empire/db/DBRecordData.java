@@ -197,7 +197,7 @@ public abstract class DBRecordData extends DBObject
      * @param index index of the column
      * @return the record value
      */
-    public final int getInt(int index)
+    public int getInt(int index)
     {
         // return ObjectUtils.getInteger(getValue(index));
         Integer value = getValue(index, Integer.class); 
@@ -223,7 +223,7 @@ public abstract class DBRecordData extends DBObject
      * @param index index of the column
      * @return the value
      */
-    public final long getLong(int index)
+    public long getLong(int index)
     {
         // return ObjectUtils.getLong(getValue(index));
         Long value = getValue(index, Long.class);
@@ -46,13 +46,20 @@ public class DBRelation extends DBObject
      *            by the framework and for each record DBRowSet.deleteRecord() will be called. 
      *            The option "ON DELETE CASCADE" will NOT be added to the DDL generated for the relation. 
      * 
+     * - CASCADE_STATEMENTS: Like CASCADE_RECORDS the cascade is handled in code, but depending records are deleted
+     *            with a single DELETE statement per table using subqueries on the parent (DELETE ... WHERE fk IN (SELECT ...)).
+     *            The statements are executed bottom-up in the order of dependencies. DBRowSet.deleteRecord() is only 
+     *            called for records depending on a CASCADE_RECORDS relation further down.
+     *            The option "ON DELETE CASCADE" will NOT be added to the DDL generated for the relation. 
+     * 
      * </pre>
      */
     public static enum DBCascadeAction
     {
         NONE,
         CASCADE,
-        CASCADE_RECORDS
+        CASCADE_RECORDS,
+        CASCADE_STATEMENTS
     }
 
 	public static class DBReference // *Deprecated* implements Serializable
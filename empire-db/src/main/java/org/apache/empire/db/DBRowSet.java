@@ -57,6 +57,7 @@ import org.apache.empire.db.expr.join.DBCrossJoinExpr;
 import org.apache.empire.db.list.DBBeanFactoryCache;
 import org.apache.empire.db.list.DBBeanListFactory;
 import org.apache.empire.db.list.DBBeanListFactoryImpl;
+import org.apache.empire.db.list.DBKeyedList;
 import org.apache.empire.dbms.DBMSFeature;
 import org.apache.empire.dbms.DBMSHandler;
 import org.apache.empire.dbms.DBSqlPhrase;
@@ -112,6 +113,73 @@ public abstract class DBRowSet extends DBExpr implements Entity
         }
     }
 
+    /**
+     * DBRecordStatement
+     * Holds the insert or update statement of a record until it has been executed
+     */
+    protected static class DBRecordStatement
+    {
+        private final DBRecordBase   record;
+        private final String         sqlCmd;
+        private final Object[]       sqlParams;
+        private final DBSetRecordKey setGenKeys;
+        private final Timestamp      timestamp;
+        private final int[]          returnFields;
+        
+        public DBRecordStatement(DBRecordBase record, String sqlCmd, Object[] sqlParams, DBSetRecordKey setGenKeys, Timestamp timestamp, int[] returnFields)
+        {
+            this.record = record;
+            this.sqlCmd = sqlCmd;
+            this.sqlParams = sqlParams;
+            this.setGenKeys = setGenKeys;
+            this.timestamp = timestamp;
+            this.returnFields = returnFields;
+        }
+        
+        public DBRecordStatement(DBRecordBase record, String sqlCmd, Object[] sqlParams, DBSetRecordKey setGenKeys, Timestamp timestamp)
+        {
+            this(record, sqlCmd, sqlParams, setGenKeys, timestamp, null);
+        }
+
+        public DBRecordBase getRecord()
+        {
+            return record;
+        }
+
+        public String getSqlCmd()
+        {
+            return sqlCmd;
+        }
+
+        public Object[] getSqlParams()
+        {
+            return sqlParams;
+        }
+
+        /**
+         * Returns the callback for setting the generated key or null if no generated key is required
+         * @return the callback or null
+         */
+        public DBMSHandler.DBSetGenKeys getSetGenKeys()
+        {
+            return setGenKeys;
+        }
+
+        public Timestamp getTimestamp()
+        {
+            return timestamp;
+        }
+
+        /**
+         * Returns the indexes of the fields whose values are generated by the database and returned by the insert statement
+         * @return the field indexes or null if no values are returned
+         */
+        public int[] getReturnFields()
+        {
+            return returnFields;
+        }
+    }
+
     // Logger
     protected static final Logger                log         = LoggerFactory.getLogger(DBRowSet.class);
 
@@ -879,7 +947,87 @@ public abstract class DBRowSet extends DBExpr implements Entity
         }
         return compareExpr;
     }
-    
+
+    /**
+     * Returns the constraints for selecting multiple records by their primary keys.<BR>
+     * For a single key column an IN-list is used. For composite keys the key constraints are combined with OR.
+     * @param keys the record keys
+     * @param cmd the command to which the key values are added as parameters if prepared statements are enabled
+     * @return the key list constraint expression
+     */
+    protected DBCompareExpr getKeyListConstraints(List<Object[]> keys, DBCommand cmd)
+    {
+        // Check Primary key
+        DBColumn[] keyColumns = getKeyColumns();
+        if (keyColumns==null || keyColumns.length==0)
+            throw new NoPrimaryKeyException(this); // Invalid Argument
+        return getValueListConstraints(keyColumns, keys, cmd);
+    }
+
+    /**
+     * Returns the constraints for selecting all rows which match any of the given value combinations.<BR>
+     * For a single column an IN-list is used. For multiple columns or null values the constraints are combined with OR.
+     * @param columns the columns to compare
+     * @param values the list of value combinations (one value for each column)
+     * @param cmd the command to which the values are added as parameters if prepared statements are enabled
+     * @return the constraint expression
+     */
+    protected DBCompareExpr getValueListConstraints(DBColumn[] columns, List<Object[]> values, DBCommand cmd)
+    {
+        if (values==null || values.isEmpty())
+            throw new InvalidArgumentException("values", values);
+        // Single column without null values
+        if (columns.length==1 && !containsNullValue(values))
+        {   // use IN-list
+            DBColumn column = columns[0];
+            boolean prepared = (cmd!=null && cmd.isPreparedStatementsEnabled());
+            Object[] inValues = new Object[values.size()];
+            for (int i=0; i<inValues.length; i++)
+            {   // prepare value
+                Object value = values.get(i)[0];
+                inValues[i] = (prepared ? cmd.addParam(column, value) : value);
+            }
+            return column.in(inValues);
+        }
+        // Multiple columns
+        return getValueListConstraints(columns, values, 0, values.size());
+    }
+
+    /**
+     * Combines the constraints of a range of value combinations with OR.<BR>
+     * The expressions are combined as a balanced tree in order to limit the nesting depth.
+     * @param columns the columns to compare
+     * @param values the list of value combinations
+     * @param from the index of the first value combination
+     * @param to the index after the last value combination
+     * @return the combined constraints
+     */
+    private DBCompareExpr getValueListConstraints(DBColumn[] columns, List<Object[]> values, int from, int to)
+    {
+        if (to-from==1)
+        {   // compare all columns
+            Object[] value = values.get(from);
+            if (value==null || value.length!=columns.length)
+                throw new InvalidArgumentException("values", value);
+            DBCompareExpr compareExpr = columns[0].is(value[0]);
+            for (int i=1; i<columns.length; i++)
+                compareExpr = compareExpr.and(columns[i].is(value[i]));
+            return compareExpr;
+        }
+        int mid = (from + to) >>> 1;
+        return getValueListConstraints(columns, values, from, mid).or(getValueListConstraints(columns, values, mid, to));
+    }
+
+    private static boolean containsNullValue(List<Object[]> values)
+    {
+        for (Object[] value : values)
+        {
+            if (value==null || ObjectUtils.contains(value, null))
+                return true;
+        }
+        return false;
+    }
+
     /**
      * Reads a single record from the database using the given command object.<BR>
      * If a record is found the DBRecord object will hold all record data. 
@@ -930,19 +1078,14 @@ public abstract class DBRowSet extends DBExpr implements Entity
      * 
      * @param record the DBRecord object which will hold the record data
      * @param key the primary key values
-    public <R extends DBRecordBase> void readRecord(R record, Object[] key)
+     */
+    public void readRecord(DBRecordBase record, Object[] key)
     {
         // Check Arguments
         checkParamNull("key", key);
-        // Select
-        DBCommand cmd = createRecordCommand(record.getContext());
-        cmd.select(columns);
-        // Set key constraints
-        setKeyConstraints(cmd, key);
         // Read Record
-        readRecord(record, cmd);
+        readRecord(record, getKeyConstraints(key));
     }
-     */
    
     /**
      * Reads a record from the database
@@ -1038,6 +1181,21 @@ public abstract class DBRowSet extends DBExpr implements Entity
     {
         return recordExists(Record.key(id), context); 
     }
+
+    /**
+     * Reads the records for a list of primary keys using a minimum number of queries.<BR>
+     * The records are returned in the order of the keys together with the keys for which no record has been found.
+     * 
+     * @param context the DBContext
+     * @param keys the primary keys of the records
+     * @param recordType the record class
+     * @return the records and the missing keys
+     */
+    public <R extends DBRecordBase> DBKeyedList<R> readRecords(DBContext context, Object[][] keys, Class<R> recordType)
+    {
+        checkParamNull("context", context);
+        return context.getUtils().queryRecordList(this, keys, recordType);
+    }
     
     /**
      * Updates or Inserts a record in the database.<BR>
@@ -1059,24 +1217,175 @@ public abstract class DBRowSet extends DBExpr implements Entity
             throw new NotSupportedException(this, "updateRecord");
         // Check Arguments
         checkParamRecord(record, true);
+        // Build SQL-Statement
+        DBContext context = record.getContext();
+        DBRecordStatement stmt = prepareUpdateRecord(record, createRecordCommand(context));
+        if (stmt==null)
+            return; // nothing to do
+        // Perform action
+        int affected = executeRecordStatement(stmt, context.getUtils());
+        completeUpdateRecord(stmt, affected);
+    }
+    
+    /**
+     * Inserts or updates a record in the database using a single statement.<BR>
+     * Other than with updateRecord() the record state does not determine whether an insert or an update is performed:
+     * If a row with the same primary key exists, it is updated, otherwise a new row is inserted.<BR>
+     * All primary key fields must be set. For new records all non-empty fields are written, for modified records only the modified fields.<BR>
+     * The timestamp column is set but not checked, i.e. concurrent changes are not detected.<BR>
+     * If the dbms does not support DBMSFeature.UPSERT an update is performed and an insert only if no row was affected.<BR>
+     * For new records empty auto-generated columns are set as for an insert, values of a DBGeneratedValue are re-evaluated as for an update.
+     * <P>
+     * @param <R> the record type
+     * @param record the DBRecord object. contains all fields and the field properties
+     */
+    public <R extends DBRecordBase> void upsertRecord(R record)
+    {
+        // check updateable
+        if (isUpdateable()==false)
+            throw new NotSupportedException(this, "upsertRecord");
+        // Check Arguments
+        checkParamRecord(record, true);
+        DBRecordBase.State recordState = record.getState(); 
+        if (recordState!=DBRecordBase.State.New && recordState!=DBRecordBase.State.Modified)
+        {   // Not modified
+            log.info("upsertRecord: {} record has not been modified!", getName());
+            return;
+        }
+        DBColumn[] keyColumns = getKeyColumns();
+        if (keyColumns == null)
+        {   // Requires a primary key
+            log.error("upsertRecord: {} no primary key defined!", getName());
+            throw new NoPrimaryKeyException(this);
+        }
+        // the connection
+        DBContext context = record.getContext();
+        Connection conn = context.getConnection();
+        boolean upsert = context.getDbms().isSupported(DBMSFeature.UPSERT);
+        // Build SQL-Statements
+        DBCommand cmd = createRecordCommand(context);
+        DBCommand upd = (upsert ? null : createRecordCommand(context));
+        Timestamp timestamp = null;
+        Object[] fields = record.getFields();
+        for (int i = 0; i < columns.size(); i++)
+        {   // search for the column
+            Object value = fields[i];
+            DBColumn col = columns.get(i);
+            if (ObjectUtils.contains(keyColumns, col))
+            {   // All primary key fields must be supplied
+                if (value==ObjectUtils.NO_VALUE || ObjectUtils.isEmpty(value))
+                    throw new FieldNotNullException(col);
+                cmd.set(col.to(value));
+                if (upd!=null)
+                    upd.where(col.is(value));
+                continue;
+            }
+            boolean generated = (col instanceof DBTableColumn) && col.isAutoGenerated();
+            boolean genValue = generated && (((DBTableColumn)col).getDefaultValue() instanceof DBGeneratedValue);
+            if (timestampColumn == col)
+            {   // set new timestamp
+                timestamp = context.getDbms().getUpdateTimestamp(conn);
+                if (timestamp==null)
+                    continue;
+                value = timestamp;
+            }
+            else if (generated && (recordState==DBRecordBase.State.New || genValue))
+            {   // Generated values
+                boolean empty = (value==ObjectUtils.NO_VALUE || ObjectUtils.isEmpty(value));
+                boolean insert = (recordState==DBRecordBase.State.New);
+                if (insert && !empty)
+                {   // value provided
+                    cmd.set(col.to(value));
+                    if (upd!=null)
+                        upd.set(col.to(value));
+                    continue;
+                }
+                if (insert && col.getDataType()==DataType.AUTOINC && context.getDbms().isSupported(DBMSFeature.SEQUENCES)==false)
+                    continue; // generated by the database on insert
+                value = getGeneratedValue(record, (DBTableColumn)col, i, insert, conn);
+                if (value==ObjectUtils.NO_VALUE || (insert && ObjectUtils.isEmpty(value)))
+                    continue;
+                // Set the column
+                cmd.set(col.to(value));
+                if (upd!=null && genValue)
+                    upd.set(col.to(value)); // sequence values only for the insert
+                continue;
+            }
+            else if (value==ObjectUtils.NO_VALUE)
+                continue;
+            else if (recordState==DBRecordBase.State.New ? ObjectUtils.isEmpty(value) : !record.wasModified(i))
+                continue;
+            // Set the column
+            cmd.set(col.to(value));
+            if (upd!=null)
+                upd.set(col.to(value));
+        }
+        // Perform action
+        DBUtils utils = context.getUtils();
+        int affected;
+        if (upsert)
+        {   // single statement
+            affected = utils.executeSQL(cmd.getUpsert(keyColumns), cmd.getParamValues(), null);
+        }
+        else
+        {   // update first
+            String sqlUpdate = upd.getUpdate();
+            if (sqlUpdate!=null)
+                affected = utils.executeSQL(sqlUpdate, upd.getParamValues(), null);
+            else
+                affected = (recordExists(record.getKey(), context) ? 1 : 0);
+            // insert
+            if (affected==0)
+                affected = utils.executeSQL(cmd.getInsert(), cmd.getParamValues(), null);
+        }
+        if (affected < 0)
+        {   // Upsert Failed
+            throw new UnexpectedReturnValueException(affected, "db.executeSQL()");
+        }
+        // Correct Timestamp
+        if (timestampColumn!=null && timestamp!=null)
+        {   // Set the correct Timestamp
+            int i = record.getFieldIndex(timestampColumn);
+            if (i >= 0)
+                fields[i] = timestamp;
+        }
+        // Change State
+        record.updateComplete();        
+        // notify
+        onRecordUpdated(record);
+    }
+    
+    /**
+     * Creates the insert or update statement for a record.<BR>
+     * Values of auto-generated columns and the new update timestamp are set in the statement.
+     * The record state is not changed until completeUpdateRecord() is called.
+     * @param record the record to insert or update
+     * @param cmd the command used to build the statement
+     * @return the record statement or null if there is nothing to insert or update
+     */
+    protected DBRecordStatement prepareUpdateRecord(DBRecordBase record, DBCommand cmd)
+    {
         // the connection
         DBContext context = record.getContext();
         Connection conn = context.getConnection();
         // Get the new Timestamp
         String name = getName();
         Timestamp timestamp = null;
-        DBMSHandler.DBSetGenKeys setGenKey = null;
+        DBSetRecordKey setGenKey = null;
         // Get the fields and the flags
         Object[] fields = record.getFields();
         // Build SQL-Statement
-        DBCommand cmd = createRecordCommand(context);
         String sql = null;
         int setCount = 0;
         // Perform action
         DBColumn[] keyColumns = getKeyColumns();
         DBRecordBase.State recordState = record.getState(); 
+        List<Integer> returnFields = null;
         if (recordState==DBRecordBase.State.New)
         {	// Insert Record
+            boolean returning = context.getDbms().isSupported(DBMSFeature.INSERT_RETURNING);
+            if (returning)
+                returnFields = new ArrayList<Integer>();
             for (int i = 0; i < columns.size(); i++)
             {   // search for the column
             	Object value = fields[i];
@@ -1098,9 +1407,7 @@ public abstract class DBRowSet extends DBExpr implements Entity
                        continue;
                     }
                     // get the auto-generated field value
-                    value = col.getRecordDefaultValue(record, conn);
-                    // set updated value
-                    fields[i] = (value instanceof DBExpr) ? ObjectUtils.NO_VALUE : value;
+                    value = getGeneratedValue(record, col, i, true, conn);
                     if (value==ObjectUtils.NO_VALUE)
                         continue;
                     // set empty
@@ -1114,6 +1421,9 @@ public abstract class DBRowSet extends DBExpr implements Entity
                     // Insert a field
                     cmd.set(col.to(value));
                     setCount++;
+                    // Value generated by the database
+                    if (returning && (value instanceof DBExpr))
+                        returnFields.add(i);
                 }
                 else if (ObjectUtils.contains(keyColumns, col))
                 {   // All primary key fields must be supplied
@@ -1123,8 +1433,26 @@ public abstract class DBRowSet extends DBExpr implements Entity
                 {   // Error Column is required!
                     throw new FieldNotNullException(col);
                 }
+                else if (returning && !col.isAutoGenerated() && (value==ObjectUtils.NO_VALUE || col.getDefaultValue()!=null))
+                {   // Not set or column default of the database
+                    returnFields.add(i);
+                }
+            }
+            // generated key is returned by the insert statement as well
+            if (returnFields!=null && !returnFields.isEmpty() && setGenKey!=null)
+            {   returnFields.add(0, setGenKey.index);
+                setGenKey = null;
             }
-            sql = cmd.getInsert();
+            // the statement
+            if (returnFields!=null && !returnFields.isEmpty())
+            {   // fields returned by the insert statement
+                DBColumn[] returnColumns = new DBColumn[returnFields.size()];
+                for (int i=0; i<returnColumns.length; i++)
+                    returnColumns[i] = columns.get(returnFields.get(i));
+                sql = cmd.getInsert(returnColumns);
+            }
+            else
+                sql = cmd.getInsert();
         }
         else if (recordState==DBRecordBase.State.Modified)
         {	// Update Record
@@ -1169,17 +1497,11 @@ public abstract class DBRowSet extends DBExpr implements Entity
                 } 
                 else if (col.isAutoGenerated() && (col.getDefaultValue() instanceof DBGeneratedValue))
                 { // Update generated value
-                    DBGeneratedValue genValue = ((DBGeneratedValue) col.getDefaultValue());
-                    if (genValue.isModified(record))
-                    { // value has changed
-                        value = genValue.eval(record);
-                        if (value!=ObjectUtils.NO_VALUE)
-                        {   // Set the column
-                            cmd.set(col.to(value));
-                            setCount++;
-                        }
-                        // set updated value
-                        fields[i] = (value instanceof DBExpr) ? ObjectUtils.NO_VALUE : value;
+                    value = getGeneratedValue(record, col, i, false, conn);
+                    if (value!=ObjectUtils.NO_VALUE)
+                    {   // Set the column
+                        cmd.set(col.to(value));
+                        setCount++;
                     }
                 }
                 else if (modified)
@@ -1197,16 +1519,95 @@ public abstract class DBRowSet extends DBExpr implements Entity
         else
         {	// Not modified
             log.info("updateRecord: {} record has not been modified!", name);
-            return;
+            return null;
         }
         if (setCount == 0)
         {   // Nothing to update
             log.info("updateRecord: {} nothing to update or insert!", name);
-            return;
+            return null;
         }
-        // Perform action
-        DBUtils utils = context.getUtils();
-        int affected = utils.executeSQL(sql, cmd.getParamValues(), setGenKey);
+        // the statement
+        int[] returnIndexes = null;
+        if (returnFields!=null && !returnFields.isEmpty())
+        {   // fields returned by the insert statement
+            returnIndexes = new int[returnFields.size()];
+            for (int i=0; i<returnIndexes.length; i++)
+                returnIndexes[i] = returnFields.get(i);
+        }
+        return new DBRecordStatement(record, sql, cmd.getParamValues(), setGenKey, timestamp, returnIndexes);
+    }
+
+    /**
+     * Returns the value of an auto-generated column for an insert or update statement.<BR>
+     * For an insert the column's record default value is obtained (e.g. the next sequence value).
+     * For an update the value is only evaluated if the column has a DBGeneratedValue which depends on modified fields.<BR>
+     * The record field is set to the generated value or to NO_VALUE if the value is generated by the database.
+     * @param record the record
+     * @param col the auto-generated column
+     * @param index the field index of the column
+     * @param insert true for an insert or false for an update
+     * @param conn the connection
+     * @return the value to set in the statement or NO_VALUE if the column is not set
+     */
+    protected Object getGeneratedValue(DBRecordBase record, DBTableColumn col, int index, boolean insert, Connection conn)
+    {
+        Object value;
+        if (insert)
+        {   // get the auto-generated field value
+            value = col.getRecordDefaultValue(record, conn);
+        }
+        else if (col.getDefaultValue() instanceof DBGeneratedValue)
+        {   // Update generated value
+            DBGeneratedValue genValue = ((DBGeneratedValue) col.getDefaultValue());
+            if (!genValue.isModified(record))
+                return ObjectUtils.NO_VALUE; // not changed
+            value = genValue.eval(record);
+        }
+        else
+        {   // not generated on update
+            return ObjectUtils.NO_VALUE;
+        }
+        // set updated value
+        record.getFields()[index] = (value instanceof DBExpr) ? ObjectUtils.NO_VALUE : value;
+        return value;
+    }
+
+    /**
+     * Executes the insert or update statement of a record.<BR>
+     * If the statement returns database generated values, these are set on the record's fields.
+     * @param stmt the record statement
+     * @param utils the DBUtils used for execution
+     * @return the number of affected records
+     */
+    protected int executeRecordStatement(DBRecordStatement stmt, DBUtils utils)
+    {
+        int[] returnFields = stmt.getReturnFields();
+        if (returnFields==null)
+            return utils.executeSQL(stmt.getSqlCmd(), stmt.getSqlParams(), stmt.getSetGenKeys());
+        // Insert returning
+        DBColumn[] returnColumns = new DBColumn[returnFields.length];
+        for (int i=0; i<returnFields.length; i++)
+            returnColumns[i] = columns.get(returnFields[i]);
+        Object[] returnValues = new Object[returnFields.length];
+        int affected = utils.executeInsertReturning(stmt.getSqlCmd(), stmt.getSqlParams(), returnColumns, returnValues);
+        if (affected>0)
+        {   // set generated values
+            Object[] fields = stmt.getRecord().getFields();
+            for (int i=0; i<returnFields.length; i++)
+                fields[returnFields[i]] = returnValues[i];
+        }
+        return affected;
+    }
+    
+    /**
+     * Completes the insert or update of a record after the record statement has been executed.<BR>
+     * This checks the number of affected records, sets the new timestamp and changes the record state.
+     * @param stmt the record statement
+     * @param affected the number of records affected by the statement
+     */
+    protected void completeUpdateRecord(DBRecordStatement stmt, int affected)
+    {
+        DBRecordBase record = stmt.getRecord();
         if (affected < 0)
         {   // Update Failed
             throw new UnexpectedReturnValueException(affected, "db.executeSQL()");
@@ -1220,14 +1621,58 @@ public abstract class DBRowSet extends DBExpr implements Entity
             throw new RecordUpdateAmbiguousException(this, record.getKey());
         }
         // Correct Timestamp
-        if (timestampColumn!=null && timestamp!=null)
+        if (timestampColumn!=null && stmt.getTimestamp()!=null)
         {   // Set the correct Timestamp
             int i = record.getFieldIndex(timestampColumn);
             if (i >= 0)
-                fields[i] = timestamp;
+                record.getFields()[i] = stmt.getTimestamp();
         }
         // Change State
         record.updateComplete();        
+        // notify
+        onRecordUpdated(record);
+    }
+
+    /**
+     * Called after a record of this rowset has been inserted or updated.<BR>
+     * The default implementation invalidates the query cache.
+     * @param record the record that has been inserted or updated
+     */
+    protected void onRecordUpdated(DBRecordBase record)
+    {
+        invalidateQueryCache(record.getContext());
+    }
+
+    /**
+     * Called after a record of this rowset has been deleted.<BR>
+     * The default implementation invalidates the query cache.
+     * @param key the key of the record that has been deleted
+     * @param context the context which has deleted the record
+     */
+    protected void onRecordDeleted(Object[] key, DBContext context)
+    {
+        invalidateQueryCache(context);
+    }
+
+    /**
+     * Called after rows of this rowset have been inserted, updated or deleted by a statement.<BR>
+     * The default implementation invalidates the query cache.
+     * @param context the context which has modified the rows
+     */
+    public void onRowsModified(DBContext context)
+    {
+        invalidateQueryCache(context);
+    }
+
+    /**
+     * Invalidates all cached query results which depend on this rowset (see DBDatabase.setQueryCache()).
+     * @param context the context which has modified the rowset
+     */
+    protected void invalidateQueryCache(DBContext context)
+    {
+        DBQueryCache queryCache = db.getQueryCache();
+        if (queryCache!=null)
+            queryCache.invalidate(this, context);
     }
     
     /**
@@ -1257,14 +1702,18 @@ public abstract class DBRowSet extends DBExpr implements Entity
         // Find all relations
         for (DBRelation rel : relations)
         {   // Check cascade
-            if (rel.getOnDeleteAction()!=DBCascadeAction.CASCADE_RECORDS)
+            DBCascadeAction action = rel.getOnDeleteAction();
+            if (action!=DBCascadeAction.CASCADE_RECORDS && action!=DBCascadeAction.CASCADE_STATEMENTS)
                 continue;
             // References
             if (rel.isOnColumns(keyColumns))
             {   // Found a reference on RowSet
                 DBReference[] refs = rel.getReferences();
                 DBRowSet rs = refs[0].getSourceColumn().getRowSet(); 
-                rs.deleteReferenceRecords(refs, key, context);
+                if (action==DBCascadeAction.CASCADE_STATEMENTS)
+                    rs.deleteReferenceRows(refs, key, context);
+                else
+                    rs.deleteReferenceRecords(refs, key, context);
             }
         }
     }
@@ -1316,6 +1765,88 @@ public abstract class DBRowSet extends DBExpr implements Entity
         }
         // Done
     }
+
+    /**
+     * Deletes all records which are referenced by a particular relation using set based DELETE statements.
+     * <P>
+     * @param refs the reference columns belonging to the relation
+     * @param parentKey the key of the parent element
+     * @param context the DBContext
+     */
+    protected void deleteReferenceRows(DBReference[] refs, Object[] parentKey, DBContext context)
+    {
+        // Key length and reference length must match
+        if (refs.length!=parentKey.length)
+            throw new InvalidArgumentException("refs", refs);
+        // Reference constraints
+        DBCompareExpr constraint = refs[0].getSourceColumn().is(parentKey[0]);
+        for (int i=1; i<parentKey.length; i++)
+            constraint = constraint.and(refs[i].getSourceColumn().is(parentKey[i]));
+        // Delete
+        deleteRows(constraint, context, new HashSet<DBRowSet>());
+    }
+
+    /**
+     * Deletes all rows matching a constraint after deleting all depending rows.<BR>
+     * Depending rows of CASCADE_STATEMENTS relations are deleted using subqueries on this rowset.
+     * Relations on multiple columns or relations leading back to a rowset which is currently being deleted
+     * are resolved by querying the parent keys first.
+     * <P>
+     * @param constraint the constraint for the rows to delete
+     * @param context the DBContext
+     * @param path the rowsets currently being deleted
+     */
+    protected void deleteRows(DBCompareExpr constraint, DBContext context, Set<DBRowSet> path)
+    {
+        if (!(this instanceof DBTable))
+            throw new NotSupportedException(this, "deleteRows");
+        // Delete depending rows first
+        DBColumn[] keyColumns = getKeyColumns();
+        if (keyColumns!=null && keyColumns.length>0)
+        {   path.add(this);
+            for (DBRelation rel : db.getRelations())
+            {   // Check cascade
+                DBCascadeAction action = rel.getOnDeleteAction();
+                if (action!=DBCascadeAction.CASCADE_RECORDS && action!=DBCascadeAction.CASCADE_STATEMENTS)
+                    continue;
+                if (!rel.isOnColumns(keyColumns))
+                    continue;
+                // Found a reference on RowSet
+                DBReference[] refs = rel.getReferences();
+                DBRowSet rs = refs[0].getSourceColumn().getRowSet();
+                if (action==DBCascadeAction.CASCADE_STATEMENTS && refs.length==1 && !path.contains(rs))
+                {   // Use subquery
+                    DBCommand subCmd = createRecordCommand(context);
+                    subCmd.select(refs[0].getTargetColumn());
+                    subCmd.where(constraint.copy(subCmd));
+                    rs.deleteRows(refs[0].getSourceColumn().in(subCmd), context, path);
+                    continue;
+                }
+                // Query parent keys
+                DBCommand cmd = createRecordCommand(context);
+                for (int i=0; i<refs.length; i++)
+                    cmd.select(refs[i].getTargetColumn());
+                cmd.where(constraint.copy(cmd));
+                List<Object[]> parentKeys = context.getUtils().queryObjectList(cmd);
+                for (Object[] parentKey : parentKeys)
+                {
+                    if (action==DBCascadeAction.CASCADE_STATEMENTS)
+                        rs.deleteReferenceRows(refs, parentKey, context);
+                    else
+                        rs.deleteReferenceRecords(refs, parentKey, context);
+                }
+            }
+            path.remove(this);
+        }
+        // Delete rows
+        DBCommand cmd = createRecordCommand(context);
+        cmd.where(constraint.copy(cmd));
+        int affected = context.executeDelete((DBTable)this, cmd);
+        if (affected<0)
+            throw new UnexpectedReturnValueException(affected, "db.executeSQL()");
+        if (log.isInfoEnabled())
+            log.info("{} rows deleted from table {}", affected, getName());
+    }
     
     /**
      *  Creates a new command object for record handing
@@ -22,7 +22,9 @@ import java.sql.Connection;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.empire.commons.ObjectUtils;
@@ -32,9 +34,12 @@ import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBIndex.DBIndexType;
 import org.apache.empire.db.DBRelation.DBCascadeAction;
 import org.apache.empire.db.DBRelation.DBReference;
+import org.apache.empire.db.exceptions.InvalidKeyException;
 import org.apache.empire.db.exceptions.NoPrimaryKeyException;
 import org.apache.empire.db.exceptions.RecordDeleteFailedException;
+import org.apache.empire.db.exceptions.RecordNotFoundException;
 import org.apache.empire.db.exceptions.RecordUpdateFailedException;
+import org.apache.empire.db.expr.compare.DBCompareExpr;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.apache.empire.exceptions.InvalidOperationException;
 import org.apache.empire.exceptions.ItemExistsException;
@@ -75,6 +80,10 @@ public class DBTable extends DBRowSet implements Cloneable
     private final List<DBIndex>  indexes             = new ArrayList<DBIndex>();
     private Boolean              quoteName           = null;
     private DBCascadeAction      cascadeDeleteAction = DBCascadeAction.NONE;
+    // the compiled command for reading records by primary key
+    private volatile DBCompiledCommand readRecordCmd = null;
+    // the record cache (optional)
+    private DBRecordCache recordCache = null;
     
     /**
      * Construct a new DBTable object set the specified parameters
@@ -184,6 +193,7 @@ public class DBTable extends DBRowSet implements Cloneable
     {
         DBTable clone = (DBTable) super.clone();
         initClonedFields(clone);
+        clone.readRecordCmd = null;
         // set primaryKey
         clone.primaryKey = clonePrimaryKey(clone);
         // set new alias
@@ -200,6 +210,7 @@ public class DBTable extends DBRowSet implements Cloneable
         try {
             DBTable clone = (DBTable) super.clone();
             initClonedFields(clone);
+            clone.readRecordCmd = null;
             // set primaryKey
             clone.primaryKey = clonePrimaryKey(clone);
             // set new alias
@@ -250,6 +261,7 @@ public class DBTable extends DBRowSet implements Cloneable
             throw new ItemExistsException(column.getName());
         // add now
         columns.add(column);
+        readRecordCmd = null;
     }
 
     /**
@@ -553,6 +565,7 @@ public class DBTable extends DBRowSet implements Cloneable
             removeIndex(primaryKey);
         }
         // Set primary Key now
+        readRecordCmd = null;
         if (columns.length>0)
         {   // create primary key
             primaryKey = new DBIndex(name + "_PK", DBIndexType.PRIMARY_KEY, columns);
@@ -677,48 +690,343 @@ public class DBTable extends DBRowSet implements Cloneable
         super.initRecord(record, initalKey, fieldInitMode, true);
     }
     
+    /**
+     * Reads the record with the given primary key from the database.<BR>
+     * The select statement is compiled only once and reused for subsequent reads.
+     * If the record cannot be found, a RecordNotFoundException is thrown.
+     * 
+     * @param record the DBRecord object which will hold the record data
+     * @param key the primary key values
+     */
+    @Override
+    public void readRecord(DBRecordBase record, Object[] key)
+    {
+        // Check Primary key
+        DBColumn[] keyColumns = getKeyColumns();
+        if (keyColumns==null || keyColumns.length==0) 
+            throw new NoPrimaryKeyException(this);
+        if (key == null || key.length != keyColumns.length)
+            throw new InvalidKeyException(this, key);
+        // Check key values
+        for (int i=0; i<key.length; i++)
+        {   // null or expression
+            if (key[i]==null || (key[i] instanceof DBExpr))
+            {   // cannot use compiled command
+                super.readRecord(record, key);
+                return;
+            }
+        }
+        // check param
+        checkParamRecord(record, false);
+        // check record cache
+        DBRecordCache cache = recordCache;
+        long sequence = 0;
+        if (cache!=null)
+        {   // find cached record
+            Object[] fields = cache.get(key);
+            if (fields!=null)
+            {   // init from cache
+                initRecordFromCache(record, fields);
+                return;
+            }
+            sequence = cache.getSequence();
+        }
+        // read now
+        DBContext context = record.getContext();
+        DBCompiledCommand cmd = getReadRecordCommand(context);
+        DBReader reader = new DBReader(context, false);
+        try
+        {   // read record using a DBReader
+            reader.open(cmd, key, false);
+            if (!reader.moveNext())
+            {   // not found
+                if (log.isInfoEnabled())
+                    log.info("Record [{}] not found in {}", StringUtils.toString(key), getName());
+                throw new RecordNotFoundException(this, key);
+            }
+            initRecord(record, reader);
+        } finally {
+            reader.close();
+        }
+        // add to cache
+        if (cache!=null)
+            cache.put(key, record.getFields(), sequence);
+    }
+
+    /**
+     * Returns true if the record exists in the database or false otherwise.<BR>
+     * If a record cache is set and the record is cached, no query is executed. 
+     * <P>
+     * @param key an array of the primary key columns
+     * @param context the DBContext
+     * @return true if the record exists or false otherwise
+     */
+    @Override
+    public boolean recordExists(Object[] key, DBContext context)
+    {
+        if (recordCache!=null && key!=null && recordCache.contains(key))
+            return true;
+        // query
+        return super.recordExists(key, context);
+    }
+
+    /**
+     * Returns the record cache of this table
+     * @return the record cache or null if records are not cached
+     */
+    public DBRecordCache getRecordCache()
+    {
+        return recordCache;
+    }
+
+    /**
+     * Sets a record cache for this table.<BR>
+     * If set, readRecord() and recordExists() for a primary key are served from the cache if possible.
+     * See {@link DBRecordCache} for details and limitations. 
+     * @param recordCache the record cache or null to disable caching
+     */
+    public void setRecordCache(DBRecordCache recordCache)
+    {
+        if (recordCache!=null)
+        {   // requires a primary key
+            if (primaryKey==null)
+                throw new NoPrimaryKeyException(this);
+            recordCache.setKeyColumns(getKeyColumns());
+        }
+        this.recordCache = recordCache;
+    }
+
+    /**
+     * Initializes a record with the field values obtained from the record cache
+     * @param record the record to initialize
+     * @param fields the cached field values
+     */
+    protected void initRecordFromCache(DBRecordBase record, Object[] fields)
+    {
+        prepareInitRecord(record, false);
+        Object[] recordFields = record.getFields();
+        System.arraycopy(fields, 0, recordFields, 0, recordFields.length);
+        completeInitRecord(record);
+    }
+
+    /**
+     * Removes the record from the record cache if the update failed (e.g. because of a concurrent change)
+     */
+    @Override
+    protected void completeUpdateRecord(DBRecordStatement stmt, int affected)
+    {
+        try {
+            super.completeUpdateRecord(stmt, affected);
+        } catch(RecordUpdateFailedException e) {
+            // record may be outdated
+            if (recordCache!=null)
+                recordCache.remove(stmt.getRecord().getKey());
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the record from the record cache.<BR>
+     * The record is not put into the cache since fields may have been modified by the database (e.g. by expressions or defaults)
+     */
+    @Override
+    protected void onRecordUpdated(DBRecordBase record)
+    {
+        super.onRecordUpdated(record);
+        if (recordCache!=null)
+            recordCache.remove(record.getKey());
+    }
+
+    /**
+     * Removes the record from the record cache
+     */
+    @Override
+    protected void onRecordDeleted(Object[] key, DBContext context)
+    {
+        super.onRecordDeleted(key, context);
+        if (recordCache!=null)
+            recordCache.remove(key);
+    }
+
+    /**
+     * Clears the record cache
+     */
+    @Override
+    public void onRowsModified(DBContext context)
+    {
+        super.onRowsModified(context);
+        if (recordCache!=null)
+            recordCache.clear();
+    }
+
+    /**
+     * Returns the compiled command for reading a record by its primary key
+     * The parameters of the command are the primary key columns
+     * @param context the database context
+     * @return the compiled command 
+     */
+    protected DBCompiledCommand getReadRecordCommand(DBContext context)
+    {
+        DBCompiledCommand cmd = readRecordCmd;
+        if (cmd!=null && cmd.getDbms()==context.getDbms())
+            return cmd;
+        // Create command
+        DBCommand recCmd = context.getDbms().createCommand(true);
+        recCmd.select(getColumns());
+        for (DBColumn keyColumn : getKeyColumns())
+        {   // key values of AUTOINC columns must be converted too
+            DataType type = keyColumn.getDataType();
+            if (type==DataType.AUTOINC)
+                type = DataType.INTEGER;
+            recCmd.where(keyColumn.is(recCmd.addParam(type, null)));
+        }
+        // compile
+        cmd = recCmd.compile();
+        readRecordCmd = cmd;
+        return cmd;
+    }
+    
     /**
      * Checks weather a unique constraint is violated when inserting or updating a record.<BR>
+     * All unique indexes which need to be checked are checked with a single query.
      * 
      * @param record the record to check
      * @return the violated index
      */
     public DBIndex checkUniqueConstraints(DBRecordBase record)
     {
+        // Collect indexes
+        List<DBIndex> indexes = new ArrayList<DBIndex>();
         for (DBIndex idx : getIndexes())
         {
-            if (idx.getType()==DBIndexType.PRIMARY_KEY)
-            {   // Only for new records
-                if (!record.isNew())
-                    continue; // not new
-            }
-            else if (idx.getType().isUnique())
-            {   // check if any of the fields were actually changed
-                if (!record.isNew() && !record.wasAnyModified(idx.getColumns()))
-                    continue; // not modified
-            }
-            else 
-            {   // No unique index
-                continue;
-            }
-            // Check index
-            DBCommand cmd = createRecordCommand(record.getContext());
-            cmd.select(count());
-            for (DBColumn c : idx.getColumns())
-            {
-                Object value = record.get(c);
-                cmd.where(c.is(value));
-            }
-            DBUtils utils = record.getContext().getUtils();
-            int count = utils.querySingleInt(cmd);
-            if (count>0)
+            if (isUniqueCheckRequired(idx, record))
+                indexes.add(idx);
+        }
+        if (indexes.isEmpty())
+            return null;
+        // Check all indexes: select max(case when [idx constraints] then 1 else 0 end) for each index
+        DBCommand cmd = createRecordCommand(record.getContext());
+        DBCompareExpr where = null;
+        for (DBIndex idx : indexes)
+        {
+            DBCompareExpr constraint = getIndexConstraints(idx, record);
+            cmd.select(db.caseWhen(constraint, 1, 0).max());
+            where = (where!=null ? where.or(constraint) : constraint);
+        }
+        cmd.where(where);
+        DBUtils utils = record.getContext().getUtils();
+        Object[] result = utils.querySingleRow(cmd, false);
+        for (int i=0; result!=null && i<result.length; i++)
+        {
+            if (ObjectUtils.getInteger(result[i])>0)
             {   // Index is violated
-                return idx;
+                return indexes.get(i);
             }
         }
         // no index violation detected
         return null;
     }
+
+    /**
+     * Checks weather a unique constraint is violated for any of a list of records to be inserted or updated.<BR>
+     * For each unique index the values of all records are checked with a minimum number of queries.
+     * Records which violate a unique index among themselves are detected as well.
+     * Index values containing null (e.g. the key of new records with an auto-increment column) are not checked.
+     * 
+     * @param records the records to check
+     * @return an array with the violated index for each record or null for records without violation
+     */
+    public DBIndex[] checkUniqueConstraints(List<? extends DBRecordBase> records)
+    {
+        DBIndex[] result = new DBIndex[records.size()];
+        if (records.isEmpty())
+            return result;
+        // Check records
+        for (DBRecordBase record : records)
+        {
+            if (record.getRowSet()!=this)
+                throw new InvalidArgumentException("records", record.getRowSet());
+        }
+        DBContext context = records.get(0).getContext();
+        DBUtils utils = context.getUtils();
+        for (DBIndex idx : getIndexes())
+        {   // Collect values
+            DBColumn[] columns = idx.getColumns();
+            Map<DBRecordCache.RecordKey, Integer> valueMap = new HashMap<DBRecordCache.RecordKey, Integer>();
+            List<Object[]> valueList = new ArrayList<Object[]>();
+            for (int i=0; i<result.length; i++)
+            {
+                DBRecordBase record = records.get(i);
+                if (result[i]!=null || !isUniqueCheckRequired(idx, record))
+                    continue;
+                Object[] values = new Object[columns.length];
+                for (int c=0; c<columns.length; c++)
+                    values[c] = record.get(columns[c]);
+                if (ObjectUtils.contains(values, null))
+                    continue; // null values cannot violate the index
+                DBRecordCache.RecordKey valueKey = new DBRecordCache.RecordKey(columns, values);
+                if (valueMap.containsKey(valueKey))
+                {   // Same values as a previous record
+                    result[i] = idx;
+                    continue;
+                }
+                valueMap.put(valueKey, i);
+                valueList.add(values);
+            }
+            // Query existing values
+            int chunkSize = utils.getValueChunkSize(columns.length);
+            for (int start=0; start<valueList.size(); start+=chunkSize)
+            {
+                List<Object[]> chunk = valueList.subList(start, Math.min(start+chunkSize, valueList.size()));
+                DBCommand cmd = createRecordCommand(context);
+                cmd.select(columns);
+                cmd.where(getValueListConstraints(columns, chunk, cmd));
+                for (Object[] row : utils.queryObjectList(cmd))
+                {
+                    Integer index = valueMap.get(new DBRecordCache.RecordKey(columns, row));
+                    if (index!=null)
+                        result[index] = idx;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether a unique index must be checked for a record.<BR>
+     * The primary key is only checked for new records and other unique indexes only if any of their columns were modified.
+     * @param idx the index
+     * @param record the record to check
+     * @return true if the index must be checked or false otherwise
+     */
+    protected boolean isUniqueCheckRequired(DBIndex idx, DBRecordBase record)
+    {
+        if (idx.getType()==DBIndexType.PRIMARY_KEY)
+        {   // Only for new records
+            return record.isNew();
+        }
+        else if (idx.getType().isUnique())
+        {   // check if any of the fields were actually changed
+            return (record.isNew() || record.wasAnyModified(idx.getColumns()));
+        }
+        // No unique index
+        return false;
+    }
+
+    /**
+     * Returns the constraints for finding rows with the same index values as a record
+     * @param idx the index
+     * @param record the record
+     * @return the index constraints
+     */
+    protected DBCompareExpr getIndexConstraints(DBIndex idx, DBRecordBase record)
+    {
+        DBColumn[] columns = idx.getColumns();
+        DBCompareExpr constraint = columns[0].is(record.get(columns[0]));
+        for (int i=1; i<columns.length; i++)
+            constraint = constraint.and(columns[i].is(record.get(columns[i])));
+        return constraint;
+    }
     
     /**
      * returns the default cascade action for deletes on this table.
@@ -781,6 +1089,8 @@ public class DBTable extends DBRowSet implements Cloneable
         { // Multiple Records affected
             throw new RecordUpdateFailedException(this, key);
         }
+        // notify
+        onRecordDeleted(key, context);
     }
     
     /**
@@ -23,20 +23,31 @@ import java.sql.SQLException;
 import java.sql.SQLIntegrityConstraintViolationException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.commons.Options;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.Column;
 import org.apache.empire.data.DataType;
+import org.apache.empire.data.list.ColumnarDataListFactory;
 import org.apache.empire.data.list.DataListEntry;
 import org.apache.empire.data.list.DataListFactory;
 import org.apache.empire.data.list.DataListFactoryImpl;
 import org.apache.empire.data.list.DataListHead;
+import org.apache.empire.data.list.SpillableDataList;
+import org.apache.empire.data.list.SpillableObjectList;
 import org.apache.empire.db.context.DBContextAware;
 import org.apache.empire.db.exceptions.CommandWithoutSelectException;
 import org.apache.empire.db.exceptions.ConstraintViolationException;
+import org.apache.empire.db.exceptions.InvalidKeyException;
+import org.apache.empire.db.exceptions.NoPrimaryKeyException;
 import org.apache.empire.db.exceptions.QueryFailedException;
 import org.apache.empire.db.exceptions.QueryNoResultException;
 import org.apache.empire.db.exceptions.StatementFailedException;
@@ -44,13 +55,17 @@ import org.apache.empire.db.exceptions.UnknownBeanTypeException;
 import org.apache.empire.db.expr.compare.DBCompareExpr;
 import org.apache.empire.db.list.DBBeanFactoryCache;
 import org.apache.empire.db.list.DBBeanListFactory;
+import org.apache.empire.db.list.DBListPage;
 import org.apache.empire.db.list.DBBeanListFactoryImpl;
+import org.apache.empire.db.list.DBKeyedList;
 import org.apache.empire.db.list.DBRecordListFactory;
 import org.apache.empire.db.list.DBRecordListFactoryImpl;
 import org.apache.empire.db.list.DataBean;
 import org.apache.empire.dbms.DBMSFeature;
 import org.apache.empire.dbms.DBMSHandler;
+import org.apache.empire.dbms.DBValueExtractor;
 import org.apache.empire.exceptions.InternalException;
+import org.apache.empire.exceptions.InvalidArgumentException;
 import org.apache.empire.exceptions.UnexpectedReturnValueException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -76,6 +91,11 @@ public class DBUtils implements DBContextAware
     protected int LOG_MAX_STRING_LENGTH = 40;
     // Log New-Line
     protected String LOG_NEW_LINE = "\r\n";
+    // Streaming: approx. number of bytes to fetch per database round trip
+    protected int STREAM_FETCH_BYTES = 1024 * 1024;
+    // Streaming: fetch size limits
+    protected int STREAM_MIN_FETCH_SIZE = 10;
+    protected int STREAM_MAX_FETCH_SIZE = 10000;
     
     // the context
     protected final DBContext context;
@@ -235,6 +255,128 @@ public class DBUtils implements DBContextAware
         }    
     }
     
+    /**
+     * Executes an insert statement and returns the values of database generated columns of the new row.<BR>
+     * This requires DBMSFeature.INSERT_RETURNING.
+     * The statement must be created with DBCommand.getInsert(returnColumns) for the same columns.
+     * <P>
+     * @param sqlCmd the SQL-Command
+     * @param sqlParams a list of objects to replace sql parameters
+     * @param returnColumns the columns for which to return the values
+     * @param returnValues an array receiving the values of the returnColumns
+     * @return the row count
+     */
+    public int executeInsertReturning(String sqlCmd, Object[] sqlParams, DBColumn[] returnColumns, Object[] returnValues)
+    {
+        if (returnColumns==null || returnValues==null || returnValues.length<returnColumns.length)
+            throw new InvalidArgumentException("returnValues", returnValues);
+        try 
+        {   // Debug
+            logUpdateStatement(sqlCmd, sqlParams);
+            // execute SQL
+            long start = System.currentTimeMillis();
+            int affected = dbms.executeInsertReturning(sqlCmd, sqlParams, context.getConnection(), returnColumns, returnValues);
+            // Log
+            long execTime = (System.currentTimeMillis() - start);
+            if (log.isInfoEnabled())
+                log.info("executeInsertReturning affected {} Records in {} ms ", affected, execTime);
+            else if (execTime>=longRunndingStmtThreshold)
+                log.warn("Long running statement took {} seconds for statement {}.", execTime / 1000, sqlCmd);
+            // Return number of affected records
+            return affected;
+            
+        } catch (SQLIntegrityConstraintViolationException sqle) {
+            // ConstraintViolation
+            throw new ConstraintViolationException(dbms, sqlCmd, sqle);
+        } catch (SQLException sqle) {
+            // Other error
+            throw new StatementFailedException(dbms, sqlCmd, sqle);
+        }    
+    }
+    
+    /**
+     * Executes an insert, update or delete SQL-Statement as a batch with multiple sets of parameters.<BR>
+     * <P>
+     * @param sqlCmd the SQL-Command
+     * @param sqlParams the parameters for each batch row
+     * @param setGenKeys callback to set the generated key for each new record (optional)
+     * @return the row count for each batch row
+     */
+    public int[] executeBatch(String sqlCmd, Object[][] sqlParams, DBMSHandler.DBSetGenKeys setGenKeys)
+    {
+        try 
+        {   // Debug
+            if (log.isInfoEnabled())
+                log.info("Executing batch of {} rows: {}{}", sqlParams.length, LOG_NEW_LINE, sqlCmd);
+            // execute SQL
+            long start = System.currentTimeMillis();
+            int[] affected = dbms.executeBatch(sqlCmd, sqlParams, context.getConnection(), setGenKeys);
+            // Log
+            long execTime = (System.currentTimeMillis() - start);
+            if (log.isInfoEnabled())
+                log.info("executeBatch completed {} rows in {} ms ", affected.length, execTime);
+            else if (execTime>=longRunndingStmtThreshold)
+                log.warn("Long running batch took {} seconds for statement {}.", execTime / 1000, sqlCmd);
+            // Return number of affected records
+            return affected;
+            
+        } catch (SQLIntegrityConstraintViolationException sqle) {
+            // ConstraintViolation
+            throw new ConstraintViolationException(dbms, sqlCmd, sqle);
+        } catch (SQLException sqle) {
+            // Other error
+            throw new StatementFailedException(dbms, sqlCmd, sqle);
+        }    
+    }
+    
+    /**
+     * Inserts multiple rows into a table.<BR>
+     * If the dbms supports DBMSFeature.MULTI_ROW_INSERT, the rows are inserted with multi-row insert statements.
+     * The rows are split into chunks in order to respect the dbms limits for the number of statement params,
+     * the statement length and the number of rows per statement.<BR>
+     * Otherwise a separate insert statement is executed for each row.<BR>
+     * <P>
+     * Note: The values are neither validated nor are generated keys returned. Use DBRecord or DBRecordBatchWriter instead if required.
+     * <P>
+     * @param table the table into which to insert the rows
+     * @param columns the columns for which to provide values
+     * @param rows the row values in the order of the columns
+     * @return the number of inserted rows
+     */
+    public int executeInsertRows(DBTable table, DBColumn[] columns, List<Object[]> rows)
+    {
+        if (columns==null || columns.length==0)
+            throw new InvalidArgumentException("columns", columns);
+        if (rows==null || rows.isEmpty())
+            return 0;
+        // max rows per statement
+        int maxRows = 1;
+        if (dbms.isSupported(DBMSFeature.MULTI_ROW_INSERT))
+            maxRows = Math.max(1, Math.min(dbms.getMaxInsertRows(), dbms.getMaxStatementParams() / columns.length));
+        // insert chunks
+        int affected = 0;
+        int index = 0;
+        while (index < rows.size())
+        {
+            int count = Math.min(maxRows, rows.size()-index);
+            DBCommand cmd = context.createCommand();
+            String sqlCmd = cmd.getInsertRows(table, columns, rows.subList(index, index+count));
+            // check statement length
+            if (count>1 && sqlCmd.length()>dbms.getMaxStatementLength())
+            {   // reduce number of rows and try again
+                maxRows = count / 2;
+                log.debug("executeInsertRows: Statement length exceeds limit. Reducing number of rows to {}", maxRows);
+                continue;
+            }
+            affected += executeSQL(sqlCmd, cmd.getParamValues(), null);
+            index += count;
+        }
+        // notify
+        if (affected>0)
+            table.onRowsModified(context);
+        return affected;
+    }
+    
     /**
      * Executes a select SQL-Statement and returns a ResultSet containing the query results.<BR>
      * This function returns a JDBC ResultSet.<BR>
@@ -245,14 +387,31 @@ public class DBUtils implements DBContextAware
      * @param scrollable true if the reader should be scrollable or false if not
      * @return the JDBC ResutSet
      */
-    public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable)
+    public final ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable)
+    {
+        return executeQuery(sqlCmd, sqlParams, scrollable, 0);
+    }
+    
+    /**
+     * Executes a select SQL-Statement and returns a ResultSet containing the query results.<BR>
+     * A positive fetch size enables the streaming mode of the JDBC driver (if available), 
+     * which avoids that large results are fully loaded into memory. See getStreamingFetchSize()<BR>
+     * Instead of using this function directly you should use a DBReader object instead.<BR>
+     * <P>
+     * @param sqlCmd the SQL-Command
+     * @param sqlParams a list of parameters for parameter queries (may depend on dbms)
+     * @param scrollable true if the reader should be scrollable or false if not
+     * @param fetchSize the number of rows to fetch with each database round trip or 0 for the driver's default
+     * @return the JDBC ResutSet
+     */
+    public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, int fetchSize)
     {
         try
         {   // Debug
             logQueryStatement(sqlCmd, sqlParams);
             // Execute the Statement
             long start = System.currentTimeMillis();
-            ResultSet rs = dbms.executeQuery(sqlCmd, sqlParams, scrollable, context.getConnection());
+            ResultSet rs = dbms.executeQuery(sqlCmd, sqlParams, scrollable, fetchSize, context.getConnection());
             if (rs == null)
                 throw new UnexpectedReturnValueException(rs, "dbms.executeQuery()");
             // Debug
@@ -270,6 +429,62 @@ public class DBUtils implements DBContextAware
         } 
     }
     
+    /**
+     * Returns a fetch size for streaming a query result based on the estimated row width of the selected expressions
+     * @param select the select expressions of the query
+     * @return the fetch size
+     */
+    public int getStreamingFetchSize(DBColumnExpr[] select)
+    {
+        if (select==null || select.length==0)
+            return STREAM_MIN_FETCH_SIZE;
+        // estimate row width
+        long rowWidth = 0;
+        for (DBColumnExpr expr : select)
+            rowWidth += estimateValueSize(expr);
+        // calculate
+        long fetchSize = STREAM_FETCH_BYTES / Math.max(rowWidth, 1);
+        fetchSize = Math.max(fetchSize, STREAM_MIN_FETCH_SIZE);
+        fetchSize = Math.min(fetchSize, STREAM_MAX_FETCH_SIZE);
+        return (int)fetchSize;
+    }
+    
+    /**
+     * Estimates the number of bytes required for a value of a column expression 
+     * @param expr the column expression
+     * @return the estimated number of bytes
+     */
+    protected int estimateValueSize(DBColumnExpr expr)
+    {
+        switch(expr.getDataType())
+        {
+            case BOOL:
+                return 1;
+            case INTEGER:
+            case AUTOINC:
+                return 8;
+            case FLOAT:
+            case DATE:
+            case TIME:
+            case DATETIME:
+            case TIMESTAMP:
+                return 16;
+            case DECIMAL:
+            case UNIQUEID:
+                return 32;
+            case CHAR:
+            case VARCHAR:
+                DBColumn column = expr.getUpdateColumn();
+                double size = (column!=null ? column.getSize() : 0);
+                return (size>0 ? (int)Math.min(size, 4000) * 2 : 80);
+            case CLOB:
+            case BLOB:
+                return 4096;
+            default:
+                return 32;
+        }
+    }
+    
     /**
      * Returns the value of the first row/column of a sql-query as an object.
      * If the query does not return a result the value ObjectUtils.NO_VALUE is returned.
@@ -322,7 +537,7 @@ public class DBUtils implements DBContextAware
      */
     public final <T> T querySingleValue(DBCommandExpr cmd, Class<T> resultType, boolean failOnNoResult)
     {
-        Object value = querySingleValue(cmd.getSelect(), cmd.getParamValues(), cmd.getDataType(), failOnNoResult); 
+        Object value = querySingleValue(cmd, cmd.getDataType(), failOnNoResult); 
         return ObjectUtils.convert(resultType, value);
     }
     
@@ -337,7 +552,36 @@ public class DBUtils implements DBContextAware
      */
     public final Object querySingleValue(DBCommandExpr cmd, boolean failOnNoResult)
     {
-        return querySingleValue(cmd.getSelect(), cmd.getParamValues(), cmd.getDataType(), failOnNoResult);  
+        return querySingleValue(cmd, cmd.getDataType(), failOnNoResult);  
+    }
+    
+    /**
+     * Returns the value of the first row/column of a sql-query as an object.<BR>
+     * If a query cache is set for the database (see DBDatabase.setQueryCache()) the value is obtained from the cache if possible. 
+     * 
+     * @param cmd the Command object that contains the select statement
+     * @param dataType the expected data type
+     * @param failOnNoResult flag whether to fail on empty resultset
+     * 
+     * @return the value of the first column in the first row of the query 
+     */
+    public Object querySingleValue(DBCommandExpr cmd, DataType dataType, boolean failOnNoResult)
+    {
+        String sqlCmd = cmd.getSelect();
+        Object[] sqlParams = cmd.getParamValues();
+        DBQueryCache queryCache = getQueryCache(cmd);
+        if (queryCache==null)
+            return querySingleValue(sqlCmd, sqlParams, dataType, failOnNoResult);
+        // find cached value
+        DBQueryCache.QueryKey key = new DBQueryCache.QueryKey("value:"+dataType.name()+(failOnNoResult ? "!" : ""), sqlCmd, sqlParams);
+        Object value = queryCache.get(key);
+        if (value==ObjectUtils.NO_VALUE)
+        {   // query and add to cache
+            long sequence = queryCache.getSequence();
+            value = querySingleValue(sqlCmd, sqlParams, dataType, failOnNoResult);
+            queryCache.put(key, value, cmd, sequence);
+        }
+        return value;
     }
     
     /**
@@ -380,7 +624,7 @@ public class DBUtils implements DBContextAware
      */
     public final int querySingleInt(DBCommandExpr cmd, int defaultValue)
     { 
-        Object value = querySingleValue(cmd.getSelect(), cmd.getParamValues(), DataType.INTEGER, false);
+        Object value = querySingleValue(cmd, DataType.INTEGER, false);
         return ObjectUtils.getInteger(value, defaultValue);
     }
 
@@ -394,7 +638,7 @@ public class DBUtils implements DBContextAware
      */
     public final int querySingleInt(DBCommandExpr cmd)
     { 
-        Object value = querySingleValue(cmd.getSelect(), cmd.getParamValues(), DataType.INTEGER, true);
+        Object value = querySingleValue(cmd, DataType.INTEGER, true);
         return ObjectUtils.getInteger(value);
     }
 
@@ -425,7 +669,7 @@ public class DBUtils implements DBContextAware
      */
     public final long querySingleLong(DBCommandExpr cmd, long defaultValue)
     { 
-        Object value = querySingleValue(cmd.getSelect(), cmd.getParamValues(), DataType.INTEGER, false);
+        Object value = querySingleValue(cmd, DataType.INTEGER, false);
         return ObjectUtils.getLong(value, defaultValue);
     }
 
@@ -439,7 +683,7 @@ public class DBUtils implements DBContextAware
      */
     public final long querySingleLong(DBCommandExpr cmd)
     { 
-        Object value = querySingleValue(cmd.getSelect(), cmd.getParamValues(), DataType.INTEGER, true);
+        Object value = querySingleValue(cmd, DataType.INTEGER, true);
         return ObjectUtils.getLong(value);
     }
     
@@ -454,7 +698,7 @@ public class DBUtils implements DBContextAware
      */
     public final String querySingleString(DBCommandExpr cmd, String defaultValue)
     { 
-        Object value = querySingleValue(cmd.getSelect(), cmd.getParamValues(), DataType.VARCHAR, false);
+        Object value = querySingleValue(cmd, DataType.VARCHAR, false);
         return StringUtils.toString(value, defaultValue);
     }
     
@@ -469,10 +713,72 @@ public class DBUtils implements DBContextAware
      */
     public final String querySingleString(DBCommandExpr cmd)
     { 
-        Object value = querySingleValue(cmd.getSelect(), cmd.getParamValues(), DataType.VARCHAR, true);
+        Object value = querySingleValue(cmd, DataType.VARCHAR, true);
         return StringUtils.toString(value);
     }
 
+    /**
+     * Returns the value of the first row/column of a compiled command as an object.
+     * 
+     * @param cmd the compiled command
+     * @param paramValues the parameter values in the order of their param index 
+     * @param failOnNoResult if true a QueryNoResultException result is thrown if no record exists otherwise null is returned
+     * 
+     * @return the value of the first column in the first row of the query 
+     */
+    public final Object querySingleValue(DBCompiledCommand cmd, Object[] paramValues, boolean failOnNoResult)
+    {
+        return querySingleValue(cmd.getSelect(), cmd.getStatementParams(paramValues), cmd.getDataType(), failOnNoResult);  
+    }
+
+    /**
+     * Returns the value of the first row/column of a compiled command as an int.
+     * If the query does not return a result or if the query result is NULL, then the defaultValue is returned
+     * 
+     * @param cmd the compiled command
+     * @param paramValues the parameter values in the order of their param index 
+     * @param defaultValue the default value if no value was returned by the database
+     *
+     * @return the result as a int value
+     */
+    public final int querySingleInt(DBCompiledCommand cmd, Object[] paramValues, int defaultValue)
+    { 
+        Object value = querySingleValue(cmd.getSelect(), cmd.getStatementParams(paramValues), DataType.INTEGER, false);
+        return ObjectUtils.getInteger(value, defaultValue);
+    }
+
+    /**
+     * Returns the value of the first row/column of a compiled command as a long.
+     * If the query does not return a result or if the query result is NULL, then the defaultValue is returned
+     * 
+     * @param cmd the compiled command
+     * @param paramValues the parameter values in the order of their param index 
+     * @param defaultValue the default value if no value was returned by the database
+     *
+     * @return the result as a long value
+     */
+    public final long querySingleLong(DBCompiledCommand cmd, Object[] paramValues, long defaultValue)
+    { 
+        Object value = querySingleValue(cmd.getSelect(), cmd.getStatementParams(paramValues), DataType.INTEGER, false);
+        return ObjectUtils.getLong(value, defaultValue);
+    }
+
+    /**
+     * Returns the value of the first row/column of a compiled command as a string.
+     * If the query does not return a result or if the query result is NULL, then the defaultValue is returned
+     * 
+     * @param cmd the compiled command
+     * @param paramValues the parameter values in the order of their param index 
+     * @param defaultValue the default value if no value was returned by the database
+     *
+     * @return the result as a String object
+     */
+    public final String querySingleString(DBCompiledCommand cmd, Object[] paramValues, String defaultValue)
+    { 
+        Object value = querySingleValue(cmd.getSelect(), cmd.getStatementParams(paramValues), DataType.VARCHAR, false);
+        return StringUtils.toString(value, defaultValue);
+    }
+
     /**
      * Returns the number of rows returned by executing the select statement
      * @param cmd the select command
@@ -503,6 +809,28 @@ public class DBUtils implements DBContextAware
         return querySingleInt(sql, cmd.getParamValues(), 0);
     }
 
+    /**
+     * Returns the total number of rows after a page has been read.<BR>
+     * If the reader did not provide the total count, a count query is executed.
+     * @param r the reader used to read the page
+     * @param cmd the query command
+     * @param first the position of the first row of the page
+     * @param count the number of rows of the page
+     * @return the total count
+     */
+    protected int getTotalCount(DBReader r, DBCommand cmd, int first, int count)
+    {
+        int totalCount = r.getTotalCount();
+        if (totalCount>=0)
+            return totalCount;
+        if (first==0 && count==0)
+            return 0; // empty result
+        // query the count
+        DBCommand countCmd = cmd.clone();
+        countCmd.clearLimit();
+        return queryRowCount(countCmd);
+    }
+
     /**
      * Adds the first column of a query result to a collection.
      * If the query has no result, an empty list is returned.
@@ -530,10 +858,11 @@ public class DBUtils implements DBContextAware
             if (rs == null)
                 throw new UnexpectedReturnValueException(rs, "dbms.executeQuery()");
             // Check Result
+            DBValueExtractor extractor = dbms.getValueExtractor(dataType);
             int count=0;
             while (rs.next() && (maxRows<0 || count<maxRows))
             {   
-                T item = ObjectUtils.convert(c, dbms.getResultValue(rs, 1, dataType));
+                T item = ObjectUtils.convert(c, extractor.getValue(rs, 1));
                 result.add(item);
                 count++;
             }
@@ -570,7 +899,31 @@ public class DBUtils implements DBContextAware
      */
     public final <T> int querySimpleList(Class<T> c, DBCommandExpr cmd, Collection<T> result)
     {
-        return querySimpleList(c, cmd.getSelect(), cmd.getParamValues(), cmd.getDataType(), result, MAX_QUERY_ROWS); 
+        String sqlCmd = cmd.getSelect();
+        Object[] sqlParams = cmd.getParamValues();
+        DBQueryCache queryCache = getQueryCache(cmd);
+        if (queryCache==null)
+            return querySimpleList(c, sqlCmd, sqlParams, cmd.getDataType(), result, MAX_QUERY_ROWS);
+        // find cached values
+        DBQueryCache.QueryKey key = new DBQueryCache.QueryKey("list:"+MAX_QUERY_ROWS, sqlCmd, sqlParams);
+        Object values = queryCache.get(key);
+        if (values==ObjectUtils.NO_VALUE)
+        {   // query and add to cache
+            long sequence = queryCache.getSequence();
+            List<Object> list = new ArrayList<Object>();
+            querySimpleList(Object.class, sqlCmd, sqlParams, cmd.getDataType(), list, MAX_QUERY_ROWS);
+            values = Collections.unmodifiableList(list);
+            if (list.size()<=queryCache.getMaxRows())
+                queryCache.put(key, values, cmd, sequence);
+        }
+        // add to result
+        int count = 0;
+        for (Object value : (List<?>)values)
+        {
+            result.add(ObjectUtils.convert(c, value));
+            count++;
+        }
+        return count;
     }
 
     /**
@@ -695,6 +1048,23 @@ public class DBUtils implements DBContextAware
      * @return the number of rows queried
      */
     public int queryObjectList(String sqlCmd, Object[] sqlParams, Collection<Object[]> result, int maxRows)
+    {
+        return queryObjectList(sqlCmd, sqlParams, result, maxRows, 0);
+    }
+
+    /**
+     * Adds the result of a query to a given collection.<BR>
+     * The individual rows will be added as an array of objects (object[])<BR>
+     * A positive fetch size enables the streaming mode of the JDBC driver (if available).
+     * 
+     * @param sqlCmd the sql command
+     * @param sqlParams the command params
+     * @param result the result colleciton
+     * @param maxRows the maximum number of rows
+     * @param fetchSize the number of rows to fetch with each database round trip or 0 for the driver's default
+     * @return the number of rows queried
+     */
+    public int queryObjectList(String sqlCmd, Object[] sqlParams, Collection<Object[]> result, int maxRows, int fetchSize)
     {   // Perform query
         ResultSet rs = null;
         try
@@ -703,18 +1073,19 @@ public class DBUtils implements DBContextAware
             // Log performance
             long start = System.currentTimeMillis();
             // Get the next Value
-            rs = dbms.executeQuery(sqlCmd, sqlParams, false, context.getConnection());
+            rs = dbms.executeQuery(sqlCmd, sqlParams, false, fetchSize, context.getConnection());
             if (rs == null)
                 throw new UnexpectedReturnValueException(rs, "dbms.executeQuery()");
             // Read List
             int colCount = rs.getMetaData().getColumnCount();
+            DBValueExtractor extractor = dbms.getValueExtractor(DataType.UNKNOWN);
             int count = 0;
             while (rs.next() && (maxRows<0 || count<maxRows))
             {   // Read row
                 Object[] item = new Object[colCount];
                 for (int i=0; i<colCount; i++)
                 {   // Read from Resultset
-                    item[i] = dbms.getResultValue(rs, i+1, DataType.UNKNOWN);
+                    item[i] = extractor.getValue(rs, i+1);
                 }
                 result.add(item);
                 count++;
@@ -750,6 +1121,57 @@ public class DBUtils implements DBContextAware
         return result;
     }
 
+    /**
+     * Returns the result of a compiled command as a list Object-Arrays 
+     * This function should only be used for small lists.
+     * 
+     * @param cmd the compiled command
+     * @param paramValues the parameter values in the order of their param index 
+     * @return a list of object arrays
+     */
+    public final List<Object[]> queryObjectList(DBCompiledCommand cmd, Object[] paramValues)
+    {   // Execute the  Statement
+        List<Object[]> result = new ArrayList<Object[]>();
+        queryObjectList(cmd.getSelect(), cmd.getStatementParams(paramValues), result, MAX_QUERY_ROWS);
+        return result;
+    }
+
+    /**
+     * Returns the result of a query as a list Object-Arrays without the MAX_QUERY_ROWS limit.<BR>
+     * The first rows are kept on the heap, all further rows are written to a memory-mapped temporary file.<BR>
+     * The result is read using the streaming mode of the JDBC driver (see getStreamingFetchSize()).<BR>
+     * The list must be closed in order to delete the temporary file.
+     * 
+     * @param cmd the Command object that contains the select statement
+     * @param heapRows the maximum number of rows to keep on the heap
+     * @return a list of object arrays
+     */
+    public final SpillableObjectList querySpillableObjectList(DBCommandExpr cmd, int heapRows)
+    {
+        SpillableObjectList list = createSpillableObjectList(heapRows);
+        try
+        {   // no row limit and streaming
+            queryObjectList(cmd.getSelect(), cmd.getParamValues(), list, -1, getStreamingFetchSize(cmd.getSelectExprList()));
+            return list;
+        }
+        catch (RuntimeException e)
+        {   // delete the temporary file
+            list.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates the list for querySpillableObjectList
+     * Overwrite this function in order to provide a different temp directory
+     * @param heapRows the maximum number of rows to keep on the heap
+     * @return the list
+     */
+    protected SpillableObjectList createSpillableObjectList(int heapRows)
+    {
+        return new SpillableObjectList(heapRows, null);
+    }
+
     /**
      * Returns all values of the first row of a sql-query as an array.
      * If the query does not return a result a QueryNoResultException is thrown
@@ -815,6 +1237,35 @@ public class DBUtils implements DBContextAware
         return querySingleRow(cmd, true); 
     }
     
+    /**
+     * Returns all values of the first row of a compiled command as an array.
+     * 
+     * @param cmd the compiled command
+     * @param paramValues the parameter values in the order of their param index 
+     * @param failOnNoResult if true a QueryNoResultException is thrown when no result otherwise null is returned 
+     * 
+     * @return the values of the first row 
+     */
+    public final Object[] querySingleRow(DBCompiledCommand cmd, Object[] paramValues, boolean failOnNoResult)
+    {
+        return querySingleRow(cmd.getSelect(), cmd.getStatementParams(paramValues), failOnNoResult); 
+    }
+    
+    /**
+     * Returns the query cache to be used for a command
+     * @param cmd the query command
+     * @return the query cache or null if the result should not be cached
+     */
+    protected DBQueryCache getQueryCache(DBCommandExpr cmd)
+    {
+        DBDatabase db = cmd.getDatabase();
+        DBQueryCache queryCache = (db!=null ? db.getQueryCache() : null);
+        if (queryCache==null || !queryCache.isCacheable(cmd))
+            return null;
+        // not while the context has uncommitted modifications
+        return (queryCache.hasUncommittedModifications(context) ? null : queryCache);
+    }
+
     /**
      * Returns the initial array list capacity. 
      * Usually returns 0 in order to use the ArrayList default.
@@ -882,9 +1333,55 @@ public class DBUtils implements DBContextAware
      */
     public <T extends DataListEntry> List<T> queryDataList(DBCommandExpr cmd, DataListFactory<T> factory, int first, int pageSize)
     {
-        List<T> list = null;
         DBReader r = new DBReader(context);
         try
+        {   // read list
+            return readDataList(r, cmd, factory, first, pageSize);
+        }
+        finally
+        {   // close reader
+            r.close();
+        }
+    }
+
+    /**
+     * Executes a query and returns a page of DataListEntry items together with the total number of rows.<BR>
+     * If the dbms supports window functions, the total count is obtained with the page query in a single round trip (see DBReader.setQueryTotalCount()).
+     * Otherwise a separate count query is executed.
+     * @param cmd the command
+     * @param factory the Factory to be used for each list item
+     * @param first the number of records to skip from the beginning of the result
+     * @param pageSize the maximum number of items to add to the list
+     * @return the list page
+     */
+    public <T extends DataListEntry> DBListPage<T> queryDataListPage(DBCommand cmd, DataListFactory<T> factory, int first, int pageSize)
+    {
+        DBReader r = new DBReader(context);
+        try
+        {   // read list with total count
+            r.setQueryTotalCount(true);
+            List<T> list = readDataList(r, cmd, factory, first, pageSize);
+            return new DBListPage<T>(list, first, getTotalCount(r, cmd, first, list.size()));
+        }
+        finally
+        {   // close reader
+            r.close();
+        }
+    }
+
+    /**
+     * Reads a list of DataListEntry items
+     * @param r the reader
+     * @param cmd the command
+     * @param factory the Factory to be used for each list item
+     * @param first the number of records to skip from the beginning of the result
+     * @param pageSize the maximum number of items to add to the list or -1 (default) for a maximum of MAX_QUERY_ROWS
+     * @return the list 
+     */
+    protected <T extends DataListEntry> List<T> readDataList(DBReader r, DBCommandExpr cmd, DataListFactory<T> factory, int first, int pageSize)
+    {
+        List<T> list = null;
+        try
         {   // prepare
             factory.prepareQuery(cmd, context);
             // check pageSize
@@ -905,6 +1402,7 @@ public class DBUtils implements DBContextAware
                 cmd.limitRows(first+pageSize);
             }
             // Runquery
+            r.setQueryCache(getQueryCache(cmd));
             r.open(cmd);
             if (first>0) 
             {   // skip rows
@@ -932,13 +1430,30 @@ public class DBUtils implements DBContextAware
             return list;
         }
         finally
-        {   // close reader
-            r.close();
-            // complete
+        {   // complete
             factory.completeQuery(list);
         }
     }
 
+    /**
+     * Executes a query and returns the next page of DataListEntry items using keyset (seek) pagination.<BR>
+     * Instead of skipping the rows of previous pages, the rows are selected by a constraint on the sort keys of the last row.<BR>
+     * The keyset is updated with the last row of the page.
+     * @param cmd the command which must have a unique ORDER BY and select all sort expressions
+     * @param factory the Factory to be used for each list item
+     * @param keyset the keyset holding the sort key values of the last row of the previous page
+     * @param pageSize the maximum number of items to add to the list
+     * @return the list 
+     */
+    public <T extends DataListEntry> List<T> queryDataList(DBCommand cmd, DataListFactory<T> factory, DBKeyset keyset, int pageSize)
+    {
+        DBCommand pageCmd = keyset.getPageCommand(cmd, context.getDbms(), pageSize);
+        List<T> list = queryDataList(pageCmd, factory, 0, pageSize);
+        if (!list.isEmpty())
+            keyset.setLastValues(list.get(list.size()-1));
+        return list;
+    }
+
     /**
      * Queries a list of DataListEntry items
      * @param cmd the query command
@@ -998,11 +1513,87 @@ public class DBUtils implements DBContextAware
     }
     
     /**
-     * Queries a single DataListEntry item
+     * Queries a list of DataListEntry items which are stored column by column.<BR>
+     * Numeric values are kept in primitive arrays and strings are dictionary encoded.<BR>
+     * This requires considerably less memory for large results than queryDataList().
      * @param cmd the query command
-     * @param entryClass the result class
-     * @param head the list head
-     * @return the data entry
+     * @param first the first record to add
+     * @param maxItems the maximum number of records to add
+     * @return the data list
+     */
+    public final List<DataListEntry> queryColumnarDataList(DBCommandExpr cmd, int first, int maxItems)
+    {
+        return queryDataList(cmd, new ColumnarDataListFactory(createDefaultDataListHead(cmd, DataListEntry.class)), first, maxItems);
+    }
+    
+    /**
+     * Queries a list of DataListEntry items which are stored column by column.<BR>
+     * @see DBUtils#queryColumnarDataList(DBCommandExpr, int, int)
+     * @param cmd the query command
+     * @return the data list
+     */
+    public final List<DataListEntry> queryColumnarDataList(DBCommandExpr cmd)
+    {
+        return queryColumnarDataList(cmd, 0, -1);
+    }
+    
+    /**
+     * Queries a list of DataListEntry items without the MAX_QUERY_ROWS limit.<BR>
+     * The first items are kept on the heap, all further items are written to a memory-mapped temporary file.<BR>
+     * The result is read using the streaming mode of the JDBC driver (see DBReader.FETCH_SIZE_ADAPTIVE).<BR>
+     * The list must be closed in order to delete the temporary file.
+     * @param cmd the query command
+     * @param heapRows the maximum number of items to keep on the heap
+     * @return the data list
+     */
+    public final SpillableDataList querySpillableDataList(DBCommandExpr cmd, int heapRows)
+    {
+        DataListHead head = createDefaultDataListHead(cmd, DataListEntry.class);
+        final SpillableDataList list = createSpillableDataList(head, heapRows);
+        DataListFactory<DataListEntry> factory = new DataListFactoryImpl<DataListEntry>(DataListEntry.class, head)
+        {
+            @Override
+            public List<DataListEntry> newList(int capacity)
+            {
+                return list;
+            }
+        };
+        DBReader r = new DBReader(context);
+        try
+        {   // no row limit and streaming
+            r.setFetchSize(DBReader.FETCH_SIZE_ADAPTIVE);
+            readDataList(r, cmd, factory, 0, Integer.MAX_VALUE);
+            return list;
+        }
+        catch (RuntimeException e)
+        {   // delete the temporary file
+            list.close();
+            throw e;
+        }
+        finally
+        {   // close reader
+            r.close();
+        }
+    }
+    
+    /**
+     * Creates the list for querySpillableDataList
+     * Overwrite this function in order to provide a different temp directory
+     * @param head the list head
+     * @param heapRows the maximum number of items to keep on the heap
+     * @return the list
+     */
+    protected SpillableDataList createSpillableDataList(DataListHead head, int heapRows)
+    {
+        return new SpillableDataList(head, heapRows, null);
+    }
+    
+    /**
+     * Queries a single DataListEntry item
+     * @param cmd the query command
+     * @param entryClass the result class
+     * @param head the list head
+     * @return the data entry
      */
     public final <T extends DataListEntry> T queryDataEntry(DBCommandExpr cmd, Class<T> entryClass, DataListHead head)
     {
@@ -1135,6 +1726,24 @@ public class DBUtils implements DBContextAware
         }
     }
 
+    /**
+     * Executes a query and returns the next page of DBRecord items using keyset (seek) pagination.<BR>
+     * The keyset is updated with the last record of the page.
+     * @param cmd the command which must have a unique ORDER BY
+     * @param factory the factory for creating record objects
+     * @param keyset the keyset holding the sort key values of the last record of the previous page
+     * @param pageSize the maximum number of items to add to the list
+     * @return the list 
+     */
+    public <R extends DBRecordBase> List<R> queryRecordList(DBCommand cmd, DBRecordListFactory<R> factory, DBKeyset keyset, int pageSize)
+    {
+        DBCommand pageCmd = keyset.getPageCommand(cmd, context.getDbms(), pageSize);
+        List<R> list = queryRecordList(pageCmd, factory, 0, pageSize);
+        if (!list.isEmpty())
+            keyset.setLastValues(list.get(list.size()-1));
+        return list;
+    }
+
     /**
      * Executes a query and returns a list of DBRecord items
      * @param cmd the command holding the constraints and order or the query
@@ -1160,6 +1769,187 @@ public class DBUtils implements DBContextAware
         return queryRecordList(cmd, rowset, DBRecord.class);
     }
 
+    /**
+     * Returns the maximum number of keys which are queried with a single statement
+     * @param rowset the rowset
+     * @return the number of keys per statement
+     */
+    protected int getKeyChunkSize(DBRowSet rowset)
+    {
+        return getValueChunkSize(rowset.getKeyColumns().length);
+    }
+
+    /**
+     * Returns the maximum number of value combinations which are queried with a single statement
+     * @param columnCount the number of values of each combination
+     * @return the number of value combinations per statement
+     */
+    protected int getValueChunkSize(int columnCount)
+    {
+        DBMSHandler dbms = context.getDbms();
+        int chunkSize = Math.min(dbms.getMaxInListSize(), dbms.getMaxStatementParams() / columnCount);
+        return Math.max(chunkSize, 1);
+    }
+
+    /**
+     * Returns the distinct keys in the order given.<BR>
+     * The key values are converted according to the data type of the key columns.
+     * @param rowset the rowset
+     * @param keys the record keys
+     * @return the map of distinct keys
+     */
+    protected Map<DBRecordCache.RecordKey, Object[]> getDistinctKeys(DBRowSet rowset, Object[][] keys)
+    {
+        DBObject.checkParamNull("keys", keys);
+        DBColumn[] keyColumns = rowset.getKeyColumns();
+        if (keyColumns==null || keyColumns.length==0)
+            throw new NoPrimaryKeyException(rowset);
+        // collect
+        Map<DBRecordCache.RecordKey, Object[]> distinctKeys = new LinkedHashMap<DBRecordCache.RecordKey, Object[]>(keys.length);
+        for (int i=0; i<keys.length; i++)
+        {   // check key
+            if (keys[i]==null || keys[i].length!=keyColumns.length)
+                throw new InvalidKeyException(rowset, keys[i]);
+            DBRecordCache.RecordKey recordKey = new DBRecordCache.RecordKey(keyColumns, keys[i]);
+            if (!distinctKeys.containsKey(recordKey))
+                distinctKeys.put(recordKey, keys[i]);
+        }
+        return distinctKeys;
+    }
+
+    /**
+     * Returns the keys which may be queried.
+     * Keys containing null values cannot match any record and are excluded.
+     * @param distinctKeys the distinct keys
+     * @return the list of keys to query
+     */
+    protected List<Object[]> getQueryKeys(Map<DBRecordCache.RecordKey, Object[]> distinctKeys)
+    {
+        List<Object[]> queryKeys = new ArrayList<Object[]>(distinctKeys.size());
+        for (Object[] key : distinctKeys.values())
+        {
+            if (!ObjectUtils.contains(key, null))
+                queryKeys.add(key);
+        }
+        return queryKeys;
+    }
+
+    /**
+     * Creates the command for querying the records of a chunk of keys
+     * @param rowset the rowset
+     * @param keys the keys of the chunk
+     * @return the command
+     */
+    protected DBCommand createKeyListCommand(DBRowSet rowset, List<Object[]> keys)
+    {
+        DBCommand cmd = rowset.createRecordCommand(context);
+        cmd.where(rowset.getKeyListConstraints(keys, cmd));
+        return cmd;
+    }
+
+    /**
+     * Reads the key of the current row
+     * @param r the reader
+     * @param keyColumns the key columns
+     * @return the record key
+     */
+    protected DBRecordCache.RecordKey readRecordKey(DBReader r, DBColumn[] keyColumns)
+    {
+        Object[] key = new Object[keyColumns.length];
+        for (int i=0; i<key.length; i++)
+            key[i] = r.get(keyColumns[i]);
+        return new DBRecordCache.RecordKey(keyColumns, key);
+    }
+
+    /**
+     * Assembles the result of a multi key query in the order of the keys
+     * @param distinctKeys the distinct keys in the order requested
+     * @param itemMap the items found
+     * @param items the list to which to add the items
+     * @return the keyed list
+     */
+    protected <T> DBKeyedList<T> createKeyedList(Map<DBRecordCache.RecordKey, Object[]> distinctKeys, Map<DBRecordCache.RecordKey, T> itemMap, List<T> items)
+    {
+        List<Object[]> missingKeys = new ArrayList<Object[]>();
+        for (Map.Entry<DBRecordCache.RecordKey, Object[]> e : distinctKeys.entrySet())
+        {
+            T item = itemMap.get(e.getKey());
+            if (item!=null)
+                items.add(item);
+            else
+                missingKeys.add(e.getValue());
+        }
+        return new DBKeyedList<T>(items, missingKeys);
+    }
+
+    /**
+     * Reads the records for a list of primary keys.<BR>
+     * The keys are queried in chunks using IN-lists (single key column) or OR-ed key constraints (composite keys).
+     * The chunk size is limited by the maximum IN-list size and the maximum number of statement parameters of the DBMS.<BR>
+     * The records are returned in the order of the keys. Duplicate keys are returned once.
+     * @param rowset the rowset from which to read the records
+     * @param keys the primary keys of the records
+     * @param factory the factory for creating record objects
+     * @return the records and the keys for which no record has been found
+     */
+    public <R extends DBRecordBase> DBKeyedList<R> queryRecordList(DBRowSet rowset, Object[][] keys, DBRecordListFactory<R> factory)
+    {
+        Map<DBRecordCache.RecordKey, Object[]> distinctKeys = getDistinctKeys(rowset, keys);
+        List<Object[]> queryKeys = getQueryKeys(distinctKeys);
+        DBColumn[] keyColumns = rowset.getKeyColumns();
+        Map<DBRecordCache.RecordKey, R> recordMap = new HashMap<DBRecordCache.RecordKey, R>(queryKeys.size());
+        int chunkSize = getKeyChunkSize(rowset);
+        for (int start=0; start<queryKeys.size(); start+=chunkSize)
+        {   // query chunk
+            List<Object[]> chunk = queryKeys.subList(start, Math.min(start+chunkSize, queryKeys.size()));
+            DBCommand cmd = createKeyListCommand(rowset, chunk);
+            List<R> list = null;
+            DBReader r = new DBReader(context);
+            try
+            {   // prepare
+                factory.prepareQuery(cmd, context);
+                // Runquery
+                r.open(cmd);
+                list = factory.newList(chunk.size());
+                int rownum = 0;
+                while (r.moveNext())
+                {   // Create record
+                    R record = factory.newRecord(rownum, r);
+                    if (record==null)
+                        continue;
+                    list.add(record);
+                    recordMap.put(new DBRecordCache.RecordKey(keyColumns, record.getKey()), record);
+                    rownum++;
+                }
+            }
+            finally
+            {   // close reader
+                r.close();
+                // complete
+                if (list!=null)
+                    factory.completeQuery(list);
+            }
+        }
+        // done
+        if (log.isDebugEnabled())
+            log.debug("{} of {} records read from {} using {} keys per query.", recordMap.size(), distinctKeys.size(), rowset.getName(), chunkSize);
+        return createKeyedList(distinctKeys, recordMap, factory.newList(distinctKeys.size()));
+    }
+
+    /**
+     * Reads the records for a list of primary keys
+     * @param rowset the rowset from which to read the records
+     * @param keys the primary keys of the records
+     * @param recordType the record class
+     * @return the records and the keys for which no record has been found
+     */
+    public final <R extends DBRecordBase> DBKeyedList<R> queryRecordList(DBRowSet rowset, Object[][] keys, Class<R> recordType)
+    {
+        @SuppressWarnings("cast")
+        DBRecordListFactory<R> factory = (DBRecordListFactory<R>)createDefaultRecordListFactory(recordType, rowset);
+        return queryRecordList(rowset, keys, factory);
+    }
+
     /**
      * Crates a default DBBeanListFactory for Java bean class
      * The DBRecord class must provide   
@@ -1225,9 +2015,57 @@ public class DBUtils implements DBContextAware
      */
     public <T> List<T> queryBeanList(DBCommandExpr cmd, DBBeanListFactory<T> factory, Object parent, int first, int pageSize)
     {
-        List<T> list = null;
         DBReader r = new DBReader(context);
         try
+        {   // read list
+            return readBeanList(r, cmd, factory, parent, first, pageSize);
+        }
+        finally
+        {   // close reader
+            r.close();
+        }
+    }
+
+    /**
+     * Query a page of simple Java objects (beans) together with the total number of rows.<BR>
+     * If the dbms supports window functions, the total count is obtained with the page query in a single round trip (see DBReader.setQueryTotalCount()).
+     * Otherwise a separate count query is executed.
+     * @param cmd the command
+     * @param factory the bean factory
+     * @param parent the parent object for the created beans (optional)
+     * @param first the first row
+     * @param pageSize the maximum number of items to add to the list
+     * @return the list page
+     */
+    public <T> DBListPage<T> queryBeanListPage(DBCommand cmd, DBBeanListFactory<T> factory, Object parent, int first, int pageSize)
+    {
+        DBReader r = new DBReader(context);
+        try
+        {   // read list with total count
+            r.setQueryTotalCount(true);
+            List<T> list = readBeanList(r, cmd, factory, parent, first, pageSize);
+            return new DBListPage<T>(list, first, getTotalCount(r, cmd, first, list.size()));
+        }
+        finally
+        {   // close reader
+            r.close();
+        }
+    }
+
+    /**
+     * Reads a list of simple Java objects (beans)
+     * @param r the reader
+     * @param cmd the command
+     * @param factory the bean factory
+     * @param parent the parent object for the created beans (optional)
+     * @param first the first row
+     * @param pageSize the maximum number of items to add to the list or -1 (default) for a maximum of MAX_QUERY_ROWS
+     * @return the bean list
+     */
+    protected <T> List<T> readBeanList(DBReader r, DBCommandExpr cmd, DBBeanListFactory<T> factory, Object parent, int first, int pageSize)
+    {
+        List<T> list = null;
+        try
         {   // prepare
             factory.prepareQuery(cmd, context);
             // check pageSize
@@ -1248,6 +2086,7 @@ public class DBUtils implements DBContextAware
                 cmd.limitRows(first+pageSize);
             }
             // Runquery
+            r.setQueryCache(getQueryCache(cmd));
             r.open(cmd);
             if (first>0) 
             {   // skip rows
@@ -1278,9 +2117,7 @@ public class DBUtils implements DBContextAware
             return list;
         }
         finally
-        {
-            r.close();
-            // complete
+        {   // complete
             if (list!=null)
                 factory.completeQuery(list);
         }
@@ -1322,6 +2159,310 @@ public class DBUtils implements DBContextAware
     {
         return queryBeanList(cmd, getCommandBeanListFactory(beanType, cmd), parent);
     }
+
+    /**
+     * Queries a list of Java beans without the MAX_QUERY_ROWS limit and maps the rows to beans in parallel.<BR>
+     * The rows are fetched in chunks by the calling thread and mapped by the tasks of the given pool (see DBReaderPipeline).<BR>
+     * The bean factory must be thread-safe.
+     * @param cmd the query command
+     * @param factory the bean factory
+     * @param parent (optional) the parent bean if any 
+     * @param pool the pool used for mapping the rows to beans
+     * @param chunkSize the number of rows per chunk
+     * @return the list of java beans
+     */
+    public <T> List<T> queryBeanListParallel(DBCommandExpr cmd, DBBeanListFactory<T> factory, Object parent, ForkJoinPool pool, int chunkSize)
+    {
+        DBReader r = new DBReader(context);
+        List<T> list = null;
+        try
+        {   // prepare
+            factory.prepareQuery(cmd, context);
+            // Runquery
+            r.setFetchSize(DBReader.FETCH_SIZE_ADAPTIVE);
+            r.open(cmd);
+            // read list
+            list = factory.newList(getInitialListCapacity(-1));
+            return createReaderPipeline(factory, pool, chunkSize).readList(r, list, parent, -1);
+        }
+        finally
+        {   // close reader
+            r.close();
+            // complete
+            if (list!=null)
+                factory.completeQuery(list);
+        }
+    }
+
+    /**
+     * Queries a list of Java beans without the MAX_QUERY_ROWS limit and maps the rows to beans in parallel
+     * using the common pool and the default chunk size.
+     * @see DBUtils#queryBeanListParallel(DBCommandExpr, DBBeanListFactory, Object, ForkJoinPool, int)
+     * @param cmd the query command
+     * @param beanType the beanType
+     * @param parent (optional) the parent bean if any 
+     * @return the list of java beans
+     */
+    public final <T> List<T> queryBeanListParallel(DBCommandExpr cmd, Class<T> beanType, Object parent)
+    {
+        return queryBeanListParallel(cmd, getCommandBeanListFactory(beanType, cmd), parent, ForkJoinPool.commonPool(), DBReaderPipeline.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates the pipeline for queryBeanListParallel
+     * @param factory the bean factory
+     * @param pool the pool used for mapping the rows to beans
+     * @param chunkSize the number of rows per chunk
+     * @return the reader pipeline
+     */
+    protected <T> DBReaderPipeline<T> createReaderPipeline(DBBeanListFactory<T> factory, ForkJoinPool pool, int chunkSize)
+    {
+        return new DBReaderPipeline<T>(factory, pool, chunkSize);
+    }
+
+    /**
+     * Executes a query and returns the rows as a lazily fetched stream.<BR>
+     * The stream items are a view on the current row of the underlying reader and are only valid until the next row is read.
+     * Use queryDataStream() if items need to be retained.<BR>
+     * The reader is closed after the last row or when the stream is closed.
+     * Hence the stream should be used in a try-with-resources block if not all rows are consumed.
+     * @param cmd the query command
+     * @return the stream of rows
+     */
+    public final Stream<DBRecordData> queryStream(DBCommandExpr cmd)
+    {
+        DBReader r = openStreamReader(cmd);
+        return new DBReaderSpliterator<DBRecordData>(r) {
+            @Override
+            protected DBRecordData getItem(DBReader reader, int rownum)
+            {
+                return reader;
+            }
+        }.stream();
+    }
+
+    /**
+     * Executes a query and returns a lazily fetched stream of DataListEntry items.<BR>
+     * The reader is closed after the last row or when the stream is closed.
+     * @param cmd the query command
+     * @param factory the Factory to be used for each item
+     * @return the stream of items
+     */
+    public final <T extends DataListEntry> Stream<T> queryDataStream(DBCommandExpr cmd, DataListFactory<T> factory)
+    {
+        return createDataSpliterator(cmd, factory).stream();
+    }
+
+    /**
+     * Executes a query and returns a lazily fetched stream of DataListEntry items.<BR>
+     * The reader is closed after the last row or when the stream is closed.
+     * @param cmd the query command
+     * @return the stream of items
+     */
+    public final Stream<DataListEntry> queryDataStream(DBCommandExpr cmd)
+    {
+        return queryDataStream(cmd, createDefaultDataListFactory(DataListEntry.class, createDefaultDataListHead(cmd, DataListEntry.class)));
+    }
+
+    /**
+     * Executes a query and returns a lazily fetched stream of Java beans.<BR>
+     * The reader is closed after the last row or when the stream is closed.
+     * @param cmd the query command
+     * @param factory the bean factory
+     * @param parent (optional) the parent bean if any 
+     * @return the stream of beans
+     */
+    public final <T> Stream<T> queryBeanStream(DBCommandExpr cmd, DBBeanListFactory<T> factory, Object parent)
+    {
+        return createBeanSpliterator(cmd, factory, parent).stream();
+    }
+
+    /**
+     * Executes a query and returns a lazily fetched stream of Java beans.<BR>
+     * The reader is closed after the last row or when the stream is closed.
+     * @param cmd the query command
+     * @param beanType the beanType
+     * @return the stream of beans
+     */
+    public final <T> Stream<T> queryBeanStream(DBCommandExpr cmd, Class<T> beanType)
+    {
+        return queryBeanStream(cmd, getCommandBeanListFactory(beanType, cmd), null);
+    }
+
+    /**
+     * Returns a publisher for the DataListEntry items of a query.<BR>
+     * The query is executed with the first request of the subscriber and rows are only read as requested.
+     * @param cmd the query command
+     * @param factory the Factory to be used for each item
+     * @return the publisher
+     */
+    public final <T extends DataListEntry> DBReaderPublisher<T> queryDataPublisher(final DBCommandExpr cmd, final DataListFactory<T> factory)
+    {
+        return new DBReaderPublisher<T>() {
+            @Override
+            protected DBReaderSpliterator<T> openQuery()
+            {
+                return createDataSpliterator(cmd, factory);
+            }
+        };
+    }
+
+    /**
+     * Returns a publisher for the Java beans of a query.<BR>
+     * The query is executed with the first request of the subscriber and rows are only read as requested.
+     * @param cmd the query command
+     * @param factory the bean factory
+     * @param parent (optional) the parent bean if any 
+     * @return the publisher
+     */
+    public final <T> DBReaderPublisher<T> queryBeanPublisher(final DBCommandExpr cmd, final DBBeanListFactory<T> factory, final Object parent)
+    {
+        return new DBReaderPublisher<T>() {
+            @Override
+            protected DBReaderSpliterator<T> openQuery()
+            {
+                return createBeanSpliterator(cmd, factory, parent);
+            }
+        };
+    }
+
+    /**
+     * Opens a forward only reader with an adaptive fetch size for a query stream
+     * @param cmd the query command
+     * @return the open reader
+     */
+    protected DBReader openStreamReader(DBCommandExpr cmd)
+    {
+        DBReader r = new DBReader(context);
+        try
+        {   // stream rows
+            r.setFetchSize(DBReader.FETCH_SIZE_ADAPTIVE);
+            r.open(cmd);
+            return r;
+        }
+        catch (RuntimeException e)
+        {   // close reader
+            r.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Executes a query and returns a spliterator for DataListEntry items
+     * @param cmd the query command
+     * @param factory the Factory to be used for each item
+     * @return the spliterator
+     */
+    protected <T extends DataListEntry> DBReaderSpliterator<T> createDataSpliterator(DBCommandExpr cmd, final DataListFactory<T> factory)
+    {
+        factory.prepareQuery(cmd, context);
+        DBReader r = openStreamReader(cmd);
+        return new DBReaderSpliterator<T>(r) {
+            @Override
+            protected T getItem(DBReader reader, int rownum)
+            {
+                return factory.newEntry(rownum, reader);
+            }
+        };
+    }
+
+    /**
+     * Executes a query and returns a spliterator for Java beans
+     * @param cmd the query command
+     * @param factory the bean factory
+     * @param parent (optional) the parent bean if any 
+     * @return the spliterator
+     */
+    protected <T> DBReaderSpliterator<T> createBeanSpliterator(DBCommandExpr cmd, final DBBeanListFactory<T> factory, final Object parent)
+    {
+        factory.prepareQuery(cmd, context);
+        DBReader r = openStreamReader(cmd);
+        return new DBReaderSpliterator<T>(r) {
+            @Override
+            protected T getItem(DBReader reader, int rownum)
+            {
+                T item = factory.newItem(rownum, reader);
+                if (item instanceof DataBean<?>)
+                    ((DataBean<?>)item).initialize(((DBObject)reader).getDatabase(), context, rownum, parent);
+                return item;
+            }
+        };
+    }
+
+    /**
+     * Queries the Java beans for a list of primary keys.<BR>
+     * The keys are queried in chunks as described for queryRecordList(DBRowSet, Object[][], DBRecordListFactory).
+     * The beans are returned in the order of the keys. Duplicate keys are returned once.
+     * @param rowset the rowset from which to read the beans
+     * @param keys the primary keys of the beans
+     * @param factory the factory used to instantiate the beans
+     * @param parent (optional) the parent bean if any
+     * @return the beans and the keys for which no bean has been found
+     */
+    public <T> DBKeyedList<T> queryBeanList(DBRowSet rowset, Object[][] keys, DBBeanListFactory<T> factory, Object parent)
+    {
+        Map<DBRecordCache.RecordKey, Object[]> distinctKeys = getDistinctKeys(rowset, keys);
+        List<Object[]> queryKeys = getQueryKeys(distinctKeys);
+        DBColumn[] keyColumns = rowset.getKeyColumns();
+        Map<DBRecordCache.RecordKey, T> beanMap = new HashMap<DBRecordCache.RecordKey, T>(queryKeys.size());
+        int chunkSize = getKeyChunkSize(rowset);
+        int rownum = 0;
+        for (int start=0; start<queryKeys.size(); start+=chunkSize)
+        {   // query chunk
+            List<Object[]> chunk = queryKeys.subList(start, Math.min(start+chunkSize, queryKeys.size()));
+            DBCommand cmd = createKeyListCommand(rowset, chunk);
+            List<T> list = null;
+            DBReader r = new DBReader(context);
+            try
+            {   // prepare
+                factory.prepareQuery(cmd, context);
+                for (int i=0; i<keyColumns.length; i++)
+                {   // key columns are required to assign the beans
+                    if (!cmd.hasSelectExpr(keyColumns[i]))
+                        cmd.select(keyColumns[i]);
+                }
+                // Runquery
+                r.open(cmd);
+                list = factory.newList(chunk.size());
+                while (r.moveNext())
+                {   // Create bean an init
+                    T item = factory.newItem(rownum, r);
+                    if (item==null)
+                        continue;
+                    list.add(item);
+                    beanMap.put(readRecordKey(r, keyColumns), item);
+                    // post processing
+                    if (item instanceof DataBean<?>)
+                        ((DataBean<?>)item).initialize(((DBObject)r).getDatabase(), context, rownum, parent);
+                    // next
+                    rownum++;
+                }
+            }
+            finally
+            {   // close reader
+                r.close();
+                // complete
+                if (list!=null)
+                    factory.completeQuery(list);
+            }
+        }
+        // done
+        if (log.isDebugEnabled())
+            log.debug("{} of {} beans read from {} using {} keys per query.", beanMap.size(), distinctKeys.size(), rowset.getName(), chunkSize);
+        return createKeyedList(distinctKeys, beanMap, factory.newList(distinctKeys.size()));
+    }
+
+    /**
+     * Queries the Java beans for a list of primary keys
+     * @param rowset the rowset from which to read the beans
+     * @param keys the primary keys of the beans
+     * @param beanType the beanType
+     * @return the beans and the keys for which no bean has been found
+     */
+    public final <T> DBKeyedList<T> queryBeanList(DBRowSet rowset, Object[][] keys, Class<T> beanType)
+    {
+        return queryBeanList(rowset, keys, getRowsetBeanListFactory(beanType, rowset), null);
+    }
     
     /**
      * queries a single Java Bean for a given command 
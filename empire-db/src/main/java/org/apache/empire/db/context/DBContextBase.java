@@ -20,14 +20,20 @@ package org.apache.empire.db.context;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.apache.empire.db.DBCommand;
 import org.apache.empire.db.DBContext;
 import org.apache.empire.db.DBObject;
+import org.apache.empire.db.DBQueryCache;
+import org.apache.empire.db.DBRowSet;
 import org.apache.empire.db.DBTable;
 import org.apache.empire.db.DBUtils;
 import org.apache.empire.db.context.DBRollbackManager.ReleaseAction;
 import org.apache.empire.db.exceptions.EmpireSQLException;
+import org.apache.empire.db.expr.set.DBSetExpr;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +52,9 @@ public abstract class DBContextBase implements DBContext
     
     private boolean noRollbackManagerWarnOnce = true;
     
+    // query caches invalidated by uncommitted modifications
+    private Set<DBQueryCache> uncommittedQueryCaches = null;
+    
     /**
      * Factory function for Utils creation 
      * @return the utils implementation
@@ -120,7 +129,9 @@ public abstract class DBContextBase implements DBContext
     public final int executeInsert(DBCommand cmd)
     {
         if (utils==null) setUtils(getUtils()); 
-        return utils.executeSQL(cmd.getInsert(), cmd.getParamValues(), null); 
+        int affected = utils.executeSQL(cmd.getInsert(), cmd.getParamValues(), null);
+        notifyRowsModified(cmd, null, affected);
+        return affected;
     }
 
     /**
@@ -133,7 +144,9 @@ public abstract class DBContextBase implements DBContext
     public final int executeInsertInto(DBTable table, DBCommand cmd)
     {
         if (utils==null) setUtils(getUtils()); 
-        return utils.executeSQL(cmd.getInsertInto(table), cmd.getParamValues(), null); 
+        int affected = utils.executeSQL(cmd.getInsertInto(table), cmd.getParamValues(), null);
+        notifyRowsModified(cmd, table, affected);
+        return affected;
     }
 
     /**
@@ -145,7 +158,9 @@ public abstract class DBContextBase implements DBContext
     public final int executeUpdate(DBCommand cmd)
     {
         if (utils==null) setUtils(getUtils()); 
-        return utils.executeSQL(cmd.getUpdate(), cmd.getParamValues(), null); 
+        int affected = utils.executeSQL(cmd.getUpdate(), cmd.getParamValues(), null);
+        notifyRowsModified(cmd, null, affected);
+        return affected;
     }
 
     /**
@@ -158,7 +173,29 @@ public abstract class DBContextBase implements DBContext
     public final int executeDelete(DBTable from, DBCommand cmd)
     {
         if (utils==null) setUtils(getUtils()); 
-        return utils.executeSQL(cmd.getDelete(from), cmd.getParamValues(), null); 
+        int affected = utils.executeSQL(cmd.getDelete(from), cmd.getParamValues(), null);
+        notifyRowsModified(cmd, from, affected);
+        return affected;
+    }
+
+    /**
+     * Notifies the rowset that has been modified by an insert, update or delete command
+     * @param cmd the command
+     * @param rowset the modified rowset or null to detect the rowset from the set expressions of the command
+     * @param affected the number of affected rows
+     */
+    protected void notifyRowsModified(DBCommand cmd, DBRowSet rowset, int affected)
+    {
+        if (affected<=0)
+            return;
+        if (rowset==null)
+        {   // detect from set expressions
+            List<DBSetExpr> set = cmd.getSetExpressions();
+            if (set==null || set.isEmpty())
+                return;
+            rowset = set.get(0).getTable();
+        }
+        rowset.onRowsModified(this);
     }
     
     @Override
@@ -178,6 +215,8 @@ public abstract class DBContextBase implements DBContext
             // Commit
             if (conn.getAutoCommit()==false)
                 conn.commit();
+            // Notify query caches
+            endQueryCacheTransactions();
             // Done
             return;
         } catch (SQLException sqle) { 
@@ -204,6 +243,8 @@ public abstract class DBContextBase implements DBContext
             // rollback
             log.info("Database rollback issued!");
             conn.rollback();
+            // Notify query caches
+            endQueryCacheTransactions();
             // Perform Rollback
             DBRollbackManager dbrm = (isRollbackHandlingEnabled() ? getRollbackManager(false) : null);
             if (dbrm!=null)
@@ -252,6 +293,41 @@ public abstract class DBContextBase implements DBContext
             dbrm.removeHandler(getConnection(false), object);
     }
 
+    /**
+     * Registers a query cache that has been invalidated by a modification made with this context.<BR>
+     * If the modification has not been committed yet, the cache is notified on commit or rollback (see DBQueryCache.endTransaction()).
+     * @param queryCache the query cache
+     * @return true if the modification has not been committed yet or false if auto-commit is enabled
+     */
+    public boolean addUncommittedQueryCache(DBQueryCache queryCache)
+    {
+        try
+        {   // check auto commit
+            Connection conn = getConnection(false);
+            if (conn==null || conn.getAutoCommit())
+                return false;
+        } catch (SQLException sqle) { 
+            throw new EmpireSQLException(getDbms(), sqle);
+        }
+        // add
+        if (uncommittedQueryCaches==null)
+            uncommittedQueryCaches = new HashSet<DBQueryCache>();
+        uncommittedQueryCaches.add(queryCache);
+        return true;
+    }
+    
+    /**
+     * Notifies all query caches with uncommitted modifications that the transaction has ended
+     */
+    protected void endQueryCacheTransactions()
+    {
+        if (uncommittedQueryCaches==null)
+            return;
+        for (DBQueryCache queryCache : uncommittedQueryCaches)
+            queryCache.endTransaction(this);
+        uncommittedQueryCaches = null;
+    }
+
     /**
      * Discard connection releated ressources
      * WARING: No gurarantee it will be called
@@ -259,7 +335,13 @@ public abstract class DBContextBase implements DBContext
     @Override
     public void discard()
     {
+        // uncommitted changes are lost
+        endQueryCacheTransactions();
         /* don't close connection! */
+        // release connection resources held by the dbms (e.g. cached statements)
+        Connection conn = getConnection(false);
+        if (conn!=null && getDbms()!=null)
+            getDbms().releaseConnection(conn);
     }
     
     /**
@@ -270,7 +352,10 @@ public abstract class DBContextBase implements DBContext
         {   // close connection
             Connection conn = getConnection(false);
             if (conn!=null)
+            {   // release dbms resources first
+                getDbms().releaseConnection(conn);
                 conn.close();
+            }
         } catch (SQLException sqle) { 
             // Commit failed!
             throw new EmpireSQLException(getDbms(), sqle);
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db.expr.column;
+
+import java.util.Set;
+
+import org.apache.empire.data.DataType;
+import org.apache.empire.db.DBColumn;
+import org.apache.empire.db.DBColumnExpr;
+import org.apache.empire.db.DBDatabase;
+import org.apache.empire.db.DBRowSet;
+import org.apache.empire.db.DBSQLBuilder;
+import org.apache.empire.xml.XMLUtil;
+import org.w3c.dom.Element;
+
+/**
+ * This class is used to add the window function "count(*) over()" to the SQL-Command.<BR>
+ * The expression returns the total number of rows of a query in every row, regardless of any row limit.
+ * <P>
+ * Requires DBMSFeature.WINDOW_FUNCTIONS.<BR>
+ * There is no need to explicitly create instances of this class.<BR>
+ * Instead use {@link org.apache.empire.db.DBReader#setQueryTotalCount(boolean)}
+ */
+public class DBTotalCountExpr extends DBColumnExpr
+{
+    // *Deprecated* private static final long serialVersionUID = 1L;
+
+    private final DBDatabase db;
+
+    /**
+     * Constructs a DBTotalCountExpr.
+     *
+     * @param db the database
+     */
+    public DBTotalCountExpr(DBDatabase db)
+    {
+        this.db = db;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final DBDatabase getDatabase()
+    {
+        return db;
+    }
+
+    /**
+     * Returns the data type: DT_INTEGER.
+     *
+     * @return the data type: DT_INTEGER
+     */
+    @Override
+    public DataType getDataType()
+    {
+        return DataType.INTEGER;
+    }
+
+    /**
+     * Not an Enum. Returns null
+     */
+    @Override
+    public Class<Enum<?>> getEnumType()
+    {
+        return null;
+    }
+
+    /**
+     * Returns the String "TOTAL_COUNT".
+     *
+     * @return the String "TOTAL_COUNT"
+     */
+    @Override
+    public String getName()
+    {
+        return "TOTAL_COUNT";
+    }
+
+    /**
+     * Not related to a rowset. Returns null
+     */
+    @Override
+    public DBRowSet getRowSet()
+    {
+        return null;
+    }
+
+    /**
+     * Not related to a column. Returns null
+     */
+    @Override
+    public DBColumn getUpdateColumn()
+    {
+        return null;
+    }
+
+    /**
+     * Returns false since window functions do not require a GROUP BY.
+     *
+     * @return always false
+     */
+    @Override
+    public boolean isAggregate()
+    {
+        return false;
+    }
+
+    /**
+     * Returns true if other is equal to this expression
+     */
+    @Override
+    public boolean equals(Object other)
+    {
+        if (other==this)
+            return true;
+        // Check Type
+        if (other instanceof DBTotalCountExpr)
+            return db.equals(((DBTotalCountExpr)other).db);
+        return false;
+    }
+
+    /**
+     * @see org.apache.empire.db.DBExpr#addReferencedColumns(Set)
+     */
+    @Override
+    public void addReferencedColumns(Set<DBColumn> list)
+    {
+        // no columns referenced
+    }
+
+    /**
+     * Creates the SQL-Command adds the String "count(*) over()" to the SQL-Command.
+     *
+     * @param sql the SQL-Command
+     * @param context the current SQL-Command context
+     */
+    @Override
+    public void addSQL(DBSQLBuilder sql, long context)
+    {
+        sql.append("count(*) over()");
+    }
+
+    /**
+     * this adds the column description to the parent element
+     */
+    @Override
+    public Element addXml(Element parent, long flags)
+    {
+        Element elem = XMLUtil.addElement(parent, "column");
+        elem.setAttribute("name", getName());
+        elem.setAttribute("function", "count");
+        return elem;
+    }
+
+}
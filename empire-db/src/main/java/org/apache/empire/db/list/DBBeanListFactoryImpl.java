@@ -19,14 +19,12 @@
 package org.apache.empire.db.list;
 
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.beanutils.MethodUtils;
 import org.apache.empire.commons.ClassUtils;
 import org.apache.empire.commons.ObjectUtils;
-import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.Column;
 import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBColumnExpr;
@@ -35,7 +33,6 @@ import org.apache.empire.db.DBCommandExpr;
 import org.apache.empire.db.DBContext;
 import org.apache.empire.db.DBRecordData;
 import org.apache.empire.db.exceptions.CommandWithoutSelectException;
-import org.apache.empire.exceptions.BeanInstantiationException;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.apache.empire.exceptions.UnsupportedTypeException;
 import org.slf4j.Logger;
@@ -94,6 +91,8 @@ public class DBBeanListFactoryImpl<T> implements DBBeanListFactory<T>
     protected final Class<?>[] parameterTypes;
     protected final List<? extends DBColumnExpr> constructorParams;
     protected final List<? extends DBColumnExpr> setterColumns;
+    // the mapping plan of the last query
+    private volatile DBBeanMapper<T> beanMapper;
     
     /**
      * Constructs a DBRecordListFactoryImpl based on an DBRecord constructor
@@ -239,59 +238,26 @@ public class DBBeanListFactoryImpl<T> implements DBBeanListFactory<T>
     
     @Override
     public T newItem(int rownum, DBRecordData recData)
-    {   try
-        {   T bean;
-            if (constructorParams!=null && constructor.getParameterCount()>0)
-            {   // Param constructor
-                Object[] params = new Object[constructor.getParameterCount()];
-                int i=0;
-                for (DBColumnExpr expr : constructorParams)
-                {
-                    Class<Enum<?>> enumType = expr.getEnumType();
-                    if (enumType!=null)
-                        params[i] = recData.getEnum(expr, enumType);
-                    else
-                        params[i] = recData.get(expr);
-                    // check type
-                    if (params[i]!=null)
-                    {   // compare types
-                        Class<?> valueType = params[i].getClass();
-                        if (!parameterTypes[i].isAssignableFrom(valueType))
-                        {   // Param type does not match
-                            if (log.isDebugEnabled())
-                                log.debug("{} type of param {} doesn't match: expected \"{}\" got \"{}\"", constructor.getDeclaringClass().getName(), i, parameterTypes[i].getName(), valueType.getName());
-                            // convert
-                            params[i] = ObjectUtils.convert(parameterTypes[i], params[i]);
-                        }
-                    }
-                    // log
-                    if (log.isTraceEnabled())
-                        log.trace("{}: constructor param '{}' is {}", constructor.getDeclaringClass().getName(), StringUtils.coalesce(expr.getName(), String.valueOf(i)), params[i]);
-                    // next
-                    i++;
-                }
-                // create item
-                bean = constructor.newInstance(params);
-                // set remaining properties
-                if (params.length < recData.getFieldCount())
-                    recData.setBeanProperties(bean, constructorParams);
-            }
-            else
-            {   // Standard constructor
-                bean = constructor.newInstance();
-                // set the properties
-                recData.setBeanProperties(bean);
-            }
-            return bean;
-        }
-        catch (InstantiationException | IllegalAccessException | InvocationTargetException e)
-        {   // ReflectiveOperationException
-            throw new BeanInstantiationException(constructor, e);            
-        }
-        catch (IllegalArgumentException e)
-        {   // RuntimeException
-            throw new BeanInstantiationException(constructor, e);            
+    {
+        DBBeanMapper<T> mapper = this.beanMapper;
+        if (mapper==null || !mapper.isMapping(recData))
+        {   // create mapping plan for the fields of this query
+            mapper = createBeanMapper(recData);
+            this.beanMapper = mapper;
         }
+        return mapper.newItem(recData);
+    }
+    
+    /**
+     * Creates the mapping plan for the fields provided by a record data object.<BR>
+     * The plan is reused for all rows with the same fields.
+     * @param recData the record data
+     * @return the bean mapper
+     */
+    protected DBBeanMapper<T> createBeanMapper(DBRecordData recData)
+    {
+        List<? extends DBColumnExpr> params = (constructor.getParameterCount()>0 ? constructorParams : null);
+        return new DBBeanMapper<T>(constructor, params, recData);
     }
     
     @Override
@@ -0,0 +1,401 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db.list;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.beanutils.BeanUtilsBean;
+import org.apache.commons.beanutils.MethodUtils;
+import org.apache.commons.beanutils.PropertyUtilsBean;
+import org.apache.empire.commons.BeanPropertyUtils;
+import org.apache.empire.commons.ObjectUtils;
+import org.apache.empire.data.ColumnExpr;
+import org.apache.empire.data.RecordData;
+import org.apache.empire.db.DBRecordData;
+import org.apache.empire.exceptions.BeanInstantiationException;
+import org.apache.empire.exceptions.BeanPropertySetException;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.ItemNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBBeanMapper
+ * A mapping plan for creating Java beans from the rows of a query.<BR>
+ * The plan is built once for a bean type and the columns of a query result.
+ * It binds the fields to constructor parameters, setter methods or public fields using method handles
+ * and determines the required value conversions in advance.
+ * Hence beans are created without any reflective lookup or property name resolution per row.<BR>
+ * If the record data overrides DBRecordData.setBeanProperties() or DBRecordData.setBeanProperty()
+ * the properties are set by the record data instead.
+ * @param <T> the bean type
+ */
+public class DBBeanMapper<T>
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBBeanMapper.class);
+
+    /**
+     * Converts a field value to the type of a constructor parameter or bean property
+     */
+    protected static class ValueConverter
+    {
+        private final Class<?> targetType;
+        private final Class<Enum<?>> enumType;
+        private final boolean propertyConversion;
+
+        public ValueConverter(Class<?> targetType, Class<Enum<?>> enumType, boolean propertyConversion)
+        {
+            this.targetType = (targetType.isPrimitive() ? MethodUtils.getPrimitiveWrapper(targetType) : targetType);
+            this.enumType = enumType;
+            this.propertyConversion = propertyConversion;
+        }
+
+        public Object convert(Object value)
+        {
+            if (value==null)
+                return null;
+            // Convert to enum
+            if (enumType!=null)
+                value = ObjectUtils.getEnum(enumType, value);
+            // check type
+            if (targetType.isInstance(value))
+                return value;
+            // convert
+            if (propertyConversion)
+                return BeanPropertyUtils.convertPropertyValue(value, targetType);
+            return ObjectUtils.convert(targetType, value);
+        }
+    }
+
+    // the constructor handle is adapted to (Object[])Object and property handles to (Object[])void
+    private static final MethodType HANDLE_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final Class<T> beanType;
+    private final ColumnExpr[] columns;
+    // constructor
+    private final Constructor<T> constructor;
+    private final MethodHandle constructorHandle;
+    private final int[] constructorIndexes;
+    private final ValueConverter[] constructorConverters;
+    // properties
+    private final int[] propertyIndexes;
+    private final String[] propertyNames;
+    private final MethodHandle[] propertySetters;
+    private final ValueConverter[] propertyConverters;
+    private final boolean[] primitiveProperties;
+    // properties set by the record data
+    private final boolean recordDataProperties;
+    private final List<? extends ColumnExpr> ignoreProperties;
+
+    /**
+     * Creates a mapping plan for a bean type and the fields of a record data object
+     * @param constructor the constructor used to create the bean
+     * @param constructorParams (optional) the columns used as constructor parameters. Must match the constructor!
+     * @param recData the record data providing the columns
+     */
+    public DBBeanMapper(Constructor<T> constructor, List<? extends ColumnExpr> constructorParams, RecordData recData)
+    {
+        if (constructor==null)
+            throw new InvalidArgumentException("constructor", constructor);
+        this.beanType = constructor.getDeclaringClass();
+        this.constructor = constructor;
+        // columns
+        this.columns = new ColumnExpr[recData.getFieldCount()];
+        for (int i=0; i<columns.length; i++)
+            columns[i] = recData.getColumn(i);
+        // constructor params
+        int paramCount = constructor.getParameterCount();
+        if (paramCount>0 && (constructorParams==null || constructorParams.size()>paramCount))
+            throw new InvalidArgumentException("constructorParams", constructorParams);
+        Class<?>[] paramTypes = constructor.getParameterTypes();
+        this.constructorIndexes = new int[paramCount];
+        this.constructorConverters = new ValueConverter[paramCount];
+        boolean[] assigned = new boolean[columns.length];
+        for (int i=0; i<paramCount; i++)
+        {   // params without a column are null
+            if (i>=constructorParams.size())
+            {   constructorIndexes[i] = -1;
+                continue;
+            }
+            // find field
+            ColumnExpr expr = constructorParams.get(i);
+            int index = recData.getFieldIndex(expr);
+            if (index<0)
+                throw new ItemNotFoundException(expr.getName());
+            constructorIndexes[i] = index;
+            constructorConverters[i] = new ValueConverter(paramTypes[i], expr.getEnumType(), false);
+            assigned[index] = true;
+        }
+        if (paramCount>0)
+        {   // columns used as constructor params are not set as properties
+            for (int i=0; i<columns.length; i++)
+                if (constructorParams.contains(columns[i]))
+                    assigned[i] = true;
+        }
+        this.constructorHandle = unreflectConstructor(constructor);
+        // properties set by the record data
+        this.recordDataProperties = isBeanPropertiesOverridden(recData);
+        this.ignoreProperties = (paramCount>0 ? constructorParams : null);
+        if (recordDataProperties)
+            log.debug("{} overrides setBeanProperties() or setBeanProperty(). Properties are set by the record data.", recData.getClass().getName());
+        // properties
+        List<Integer> indexList = new ArrayList<Integer>(columns.length);
+        List<MethodHandle> setterList = new ArrayList<MethodHandle>(columns.length);
+        List<Class<?>> typeList = new ArrayList<Class<?>>(columns.length);
+        PropertyUtilsBean propUtils = BeanUtilsBean.getInstance().getPropertyUtils();
+        PropertyDescriptor[] descriptors = propUtils.getPropertyDescriptors(beanType);
+        for (int i=0; i<columns.length && !recordDataProperties; i++)
+        {
+            if (assigned[i])
+                continue;
+            String property = columns[i].getBeanPropertyName();
+            Class<?>[] propertyType = new Class<?>[1];
+            MethodHandle setter = findSetter(propUtils, descriptors, property, propertyType);
+            if (setter==null)
+            {   // Property will be ignored
+                if (log.isDebugEnabled())
+                    log.debug("The bean property \"{}\" cannot be set on {} and will be ignored!", property, beanType.getName());
+                continue;
+            }
+            indexList.add(i);
+            setterList.add(setter);
+            typeList.add(propertyType[0]);
+        }
+        int count = indexList.size();
+        this.propertyIndexes = new int[count];
+        this.propertyNames = new String[count];
+        this.propertySetters = new MethodHandle[count];
+        this.propertyConverters = new ValueConverter[count];
+        this.primitiveProperties = new boolean[count];
+        for (int i=0; i<count; i++)
+        {
+            int index = indexList.get(i);
+            propertyIndexes[i] = index;
+            propertyNames[i] = columns[index].getBeanPropertyName();
+            propertySetters[i] = setterList.get(i);
+            propertyConverters[i] = new ValueConverter(typeList.get(i), columns[index].getEnumType(), true);
+            primitiveProperties[i] = typeList.get(i).isPrimitive();
+        }
+        // log
+        if (log.isDebugEnabled())
+            log.debug("{}: bean mapper created with {} constructor params and {} properties", beanType.getName(), paramCount, count);
+    }
+
+    /**
+     * Returns the bean type
+     * @return the bean type
+     */
+    public Class<T> getBeanType()
+    {
+        return beanType;
+    }
+
+    /**
+     * Returns whether this mapping plan applies to the fields of a record data object
+     * @param recData the record data
+     * @return true if the fields match the columns of this plan or false otherwise
+     */
+    public boolean isMapping(RecordData recData)
+    {
+        if (recData.getFieldCount()!=columns.length)
+            return false;
+        for (int i=0; i<columns.length; i++)
+            if (recData.getColumn(i)!=columns[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Creates a new bean from the current fields of a record data object
+     * @param recData the record data
+     * @return the new bean
+     */
+    @SuppressWarnings("unchecked")
+    public T newItem(RecordData recData)
+    {
+        // create
+        T bean;
+        Object[] params = new Object[constructorIndexes.length];
+        for (int i=0; i<params.length; i++)
+        {
+            if (constructorIndexes[i]>=0)
+                params[i] = constructorConverters[i].convert(recData.getValue(constructorIndexes[i]));
+        }
+        try
+        {   // invoke constructor
+            bean = (T)constructorHandle.invokeExact(params);
+        }
+        catch (RuntimeException e)
+        {   // RuntimeException
+            throw new BeanInstantiationException(constructor, e);
+        }
+        catch (Error e)
+        {   // Error
+            throw e;
+        }
+        catch (Throwable e)
+        {   // checked exception
+            throw new BeanInstantiationException(constructor, new InvocationTargetException(e));
+        }
+        // set properties
+        if (recordDataProperties)
+        {   // set by record data
+            recData.setBeanProperties(bean, ignoreProperties);
+            return bean;
+        }
+        Object[] args = new Object[] { bean, null };
+        for (int i=0; i<propertySetters.length; i++)
+        {
+            Object value = propertyConverters[i].convert(recData.getValue(propertyIndexes[i]));
+            if (value==null && primitiveProperties[i])
+                continue; // leave default
+            try
+            {   // invoke setter
+                args[1] = value;
+                propertySetters[i].invokeExact(args);
+            }
+            catch (RuntimeException e)
+            {   // RuntimeException
+                throw new BeanPropertySetException(bean, propertyNames[i], e);
+            }
+            catch (Error e)
+            {   // Error
+                throw e;
+            }
+            catch (Throwable e)
+            {   // checked exception
+                throw new BeanPropertySetException(bean, propertyNames[i], new InvocationTargetException(e));
+            }
+        }
+        return bean;
+    }
+
+    /**
+     * Returns whether the record data overrides the methods for setting bean properties
+     * @param recData the record data
+     * @return true if DBRecordData.setBeanProperties() or DBRecordData.setBeanProperty() is overridden
+     */
+    protected static boolean isBeanPropertiesOverridden(RecordData recData)
+    {
+        if (!(recData instanceof DBRecordData))
+            return false;
+        for (Class<?> c = recData.getClass(); c!=DBRecordData.class; c = c.getSuperclass())
+        {
+            for (Method method : c.getDeclaredMethods())
+            {
+                Class<?>[] paramTypes = method.getParameterTypes();
+                if (method.getName().equals("setBeanProperties") && Arrays.equals(paramTypes, new Class<?>[] { Object.class, Collection.class }))
+                    return true;
+                if (method.getName().equals("setBeanProperty") && Arrays.equals(paramTypes, new Class<?>[] { ColumnExpr.class, Object.class, Object.class }))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a method handle for a constructor taking all params as an Object array
+     * @param constructor the constructor
+     * @return the method handle
+     */
+    protected MethodHandle unreflectConstructor(Constructor<T> constructor)
+    {
+        try
+        {   MethodHandle handle = MethodHandles.lookup().unreflectConstructor(accessible(constructor));
+            return handle.asSpreader(Object[].class, constructor.getParameterCount()).asType(HANDLE_TYPE);
+        }
+        catch (IllegalAccessException e)
+        {   // ReflectiveOperationException
+            throw new BeanInstantiationException(constructor, e);
+        }
+    }
+
+    /**
+     * Finds the setter method or public field for a property
+     * @param propUtils the property utils
+     * @param descriptors the property descriptors of the bean type
+     * @param property the property name
+     * @param propertyType array for returning the property type
+     * @return the method handle or null if the property cannot be set
+     */
+    protected MethodHandle findSetter(PropertyUtilsBean propUtils, PropertyDescriptor[] descriptors, String property, Class<?>[] propertyType)
+    {
+        try
+        {   // find setter
+            for (PropertyDescriptor pd : descriptors)
+            {
+                if (!pd.getName().equals(property))
+                    continue;
+                Method method = propUtils.getWriteMethod(beanType, pd);
+                if (method==null)
+                    break;
+                propertyType[0] = pd.getPropertyType();
+                return toSetterHandle(MethodHandles.lookup().unreflect(accessible(method)));
+            }
+            // find public field
+            for (Field field : beanType.getFields())
+            {
+                int mod = field.getModifiers();
+                if (!field.getName().equals(property) || Modifier.isStatic(mod) || Modifier.isFinal(mod))
+                    continue;
+                propertyType[0] = field.getType();
+                return toSetterHandle(MethodHandles.lookup().unreflectSetter(field));
+            }
+            // not found
+            return null;
+        }
+        catch (IllegalAccessException e)
+        {   // ReflectiveOperationException
+            log.warn("Property access failed for {} on {}: {}", property, beanType.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static MethodHandle toSetterHandle(MethodHandle setter)
+    {
+        return setter.asType(MethodType.methodType(void.class, Object.class, Object.class)).asSpreader(Object[].class, 2);
+    }
+
+    private static <A extends AccessibleObject> A accessible(A member)
+    {
+        try
+        {   // bean classes are not necessarily accessible from here
+            member.setAccessible(true);
+        }
+        catch (SecurityException e)
+        {   // try anyway
+            log.debug("Unable to make {} accessible", member);
+        }
+        return member;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db.list;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.empire.data.ColumnExpr;
+import org.apache.empire.db.DBColumn;
+import org.apache.empire.db.DBCommand;
+import org.apache.empire.db.DBCommandExpr;
+import org.apache.empire.db.DBContext;
+import org.apache.empire.db.DBRecordData;
+import org.apache.empire.db.DBRowSet;
+import org.apache.empire.db.exceptions.CommandWithoutSelectException;
+import org.apache.empire.exceptions.InvalidArgumentException;
+
+/**
+ * DBIndexedBeanListFactory
+ * Base class for bean list factories which create beans without reflection.<BR>
+ * The field index of each rowset column is determined once per query and passed to {@link #newBean(DBRecordData, int[])}.<BR>
+ * The index array is in the order of the rowset columns and contains -1 for columns that have not been selected.<BR>
+ * This class is used by the code generator for generated bean classes.
+ */
+public abstract class DBIndexedBeanListFactory<T> implements DBBeanListFactory<T>
+{
+    /**
+     * The field indexes for the columns of a particular query
+     */
+    protected static final class FieldIndexes
+    {
+        private final ColumnExpr[] fields;
+        private final int[] indexes;
+
+        protected FieldIndexes(DBRowSet rowset, DBRecordData recData)
+        {
+            this.fields = new ColumnExpr[recData.getFieldCount()];
+            for (int i=0; i<fields.length; i++)
+                fields[i] = recData.getColumn(i);
+            // column indexes
+            List<DBColumn> columns = rowset.getColumns();
+            this.indexes = new int[columns.size()];
+            for (int i=0; i<indexes.length; i++)
+                indexes[i] = recData.getFieldIndex(columns.get(i));
+        }
+
+        protected boolean isMapping(DBRecordData recData)
+        {
+            if (recData.getFieldCount()!=fields.length)
+                return false;
+            for (int i=0; i<fields.length; i++)
+                if (recData.getColumn(i)!=fields[i])
+                    return false;
+            return true;
+        }
+    }
+
+    protected final Class<T> beanType;
+    protected final DBRowSet rowset;
+    // the field indexes of the last query
+    private volatile FieldIndexes fieldIndexes;
+
+    /**
+     * Constructs a DBIndexedBeanListFactory
+     * @param beanType the bean type
+     * @param rowset the rowset which provides the bean properties
+     */
+    protected DBIndexedBeanListFactory(Class<T> beanType, DBRowSet rowset)
+    {
+        if (beanType==null)
+            throw new InvalidArgumentException("beanType", beanType);
+        if (rowset==null)
+            throw new InvalidArgumentException("rowset", rowset);
+        this.beanType = beanType;
+        this.rowset = rowset;
+    }
+
+    /**
+     * Returns the rowset
+     * @return the rowset
+     */
+    public DBRowSet getRowSet()
+    {
+        return rowset;
+    }
+
+    @Override
+    public Class<?> getBeanType()
+    {
+        return beanType;
+    }
+
+    @Override
+    public void prepareQuery(DBCommandExpr cmd, DBContext context)
+    {
+        if (!cmd.hasSelectExpr() && (cmd instanceof DBCommand))
+        {   // select all columns of the rowset
+            ((DBCommand)cmd).select(rowset.getColumns());
+        }
+        // still no select ?
+        if (!cmd.hasSelectExpr())
+            throw new CommandWithoutSelectException(cmd);
+    }
+
+    @Override
+    public List<T> newList(int capacity)
+    {
+        return new ArrayList<T>(capacity);
+    }
+
+    @Override
+    public T newItem(int rownum, DBRecordData recData)
+    {
+        FieldIndexes fi = this.fieldIndexes;
+        if (fi==null || !fi.isMapping(recData))
+        {   // determine field indexes for the fields of this query
+            fi = new FieldIndexes(rowset, recData);
+            this.fieldIndexes = fi;
+        }
+        return newBean(recData, fi.indexes);
+    }
+
+    @Override
+    public void completeQuery(List<T> list)
+    {
+        /* Nothing */
+    }
+
+    /**
+     * Creates a new bean from the current fields of a record data object
+     * @param recData the record data
+     * @param fieldIndexes the field index of each rowset column or -1 if the column has not been selected
+     * @return the new bean
+     */
+    protected abstract T newBean(DBRecordData recData, int[] fieldIndexes);
+
+}
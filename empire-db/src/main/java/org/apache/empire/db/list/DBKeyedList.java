@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db.list;
+
+import java.util.List;
+
+/**
+ * DBKeyedList
+ * Holds the items that have been loaded for a list of primary keys together with the keys that have not been found.
+ * @param <T> the item type
+ */
+public class DBKeyedList<T>
+{
+    private final List<T> items;
+    private final List<Object[]> missingKeys;
+
+    public DBKeyedList(List<T> items, List<Object[]> missingKeys)
+    {
+        this.items = items;
+        this.missingKeys = missingKeys;
+    }
+
+    /**
+     * Returns the items in the order of the requested keys
+     * @return the list of items
+     */
+    public List<T> getItems()
+    {
+        return items;
+    }
+
+    /**
+     * Returns the requested keys for which no item has been found
+     * @return the list of missing keys
+     */
+    public List<Object[]> getMissingKeys()
+    {
+        return missingKeys;
+    }
+
+    /**
+     * Returns whether items are missing for any of the requested keys
+     * @return true if any items are missing or false otherwise
+     */
+    public boolean hasMissingKeys()
+    {
+        return !missingKeys.isEmpty();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db.list;
+
+import java.util.List;
+
+/**
+ * DBListPage
+ * Holds the items of a page of a list together with the total number of items of the query.
+ * @param <T> the item type
+ */
+public class DBListPage<T>
+{
+    private final List<T> items;
+    private final int first;
+    private final int totalCount;
+
+    public DBListPage(List<T> items, int first, int totalCount)
+    {
+        this.items = items;
+        this.first = first;
+        this.totalCount = totalCount;
+    }
+
+    /**
+     * Returns the items of the page
+     * @return the list of items
+     */
+    public List<T> getItems()
+    {
+        return items;
+    }
+
+    /**
+     * Returns the position of the first item of the page
+     * @return the position of the first item
+     */
+    public int getFirst()
+    {
+        return first;
+    }
+
+    /**
+     * Returns the total number of items of the query
+     * @return the total count
+     */
+    public int getTotalCount()
+    {
+        return totalCount;
+    }
+}
@@ -27,5 +27,12 @@ public enum DBMSFeature {
     SEQUENCES,
     SEQUENCE_NEXTVAL,
     QUERY_LIMIT_ROWS,
-    QUERY_SKIP_ROWS
+    QUERY_SKIP_ROWS,
+    BATCH_GENERATED_KEYS,    // returns generated keys for all rows of a JDBC batch
+    MULTI_ROW_INSERT,        // supports INSERT INTO ... VALUES (...), (...)
+    UPSERT,                  // supports insert or update in a single statement (see DBCommand.getUpsert())
+    INSERT_RETURNING,        // returns the values of database generated columns from an insert statement
+    ORDER_NULLS_FIRST,       // null values are sorted before all other values in ascending order
+    ORDER_NULLS_FIRST_DESC,  // null values are sorted before all other values in descending order
+    WINDOW_FUNCTIONS         // supports window functions like COUNT(*) OVER()
 }
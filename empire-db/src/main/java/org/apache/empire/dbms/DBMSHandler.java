@@ -24,6 +24,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 
 import org.apache.empire.data.DataType;
+import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBColumnExpr;
 import org.apache.empire.db.DBCommand;
 import org.apache.empire.db.DBCommandExpr;
@@ -36,6 +37,7 @@ import org.apache.empire.db.DBSQLScript;
 import org.apache.empire.db.DBTableColumn;
 import org.apache.empire.db.validation.DBModelChecker;
 import org.apache.empire.db.validation.DBModelParser;
+import org.apache.empire.exceptions.NotSupportedException;
 
 /**
  * The DBMSHandler interface implements all RDBMS specific logic
@@ -64,6 +66,57 @@ public interface DBMSHandler
      */
     void detachDatabase(DBDatabase db, Connection conn);
     
+    /**
+     * Releases all resources held by the dbms for a particular connection (e.g. cached statements).
+     * This must be called before a connection is closed or returned to a connection pool.<BR>
+     * The connection itself must neither be closed nor committed. The default implementation does nothing.
+     * @param conn the Jdbc connection
+     */
+    default void releaseConnection(Connection conn)
+    {
+        /* Nothing */
+    }
+    
+    /**
+     * Returns the maximum number of parameters allowed for a single statement.<BR>
+     * The default implementation returns 2000.
+     * @return the maximum number of statement params
+     */
+    default int getMaxStatementParams()
+    {
+        return 2000;
+    }
+    
+    /**
+     * Returns the maximum length of a single SQL statement.<BR>
+     * The default implementation returns 100000.
+     * @return the maximum number of characters of a statement
+     */
+    default int getMaxStatementLength()
+    {
+        return 100000;
+    }
+    
+    /**
+     * Returns the maximum number of rows of a multi-row insert statement (see DBMSFeature.MULTI_ROW_INSERT).<BR>
+     * The default implementation returns 1000.
+     * @return the maximum number of rows
+     */
+    default int getMaxInsertRows()
+    {
+        return 1000;
+    }
+    
+    /**
+     * Returns the maximum number of values of an IN-list.<BR>
+     * The default implementation returns 1000.
+     * @return the maximum number of values
+     */
+    default int getMaxInListSize()
+    {
+        return 1000;
+    }
+    
     /**
      * This function creates a DBSQLBuilder for this DBMS
      * @return a DBMS specific DBSQLBuilder object
@@ -191,6 +244,29 @@ public interface DBMSHandler
     int executeSQL(String sqlCmd, Object[] sqlParams, Connection conn, DBSetGenKeys genKeys)
         throws SQLException;
 
+    /**
+     * Executes an insert statement and returns the values of database generated columns of the new row
+     * (e.g. identity columns or columns with default values).<BR>
+     * Requires DBMSFeature.INSERT_RETURNING<BR>
+     * The statement must be created with DBCommand.getInsert(returnColumns) for the same columns.<BR>
+     * The default implementation throws a NotSupportedException.
+     * 
+     * @param sqlCmd the SQL-Command
+     * @param sqlParams array of sql command parameters used for prepared statements (Optional).
+     * @param conn a valid connection to the database.
+     * @param returnColumns the columns for which to return the values
+     * @param returnValues an array receiving the values of the returnColumns
+     * 
+     * @return the row count
+     * 
+     * @throws SQLException thrown if a database access error occurs
+     */
+    default int executeInsertReturning(String sqlCmd, Object[] sqlParams, Connection conn, DBColumn[] returnColumns, Object[] returnValues)
+        throws SQLException
+    {
+        throw new NotSupportedException(this, "executeInsertReturning");
+    }
+
     /**
      * Executes a list of sql statements as batch
      * @param sqlCmd the sql command
@@ -202,6 +278,30 @@ public interface DBMSHandler
     public int[] executeBatch(String[] sqlCmd, Object[][] sqlCmdParams, Connection conn)
         throws SQLException;
     
+    /**
+     * Executes a single sql statement as a batch with multiple sets of parameters.<BR>
+     * The default implementation passes the statement for each set of parameters to executeBatch(String[], Object[][], Connection)
+     * and does not support generated keys.
+     * @param sqlCmd the sql command
+     * @param sqlCmdParams the command params for each batch row
+     * @param conn the jdbc connection
+     * @param genKeys allows to set the auto generated keys of the inserted records (INSERT statements only).
+     *        Requires DBMSFeature.BATCH_GENERATED_KEYS
+     * @return the number of affected records for each batch row
+     * @throws SQLException thrown if a database access error occurs
+     */
+    default int[] executeBatch(String sqlCmd, Object[][] sqlCmdParams, Connection conn, DBSetGenKeys genKeys)
+        throws SQLException
+    {
+        if (genKeys!=null)
+            throw new NotSupportedException(this, "executeBatch with generated keys");
+        // execute the command for each batch row
+        String[] sqlCmds = new String[sqlCmdParams.length];
+        for (int i=0; i<sqlCmds.length; i++)
+            sqlCmds[i] = sqlCmd;
+        return executeBatch(sqlCmds, sqlCmdParams, conn);
+    }
+    
     /**
      * Executes an select SQL-command and returns the query results
      * 
@@ -215,6 +315,26 @@ public interface DBMSHandler
     public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, Connection conn)
         throws SQLException;
 
+    /**
+     * Executes an select SQL-command and returns the query results using a particular fetch size.<BR>
+     * A positive fetch size enables the streaming mode of the JDBC driver (if available) 
+     * such that the result is not fully loaded into memory before the first row can be read.<BR>
+     * The default implementation ignores the fetch size.
+     * 
+     * @param sqlCmd the SQL-Command
+     * @param sqlParams array of sql command parameters used for prepared statements (Optional).
+     * @param scrollable true if scrollable or false otherwise
+     * @param fetchSize the number of rows to fetch with each database round trip or 0 for the driver's default
+     * @param conn a valid connection to the database.
+     * @return the JDBC resultset
+     * @throws SQLException thrown if a database access error occurs
+     */
+    default ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, int fetchSize, Connection conn)
+        throws SQLException
+    {
+        return executeQuery(sqlCmd, sqlParams, scrollable, conn);
+    }
+
     /**
      * Reads a single column value from the given JDBC ResultSet and returns a value object of desired data type. 
      * 
@@ -232,6 +352,20 @@ public interface DBMSHandler
     Object getResultValue(ResultSet rset, int columnIndex, DataType dataType)
         throws SQLException;
 
+    /**
+     * Returns an extractor for reading column values of a particular data type from a JDBC ResultSet.<BR>
+     * The extractor is resolved once per column and then used for every row.<BR>
+     * The default implementation delegates to getResultValue(). 
+     * 
+     * @param dataType the data type of the column
+     * 
+     * @return the value extractor 
+     */
+    default DBValueExtractor getValueExtractor(DataType dataType)
+    {
+        return new DBValueExtractor.ResultValueExtractor(this, dataType);
+    }
+
     /**
      * Closes the provided JDBC Resultset
      * Use it instead of rset.close() and stmt.close() 
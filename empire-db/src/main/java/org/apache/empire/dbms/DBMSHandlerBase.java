@@ -24,11 +24,17 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
 
 import org.apache.empire.commons.DateUtils;
 import org.apache.empire.commons.ObjectUtils;
@@ -52,9 +58,13 @@ import org.apache.empire.db.DBSQLScript;
 import org.apache.empire.db.DBTable;
 import org.apache.empire.db.DBTableColumn;
 import org.apache.empire.db.exceptions.EmpireSQLException;
+import org.apache.empire.db.exceptions.QueryFailedException;
+import org.apache.empire.db.exceptions.QueryNoResultException;
 import org.apache.empire.db.validation.DBModelChecker;
 import org.apache.empire.db.validation.DBModelParser;
+import org.apache.empire.exceptions.InternalException;
 import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.InvalidOperationException;
 import org.apache.empire.exceptions.NotSupportedException;
 import org.apache.empire.exceptions.UnexpectedReturnValueException;
 import org.slf4j.Logger;
@@ -83,6 +93,21 @@ public abstract class DBMSHandlerBase implements DBMSHandler
     // Postfix for auto-generated Sequence names
     protected String SEQUENCE_NAME_SUFFIX = "_SEQ";
     
+    // PreparedStatement cache (optional)
+    protected DBStatementCache statementCache = null;
+    
+    // Sequence value cache (optional)
+    protected DBSequenceCache sequenceCache = null;
+    
+    // Statement limits
+    protected int maxStatementParams = 2000;
+    protected int maxStatementLength = 1000000;
+    protected int maxInsertRows = 1000;
+    protected int maxInListSize = 1000;
+
+    // flag whether getResultValue() is overridden
+    private Boolean resultValueOverridden = null;
+    
     /**
      * DBMSBuilder
      * A Default DBSQLBuilder implementation with no additional features
@@ -109,15 +134,73 @@ public abstract class DBMSHandlerBase implements DBMSHandler
 
     /**
      * This class is used to emulate sequences by using a sequence table.
-     * It is used with the executeSQL function and only required for insert statements
+     * It is used with the executeSQL function and only required for insert statements.
+     * <P>
+     * By default every value requires a select and an update of the sequence table.<BR>
+     * If a block size greater than 1 is set (see setBlockSize()) a block of values is reserved with each update 
+     * and the values are handed out from memory (hi/lo allocation).<BR>
+     * If a maximum block size is set, the block size is adjusted to the rate in which values are requested.<BR>
+     * Unused values of a block are lost when the application terminates.
+     * <P>
+     * Block allocation requires a DataSource (see setDataSource()) which is used to reserve the blocks in a separate transaction.
+     * A block reserved within the transaction of the insert statement would be lost on rollback 
+     * while its values are still handed out from memory, and the same values would be reserved again.
+     * Hence the DataSource must be set before a block size greater than 1 is set.
      */
     public static class DBSeqTable extends DBTable
     {
         // *Deprecated* private static final long serialVersionUID = 1L;
+        
+        /**
+         * A block of reserved sequence values
+         */
+        protected static final class SeqBlock
+        {
+            private final AtomicLong next;
+            private final long last;
+            private final int  size;
+            private final long created;
+            
+            public SeqBlock(long first, int size)
+            {
+                this.next = new AtomicLong(first);
+                this.last = first + size - 1;
+                this.size = size;
+                this.created = System.currentTimeMillis();
+            }
+            
+            /**
+             * Returns the next value of the block
+             * @return the next value or null if the block is exhausted
+             */
+            public Long nextValue()
+            {
+                long value = next.getAndIncrement();
+                return (value <= last ? value : null);
+            }
+            
+            public int getSize()
+            {
+                return size;
+            }
+            
+            public long getCreated()
+            {
+                return created;
+            }
+        }
       
         public DBColumn C_SEQNAME;
         public DBColumn C_SEQVALUE;
         public DBColumn C_TIMESTAMP;
+        
+        // Block allocation
+        private int  defaultBlockSize = 1;
+        private int  maxBlockSize = 0;
+        private long blockTargetMillis = 1000;
+        private DataSource dataSource = null;
+        private final Map<String, Integer>  blockSizeMap = new ConcurrentHashMap<String, Integer>();
+        private final Map<String, SeqBlock> blockMap = new ConcurrentHashMap<String, SeqBlock>();
 
         /**
          * Constructor
@@ -135,9 +218,260 @@ public abstract class DBMSHandlerBase implements DBMSHandler
             // Primary Key
             setPrimaryKey(new DBColumn[] { C_SEQNAME });
         }
+        
+        /**
+         * Returns the number of values reserved at once for a particular sequence
+         * @param seqName the sequence name
+         * @return the block size
+         */
+        public int getBlockSize(String seqName)
+        {
+            Integer blockSize = blockSizeMap.get(seqName);
+            return (blockSize!=null ? blockSize : defaultBlockSize);
+        }
+
+        /**
+         * Sets the number of values reserved at once for a particular sequence.<BR>
+         * If adaptive sizing is enabled this is the minimum block size.<BR>
+         * A block size greater than 1 requires a DataSource (see setDataSource()).
+         * @param seqName the sequence name
+         * @param blockSize the block size or 1 to disable block allocation
+         */
+        public void setBlockSize(String seqName, int blockSize)
+        {
+            if (blockSize<1)
+                throw new InvalidArgumentException("blockSize", blockSize);
+            if (blockSize>1)
+                checkDataSource();
+            blockSizeMap.put(seqName, blockSize);
+        }
+
+        /**
+         * Returns the number of values reserved at once for all sequences without an individual block size
+         * @return the default block size
+         */
+        public int getDefaultBlockSize()
+        {
+            return defaultBlockSize;
+        }
+
+        /**
+         * Sets the number of values reserved at once for all sequences without an individual block size.<BR>
+         * A block size greater than 1 requires a DataSource (see setDataSource()).
+         * @param defaultBlockSize the default block size or 1 to disable block allocation
+         */
+        public void setDefaultBlockSize(int defaultBlockSize)
+        {
+            if (defaultBlockSize<1)
+                throw new InvalidArgumentException("defaultBlockSize", defaultBlockSize);
+            if (defaultBlockSize>1)
+                checkDataSource();
+            this.defaultBlockSize = defaultBlockSize;
+        }
+
+        /**
+         * Returns the maximum block size for adaptive block sizing 
+         * @return the maximum block size or 0 if adaptive block sizing is disabled
+         */
+        public int getMaxBlockSize()
+        {
+            return maxBlockSize;
+        }
+
+        /**
+         * Enables adaptive block sizing.<BR>
+         * The size of a new block is doubled if the previous block was used up in less than half of the block target time
+         * and halved if it took more than twice that time. The block size of the sequence is used as the minimum.<BR>
+         * Adaptive block sizing requires a DataSource (see setDataSource()).
+         * @param maxBlockSize the maximum block size or 0 to disable adaptive block sizing
+         */
+        public void setMaxBlockSize(int maxBlockSize)
+        {
+            if (maxBlockSize>1)
+                checkDataSource();
+            this.maxBlockSize = maxBlockSize;
+        }
+
+        /**
+         * Returns the time in milliseconds in which a block should be used up with adaptive block sizing  
+         * @return the block target time in milliseconds
+         */
+        public long getBlockTargetMillis()
+        {
+            return blockTargetMillis;
+        }
+
+        /**
+         * Sets the time in milliseconds in which a block should be used up with adaptive block sizing  
+         * @param blockTargetMillis the block target time in milliseconds
+         */
+        public void setBlockTargetMillis(long blockTargetMillis)
+        {
+            this.blockTargetMillis = blockTargetMillis;
+        }
+
+        /**
+         * Returns the DataSource used to reserve blocks of values in a separate transaction
+         * @return the DataSource or null
+         */
+        public DataSource getDataSource()
+        {
+            return dataSource;
+        }
+
+        /**
+         * Sets a DataSource used to reserve blocks of values in a separate transaction.<BR>
+         * The DataSource is required for block allocation and cannot be removed while block allocation is enabled.
+         * @param dataSource the DataSource or null 
+         */
+        public void setDataSource(DataSource dataSource)
+        {
+            if (dataSource==null && isBlockAllocationEnabled())
+                throw new InvalidOperationException("The DataSource of "+getName()+" is required for block allocation.");
+            this.dataSource = dataSource;
+        }
+
+        /**
+         * Returns whether a block size greater than 1 or adaptive block sizing is set for any sequence
+         * @return true if block allocation is enabled or false otherwise
+         */
+        public boolean isBlockAllocationEnabled()
+        {
+            if (defaultBlockSize>1 || maxBlockSize>1)
+                return true;
+            for (Integer blockSize : blockSizeMap.values())
+                if (blockSize>1)
+                    return true;
+            return false;
+        }
+        
+        /**
+         * Discards all reserved values.
+         */
+        public void clearBlocks()
+        {
+            blockMap.clear();
+        }
 
         // Overrideable
         public Object getNextValue(String SeqName, long minValue, Connection conn)
+        {
+            int blockSize = getBlockSize(SeqName);
+            if (blockSize<=1 && maxBlockSize<=1)
+            {   // Single value
+                long seqValue = reserveValues(SeqName, minValue, 1, conn);
+                return new Long(seqValue);
+            }
+            // Get from current block
+            Long value = nextBlockValue(SeqName, minValue);
+            if (value!=null)
+                return value;
+            // Reserve a new block
+            synchronized(blockMap)
+            {   // check again
+                value = nextBlockValue(SeqName, minValue);
+                if (value!=null)
+                    return value;
+                // calculate block size
+                blockSize = getNextBlockSize(blockSize, blockMap.get(SeqName));
+                long first = reserveBlock(SeqName, minValue, blockSize, conn);
+                SeqBlock block = new SeqBlock(first, blockSize);
+                value = block.nextValue();
+                blockMap.put(SeqName, block);
+                return value;
+            }
+        }
+        
+        /**
+         * Returns the next value from the current block of a sequence
+         * @param seqName the sequence name
+         * @param minValue the minimum value
+         * @return the next value or null if a new block must be reserved
+         */
+        protected Long nextBlockValue(String seqName, long minValue)
+        {
+            SeqBlock block = blockMap.get(seqName);
+            if (block==null)
+                return null;
+            Long value = block.nextValue();
+            return (value!=null && value>=minValue ? value : null);
+        }
+        
+        /**
+         * Returns the size of the next block for adaptive block sizing 
+         * @param blockSize the block size of the sequence
+         * @param prevBlock the previous block (may be null)
+         * @return the size of the next block
+         */
+        protected int getNextBlockSize(int blockSize, SeqBlock prevBlock)
+        {
+            if (maxBlockSize<=blockSize || prevBlock==null)
+                return blockSize;
+            // adapt to rate
+            long elapsed = System.currentTimeMillis() - prevBlock.getCreated();
+            int size = prevBlock.getSize();
+            if (elapsed < blockTargetMillis / 2)
+                size = (int)Math.min(2L * size, maxBlockSize);
+            else if (elapsed > blockTargetMillis * 2)
+                size = size / 2;
+            return Math.max(size, blockSize);
+        }
+        
+        /**
+         * Reserves a block of sequence values in a separate transaction using the DataSource
+         * @param seqName the sequence name
+         * @param minValue the minimum value
+         * @param count the number of values to reserve
+         * @param conn the connection of the insert statement (not used for the reservation)
+         * @return the first value of the block
+         */
+        protected long reserveBlock(String seqName, long minValue, int count, Connection conn)
+        {
+            checkDataSource();
+            // use a separate connection
+            Connection seqConn = null;
+            try
+            {   // get connection
+                seqConn = dataSource.getConnection();
+                boolean autoCommit = seqConn.getAutoCommit(); 
+                long first = reserveValues(seqName, minValue, count, seqConn);
+                if (!autoCommit)
+                    seqConn.commit();
+                return first;
+            } catch (SQLException e) {
+                // throw exception
+                throw new EmpireSQLException(this, e);
+            } finally {
+                // release connection
+                if (seqConn!=null)
+                {   try {
+                        db.getDbms().releaseConnection(seqConn);
+                        seqConn.close();
+                    } catch (SQLException e) {
+                        log.warn("Failed to close sequence connection: "+e.getMessage());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Checks whether a DataSource for block allocation is set
+         */
+        protected void checkDataSource()
+        {
+            if (dataSource==null)
+                throw new InvalidOperationException("Block allocation for "+getName()+" requires a DataSource. Use setDataSource() first.");
+        }
+
+        /**
+         * Reserves a number of sequence values by incrementing the sequence table
+         * @param SeqName the sequence name
+         * @param minValue the minimum value
+         * @param count the number of values to reserve
+         * @param conn the connection to use
+         * @return the first reserved value
+         */
+        protected long reserveValues(String SeqName, long minValue, int count, Connection conn)
         {
             DBMSHandler dbms = db.getDbms();
             // Create a Command
@@ -168,7 +502,7 @@ public abstract class DBMSHandlerBase implements DBMSHandler
                         cmd.clear();
                         DBCmdParam name = cmd.addParam(SeqName);
                         DBCmdParam time = cmd.addParam(current);
-                        cmd.set(C_SEQVALUE.to(seqValue));
+                        cmd.set(C_SEQVALUE.to(seqValue + count - 1));
                         cmd.set(C_TIMESTAMP.to(DBDatabase.SYSDATE));
                         cmd.where(C_SEQNAME.is(name));
                         cmd.where(C_TIMESTAMP.is(time));
@@ -184,7 +518,7 @@ public abstract class DBMSHandlerBase implements DBMSHandler
                         // create a new sequence entry
                         cmd.clear();
                         cmd.set(C_SEQNAME.to(SeqName));
-                        cmd.set(C_SEQVALUE.to(seqValue));
+                        cmd.set(C_SEQVALUE.to(seqValue + count - 1));
                         cmd.set(C_TIMESTAMP.to(DBDatabase.SYSDATE));
                         if (dbms.executeSQL(cmd.getInsert(), cmd.getParamValues(), conn, null) < 1)
                             seqValue = 0; // Try again
@@ -198,8 +532,12 @@ public abstract class DBMSHandlerBase implements DBMSHandler
                     rs = null;
                 }
                 if (log.isInfoEnabled())
-                    log.info("Sequence {} incremented to {}.", SeqName, seqValue);
-                return new Long(seqValue);
+                {   if (count>1)
+                        log.info("Sequence {} reserved values {} to {}.", SeqName, seqValue, seqValue + count - 1);
+                    else
+                        log.info("Sequence {} incremented to {}.", SeqName, seqValue);
+                }
+                return seqValue;
             } catch (SQLException e) {
                 // throw exception
                 throw new EmpireSQLException(this, e);
@@ -261,6 +599,153 @@ public abstract class DBMSHandlerBase implements DBMSHandler
         reservedSQLKeywords.add(keyWord.toLowerCase());
     }
 
+    /**
+     * Returns the PreparedStatement cache used by this DBMSHandler
+     * @return the statement cache or null if statement caching is disabled
+     */
+    public DBStatementCache getStatementCache()
+    {
+        return statementCache;
+    }
+
+    /**
+     * Sets a cache for PreparedStatements.<BR>
+     * If set, prepared statements used by executeSQL, executeQuery and querySingleValue will be reused on the same connection.<BR>
+     * IMPORTANT: Cached statements must be released by calling releaseConnection() before a connection is closed or returned to a pool.
+     * @param statementCache the statement cache or null to disable statement caching
+     */
+    public void setStatementCache(DBStatementCache statementCache)
+    {
+        if (this.statementCache!=null && this.statementCache!=statementCache)
+            this.statementCache.clear();
+        this.statementCache = statementCache;
+    }
+
+    /**
+     * Enables or disables PreparedStatement caching
+     * @param maxStatements the maximum number of statements cached per connection or 0 to disable statement caching
+     */
+    public final void setStatementCacheSize(int maxStatements)
+    {
+        setStatementCache(maxStatements>0 ? new DBStatementCache(maxStatements) : null);
+    }
+
+    /**
+     * Releases all resources held for a particular connection (e.g. cached statements).<BR>
+     * Must be called before the connection is closed or returned to a connection pool. 
+     * @param conn the connection
+     */
+    @Override
+    public void releaseConnection(Connection conn)
+    {
+        if (statementCache!=null && conn!=null)
+            statementCache.releaseConnection(conn);
+    }
+
+    /**
+     * Returns the sequence cache used for prefetching sequence values
+     * @return the sequence cache or null if sequence values are not prefetched
+     */
+    public DBSequenceCache getSequenceCache()
+    {
+        return sequenceCache;
+    }
+
+    /**
+     * Sets a cache for prefetching sequence values.<BR>
+     * If set, sequence values for AUTOINC columns are obtained from the cache (see getColumnAutoValue()).
+     * @param sequenceCache the sequence cache or null to disable prefetching
+     */
+    public void setSequenceCache(DBSequenceCache sequenceCache)
+    {
+        this.sequenceCache = sequenceCache;
+    }
+
+    /**
+     * Enables or disables prefetching of sequence values
+     * @param prefetchSize the number of sequence values to fetch at once or 0 to disable prefetching
+     */
+    public final void setSequencePrefetchSize(int prefetchSize)
+    {
+        setSequenceCache(prefetchSize>1 ? new DBSequenceCache(prefetchSize) : null);
+    }
+    
+    /**
+     * Returns the maximum number of parameters allowed for a single statement
+     * @return the maximum number of statement params
+     */
+    @Override
+    public int getMaxStatementParams()
+    {
+        return maxStatementParams;
+    }
+
+    /**
+     * Sets the maximum number of parameters allowed for a single statement
+     * @param maxStatementParams the maximum number of statement params
+     */
+    public void setMaxStatementParams(int maxStatementParams)
+    {
+        this.maxStatementParams = maxStatementParams;
+    }
+
+    /**
+     * Returns the maximum length of a single SQL statement
+     * @return the maximum number of characters of a statement
+     */
+    @Override
+    public int getMaxStatementLength()
+    {
+        return maxStatementLength;
+    }
+
+    /**
+     * Sets the maximum length of a single SQL statement
+     * @param maxStatementLength the maximum number of characters of a statement
+     */
+    public void setMaxStatementLength(int maxStatementLength)
+    {
+        this.maxStatementLength = maxStatementLength;
+    }
+
+    /**
+     * Returns the maximum number of rows of a single multi-row insert statement
+     * @return the maximum number of rows
+     */
+    @Override
+    public int getMaxInsertRows()
+    {
+        return maxInsertRows;
+    }
+
+    /**
+     * Sets the maximum number of rows of a single multi-row insert statement
+     * @param maxInsertRows the maximum number of rows
+     */
+    public void setMaxInsertRows(int maxInsertRows)
+    {
+        this.maxInsertRows = maxInsertRows;
+    }
+
+    /**
+     * Returns the maximum number of values of an IN-list
+     * @return the maximum number of values
+     */
+    @Override
+    public int getMaxInListSize()
+    {
+        return maxInListSize;
+    }
+
+    /**
+     * Sets the maximum number of values of an IN-list
+     * @param maxInListSize the maximum number of values
+     */
+    public void setMaxInListSize(int maxInListSize)
+    {
+        this.maxInListSize = maxInListSize;
+    }
+    
     /**
      * checks if the database exists
      * The default implementation performs a simple count query on the first table or view
@@ -447,6 +932,52 @@ public abstract class DBMSHandlerBase implements DBMSHandler
      */
     public abstract DBColumnExpr getNextSequenceValueExpr(DBTableColumn column);
 
+    /**
+     * Returns a number of sequence values obtained with a single statement.<BR>
+     * This is used by the DBSequenceCache to prefetch sequence values.<BR>
+     * The default implementation returns null, which means that fetching multiple values is not supported.
+     * @param db the database
+     * @param seqName the name of the sequence
+     * @param count the number of values to fetch
+     * @param conn a valid database connection
+     * @return the sequence values or null if not supported
+     */
+    public Object[] getNextSequenceValues(DBDatabase db, String seqName, int count, Connection conn)
+    {
+        return null;
+    }
+
+    /**
+     * Executes a query returning a list of sequence values
+     * @param sqlCmd the SQL-Command
+     * @param sqlParams the statement params (optional)
+     * @param dataType the data type of the sequence values
+     * @param conn a valid database connection
+     * @return the sequence values
+     */
+    protected Object[] querySequenceValues(String sqlCmd, Object[] sqlParams, DataType dataType, Connection conn)
+    {
+        if (log.isDebugEnabled())
+            log.debug("Executing: " + sqlCmd);
+        ResultSet rs = null;
+        try
+        {   // query values
+            rs = executeQuery(sqlCmd, sqlParams, false, conn);
+            DBValueExtractor extractor = getValueExtractor(dataType);
+            List<Object> values = new ArrayList<Object>();
+            while (rs.next())
+                values.add(extractor.getValue(rs, 1));
+            if (values.isEmpty())
+                throw new QueryNoResultException(sqlCmd);
+            return values.toArray();
+        } catch (SQLException sqle) {
+            // Error
+            throw new QueryFailedException(this, sqlCmd, StringUtils.arrayToString(sqlParams, "|"), sqle);
+        } finally {
+            closeResultSet(rs);
+        }
+    }
+
     /**
      * Returns the sequence name of for a column of type AUTOINC
      * The sequence name is usually provided as the default value
@@ -491,6 +1022,8 @@ public abstract class DBMSHandlerBase implements DBMSHandler
             if (isSupported(DBMSFeature.SEQUENCES)==false)
                 return null; // Create Later
             String sequenceName = getColumnSequenceName(column);
+            if (sequenceCache!=null)
+                return sequenceCache.getNextValue(this, db, sequenceName, 1, conn);
             return getNextSequenceValue(db, sequenceName, 1, conn);
         }
         else if (type== DataType.UNIQUEID)
@@ -533,7 +1066,8 @@ public abstract class DBMSHandlerBase implements DBMSHandler
      * Reads a single column value from the given JDBC ResultSet and returns a value object of desired data type.<BR> 
      * 
      * This gives the dbms the opportunity to change the value
-     * i.e. to simulate missing data types with other types.
+     * i.e. to simulate missing data types with other types.<BR>
+     * The value is read using the extractor returned by getValueExtractor().
      * 
      * @param rset the sql Resultset with the current data row
      * @param columnIndex one based column Index of the desired column
@@ -547,33 +1081,77 @@ public abstract class DBMSHandlerBase implements DBMSHandler
     public Object getResultValue(ResultSet rset, int columnIndex, DataType dataType)
         throws SQLException
     {
-        // Special handing of DATE, TIME, DATETIME and TIMESTAMP
-        if (dataType == DataType.DATE)
-        {   // use getDate() (do not use getObject()!)
-            return rset.getDate(columnIndex);
-        }
-        if (dataType == DataType.TIME)
-        {   // use getTime() (do not use getObject()!)
-            return rset.getTime(columnIndex);
-        }
-        if (dataType == DataType.DATETIME || dataType == DataType.TIMESTAMP)
-        {   // use getTimestamp() (do not use getObject()!) 
-            return rset.getTimestamp(columnIndex);
-        } 
-        // Check for character large object
-        if (dataType == DataType.CLOB)
-        {   // Get string from character large object
-            java.sql.Clob clob = rset.getClob(columnIndex);
-            return ((clob != null) ? clob.getSubString(1, (int) clob.length()) : null);
-        } 
-        // Check for binary large object
-        if (dataType == DataType.BLOB)
-        {   // Get bytes of a binary large object
-            java.sql.Blob blob = rset.getBlob(columnIndex);
-            return ((blob != null) ? blob.getBytes(1, (int) blob.length()) : null);
-        }
-        // default
-        return rset.getObject(columnIndex);
+        DBValueExtractor extractor = getValueExtractor(dataType);
+        if (extractor instanceof DBValueExtractor.ResultValueExtractor)
+            extractor = getDefaultValueExtractor(dataType); // avoid recursion
+        return extractor.getValue(rset, columnIndex);
+    }
+
+    /**
+     * Returns an extractor for reading column values of a particular data type from a JDBC ResultSet.<BR>
+     * Override this function in order to provide dbms specific extractors.<BR>
+     * If a subclass overrides getResultValue() instead, an extractor delegating to getResultValue() is returned.
+     * 
+     * @param dataType the data type of the column
+     * 
+     * @return the value extractor 
+     */
+    @Override
+    public DBValueExtractor getValueExtractor(DataType dataType)
+    {
+        if (isResultValueOverridden())
+            return new DBValueExtractor.ResultValueExtractor(this, dataType);
+        return getDefaultValueExtractor(dataType);
+    }
+
+    /**
+     * Returns whether getResultValue() has been overridden by a subclass
+     * @return true if getResultValue() is overridden or false otherwise
+     */
+    protected boolean isResultValueOverridden()
+    {
+        if (resultValueOverridden==null)
+        {   // detect once
+            try {
+                Class<?> declaringClass = getClass().getMethod("getResultValue", ResultSet.class, int.class, DataType.class).getDeclaringClass();
+                resultValueOverridden = (declaringClass!=DBMSHandlerBase.class);
+            } catch (NoSuchMethodException e) {
+                throw new InternalException(e);
+            }
+        }
+        return resultValueOverridden;
+    }
+
+    /**
+     * Returns the default extractor for a data type
+     * 
+     * @param dataType the data type of the column
+     * 
+     * @return the value extractor 
+     */
+    protected DBValueExtractor getDefaultValueExtractor(DataType dataType)
+    {
+        switch(dataType)
+        {
+            case INTEGER:
+            case AUTOINC:
+            case DECIMAL:
+            case FLOAT:
+                return DBValueExtractor.NUMBER;
+            case DATE:
+                return DBValueExtractor.DATE;
+            case TIME:
+                return DBValueExtractor.TIME;
+            case DATETIME:
+            case TIMESTAMP:
+                return DBValueExtractor.TIMESTAMP;
+            case CLOB:
+                return DBValueExtractor.CLOB;
+            case BLOB:
+                return DBValueExtractor.BLOB;
+            default:
+                return DBValueExtractor.OBJECT;
+        }
     }
     
     /**
@@ -598,9 +1176,7 @@ public abstract class DBMSHandlerBase implements DBMSHandler
             int count = 0;
             if (sqlParams!=null)
             {   // Use a prepared statement
-                PreparedStatement pstmt = (genKeys!=null) 
-                    ? conn.prepareStatement(sqlCmd, Statement.RETURN_GENERATED_KEYS)
-                    : conn.prepareStatement(sqlCmd);
+                PreparedStatement pstmt = createPreparedStatement(conn, sqlCmd, false, (genKeys!=null));
                 stmt = pstmt;
                 prepareStatement(pstmt, sqlParams); 
                 count = pstmt.executeUpdate(); 
@@ -629,10 +1205,71 @@ public abstract class DBMSHandlerBase implements DBMSHandler
             // done
             return count;
         } finally {
-            closeStatement(stmt);
+            releaseStatement(stmt);
+        }
+    }
+
+    /**
+     * Executes an insert statement and returns the values of database generated columns.<BR>
+     * The default implementation passes the column names to Connection.prepareStatement() and reads the values from getGeneratedKeys().
+     * @param sqlCmd the SQL-Command
+     * @param sqlParams array of sql command parameters used for prepared statements (Optional).
+     * @param conn a valid connection to the database.
+     * @param returnColumns the columns for which to return the values
+     * @param returnValues an array receiving the values of the returnColumns
+     * @return the row count
+     * @throws SQLException thrown if a database access error occurs
+     */
+    @Override
+    public int executeInsertReturning(String sqlCmd, Object[] sqlParams, Connection conn, DBColumn[] returnColumns, Object[] returnValues)
+        throws SQLException
+    {
+        String[] columnNames = new String[returnColumns.length];
+        for (int i=0; i<returnColumns.length; i++)
+            columnNames[i] = returnColumns[i].getName();
+        // Execute the Statement
+        PreparedStatement pstmt = null;
+        try
+        {
+            pstmt = conn.prepareStatement(sqlCmd, columnNames);
+            if (sqlParams!=null)
+                prepareStatement(pstmt, sqlParams);
+            int count = pstmt.executeUpdate();
+            // Retrieve the generated values
+            if (count>0)
+            {   // Return values
+                ResultSet rs = pstmt.getGeneratedKeys();
+                try {
+                    readReturnValues(rs, returnColumns, returnValues);
+                } finally {
+                    rs.close();
+                }
+            }
+            // done
+            return count;
+        } finally {
+            closeStatement(pstmt);
         }
     }
 
+    /**
+     * Reads the values of the returned columns from the first row of a ResultSet
+     * @param rs the ResultSet
+     * @param returnColumns the returned columns
+     * @param returnValues an array receiving the values of the returnColumns
+     * @return true if a row was returned or false otherwise
+     * @throws SQLException thrown if a database access error occurs
+     */
+    protected boolean readReturnValues(ResultSet rs, DBColumn[] returnColumns, Object[] returnValues)
+        throws SQLException
+    {
+        if (!rs.next())
+            return false;
+        for (int i=0; i<returnColumns.length; i++)
+            returnValues[i] = getValueExtractor(returnColumns[i].getDataType()).getValue(rs, i+1);
+        return true;
+    }
+
     /**
      * Executes a list of sql statements as batch
      * @param sqlCmd an array of sql statements
@@ -711,6 +1348,58 @@ public abstract class DBMSHandlerBase implements DBMSHandler
         }
     }
     
+    /**
+     * Executes a single sql statement as a batch with multiple sets of parameters
+     * @param sqlCmd the sql command
+     * @param sqlCmdParams the command params for each batch row
+     * @param conn a JDBC connection
+     * @param genKeys allows to set the auto generated keys of the inserted records (optional)
+     * @return an array containing the number of records affected by each batch row
+     * @throws SQLException thrown if a database access error occurs
+     */
+    @Override
+    public int[] executeBatch(String sqlCmd, Object[][] sqlCmdParams, Connection conn, DBSetGenKeys genKeys)
+        throws SQLException
+    {
+        PreparedStatement pstmt = null;
+        try
+        {   // Use a prepared statement
+            pstmt = createPreparedStatement(conn, sqlCmd, false, (genKeys!=null));
+            for (int i=0; i<sqlCmdParams.length; i++)
+            {   // add batch
+                if (sqlCmdParams[i]!=null)
+                    prepareStatement(pstmt, sqlCmdParams[i]); 
+                pstmt.addBatch();
+            }
+            log.debug("Executing batch containing {} statements", sqlCmdParams.length);
+            int[] result = pstmt.executeBatch();
+            // Retrieve any auto-generated keys
+            if (genKeys!=null)
+            {   // Return Keys
+                ResultSet rs = pstmt.getGeneratedKeys();
+                try {
+                    int rownum = 0;
+                    while(rs.next())
+                    {
+                        genKeys.set(rownum++, rs.getObject(1));
+                    }
+                    if (rownum!=sqlCmdParams.length)
+                        log.warn("Batch returned {} generated keys for {} rows.", rownum, sqlCmdParams.length);
+                } finally {
+                    rs.close();
+                }
+            }
+            return result;
+        } catch(SQLException e) {
+            // discard batch
+            if (pstmt!=null && !pstmt.isClosed())
+                pstmt.clearBatch();
+            throw e;
+        } finally {
+            releaseStatement(pstmt);
+        }
+    }
+    
     /**
      * Executes an select SQL-command and returns the query results
      * 
@@ -724,6 +1413,24 @@ public abstract class DBMSHandlerBase implements DBMSHandler
     @Override
     public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, Connection conn)
         throws SQLException
+    {
+        return executeQuery(sqlCmd, sqlParams, scrollable, 0, conn);
+    }
+    
+    /**
+     * Executes an select SQL-command and returns the query results using a particular fetch size
+     * 
+     * @param sqlCmd the SQL-Command
+     * @param sqlParams array of sql command parameters used for prepared statements (Optional).
+     * @param scrollable true if scrollable or false otherwise
+     * @param fetchSize the number of rows to fetch with each database round trip or 0 for the driver's default
+     * @param conn a valid connection to the database.
+     * @return the JDBC resultset
+     * @throws SQLException thrown if a database access error occurs
+     */
+    @Override
+    public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, int fetchSize, Connection conn)
+        throws SQLException
     {
         Statement stmt = null;
         try
@@ -733,24 +1440,42 @@ public abstract class DBMSHandlerBase implements DBMSHandler
             // Create an execute a query statement
             if (sqlParams!=null)
             {   // Use prepared statement
-                PreparedStatement pstmt = conn.prepareStatement(sqlCmd, type, ResultSet.CONCUR_READ_ONLY);
+                PreparedStatement pstmt = createPreparedStatement(conn, sqlCmd, scrollable, false);
                 stmt = pstmt;
                 prepareStatement(pstmt, sqlParams); 
+                setFetchSize(pstmt, fetchSize, scrollable);
                 return pstmt.executeQuery();
             } else
             {   // Use simple statement
                 stmt = conn.createStatement(type, ResultSet.CONCUR_READ_ONLY);
+                setFetchSize(stmt, fetchSize, scrollable);
                 return stmt.executeQuery(sqlCmd);
             }
         } catch(SQLException e) {
             // close statement (if not null)
             if (log.isDebugEnabled())
                 log.debug("Error executeQuery '"+sqlCmd+"' --> "+e.getMessage(), e);
-            closeStatement(stmt);
+            releaseStatement(stmt);
             throw e;
         }
     }
 
+    /**
+     * Sets the fetch size for a query statement.<BR>
+     * Override this function to handle the streaming rules of a particular JDBC driver.<BR>
+     * Since prepared statements may be reused (see DBStatementCache) the fetch size is reset if 0 is given.
+     * @param stmt the query statement
+     * @param fetchSize the number of rows to fetch with each database round trip or 0 for the driver's default
+     * @param scrollable true if the result is scrollable or false otherwise
+     * @throws SQLException thrown if a database access error occurs
+     */
+    protected void setFetchSize(Statement stmt, int fetchSize, boolean scrollable)
+        throws SQLException
+    {
+        if (fetchSize>0 || stmt.getFetchSize()!=0)
+            stmt.setFetchSize(Math.max(fetchSize, 0));
+    }
+
     /**
      * Query a single value 
      * @return the value of the first column in the first row of the query 
@@ -850,8 +1575,8 @@ public abstract class DBMSHandlerBase implements DBMSHandler
             // check Statement
             if (stmt == null)
                 return;
-            // close Statement
-            stmt.close();
+            // close or release Statement
+            releaseStatement(stmt);
             // done
             return;
         } catch (SQLException sqle) { 
@@ -880,6 +1605,47 @@ public abstract class DBMSHandlerBase implements DBMSHandler
         }
     }
 
+    /**
+     * Creates a PreparedStatement or obtains a cached one if a statement cache is set.<BR>
+     * The statement must be closed by calling releaseStatement()
+     * 
+     * @param conn the connection
+     * @param sqlCmd the sql command
+     * @param scrollable true if the ResultSet should be scrollable
+     * @param genKeys true if auto generated keys should be returned
+     * @return the prepared statement
+     * @throws SQLException thrown if a database access error occurs
+     */
+    protected PreparedStatement createPreparedStatement(Connection conn, String sqlCmd, boolean scrollable, boolean genKeys)
+        throws SQLException
+    {
+        if (statementCache!=null)
+            return statementCache.prepareStatement(conn, sqlCmd, scrollable, genKeys);
+        // create statement
+        if (genKeys)
+            return conn.prepareStatement(sqlCmd, Statement.RETURN_GENERATED_KEYS);
+        int type = (scrollable ? ResultSet.TYPE_SCROLL_INSENSITIVE
+                               : ResultSet.TYPE_FORWARD_ONLY);
+        return conn.prepareStatement(sqlCmd, type, ResultSet.CONCUR_READ_ONLY);
+    }
+    
+    /**
+     * Releases a statement obtained by createPreparedStatement()<BR>
+     * Cached statements are kept open for reuse while all other statements are closed 
+     * <P>
+     * @param stmt a Statement object
+     */
+    protected void releaseStatement(Statement stmt)
+    {
+        if (stmt==null)
+            return;
+        // return to cache
+        if (statementCache!=null && statementCache.release(stmt))
+            return;
+        // close
+        closeStatement(stmt);
+    }
+
     /**
      * Prepares an sql statement by setting the supplied objects as parameters.
      * 
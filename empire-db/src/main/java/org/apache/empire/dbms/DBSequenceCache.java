@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.dbms;
+
+import java.sql.Connection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.empire.db.DBDatabase;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBSequenceCache
+ * Prefetches values of native database sequences.<BR>
+ * Instead of one statement per value, a number of sequence values is fetched with a single statement
+ * (see DBMSHandlerBase.getNextSequenceValues()) and then handed out from memory.<BR>
+ * If the dbms does not support fetching multiple values, every value is obtained with DBMSHandlerBase.getNextSequenceValue().<BR>
+ * <P>
+ * The cache is thread safe. Values of native sequences are not affected by transaction rollbacks.
+ * However unused prefetched values are lost when the cache is cleared or the application terminates.
+ */
+public class DBSequenceCache
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBSequenceCache.class);
+
+    private final int prefetchSize;
+
+    // the prefetched values
+    private final ConcurrentHashMap<String, Queue<Object>> valueMap = new ConcurrentHashMap<String, Queue<Object>>();
+
+    // statistics
+    private final AtomicLong fetchCount = new AtomicLong();
+
+    /**
+     * Creates a sequence cache
+     * @param prefetchSize the number of values to fetch at once
+     */
+    public DBSequenceCache(int prefetchSize)
+    {
+        if (prefetchSize<2)
+            throw new InvalidArgumentException("prefetchSize", prefetchSize);
+        this.prefetchSize = prefetchSize;
+    }
+
+    /**
+     * Returns the number of values fetched at once
+     * @return the prefetch size
+     */
+    public int getPrefetchSize()
+    {
+        return prefetchSize;
+    }
+
+    /**
+     * Returns the number of statements executed to fetch sequence values
+     * @return the fetch count
+     */
+    public long getFetchCount()
+    {
+        return fetchCount.get();
+    }
+
+    /**
+     * Returns the next value of a sequence
+     * @param dbms the dbms handler
+     * @param db the database
+     * @param seqName the sequence name
+     * @param minValue the minimum value
+     * @param conn the connection
+     * @return the next sequence value
+     */
+    public Object getNextValue(DBMSHandlerBase dbms, DBDatabase db, String seqName, int minValue, Connection conn)
+    {
+        Queue<Object> values = getValueQueue(db, seqName);
+        Object value = values.poll();
+        if (value!=null)
+            return value;
+        // fetch new values
+        synchronized(values)
+        {   // check again
+            value = values.poll();
+            if (value!=null)
+                return value;
+            // fetch
+            Object[] fetched = dbms.getNextSequenceValues(db, seqName, prefetchSize, conn);
+            fetchCount.incrementAndGet();
+            if (fetched==null || fetched.length==0)
+            {   // Not supported: fetch single value
+                return dbms.getNextSequenceValue(db, seqName, minValue, conn);
+            }
+            if (log.isDebugEnabled())
+                log.debug("Prefetched {} values of sequence {}", fetched.length, seqName);
+            for (int i=1; i<fetched.length; i++)
+                values.add(fetched[i]);
+            return fetched[0];
+        }
+    }
+
+    /**
+     * Discards all prefetched values
+     */
+    public void clear()
+    {
+        valueMap.clear();
+    }
+
+    /**
+     * Returns the value queue for a sequence
+     * @param db the database
+     * @param seqName the sequence name
+     * @return the value queue
+     */
+    protected Queue<Object> getValueQueue(DBDatabase db, String seqName)
+    {
+        String key = db.getIdentifier() + "." + seqName;
+        Queue<Object> values = valueMap.get(key);
+        if (values==null)
+        {   // create new
+            values = new ConcurrentLinkedQueue<Object>();
+            Queue<Object> prev = valueMap.putIfAbsent(key, values);
+            if (prev!=null)
+                values = prev;
+        }
+        return values;
+    }
+}
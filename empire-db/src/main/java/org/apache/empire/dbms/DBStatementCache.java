@@ -0,0 +1,396 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.dbms;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBStatementCache
+ * A bounded LRU cache for JDBC PreparedStatements.<BR>
+ * Statements are cached per connection and identified by the SQL text, the scrollability and the generated keys mode.<BR>
+ * A cached statement is handed out to one caller at a time.
+ * If the same statement is requested again while still in use, an uncached statement is created instead.<BR>
+ * <P>
+ * The cache is disabled by default and must be set on the DBMSHandler using DBMSHandlerBase.setStatementCache()<BR>
+ * Cached statements of a connection must be released by calling releaseConnection() before the connection is closed or returned to a pool.<BR>
+ * This is done automatically by DBContext.discard()
+ */
+public class DBStatementCache
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBStatementCache.class);
+
+    /**
+     * The key of a cached statement
+     */
+    protected static final class StatementKey
+    {
+        private final String  sqlCmd;
+        private final boolean scrollable;
+        private final boolean genKeys;
+        private final int     hashCode;
+
+        public StatementKey(String sqlCmd, boolean scrollable, boolean genKeys)
+        {
+            this.sqlCmd = sqlCmd;
+            this.scrollable = scrollable;
+            this.genKeys = genKeys;
+            this.hashCode = (sqlCmd.hashCode() * 31 + (scrollable ? 2 : 0) + (genKeys ? 1 : 0));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (other==this)
+                return true;
+            if (!(other instanceof StatementKey))
+                return false;
+            StatementKey key = (StatementKey)other;
+            return (key.scrollable==scrollable && key.genKeys==genKeys && key.sqlCmd.equals(sqlCmd));
+        }
+    }
+
+    /**
+     * A cached statement entry
+     */
+    protected static final class StatementEntry
+    {
+        private final Connection        conn;
+        private final StatementKey      key;
+        private final PreparedStatement stmt;
+        private boolean inUse   = false;
+        private boolean evicted = false;
+
+        public StatementEntry(Connection conn, StatementKey key, PreparedStatement stmt)
+        {
+            this.conn = conn;
+            this.key  = key;
+            this.stmt = stmt;
+        }
+    }
+
+    private final int maxStatements;
+    // the statements cached for each connection (in access order)
+    private final Map<Connection, LinkedHashMap<StatementKey, StatementEntry>> connectionMap;
+    // all statements owned by this cache
+    private final Map<Statement, StatementEntry> statementMap;
+    // statistics
+    private final AtomicLong hitCount      = new AtomicLong();
+    private final AtomicLong missCount     = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Creates a statement cache
+     * @param maxStatements the maximum number of statements cached per connection
+     */
+    public DBStatementCache(int maxStatements)
+    {
+        if (maxStatements<1)
+            throw new InvalidArgumentException("maxStatements", maxStatements);
+        // init
+        this.maxStatements = maxStatements;
+        this.connectionMap = new IdentityHashMap<Connection, LinkedHashMap<StatementKey, StatementEntry>>();
+        this.statementMap  = new IdentityHashMap<Statement, StatementEntry>();
+    }
+
+    /**
+     * Returns the maximum number of statements cached per connection
+     * @return the maximum number of statements
+     */
+    public int getMaxStatements()
+    {
+        return maxStatements;
+    }
+
+    /**
+     * Returns the number of requests that were served with a cached statement
+     * @return the hit count
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of requests that required a new statement to be prepared
+     * @return the miss count
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of statements that have been evicted from the cache
+     * @return the eviction count
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    /**
+     * Returns the total number of statements currently held by the cache
+     * @return the number of cached statements
+     */
+    public synchronized int getSize()
+    {
+        return statementMap.size();
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters
+     */
+    public void resetStatistics()
+    {
+        hitCount.set(0);
+        missCount.set(0);
+        evictionCount.set(0);
+    }
+
+    /**
+     * Returns a prepared statement for the given connection and sql command.<BR>
+     * The statement must be returned by calling release() and only closed if release() returns false
+     * @param conn the connection
+     * @param sqlCmd the sql command
+     * @param scrollable true if the ResultSet should be scrollable
+     * @param genKeys true if auto generated keys should be returned
+     * @return the prepared statement
+     * @throws SQLException thrown if a database access error occurs
+     */
+    public synchronized PreparedStatement prepareStatement(Connection conn, String sqlCmd, boolean scrollable, boolean genKeys)
+        throws SQLException
+    {
+        StatementKey key = new StatementKey(sqlCmd, scrollable, genKeys);
+        LinkedHashMap<StatementKey, StatementEntry> stmtMap = connectionMap.get(conn);
+        if (stmtMap!=null)
+        {   // find statement
+            StatementEntry entry = stmtMap.get(key);
+            if (entry!=null && !entry.inUse)
+            {   // found
+                if (!entry.stmt.isClosed())
+                {   // use cached statement
+                    hitCount.incrementAndGet();
+                    entry.inUse = true;
+                    return entry.stmt;
+                }
+                // statement has been closed externally
+                stmtMap.remove(key);
+                statementMap.remove(entry.stmt);
+            }
+            else if (entry!=null)
+            {   // Statement is in use (e.g. nested query): Use an uncached statement
+                missCount.incrementAndGet();
+                log.debug("Cached statement is in use. Creating uncached statement.");
+                return createStatement(conn, key);
+            }
+        }
+        else
+        {   // first use of this connection
+            purgeClosedConnections();
+            stmtMap = new LinkedHashMap<StatementKey, StatementEntry>(16, 0.75f, true);
+            connectionMap.put(conn, stmtMap);
+        }
+        // create and add
+        missCount.incrementAndGet();
+        PreparedStatement stmt = createStatement(conn, key);
+        StatementEntry entry = new StatementEntry(conn, key, stmt);
+        entry.inUse = true;
+        stmtMap.put(key, entry);
+        statementMap.put(stmt, entry);
+        // check size
+        if (stmtMap.size()>maxStatements)
+            evictEldest(stmtMap);
+        return stmt;
+    }
+
+    /**
+     * Releases a statement obtained by prepareStatement().<BR>
+     * If the statement is owned by the cache it is kept open for reuse.
+     * @param stmt the statement to release
+     * @return true if the statement is owned by the cache or false if the caller must close the statement
+     */
+    public synchronized boolean release(Statement stmt)
+    {
+        StatementEntry entry = statementMap.get(stmt);
+        if (entry==null)
+            return false; // not a cached statement
+        // check evicted
+        if (entry.evicted)
+        {   // evicted while in use
+            statementMap.remove(stmt);
+            return false;
+        }
+        // release
+        try {
+            entry.stmt.clearParameters();
+            entry.inUse = false;
+        } catch(SQLException e) {
+            // statement is no longer usable
+            log.warn("Unable to reset cached statement. Statement will be closed. Message is {}", e.getMessage());
+            remove(entry);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Closes and removes all statements cached for a particular connection
+     * This must be called before a connection is closed or returned to a connection pool
+     * @param conn the connection
+     */
+    public synchronized void releaseConnection(Connection conn)
+    {
+        LinkedHashMap<StatementKey, StatementEntry> stmtMap = connectionMap.remove(conn);
+        if (stmtMap==null || stmtMap.isEmpty())
+            return;
+        // close all
+        log.debug("Releasing {} cached statements for connection {}", stmtMap.size(), conn.hashCode());
+        for (StatementEntry entry : stmtMap.values())
+        {   // remove
+            statementMap.remove(entry.stmt);
+            closeStatement(entry);
+        }
+    }
+
+    /**
+     * Closes and removes all cached statements
+     */
+    public synchronized void clear()
+    {
+        List<Connection> connections = new ArrayList<Connection>(connectionMap.keySet());
+        for (Connection conn : connections)
+            releaseConnection(conn);
+    }
+
+    /**
+     * Creates a new prepared statement
+     * @param conn the connection
+     * @param key the statement key
+     * @return the new statement
+     * @throws SQLException thrown if a database access error occurs
+     */
+    protected PreparedStatement createStatement(Connection conn, StatementKey key)
+        throws SQLException
+    {
+        if (key.genKeys)
+            return conn.prepareStatement(key.sqlCmd, Statement.RETURN_GENERATED_KEYS);
+        // Set scroll type
+        int type = (key.scrollable ? ResultSet.TYPE_SCROLL_INSENSITIVE
+                                   : ResultSet.TYPE_FORWARD_ONLY);
+        return conn.prepareStatement(key.sqlCmd, type, ResultSet.CONCUR_READ_ONLY);
+    }
+
+    /**
+     * Evicts the least recently used statements which are currently not in use
+     * @param stmtMap the statement map of a connection
+     */
+    protected void evictEldest(LinkedHashMap<StatementKey, StatementEntry> stmtMap)
+    {
+        Iterator<StatementEntry> it = stmtMap.values().iterator();
+        while (stmtMap.size()>maxStatements && it.hasNext())
+        {
+            StatementEntry entry = it.next();
+            if (entry.inUse)
+                continue;
+            // evict
+            it.remove();
+            statementMap.remove(entry.stmt);
+            closeStatement(entry);
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes and closes a cached statement
+     * @param entry the statement entry
+     */
+    private void remove(StatementEntry entry)
+    {
+        LinkedHashMap<StatementKey, StatementEntry> stmtMap = connectionMap.get(entry.conn);
+        if (stmtMap!=null)
+            stmtMap.remove(entry.key);
+        statementMap.remove(entry.stmt);
+        closeStatement(entry);
+    }
+
+    /**
+     * Removes the statements of all connections that have been closed without calling releaseConnection()
+     */
+    private void purgeClosedConnections()
+    {
+        Iterator<Map.Entry<Connection, LinkedHashMap<StatementKey, StatementEntry>>> it = connectionMap.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<Connection, LinkedHashMap<StatementKey, StatementEntry>> e = it.next();
+            try {
+                if (!e.getKey().isClosed())
+                    continue;
+            } catch(SQLException ex) {
+                log.debug("Unable to detect connection state: {}", ex.getMessage());
+            }
+            // connection is closed
+            log.info("Connection {} has been closed without releasing cached statements.", e.getKey().hashCode());
+            for (StatementEntry entry : e.getValue().values())
+                statementMap.remove(entry.stmt);
+            it.remove();
+        }
+    }
+
+    /**
+     * Closes a cached statement
+     * If the statement is still in use, it will be closed by the DBMSHandler when released
+     * @param entry the statement entry
+     */
+    private void closeStatement(StatementEntry entry)
+    {
+        if (entry.inUse)
+        {   // close when released
+            entry.evicted = true;
+            statementMap.put(entry.stmt, entry);
+            return;
+        }
+        try {
+            entry.stmt.close();
+        } catch(SQLException e) {
+            log.warn("Unable to close cached statement. Message is {}", e.getMessage());
+        }
+    }
+}
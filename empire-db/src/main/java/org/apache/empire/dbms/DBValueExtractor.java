@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.dbms;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.empire.commons.ObjectUtils;
+import org.apache.empire.data.DataType;
+
+/**
+ * DBValueExtractor
+ * Reads the value of a column from a JDBC ResultSet.<BR>
+ * An extractor is obtained once per column from DBMSHandler.getValueExtractor() and then used for every row.<BR>
+ * Extractors for which isPrimitive() returns true read numeric values directly
+ * using ResultSet.getInt(), getLong() or getDouble() without creating a value object.<BR>
+ * <P>
+ * Override DBMSHandler.getValueExtractor() in order to provide dbms specific extractors.
+ * By default values are read using DBMSHandler.getResultValue() (see ResultValueExtractor).
+ */
+public abstract class DBValueExtractor
+{
+    /**
+     * Default extractor which uses ResultSet.getObject()
+     */
+    public static final DBValueExtractor OBJECT = new DBValueExtractor()
+    {
+        @Override
+        public Object getValue(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
+            return rset.getObject(columnIndex);
+        }
+    };
+
+    /**
+     * Extractor for numeric columns with direct access to primitive values
+     */
+    public static final DBValueExtractor NUMBER = new DBValueExtractor()
+    {
+        @Override
+        public Object getValue(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
+            return rset.getObject(columnIndex);
+        }
+
+        @Override
+        public boolean isNull(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
+            rset.getDouble(columnIndex);
+            return rset.wasNull();
+        }
+
+        @Override
+        public boolean isPrimitive()
+        {
+            return true;
+        }
+
+        @Override
+        public int getInt(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
+            return rset.getInt(columnIndex);
+        }
+
+        @Override
+        public long getLong(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
+            return rset.getLong(columnIndex);
+        }
+
+        @Override
+        public double getDouble(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
+            return rset.getDouble(columnIndex);
+        }
+    };
+
+    /**
+     * Extractor for DATE columns (do not use getObject()!)
+     */
+    public static final DBValueExtractor DATE = new DBValueExtractor()
+    {
+        @Override
+        public Object getValue(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
+            return rset.getDate(columnIndex);
+        }
+    };
+
+    /**
+     * Extractor for TIME columns (do not use getObject()!)
+     */
+    public static final DBValueExtractor TIME = new DBValueExtractor()
+    {
+        @Override
+        public Object getValue(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
+            return rset.getTime(columnIndex);
+        }
+    };
+
+    /**
+     * Extractor for DATETIME and TIMESTAMP columns (do not use getObject()!)
+     */
+    public static final DBValueExtractor TIMESTAMP = new DBValueExtractor()
+    {
+        @Override
+        public Object getValue(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
+            return rset.getTimestamp(columnIndex);
+        }
+    };
+
+    /**
+     * Extractor which reads a character large object as String
+     */
+    public static final DBValueExtractor CLOB = new DBValueExtractor()
+    {
+        @Override
+        public Object getValue(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
+            java.sql.Clob clob = rset.getClob(columnIndex);
+            return ((clob != null) ? clob.getSubString(1, (int) clob.length()) : null);
+        }
+    };
+
+    /**
+     * Extractor which reads a binary large object as byte array
+     */
+    public static final DBValueExtractor BLOB = new DBValueExtractor()
+    {
+        @Override
+        public Object getValue(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
+            java.sql.Blob blob = rset.getBlob(columnIndex);
+            return ((blob != null) ? blob.getBytes(1, (int) blob.length()) : null);
+        }
+    };
+
+    /**
+     * Extractor which uses ResultSet.getString()
+     */
+    public static final DBValueExtractor STRING = new DBValueExtractor()
+    {
+        @Override
+        public Object getValue(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
+            return rset.getString(columnIndex);
+        }
+    };
+
+    /**
+     * Extractor which uses ResultSet.getBytes()
+     */
+    public static final DBValueExtractor BYTES = new DBValueExtractor()
+    {
+        @Override
+        public Object getValue(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
+            return rset.getBytes(columnIndex);
+        }
+    };
+
+    /**
+     * ResultValueExtractor
+     * Extractor which delegates to DBMSHandler.getResultValue() for every value
+     */
+    public static class ResultValueExtractor extends DBValueExtractor
+    {
+        private final DBMSHandler dbms;
+        private final DataType dataType;
+
+        public ResultValueExtractor(DBMSHandler dbms, DataType dataType)
+        {
+            this.dbms = dbms;
+            this.dataType = dataType;
+        }
+
+        @Override
+        public Object getValue(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
+            return dbms.getResultValue(rset, columnIndex, dataType);
+        }
+    }
+
+    /**
+     * Returns the value of the column in the current row
+     * @param rset the ResultSet
+     * @param columnIndex one based column index
+     * @return the column value
+     * @throws SQLException thrown if a database access error occurs
+     */
+    public abstract Object getValue(ResultSet rset, int columnIndex)
+        throws SQLException;
+
+    /**
+     * Returns whether the value of the column in the current row is null
+     * @param rset the ResultSet
+     * @param columnIndex one based column index
+     * @return true if the value is null or false otherwise
+     * @throws SQLException thrown if a database access error occurs
+     */
+    public boolean isNull(ResultSet rset, int columnIndex)
+        throws SQLException
+    {
+        return (getValue(rset, columnIndex)==null);
+    }
+
+    /**
+     * Returns whether or not the extractor provides direct access to primitive values
+     * @return true if getInt(), getLong() and getDouble() read the value without creating a value object
+     */
+    public boolean isPrimitive()
+    {
+        return false;
+    }
+
+    /**
+     * Returns the value of the column in the current row as int
+     * @param rset the ResultSet
+     * @param columnIndex one based column index
+     * @return the int value or 0 if the value is null
+     * @throws SQLException thrown if a database access error occurs
+     */
+    public int getInt(ResultSet rset, int columnIndex)
+        throws SQLException
+    {
+        return ObjectUtils.getInteger(getValue(rset, columnIndex));
+    }
+
+    /**
+     * Returns the value of the column in the current row as long
+     * @param rset the ResultSet
+     * @param columnIndex one based column index
+     * @return the long value or 0 if the value is null
+     * @throws SQLException thrown if a database access error occurs
+     */
+    public long getLong(ResultSet rset, int columnIndex)
+        throws SQLException
+    {
+        return ObjectUtils.getLong(getValue(rset, columnIndex));
+    }
+
+    /**
+     * Returns the value of the column in the current row as double
+     * @param rset the ResultSet
+     * @param columnIndex one based column index
+     * @return the double value or 0 if the value is null
+     * @throws SQLException thrown if a database access error occurs
+     */
+    public double getDouble(ResultSet rset, int columnIndex)
+        throws SQLException
+    {
+        return ObjectUtils.getDouble(getValue(rset, columnIndex));
+    }
+}
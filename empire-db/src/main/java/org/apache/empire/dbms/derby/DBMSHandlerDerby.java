@@ -140,6 +140,7 @@ public class DBMSHandlerDerby extends DBMSHandlerBase
         {   // return support info 
             case CREATE_SCHEMA: return true;
             case SEQUENCES:     return useSequenceTable;
+            case ORDER_NULLS_FIRST_DESC: return true;
             default:            return false;
         }
     }
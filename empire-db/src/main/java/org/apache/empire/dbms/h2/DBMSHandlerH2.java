@@ -125,7 +125,8 @@ public class DBMSHandlerH2 extends DBMSHandlerBase
      */
     public DBMSHandlerH2()
     {
-        // Default Constructor
+        // Statement limits
+        this.maxStatementParams = 32767;
     }
 
     /**
@@ -213,6 +214,11 @@ public class DBMSHandlerH2 extends DBMSHandlerBase
             case SEQUENCES:     	return useSequenceTable;    
             case QUERY_LIMIT_ROWS:  return true;
             case QUERY_SKIP_ROWS:   return true;
+            case MULTI_ROW_INSERT:  return true;
+            case UPSERT:            return true;
+            case INSERT_RETURNING:  return true;
+            case ORDER_NULLS_FIRST: return true;
+            case WINDOW_FUNCTIONS:  return true;
             default:
                 // All other features are not supported by default
                 return false;
@@ -68,6 +68,8 @@ public class DBMSHandlerHSql extends DBMSHandlerBase
     {
         // Add additional Keywords
         super(HSQL_KEYWORDS);
+        // Statement limits
+        this.maxStatementParams = 32767;
     }
 
     /**
@@ -84,6 +86,11 @@ public class DBMSHandlerHSql extends DBMSHandlerBase
             case SEQUENCES:         return true;
             case QUERY_LIMIT_ROWS:  return true;
             case QUERY_SKIP_ROWS:   return true;
+            case MULTI_ROW_INSERT:  return true;
+            case UPSERT:            return true;
+            case INSERT_RETURNING:  return true;
+            case ORDER_NULLS_FIRST: return true;
+            case ORDER_NULLS_FIRST_DESC: return true;
             default:
                 // All other features are not supported by default
                 return false;
@@ -262,6 +269,21 @@ public class DBMSHandlerHSql extends DBMSHandlerBase
         } 
     }
 
+    /**
+     * @see DBMSHandlerBase#getNextSequenceValues(DBDatabase, String, int, Connection)
+     */
+    @Override
+    public Object[] getNextSequenceValues(DBDatabase db, String seqName, int count, Connection conn)
+    {   // Use a generated table with one row per value
+        DBSQLBuilder sql = createSQLBuilder();
+        sql.append("SELECT NEXT VALUE FOR ");
+        db.appendQualifiedName(sql, seqName, null);
+        sql.append(" FROM UNNEST(SEQUENCE_ARRAY(1, ");
+        sql.append(String.valueOf(count));
+        sql.append(", 1))");
+        return querySequenceValues(sql.toString(), null, DataType.INTEGER, conn);
+    }
+
     /**
      * @see DBMSHandlerBase#getNextSequenceValueExpr(DBTableColumn col)
      */
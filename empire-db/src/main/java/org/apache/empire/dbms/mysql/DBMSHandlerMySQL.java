@@ -20,10 +20,13 @@ package org.apache.empire.dbms.mysql;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.GregorianCalendar;
+import java.util.List;
 
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.DataType;
+import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBColumnExpr;
 import org.apache.empire.db.DBCombinedCmd;
 import org.apache.empire.db.DBCommand;
@@ -38,6 +41,7 @@ import org.apache.empire.db.DBSQLScript;
 import org.apache.empire.db.DBTable;
 import org.apache.empire.db.DBTableColumn;
 import org.apache.empire.db.exceptions.EmpireSQLException;
+import org.apache.empire.db.expr.set.DBSetExpr;
 import org.apache.empire.dbms.DBMSFeature;
 import org.apache.empire.dbms.DBMSHandler;
 import org.apache.empire.dbms.DBMSHandlerBase;
@@ -163,6 +167,33 @@ public class DBMSHandlerMySQL extends DBMSHandlerBase
             addFrom(sql);
             addWhere(sql);
         }
+        
+        @Override
+        protected void addUpsert(DBSQLBuilder sql, DBRowSet table, DBColumn[] keyColumns)
+        {
+            // INSERT ... ON DUPLICATE KEY UPDATE
+            // The key columns must be the primary key or a unique index
+            addUpsertInsert(sql, table);
+            sql.append("\r\nON DUPLICATE KEY UPDATE ");
+            List<DBSetExpr> updateSet = getUpsertUpdateSet(keyColumns);
+            if (updateSet.isEmpty())
+            {   // nothing to update
+                keyColumns[0].addSQL(sql, CTX_NAME);
+                sql.append("=");
+                keyColumns[0].addSQL(sql, CTX_NAME);
+                return;
+            }
+            for (int i=0; i<updateSet.size(); i++)
+            {
+                if (i>0)
+                    sql.append(", ");
+                DBColumn col = updateSet.get(i).getColumn();
+                col.addSQL(sql, CTX_NAME);
+                sql.append("=VALUES(");
+                col.addSQL(sql, CTX_NAME);
+                sql.append(")");
+            }
+        }
     }
     
     /**
@@ -211,6 +242,10 @@ public class DBMSHandlerMySQL extends DBMSHandlerBase
     private boolean useSequenceTable = false;
     private String sequenceTableName = "Sequences";
     private String engine; // The database engine to use when creating new tables
+    
+    // Streaming result sets
+    // When set to 'true' (default) a positive fetch size is replaced by Integer.MIN_VALUE
+    private boolean useStreamingResults = true;
 
     private DBDDLGenerator<?> ddlGenerator = null; // lazy creation
     
@@ -221,6 +256,8 @@ public class DBMSHandlerMySQL extends DBMSHandlerBase
     {
         // Add additional Keywords
         super(MYSQL_KEYWORDS);
+        // Statement limits
+        this.maxStatementParams = 65535;
     }
     
     /**
@@ -291,6 +328,26 @@ public class DBMSHandlerMySQL extends DBMSHandlerBase
         this.useSequenceTable = useSequenceTable;
     }
 
+    /**
+     * returns whether or not row-by-row streaming is used for queries with a fetch size
+     * @return true if streaming results are used
+     */
+    public boolean isUseStreamingResults()
+    {
+        return useStreamingResults;
+    }
+
+    /**
+     * If set to true (default) the MySQL driver streams the result row-by-row for queries with a positive fetch size.<br>
+     * Note: While a streaming result is open no other statement can be executed on the same connection!<br>
+     * Set to false if the connection uses server side cursors (useCursorFetch=true), which support the fetch size directly.
+     * @param useStreamingResults true to use streaming results or false otherwise
+     */
+    public void setUseStreamingResults(boolean useStreamingResults)
+    {
+        this.useStreamingResults = useStreamingResults;
+    }
+
     /**
      * returns the name of the sequence table
      * @return the name of the table used for sequence number generation
@@ -409,6 +466,21 @@ public class DBMSHandlerMySQL extends DBMSHandlerBase
     	};
     }
 
+    /**
+     * Sets the fetch size for a query statement.<br>
+     * The MySQL driver loads the full result into memory unless the fetch size is Integer.MIN_VALUE (streaming results) 
+     * or server side cursors are enabled.
+     */
+    @Override
+    protected void setFetchSize(Statement stmt, int fetchSize, boolean scrollable)
+        throws SQLException
+    {
+        if (fetchSize>0 && useStreamingResults && !scrollable)
+            fetchSize = Integer.MIN_VALUE;
+        if (fetchSize!=0 || stmt.getFetchSize()!=0)
+            stmt.setFetchSize(fetchSize);
+    }
+    
     /**
      * Returns whether or not a particular feature is supported by this dbms
      * @param type type of requested feature. @see DBMSFeature
@@ -423,6 +495,10 @@ public class DBMSHandlerMySQL extends DBMSHandlerBase
             case SEQUENCES:         return useSequenceTable;
             case QUERY_LIMIT_ROWS:  return true;
             case QUERY_SKIP_ROWS:   return true;
+            case BATCH_GENERATED_KEYS: return true;
+            case MULTI_ROW_INSERT:  return true;
+            case UPSERT:            return true;
+            case ORDER_NULLS_FIRST: return true;
             default:
                 // All other features are not supported by default
                 return false;
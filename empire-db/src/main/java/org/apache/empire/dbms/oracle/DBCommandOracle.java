@@ -371,6 +371,23 @@ public class DBCommandOracle extends DBCommand
         addListExpr(sql, mergeSet, CTX_DEFAULT, ", ");
     }
     
+    @Override
+    protected void addUpsertSource(DBSQLBuilder sql, String alias)
+    {
+        // Oracle does not support a VALUES table constructor
+        sql.append("(SELECT ");
+        for (int i=0; i<set.size(); i++)
+        {
+            if (i>0)
+                sql.append(", ");
+            set.get(i).addSQL(sql, CTX_VALUE);
+            sql.append(" AS ");
+            set.get(i).getColumn().addSQL(sql, CTX_NAME);
+        }
+        sql.append(" FROM DUAL) ");
+        sql.append(alias);
+    }
+    
     @Override
     protected void addDeleteForTable(DBSQLBuilder sql, DBRowSet table)
     {
@@ -53,6 +53,7 @@ import org.apache.empire.dbms.DBMSFeature;
 import org.apache.empire.dbms.DBMSHandler;
 import org.apache.empire.dbms.DBMSHandlerBase;
 import org.apache.empire.dbms.DBSqlPhrase;
+import org.apache.empire.dbms.DBValueExtractor;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.apache.empire.exceptions.InvalidPropertyException;
 import org.slf4j.Logger;
@@ -173,6 +174,10 @@ public class DBMSHandlerOracle extends DBMSHandlerBase
             case SEQUENCE_NEXTVAL:  return true;
             case QUERY_LIMIT_ROWS:  return true;
             case QUERY_SKIP_ROWS:   return true;
+            case UPSERT:            return true;
+            case INSERT_RETURNING:  return true;
+            case ORDER_NULLS_FIRST_DESC: return true;
+            case WINDOW_FUNCTIONS:  return true;
             default:
                 // All other features are not supported by default
                 return false;
@@ -358,22 +363,14 @@ public class DBMSHandlerOracle extends DBMSHandlerBase
     }
     
     /**
-     * Gets the value of a sql ResultSet.
-     * Gives the dbms the oportunity to change the value
-     * i.e. to simulate missing data types with other types.
-     * 
-     * @param rset the sql Resultset with the current data row
-     * @param columnIndex one based column Index of the desired column
-     * @param dataType the desired data type
-     * @return the value of the column 
+     * Extractor for BOOL columns which are stored as CHAR(1)
      */
-    @Override
-    public Object getResultValue(ResultSet rset, int columnIndex, DataType dataType)
-        throws SQLException
+    protected static final DBValueExtractor BOOL_EXTRACTOR = new DBValueExtractor()
     {
-        // Check for character large object
-        if (dataType == DataType.BOOL)
-        {   // Get character large object
+        @Override
+        public Object getValue(ResultSet rset, int columnIndex)
+            throws SQLException
+        {
             String val = rset.getString(columnIndex);
             if (val==null || rset.wasNull())
                 return null;
@@ -382,8 +379,24 @@ public class DBMSHandlerOracle extends DBMSHandlerBase
                 return Boolean.TRUE;
             return Boolean.FALSE;    
         }
+    };
+    
+    /**
+     * Returns the extractor for reading column values of a particular data type.
+     * Gives the dbms the oportunity to change the value
+     * i.e. to simulate missing data types with other types.
+     * 
+     * @param dataType the desired data type
+     * @return the value extractor 
+     */
+    @Override
+    protected DBValueExtractor getDefaultValueExtractor(DataType dataType)
+    {
+        // Check for boolean
+        if (dataType == DataType.BOOL)
+            return BOOL_EXTRACTOR;
         // Default
-        return super.getResultValue(rset, columnIndex, dataType);
+        return super.getDefaultValueExtractor(dataType);
     }
 
     /**
@@ -416,6 +429,20 @@ public class DBMSHandlerOracle extends DBMSHandlerBase
         } 
     }
 
+    /**
+     * @see DBMSHandlerBase#getNextSequenceValues(DBDatabase, String, int, Connection)
+     */
+    @Override
+    public Object[] getNextSequenceValues(DBDatabase db, String seqName, int count, Connection conn)
+    {   // Use hierarchical query on DUAL
+        DBSQLBuilder sql = createSQLBuilder();
+        sql.append("SELECT ");
+        db.appendQualifiedName(sql, seqName, null);
+        sql.append(".NEXTVAL FROM DUAL CONNECT BY LEVEL <= ");
+        sql.append(String.valueOf(count));
+        return querySequenceValues(sql.toString(), null, DataType.UNKNOWN, conn);
+    }
+
     /**
      * @see DBMSHandlerBase#getNextSequenceValueExpr(DBTableColumn col)
      */
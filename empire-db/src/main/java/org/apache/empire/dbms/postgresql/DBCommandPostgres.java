@@ -18,6 +18,9 @@
  */
 package org.apache.empire.dbms.postgresql;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBColumnExpr;
@@ -26,6 +29,7 @@ import org.apache.empire.db.DBRowSet;
 import org.apache.empire.db.DBSQLBuilder;
 import org.apache.empire.db.exceptions.NoPrimaryKeyException;
 import org.apache.empire.db.expr.compare.DBCompareExpr;
+import org.apache.empire.db.expr.set.DBSetExpr;
 import org.apache.empire.dbms.postgresql.PostgresIntervalExpr.PostgresIntervalUnitField;
 
 /**
@@ -198,4 +202,46 @@ public class DBCommandPostgres extends DBCommand
             addListExpr(sql, where, context, " AND ");
         }
     }
+    
+    /**
+     * Appends a RETURNING clause.<BR>
+     * The JDBC driver would quote the column names which makes them case sensitive.
+     */
+    @Override
+    protected void addInsertReturning(DBSQLBuilder sql, DBColumn[] returnColumns)
+    {
+        sql.append(" RETURNING ");
+        for (int i=0; i<returnColumns.length; i++)
+        {
+            if (i>0)
+                sql.append(", ");
+            returnColumns[i].addSQL(sql, CTX_NAME);
+        }
+    }
+    
+    @Override
+    protected void addUpsert(DBSQLBuilder sql, DBRowSet table, DBColumn[] keyColumns)
+    {
+        // INSERT ... ON CONFLICT
+        // The key columns must be the primary key or a unique index
+        addUpsertInsert(sql, table);
+        sql.append("\r\nON CONFLICT (");
+        addListExpr(sql, Arrays.asList(keyColumns), CTX_NAME, ", ");
+        List<DBSetExpr> updateSet = getUpsertUpdateSet(keyColumns);
+        if (updateSet.isEmpty())
+        {   // nothing to update
+            sql.append(") DO NOTHING");
+            return;
+        }
+        sql.append(") DO UPDATE SET ");
+        for (int i=0; i<updateSet.size(); i++)
+        {
+            if (i>0)
+                sql.append(", ");
+            DBColumn col = updateSet.get(i).getColumn();
+            col.addSQL(sql, CTX_NAME);
+            sql.append("=EXCLUDED.");
+            col.addSQL(sql, CTX_NAME);
+        }
+    }
 }
@@ -21,8 +21,10 @@ package org.apache.empire.dbms.postgresql;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import org.apache.empire.commons.StringUtils;
@@ -31,6 +33,7 @@ import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBColumnExpr;
 import org.apache.empire.db.DBDDLGenerator;
 import org.apache.empire.db.DBDDLGenerator.DDLActionType;
+import org.apache.empire.db.exceptions.EmpireSQLException;
 import org.apache.empire.db.exceptions.QueryFailedException;
 import org.apache.empire.db.DBDatabase;
 import org.apache.empire.db.DBObject;
@@ -42,6 +45,7 @@ import org.apache.empire.dbms.DBMSFeature;
 import org.apache.empire.dbms.DBMSHandler;
 import org.apache.empire.dbms.DBMSHandlerBase;
 import org.apache.empire.dbms.DBSqlPhrase;
+import org.apache.empire.dbms.DBValueExtractor;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -72,6 +76,11 @@ public class DBMSHandlerPostgreSQL extends DBMSHandlerBase
     private String databaseName;
     
     private boolean usePostgresSerialType = true;
+    
+    private boolean streamInTransaction = false;
+    
+    // streaming result sets and their connections on which auto-commit has been disabled
+    private final Map<ResultSet, Connection> streamingResults = new IdentityHashMap<ResultSet, Connection>();
 
     private DBDDLGenerator<?> ddlGenerator = null; // lazy creation
     
@@ -82,6 +91,8 @@ public class DBMSHandlerPostgreSQL extends DBMSHandlerBase
     {
         // Add additional Keywords
         super(POSTGRES_KEYWORDS);
+        // Statement limits
+        this.maxStatementParams = 32767;
     }
 
     /**
@@ -111,6 +122,28 @@ public class DBMSHandlerPostgreSQL extends DBMSHandlerBase
         this.usePostgresSerialType = usePostgresSerialType;
     }
 
+    /**
+     * Returns whether streaming reads on a connection with auto-commit enabled are executed in a transaction
+     * @return true if auto-commit is temporarily disabled for streaming or false otherwise
+     */
+    public boolean isStreamInTransaction()
+    {
+        return streamInTransaction;
+    }
+
+    /**
+     * Sets whether streaming reads on a connection with auto-commit enabled are executed in a transaction.<br>
+     * The PostgreSQL driver only streams forward-only results with a fetch size if auto-commit is disabled.
+     * If enabled, auto-commit is disabled when a streaming query is executed and enabled again when its result set is closed.
+     * Note: Statements executed on the same connection while the result is open are committed when auto-commit is enabled again.<br>
+     * Default is false, in which case the full result is loaded into memory if auto-commit is enabled.
+     * @param streamInTransaction true to temporarily disable auto-commit for streaming reads
+     */
+    public void setStreamInTransaction(boolean streamInTransaction)
+    {
+        this.streamInTransaction = streamInTransaction;
+    }
+
     /**
      * Sets the name for the database / schema<br>
      * This names is required for creating a database.<br>
@@ -134,6 +167,117 @@ public class DBMSHandlerPostgreSQL extends DBMSHandlerBase
             initSerialSequenceNames(db, conn);
     }
     
+    /**
+     * Executes a query.<br>
+     * If streamInTransaction is enabled, auto-commit is disabled for forward-only queries with a fetch size
+     * until the result set is closed (see closeResultSet()).
+     */
+    @Override
+    public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, int fetchSize, Connection conn)
+        throws SQLException
+    {
+        boolean streaming = (streamInTransaction && fetchSize>0 && !scrollable && beginStreaming(conn));
+        try
+        {   // execute
+            ResultSet rset = super.executeQuery(sqlCmd, sqlParams, scrollable, fetchSize, conn);
+            if (streaming)
+            {   // remember streaming result
+                synchronized(streamingResults)
+                {
+                    streamingResults.put(rset, conn);
+                }
+            }
+            return rset;
+        }
+        catch (SQLException | RuntimeException e)
+        {   // restore auto-commit
+            if (streaming)
+                endStreaming(conn);
+            throw e;
+        }
+    }
+    
+    /**
+     * Closes a result set and enables auto-commit again if it has been disabled for streaming.<br>
+     * Auto-commit is only enabled when the last streaming result set of a connection is closed.
+     * Other result sets on the same connection do not affect the streaming transaction. 
+     */
+    @Override
+    public void closeResultSet(ResultSet rset)
+    {
+        Connection conn = null;
+        if (rset!=null)
+        {   // streaming result?
+            synchronized(streamingResults)
+            {
+                conn = streamingResults.remove(rset);
+            }
+        }
+        // close
+        super.closeResultSet(rset);
+        // restore auto-commit
+        if (conn!=null)
+        {   try {
+                endStreaming(conn);
+            } catch (SQLException e) {
+                throw new EmpireSQLException(this, e);
+            }
+        }
+    }
+    
+    /**
+     * Sets the fetch size for a query statement.<br>
+     * The PostgreSQL driver uses the fetch size only for forward-only result sets if auto-commit is disabled.
+     * Otherwise the full result is loaded into memory (see setStreamInTransaction()).
+     */
+    @Override
+    protected void setFetchSize(Statement stmt, int fetchSize, boolean scrollable)
+        throws SQLException
+    {
+        if (fetchSize>0 && (scrollable || stmt.getConnection().getAutoCommit()))
+            log.warn("The fetch size is ignored by PostgreSQL for scrollable results or if auto-commit is enabled. See setStreamInTransaction().");
+        super.setFetchSize(stmt, fetchSize, scrollable);
+    }
+    
+    /**
+     * Disables auto-commit for a streaming query
+     * @param conn the connection
+     * @return true if the query is streamed in a transaction started by this handler
+     * @throws SQLException thrown if a database access error occurs
+     */
+    private boolean beginStreaming(Connection conn)
+        throws SQLException
+    {
+        synchronized(streamingResults)
+        {
+            if (streamingResults.containsValue(conn))
+                return true; // auto-commit already disabled for another stream
+            // auto-commit enabled?
+            if (!conn.getAutoCommit())
+                return false; // transaction of the caller
+            conn.setAutoCommit(false);
+            return true;
+        }
+    }
+
+    /**
+     * Enables auto-commit again unless another streaming result set of the connection is still open
+     * @param conn the connection
+     * @throws SQLException thrown if a database access error occurs
+     */
+    private void endStreaming(Connection conn)
+        throws SQLException
+    {
+        synchronized(streamingResults)
+        {
+            if (streamingResults.containsValue(conn))
+                return; // other streams still open
+            // commits the read transaction
+            if (!conn.isClosed())
+                conn.setAutoCommit(true);
+        }
+    }
+    
     /**
      * Creates a new PostgreSQL command object.
      * 
@@ -160,6 +304,11 @@ public class DBMSHandlerPostgreSQL extends DBMSHandlerBase
             case SEQUENCE_NEXTVAL:  return true;
             case QUERY_LIMIT_ROWS:  return true;
             case QUERY_SKIP_ROWS:   return true;
+            case MULTI_ROW_INSERT:  return true;
+            case UPSERT:            return true;
+            case INSERT_RETURNING:  return true;
+            case ORDER_NULLS_FIRST_DESC: return true;
+            case WINDOW_FUNCTIONS:  return true;
             default:
                 // All other features are not supported by default
                 return false;
@@ -297,6 +446,34 @@ public class DBMSHandlerPostgreSQL extends DBMSHandlerBase
         } 
     }
 
+    /**
+     * @see DBMSHandlerBase#getNextSequenceValues(DBDatabase, String, int, Connection)
+     */
+    @Override
+    public Object[] getNextSequenceValues(DBDatabase db, String seqName, int count, Connection conn)
+    {   // Use generate_series
+        String sqlCmd = "SELECT nextval(?) FROM generate_series(1, ?)";
+        return querySequenceValues(sqlCmd, new Object[] { seqName, count }, DataType.INTEGER, conn);
+    }
+
+    /**
+     * Overridden. Executes an insert statement with a RETURNING clause.<BR>
+     * The statement must be created with DBCommand.getInsert(returnColumns)
+     * since the JDBC driver would quote the column names which makes them case sensitive.
+     */
+    @Override
+    public int executeInsertReturning(String sqlCmd, Object[] sqlParams, Connection conn, DBColumn[] returnColumns, Object[] returnValues)
+        throws SQLException
+    {
+        // execute
+        ResultSet rs = executeQuery(sqlCmd, sqlParams, false, conn);
+        try {
+            return (readReturnValues(rs, returnColumns, returnValues) ? 1 : 0);
+        } finally {
+            closeResultSet(rs);
+        }
+    }
+
     /**
      * @see DBMSHandlerBase#getNextSequenceValueExpr(DBTableColumn col)
      */
@@ -352,14 +529,13 @@ public class DBMSHandlerPostgreSQL extends DBMSHandlerBase
      * Postgre needs special handling for CLOBs and BLOB's
      */
     @Override
-    public Object getResultValue(ResultSet rset, int columnIndex, DataType dataType)
-        throws SQLException
+    public DBValueExtractor getValueExtractor(DataType dataType)
     {
     	switch(dataType)
     	{
-    		case BLOB: return rset.getBytes(columnIndex);
-    		case CLOB:	return rset.getString(columnIndex);
-    		default:   return super.getResultValue(rset, columnIndex, dataType);
+    		case BLOB: return DBValueExtractor.BYTES;
+    		case CLOB:	return DBValueExtractor.STRING;
+    		default:   return super.getValueExtractor(dataType);
     	}
     }
     
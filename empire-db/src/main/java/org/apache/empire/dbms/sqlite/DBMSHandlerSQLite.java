@@ -26,11 +26,13 @@ import java.sql.Statement;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
 
 import org.apache.empire.data.DataType;
+import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBColumnExpr;
 import org.apache.empire.db.DBCommand;
 import org.apache.empire.db.DBDDLGenerator;
@@ -38,14 +40,18 @@ import org.apache.empire.db.DBDDLGenerator.DDLActionType;
 import org.apache.empire.db.DBDatabase;
 import org.apache.empire.db.DBJoinType;
 import org.apache.empire.db.DBObject;
+import org.apache.empire.db.DBRowSet;
+import org.apache.empire.db.DBSQLBuilder;
 import org.apache.empire.db.DBSQLScript;
 import org.apache.empire.db.DBTableColumn;
 import org.apache.empire.db.expr.join.DBColumnJoinExpr;
 import org.apache.empire.db.expr.join.DBJoinExpr;
+import org.apache.empire.db.expr.set.DBSetExpr;
 import org.apache.empire.dbms.DBMSHandler;
 import org.apache.empire.dbms.DBMSHandlerBase;
 import org.apache.empire.dbms.DBMSFeature;
 import org.apache.empire.dbms.DBSqlPhrase;
+import org.apache.empire.dbms.DBValueExtractor;
 import org.apache.empire.exceptions.NotImplementedException;
 import org.apache.empire.exceptions.NotSupportedException;
 import org.apache.empire.exceptions.UnexpectedReturnValueException;
@@ -120,6 +126,30 @@ public class DBMSHandlerSQLite extends DBMSHandlerBase
             
         }
         
+        @Override
+        protected void addUpsert(DBSQLBuilder sql, DBRowSet table, DBColumn[] keyColumns)
+        {
+            // UPSERT requires SQLite 3.24 or higher
+            addUpsertInsert(sql, table);
+            sql.append("\r\nON CONFLICT (");
+            addListExpr(sql, Arrays.asList(keyColumns), CTX_NAME, ", ");
+            List<DBSetExpr> updateSet = getUpsertUpdateSet(keyColumns);
+            if (updateSet.isEmpty())
+            {   // nothing to update
+                sql.append(") DO NOTHING");
+                return;
+            }
+            sql.append(") DO UPDATE SET ");
+            for (int i=0; i<updateSet.size(); i++)
+            {
+                if (i>0)
+                    sql.append(", ");
+                DBColumn col = updateSet.get(i).getColumn();
+                col.addSQL(sql, CTX_NAME);
+                sql.append("=excluded.");
+                col.addSQL(sql, CTX_NAME);
+            }
+        }
     }
     
     private DBDDLGenerator<?> ddlGenerator = null; // lazy creation
@@ -131,6 +161,8 @@ public class DBMSHandlerSQLite extends DBMSHandlerBase
     {
         // Add additional Keywords
         super(SQLITE_KEYWORDS);
+        // Statement limits (SQLITE_MAX_VARIABLE_NUMBER)
+        this.maxStatementParams = 999;
     }
     
     /**
@@ -161,6 +193,14 @@ public class DBMSHandlerSQLite extends DBMSHandlerBase
                 return true;
             case QUERY_SKIP_ROWS:
                 return true;
+            case MULTI_ROW_INSERT:
+                return true;
+            case UPSERT:
+                return true;
+            case ORDER_NULLS_FIRST:
+                return true;
+            case WINDOW_FUNCTIONS:
+                return true;
             default:
                 // All other features are not supported by default
                 return false;
@@ -299,7 +339,7 @@ public class DBMSHandlerSQLite extends DBMSHandlerBase
         {
             if (sqlParams != null)
             { // Use a prepared statement
-                PreparedStatement pstmt = conn.prepareStatement(sqlCmd);
+                PreparedStatement pstmt = createPreparedStatement(conn, sqlCmd, false, false);
                 stmt = pstmt;
                 prepareStatement(pstmt, sqlParams);
                 count = pstmt.executeUpdate();
@@ -328,16 +368,20 @@ public class DBMSHandlerSQLite extends DBMSHandlerBase
         }
         finally
         {
-            closeStatement(stmt);
+            releaseStatement(stmt);
         }
         return count;
     }
     
     
-    @Override
-    public Object getResultValue(ResultSet rset, int columnIndex, DataType dataType) throws SQLException
+    /**
+     * Extractor for DATETIME and TIMESTAMP columns which might be stored as text
+     */
+    protected final DBValueExtractor timestampExtractor = new DBValueExtractor()
     {
-        if (dataType == DataType.DATETIME || dataType == DataType.TIMESTAMP)
+        @Override
+        public Object getValue(ResultSet rset, int columnIndex)
+            throws SQLException
         {
             try {
                 // try timestamp
@@ -356,19 +400,27 @@ public class DBMSHandlerSQLite extends DBMSHandlerBase
                 }
             }
         }
-        else if (dataType == DataType.CLOB)
-        {
-            java.sql.Clob clob = rset.getClob(columnIndex);
-            return ((clob != null) ? clob.getSubString(1, (int) clob.length()) : null);
-        }
-        else if (dataType == DataType.BLOB)
-        { // Get bytes of a binary large object
-            java.sql.Blob blob = rset.getBlob(columnIndex);
-            return ((blob != null) ? blob.getBytes(1, (int) blob.length()) : null);
-        }
-        else
+    };
+    
+    @Override
+    protected DBValueExtractor getDefaultValueExtractor(DataType dataType)
+    {
+        switch (dataType)
         {
-            return rset.getObject(columnIndex);
+            case INTEGER:
+            case AUTOINC:
+            case DECIMAL:
+            case FLOAT:
+                return DBValueExtractor.NUMBER;
+            case DATETIME:
+            case TIMESTAMP:
+                return timestampExtractor;
+            case CLOB:
+                return DBValueExtractor.CLOB;
+            case BLOB:
+                return DBValueExtractor.BLOB;
+            default:
+                return DBValueExtractor.OBJECT;
         }
     }
     
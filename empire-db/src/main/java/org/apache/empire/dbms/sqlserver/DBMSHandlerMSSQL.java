@@ -20,12 +20,14 @@ package org.apache.empire.dbms.sqlserver;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.GregorianCalendar;
 
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.DataType;
+import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBColumnExpr;
 import org.apache.empire.db.DBCommand;
 import org.apache.empire.db.DBDDLGenerator;
@@ -34,6 +36,7 @@ import org.apache.empire.db.DBDatabase;
 import org.apache.empire.db.DBExpr;
 import org.apache.empire.db.DBObject;
 import org.apache.empire.db.DBRelation;
+import org.apache.empire.db.DBRowSet;
 import org.apache.empire.db.DBSQLBuilder;
 import org.apache.empire.db.DBSQLScript;
 import org.apache.empire.db.DBTable;
@@ -137,6 +140,31 @@ public class DBMSHandlerMSSQL extends DBMSHandlerBase
             // Add Select Expressions
             addListExpr(sql, select, CTX_ALL, ", ");
         }
+        
+        /**
+         * Appends an OUTPUT clause.<BR>
+         * The JDBC driver only returns the value of an identity column from getGeneratedKeys().
+         */
+        @Override
+        protected void addInsertOutput(DBSQLBuilder sql, DBColumn[] returnColumns)
+        {
+            sql.append(" OUTPUT ");
+            for (int i=0; i<returnColumns.length; i++)
+            {
+                if (i>0)
+                    sql.append(", ");
+                sql.append("INSERTED.");
+                returnColumns[i].addSQL(sql, CTX_NAME);
+            }
+        }
+        
+        @Override
+        protected void addUpsert(DBSQLBuilder sql, DBRowSet table, DBColumn[] keyColumns)
+        {
+            super.addUpsert(sql, table, keyColumns);
+            // MERGE must be terminated by a semicolon
+            sql.append(";");
+        }
     }
     
     /**
@@ -188,6 +216,9 @@ public class DBMSHandlerMSSQL extends DBMSHandlerBase
     {
         // Add additional Keywords
         super(MSSQL_SQL_KEYWORDS);
+        // Statement limits (max. 2100 params and 1000 rows for table value constructors)
+        this.maxStatementParams = 2000;
+        this.maxInsertRows = 1000;
     }
 
     public String getDatabaseName()
@@ -370,6 +401,11 @@ public class DBMSHandlerMSSQL extends DBMSHandlerBase
             case SEQUENCES:         return useSequenceTable;    
             case QUERY_LIMIT_ROWS:  return true;
             case QUERY_SKIP_ROWS:   return false;
+            case MULTI_ROW_INSERT:  return true;
+            case UPSERT:            return true;
+            case INSERT_RETURNING:  return true;
+            case ORDER_NULLS_FIRST: return true;
+            case WINDOW_FUNCTIONS:  return true;
             default:
                 // All other features are not supported by default
                 return false;
@@ -516,6 +552,24 @@ public class DBMSHandlerMSSQL extends DBMSHandlerBase
         }
     }
 
+    /**
+     * Overridden. Executes an insert statement with an OUTPUT clause.<BR>
+     * The statement must be created with DBCommand.getInsert(returnColumns) 
+     * since the JDBC driver only returns the value of an identity column from getGeneratedKeys().
+     */
+    @Override
+    public int executeInsertReturning(String sqlCmd, Object[] sqlParams, Connection conn, DBColumn[] returnColumns, Object[] returnValues)
+        throws SQLException
+    {
+        // execute
+        ResultSet rs = executeQuery(sqlCmd, sqlParams, false, conn);
+        try {
+            return (readReturnValues(rs, returnColumns, returnValues) ? 1 : 0);
+        } finally {
+            closeResultSet(rs);
+        }
+    }
+
     /**
      * @see DBMSHandlerBase#getNextSequenceValueExpr(DBTableColumn col)
      */
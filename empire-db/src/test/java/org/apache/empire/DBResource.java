@@ -112,7 +112,7 @@ public class DBResource extends ExternalResource
               DBMSHandlerDerby.class),
         H2(
               "org.h2.Driver", 
-              "jdbc:h2:mem:data/h2/test",
+              "jdbc:h2:mem:data/h2/resource",
               DBMSHandlerH2.class),
         POSTGRESQL(
               "org.postgresql.Driver", 
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.ColumnExpr;
+import org.apache.empire.data.list.ColumnarDataList;
+import org.apache.empire.data.list.DataListEntry;
+import org.apache.empire.data.list.DataListHead;
+import org.apache.empire.db.context.DBContextStatic;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ColumnarDataListTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testColumnStorage()
+    {
+        CompanyDB db = new CompanyDB();
+        CompanyDB.Employees EMP = db.EMPLOYEE;
+        DataListHead head = new DataListHead(new ColumnExpr[] { EMP.ID, EMP.LASTNAME, EMP.SALARY, EMP.RETIRED });
+
+        ColumnarDataList list = new ColumnarDataList(head, 2);
+        list.setMaxDictionarySize(2);
+        for (int i=0; i<100; i++)
+        {
+            Object[] values = new Object[] { (i==3 ? null : Long.valueOf(i)), "name"+(i%3), (i%2==0 ? new BigDecimal(i) : null), (i%5==0) };
+            list.add(new DataListEntry(head, values, i));
+        }
+        assertEquals(100, list.size());
+        assertNull(list.get(3).getValue(0));
+        assertEquals(Long.valueOf(99), list.get(99).getValue(0));
+        // dictionary exceeded
+        assertEquals("name2", list.get(98).getString(EMP.LASTNAME));
+        assertEquals(new BigDecimal(42), list.get(42).getValue(2));
+        assertNull(list.get(43).getValue(2));
+        assertEquals(Boolean.TRUE, list.get(45).getValue(3));
+
+        // modify and type change
+        list.get(10).modifyValue(EMP.ID, Integer.valueOf(7));
+        assertEquals(Integer.valueOf(7), list.get(10).getValue(0));
+        assertEquals(Long.valueOf(11), list.get(11).getValue(0));
+
+        // remove
+        list.remove(0);
+        assertEquals(99, list.size());
+        assertNull(list.get(2).getValue(0));
+        assertEquals(Boolean.TRUE, list.get(4).getValue(3));
+
+        // cursor
+        ColumnarDataList.Row row = list.cursor();
+        int count = 0;
+        for (int i=0; i<list.size(); i++)
+        {
+            row.moveTo(i);
+            if (row.isNull(EMP.SALARY))
+                count++;
+        }
+        assertEquals(50, count);
+    }
+
+    @Test
+    public void testQueryColumnarDataList()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBContext context = new DBContextStatic(dbResource.newDriver(), conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        for (int i=0; i<20; i++)
+        {
+            DBRecord rec = new DBRecord(context, DEP);
+            rec.create();
+            rec.set(DEP.NAME, "dep"+i);
+            rec.set(DEP.HEAD, (i%4==0 ? null : "head"+i));
+            rec.set(DEP.BUSINESS_UNIT, (i%2==0 ? "A" : "B"));
+            rec.update();
+        }
+
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.ID, DEP.NAME, DEP.HEAD, DEP.BUSINESS_UNIT, DEP.UPDATE_TIMESTAMP);
+        cmd.orderBy(DEP.ID);
+        List<DataListEntry> expected = context.getUtils().queryDataList(cmd);
+        List<DataListEntry> list = context.getUtils().queryColumnarDataList(cmd);
+        assertTrue(list instanceof ColumnarDataList);
+        assertEquals(expected.size(), list.size());
+        for (int i=0; i<list.size(); i++)
+        {
+            for (int c=0; c<5; c++)
+                assertEquals(expected.get(i).getValue(c), list.get(i).getValue(c));
+        }
+        assertEquals(expected.get(5).toString(), list.get(5).toString());
+    }
+}
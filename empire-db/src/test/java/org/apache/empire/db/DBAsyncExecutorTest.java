@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.list.DataListEntry;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.db.exceptions.EmpireSQLException;
+import org.apache.empire.exceptions.InternalException;
+import org.apache.empire.exceptions.InvalidOperationException;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBAsyncExecutorTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testAsyncQueries()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBContext context = new DBContextStatic(dbResource.newDriver(), conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        for (int i=0; i<10; i++)
+        {
+            DBRecord rec = new DBRecord(context, DEP);
+            rec.create();
+            rec.set(DEP.NAME, "dep"+i);
+            rec.set(DEP.BUSINESS_UNIT, (i<4 ? "A" : "B"));
+            rec.update();
+        }
+        context.commit();
+
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:data/derby/test");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        DBAsyncExecutor async = new DBAsyncExecutor(context.getDbms(), dataSource);
+
+        // fan out
+        DBCommand cmdA = context.createCommand();
+        cmdA.select(DEP.ID, DEP.NAME);
+        cmdA.where(DEP.BUSINESS_UNIT.is("A"));
+        DBCommand cmdB = context.createCommand();
+        cmdB.select(DEP.ID);
+        cmdB.where(DEP.BUSINESS_UNIT.is("B"));
+        DBCommand cmdMax = context.createCommand();
+        cmdMax.select(DEP.NAME.max());
+
+        DBAsyncExecutor.FanOut fanOut = async.fanOut();
+        CompletableFuture<List<DataListEntry>> listA = fanOut.queryDataList(cmdA);
+        CompletableFuture<Integer> countB = async.queryRowCount(cmdB);
+        CompletableFuture<String> maxName = fanOut.querySingleValue(cmdMax, String.class);
+        fanOut.join();
+        assertEquals(4, listA.join().size());
+        assertEquals(6, countB.join().intValue());
+        assertEquals("dep9", maxName.join());
+
+        // update
+        DBCommand upd = context.createCommand();
+        upd.set(DEP.HEAD.to("boss"));
+        upd.where(DEP.BUSINESS_UNIT.is("B"));
+        assertEquals(6, async.executeUpdate(upd).join().intValue());
+        DBCommand cmdHead = context.createCommand();
+        cmdHead.select(DEP.ID);
+        cmdHead.where(DEP.HEAD.is("boss"));
+        assertEquals(6, context.getUtils().queryRowCount(cmdHead));
+
+        // failure
+        fanOut = async.fanOut();
+        fanOut.queryDataList(cmdA);
+        fanOut.submit(new Function<DBContext, Integer>() {
+            @Override
+            public Integer apply(DBContext context)
+            {
+                return context.getUtils().querySingleInt("SELECT UNKNOWN FROM DEPARTMENTS", null, 0);
+            }
+        });
+        try
+        {
+            fanOut.join();
+            fail("EmpireSQLException expected");
+        }
+        catch (EmpireSQLException e)
+        {
+            // expected
+        }
+
+        // cancel a running task
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicBoolean aborted = new AtomicBoolean(false);
+        CompletableFuture<Boolean> running = async.submit(new Function<DBContext, Boolean>() {
+            @Override
+            public Boolean apply(DBContext context)
+            {
+                started.countDown();
+                try
+                {   // wait until the connection is aborted
+                    Connection conn = context.getConnection();
+                    for (int i=0; i<500 && !conn.isClosed(); i++)
+                        Thread.sleep(10);
+                    aborted.set(conn.isClosed());
+                    return aborted.get();
+                }
+                catch (SQLException | InterruptedException e)
+                {
+                    throw new InternalException(e);
+                }
+                finally
+                {
+                    finished.countDown();
+                }
+            }
+        });
+        try
+        {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertTrue(running.cancel(false));
+            assertTrue(running.isCancelled());
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+            assertTrue(aborted.get());
+        }
+        catch (InterruptedException e)
+        {
+            throw new InternalException(e);
+        }
+
+        // shared context
+        DBAsyncExecutor shared = new DBAsyncExecutor(context);
+        assertEquals(4, shared.queryDataList(cmdA).join().size());
+        try
+        {
+            shared.fanOut();
+            fail("InvalidOperationException expected");
+        }
+        catch (InvalidOperationException e)
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.ColumnExpr;
+import org.apache.empire.db.context.DBContextStatic;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBBeanMapperTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    public static class Department
+    {
+        private int departmentId;
+        private String name;
+        private String businessUnit;
+        private Timestamp updateTimestamp;
+        public String head;
+
+        public int getDepartmentId()
+        {
+            return departmentId;
+        }
+        public void setDepartmentId(int departmentId)
+        {
+            this.departmentId = departmentId;
+        }
+        public String getName()
+        {
+            return name;
+        }
+        public void setName(String name)
+        {
+            this.name = name;
+        }
+        public String getBusinessUnit()
+        {
+            return businessUnit;
+        }
+        public void setBusinessUnit(String businessUnit)
+        {
+            this.businessUnit = businessUnit;
+        }
+        public Timestamp getUpdateTimestamp()
+        {
+            return updateTimestamp;
+        }
+        public void setUpdateTimestamp(Timestamp updateTimestamp)
+        {
+            this.updateTimestamp = updateTimestamp;
+        }
+    }
+
+    public static class DepartmentName
+    {
+        private final Long id;
+        private final String name;
+
+        public DepartmentName(Long id, String name)
+        {
+            this.id = id;
+            this.name = name;
+        }
+        public Long getId()
+        {
+            return id;
+        }
+        public String getName()
+        {
+            return name;
+        }
+    }
+
+    @Test
+    public void testBeanMapping()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBContext context = new DBContextStatic(dbResource.newDriver(), conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        for (int i=0; i<3; i++)
+        {
+            DBRecord rec = new DBRecord(context, DEP);
+            rec.create();
+            rec.set(DEP.NAME, "dep"+i);
+            rec.set(DEP.HEAD, (i==1 ? null : "head"+i));
+            rec.set(DEP.BUSINESS_UNIT, "A");
+            rec.update();
+        }
+
+        DBCommand cmd = context.createCommand();
+        cmd.orderBy(DEP.NAME);
+
+        // setters and public fields
+        List<Department> list = context.getUtils().queryBeanList(cmd, Department.class, DEP, null);
+        assertEquals(3, list.size());
+        assertEquals("dep2", list.get(2).getName());
+        assertEquals("head2", list.get(2).head);
+        assertEquals(null, list.get(1).head);
+        assertEquals("A", list.get(0).getBusinessUnit());
+        assertNotNull(list.get(0).getUpdateTimestamp());
+        assertEquals(((Number)context.getUtils().querySingleValue(selectId(context, DEP, "dep1"))).intValue(), list.get(1).getDepartmentId());
+
+        // constructor
+        DBCommand nameCmd = context.createCommand();
+        nameCmd.select(DEP.ID, DEP.NAME);
+        nameCmd.orderBy(DEP.NAME);
+        DBReader r = new DBReader(context);
+        try
+        {
+            r.open(nameCmd);
+            List<DepartmentName> names = r.getBeanList(DepartmentName.class);
+            assertEquals(3, names.size());
+            assertEquals("dep0", names.get(0).getName());
+            assertNotNull(names.get(0).getId());
+        }
+        finally
+        {
+            r.close();
+        }
+    }
+
+    /**
+     * A reader which converts text values when setting bean properties
+     */
+    public static class UpperCaseReader extends DBReader
+    {
+        public UpperCaseReader(DBContext context)
+        {
+            super(context);
+        }
+
+        @Override
+        protected void setBeanProperty(ColumnExpr column, Object bean, Object value)
+        {
+            if (value instanceof String)
+                value = ((String)value).toUpperCase();
+            super.setBeanProperty(column, bean, value);
+        }
+    }
+
+    @Test
+    public void testOverriddenBeanProperty()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBContext context = new DBContextStatic(dbResource.newDriver(), conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        DBRecord rec = new DBRecord(context, DEP);
+        rec.create();
+        rec.set(DEP.NAME, "dep");
+        rec.set(DEP.BUSINESS_UNIT, "a");
+        rec.update();
+
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.getColumns());
+        DBReader r = new UpperCaseReader(context);
+        try
+        {
+            r.open(cmd);
+            List<Department> list = r.getBeanList(Department.class);
+            assertEquals(1, list.size());
+            assertEquals("DEP", list.get(0).getName());
+            assertEquals("A", list.get(0).getBusinessUnit());
+        }
+        finally
+        {
+            r.close();
+        }
+    }
+
+    private DBCommand selectId(DBContext context, CompanyDB.Departments DEP, String name)
+    {
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.ID);
+        cmd.where(DEP.NAME.is(name));
+        return cmd;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.DataType;
+import org.apache.empire.db.DBRelation.DBCascadeAction;
+import org.apache.empire.db.context.DBContextStatic;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBCascadeDeleteTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    public static class TreeDB extends DBDatabase
+    {
+        public static class Node extends DBTable
+        {
+            public final DBTableColumn ID;
+            public final DBTableColumn PARENT_ID;
+            public final DBTableColumn NAME;
+
+            public Node(String name, DBDatabase db, boolean root)
+            {
+                super(name, db);
+                ID        = addColumn("ID",        DataType.AUTOINC,  0, true, name+"_SEQ");
+                PARENT_ID = (root ? null : addColumn("PARENT_ID", DataType.INTEGER, 0, true));
+                NAME      = addColumn("NAME",      DataType.VARCHAR, 40, true);
+                setPrimaryKey(ID);
+            }
+        }
+
+        public final Node PARENT     = new Node("PARENT", this, true);
+        public final Node CHILD      = new Node("CHILD", this, false);
+        public final Node GRANDCHILD = new Node("GRANDCHILD", this, false);
+
+        public TreeDB()
+        {
+            addRelation(CHILD.PARENT_ID.referenceOn(PARENT.ID)).setOnDeleteAction(DBCascadeAction.CASCADE_STATEMENTS);
+            addRelation(GRANDCHILD.PARENT_ID.referenceOn(CHILD.ID)).setOnDeleteAction(DBCascadeAction.CASCADE_STATEMENTS);
+        }
+    }
+
+    @Test
+    public void testCascadeStatements()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBContextStatic context = new DBContextStatic(dbResource.newDriver(), conn);
+
+        TreeDB db = new TreeDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        for (boolean prepared : new boolean[] { false, true })
+        {
+            context.setPreparedStatementsEnabled(prepared);
+            Object[] parentIds = new Object[2];
+            for (int p=0; p<parentIds.length; p++)
+            {
+                parentIds[p] = insert(context, db.PARENT, null, "parent"+p);
+                for (int c=0; c<3; c++)
+                {
+                    Object childId = insert(context, db.CHILD, parentIds[p], "child"+c);
+                    for (int g=0; g<4; g++)
+                        insert(context, db.GRANDCHILD, childId, "grandchild"+g);
+                }
+            }
+            // delete the first parent
+            db.PARENT.deleteRecord(new Object[] { parentIds[0] }, context);
+            assertEquals(1, count(context, db.PARENT));
+            assertEquals(3, count(context, db.CHILD));
+            assertEquals(12, count(context, db.GRANDCHILD));
+            // switch to record cascade
+            db.getRelations().get(0).setOnDeleteAction(DBCascadeAction.CASCADE_RECORDS);
+            db.PARENT.deleteRecord(new Object[] { parentIds[1] }, context);
+            db.getRelations().get(0).setOnDeleteAction(DBCascadeAction.CASCADE_STATEMENTS);
+            assertEquals(0, count(context, db.CHILD));
+            assertEquals(0, count(context, db.GRANDCHILD));
+        }
+    }
+
+    private Object insert(DBContext context, TreeDB.Node node, Object parentId, String name)
+    {
+        DBRecord rec = new DBRecord(context, node);
+        rec.create();
+        if (node.PARENT_ID!=null)
+            rec.set(node.PARENT_ID, parentId);
+        rec.set(node.NAME, name);
+        rec.update();
+        return rec.get(node.ID);
+    }
+
+    private int count(DBContext context, DBTable table)
+    {
+        DBCommand cmd = context.createCommand();
+        cmd.select(table.count());
+        return context.getUtils().querySingleInt(cmd);
+    }
+}
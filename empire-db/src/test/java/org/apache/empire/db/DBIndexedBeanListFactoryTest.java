@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Connection;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.db.list.DBBeanFactoryCache;
+import org.apache.empire.db.list.DBIndexedBeanListFactory;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBIndexedBeanListFactoryTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    public static class DepartmentBean
+    {
+        public Long id;
+        public String name;
+        public String head;
+    }
+
+    public static class DepartmentBeanFactory extends DBIndexedBeanListFactory<DepartmentBean>
+    {
+        public DepartmentBeanFactory(CompanyDB.Departments rowset)
+        {
+            super(DepartmentBean.class, rowset);
+        }
+
+        @Override
+        protected DepartmentBean newBean(DBRecordData recData, int[] fieldIndexes)
+        {
+            DepartmentBean bean = new DepartmentBean();
+            if (fieldIndexes[0]>=0)
+                bean.id = recData.getValue(fieldIndexes[0], Long.class);
+            if (fieldIndexes[1]>=0)
+                bean.name = recData.getValue(fieldIndexes[1], String.class);
+            if (fieldIndexes[2]>=0)
+                bean.head = recData.getValue(fieldIndexes[2], String.class);
+            return bean;
+        }
+    }
+
+    @Test
+    public void testIndexedBeanList()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBContext context = new DBContextStatic(dbResource.newDriver(), conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        for (int i=0; i<3; i++)
+        {
+            DBRecord rec = new DBRecord(context, DEP);
+            rec.create();
+            rec.set(DEP.NAME, "dep"+i);
+            rec.set(DEP.HEAD, "head"+i);
+            rec.set(DEP.BUSINESS_UNIT, "A");
+            rec.update();
+        }
+
+        DBBeanFactoryCache.setFactoryForType(DepartmentBean.class, new DepartmentBeanFactory(DEP));
+        try
+        {   // all columns
+            DBCommand cmd = context.createCommand();
+            cmd.orderBy(DEP.NAME);
+            List<DepartmentBean> list = context.getUtils().queryBeanList(cmd, DepartmentBean.class, DEP, null);
+            assertEquals(3, list.size());
+            assertNotNull(list.get(0).id);
+            assertEquals("dep1", list.get(1).name);
+            assertEquals("head2", list.get(2).head);
+
+            // different order and fewer columns
+            cmd = context.createCommand();
+            cmd.select(DEP.HEAD, DEP.NAME);
+            cmd.orderBy(DEP.NAME);
+            list = context.getUtils().queryBeanList(cmd, DepartmentBean.class, DEP, null);
+            assertEquals(3, list.size());
+            assertNull(list.get(0).id);
+            assertEquals("dep0", list.get(0).name);
+            assertEquals("head0", list.get(0).head);
+        }
+        finally
+        {
+            DBBeanFactoryCache.setFactoryForType(DepartmentBean.class, null);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.list.DataListEntry;
+import org.apache.empire.data.list.DataListFactory;
+import org.apache.empire.data.list.DataListFactoryImpl;
+import org.apache.empire.data.list.DataListHead;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.dbms.DBMSHandler;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBKeysetTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testKeysetPaging()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBMSHandler dbms = dbResource.newDriver();
+        DBContext context = new DBContextStatic(dbms, conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        for (int i=0; i<50; i++)
+        {   // nullable HEAD with duplicates
+            DBRecord rec = new DBRecord(context, DEP);
+            rec.create();
+            rec.set(DEP.NAME, "dep"+i);
+            rec.set(DEP.BUSINESS_UNIT, (i%3==0 ? "A" : "B"));
+            if (i%4!=0)
+                rec.set(DEP.HEAD, "head"+(i%5));
+            rec.update();
+        }
+
+        // mixed ASC/DESC
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.ID, DEP.BUSINESS_UNIT, DEP.HEAD);
+        cmd.orderBy(DEP.BUSINESS_UNIT.desc(), DEP.HEAD.asc(), DEP.ID.desc());
+        assertKeysetPaging(context, cmd, DEP);
+
+        // descending nullable column
+        cmd.clearOrderBy();
+        cmd.orderBy(DEP.HEAD.desc(), DEP.ID.asc());
+        assertKeysetPaging(context, cmd, DEP);
+    }
+
+    private void assertKeysetPaging(DBContext context, DBCommand cmd, CompanyDB.Departments DEP)
+    {
+        List<Object> expected = new ArrayList<Object>();
+        for (DataListEntry e : context.getUtils().queryDataList(cmd))
+            expected.add(e.get(DEP.ID));
+        // read pages
+        List<Object> actual = new ArrayList<Object>();
+        DBKeyset keyset = new DBKeyset(cmd);
+        DataListFactory<DataListEntry> factory = new DataListFactoryImpl<DataListEntry>(DataListEntry.class, new DataListHead(cmd.getSelectExprList()));
+        int pages = 0;
+        while (true)
+        {
+            List<DataListEntry> page = context.getUtils().queryDataList(cmd, factory, keyset, 7);
+            if (page.isEmpty())
+                break;
+            assertTrue(page.size()<=7);
+            for (DataListEntry e : page)
+                actual.add(e.get(DEP.ID));
+            pages++;
+        }
+        assertEquals(8, pages);
+        assertEquals(expected, actual);
+    }
+}
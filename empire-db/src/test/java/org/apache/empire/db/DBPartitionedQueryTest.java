@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.list.DataListEntry;
+import org.apache.empire.db.DBPartitionedQuery.MergeMode;
+import org.apache.empire.db.DBPartitionedQuery.PartitionType;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.db.expr.compare.DBCompareExpr;
+import org.apache.empire.exceptions.InvalidOperationException;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBPartitionedQueryTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testPartitionedQuery()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBContext context = new DBContextStatic(dbResource.newDriver(), conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        for (int i=0; i<100; i++)
+        {
+            DBRecord rec = new DBRecord(context, DEP);
+            rec.create();
+            rec.set(DEP.NAME, "dep"+(i*37%100));
+            rec.set(DEP.BUSINESS_UNIT, "A");
+            rec.update();
+        }
+        context.commit();
+
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:data/derby/test");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        DBPartitionedQuery query = new DBPartitionedQuery(context.getDbms(), dataSource);
+        query.setQueueCapacity(5);
+
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.ID, DEP.NAME);
+        cmd.orderBy(DEP.NAME.desc());
+        List<DataListEntry> expected = context.getUtils().queryDataList(cmd);
+
+        // ordered merge
+        for (PartitionType type : PartitionType.values())
+        {
+            List<DataListEntry> list = query.queryDataList(cmd, type, DEP.ID, 4, MergeMode.ORDERED);
+            assertEquals(expected.size(), list.size());
+            for (int i=0; i<list.size(); i++)
+            {
+                assertEquals(expected.get(i).getString(DEP.NAME), list.get(i).getString(DEP.NAME));
+                assertEquals(i, list.get(i).getRownum());
+            }
+        }
+
+        // concatenation with explicit bounds
+        DBCompareExpr[] partitions = query.partitionByRange(DEP.ID, 11, 51);
+        assertEquals(3, partitions.length);
+        cmd.clearOrderBy();
+        cmd.orderBy(DEP.ID);
+        List<DataListEntry> list = query.queryDataList(cmd, partitions, MergeMode.CONCAT, context.getUtils().createDefaultDataListFactory(DataListEntry.class, expected.get(0).getHead()));
+        assertEquals(100, list.size());
+        Set<Long> ids = new HashSet<Long>();
+        for (int i=0; i<list.size(); i++)
+        {
+            ids.add(list.get(i).getLong(DEP.ID));
+            assertEquals(i, list.get(i).getRownum());
+            if (i>0)
+                assertEquals(list.get(i-1).getLong(DEP.ID)+1, list.get(i).getLong(DEP.ID));
+        }
+        assertEquals(100, ids.size());
+
+        // executor with fewer threads than partitions
+        ExecutorService single = Executors.newFixedThreadPool(1);
+        try
+        {
+            query.setExecutor(single);
+            assertEquals(100, query.queryDataList(cmd, partitions, MergeMode.ORDERED, context.getUtils().createDefaultDataListFactory(DataListEntry.class, expected.get(0).getHead())).size());
+        }
+        finally
+        {
+            query.setExecutor(null);
+            single.shutdown();
+        }
+
+        // ordered merge requires order by
+        cmd.clearOrderBy();
+        try
+        {
+            query.queryDataList(cmd, PartitionType.MODULO, DEP.ID, 2, MergeMode.ORDERED);
+            fail("InvalidOperationException expected");
+        }
+        catch (InvalidOperationException e)
+        {
+            // expected
+        }
+    }
+}
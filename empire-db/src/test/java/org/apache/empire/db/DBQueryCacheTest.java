@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.list.DataListEntry;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.dbms.DBMSHandler;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBQueryCacheTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testQueryCache()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBMSHandler dbms = dbResource.newDriver();
+        DBContext context = new DBContextStatic(dbms, conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        CompanyDB.Employees EMP = db.EMPLOYEE;
+        DBRecord dep = null;
+        for (int i=0; i<3; i++)
+        {
+            dep = new DBRecord(context, DEP);
+            dep.create();
+            dep.set(DEP.NAME, "dep"+i);
+            dep.set(DEP.BUSINESS_UNIT, "A");
+            dep.update();
+        }
+        DBRecord emp = new DBRecord(context, EMP);
+        emp.create();
+        emp.set(EMP.FIRSTNAME, "Jane");
+        emp.set(EMP.LASTNAME, "Doe");
+        emp.set(EMP.DEPARTMENT_ID, dep.get(DEP.ID));
+        emp.update();
+
+        DBQueryCache cache = new DBQueryCache(10, 100);
+        db.setQueryCache(cache);
+        DBUtils utils = context.getUtils();
+
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.NAME);
+        cmd.where(DEP.BUSINESS_UNIT.is("A"));
+        cmd.orderBy(DEP.NAME);
+
+        // simple list
+        assertEquals(Arrays.asList("dep0", "dep1", "dep2"), utils.querySimpleList(String.class, cmd));
+        assertEquals(Arrays.asList("dep0", "dep1", "dep2"), utils.querySimpleList(String.class, cmd));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        // data list
+        List<DataListEntry> list = utils.queryDataList(cmd);
+        assertEquals(3, list.size());
+        list = utils.queryDataList(cmd);
+        assertEquals(3, list.size());
+        assertEquals("dep2", list.get(2).getString(DEP.NAME));
+        assertEquals(2, cache.getHitCount());
+
+        // single value
+        DBCommand empCmd = context.createCommand();
+        empCmd.select(EMP.LASTNAME);
+        empCmd.where(EMP.FIRSTNAME.is("Jane"));
+        assertEquals("Doe", utils.querySingleString(empCmd));
+        assertEquals("Doe", utils.querySingleString(empCmd));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(3, cache.getSize());
+
+        // record update invalidates department queries only
+        dep.set(DEP.NAME, "dep3");
+        dep.update();
+        assertEquals(2, cache.getInvalidationCount());
+        assertEquals(Arrays.asList("dep0", "dep1", "dep3"), utils.querySimpleList(String.class, cmd));
+        assertEquals("Doe", utils.querySingleString(empCmd));
+        assertEquals(4, cache.getHitCount());
+
+        // update command
+        DBCommand upd = context.createCommand();
+        upd.set(EMP.LASTNAME.to("Smith"));
+        upd.where(EMP.FIRSTNAME.is("Jane"));
+        context.executeUpdate(upd);
+        assertEquals("Smith", utils.querySingleString(empCmd));
+
+        // delete record
+        emp.delete();
+        dep.delete();
+        assertEquals(Arrays.asList("dep0", "dep1"), utils.querySimpleList(String.class, cmd));
+        assertEquals(2, utils.queryDataList(cmd).size());
+        assertEquals(4, cache.getHitCount());
+
+        // size limit
+        cache.clear();
+        DBQueryCache small = new DBQueryCache(1, 100);
+        db.setQueryCache(small);
+        utils.querySimpleList(String.class, cmd);
+        utils.querySingleString(empCmd, null);
+        assertEquals(1, small.getSize());
+        assertEquals(1, small.getEvictionCount());
+        utils.querySingleString(empCmd, null);
+        assertEquals(1, small.getHitCount());
+
+        // row limit
+        DBQueryCache limited = new DBQueryCache(10, 1);
+        db.setQueryCache(limited);
+        utils.queryDataList(cmd);
+        assertEquals(0, limited.getSize());
+        db.setQueryCache(null);
+    }
+
+    @Test
+    public void testUncommittedModifications()
+        throws SQLException
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBMSHandler dbms = dbResource.newDriver();
+        DBContext context = new DBContextStatic(dbms, conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        DBRecord dep = new DBRecord(context, DEP);
+        dep.create();
+        dep.set(DEP.NAME, "dep0");
+        dep.set(DEP.BUSINESS_UNIT, "A");
+        dep.update();
+
+        DBQueryCache cache = new DBQueryCache(10, 100);
+        db.setQueryCache(cache);
+        DBUtils utils = context.getUtils();
+
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.NAME);
+        cmd.orderBy(DEP.NAME);
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try
+        {   // cached
+            assertEquals(Arrays.asList("dep0"), utils.querySimpleList(String.class, cmd));
+            assertEquals(1, cache.getSize());
+
+            // uncommitted modification
+            dep.set(DEP.NAME, "dep1");
+            dep.update();
+            assertTrue(cache.hasUncommittedModifications(context));
+            assertEquals(Arrays.asList("dep1"), utils.querySimpleList(String.class, cmd));
+            assertEquals(Arrays.asList("dep1"), utils.querySimpleList(String.class, cmd));
+            assertEquals(0, cache.getSize());
+            
+            // result cached by another context before commit
+            DBQueryCache.QueryKey key = new DBQueryCache.QueryKey("test", cmd.getSelect(), null);
+            assertTrue(cache.put(key, "dep0", cmd, cache.getSequence()));
+            context.commit();
+            assertFalse(cache.hasUncommittedModifications(context));
+            assertEquals(0, cache.getSize());
+            assertEquals(Arrays.asList("dep1"), utils.querySimpleList(String.class, cmd));
+            assertEquals(1, cache.getSize());
+
+            // rollback
+            dep.set(DEP.NAME, "dep2");
+            dep.update();
+            assertTrue(cache.hasUncommittedModifications(context));
+            context.rollback();
+            assertFalse(cache.hasUncommittedModifications(context));
+            assertEquals(Arrays.asList("dep1"), utils.querySimpleList(String.class, cmd));
+            assertEquals(1, cache.getSize());
+        }
+        finally
+        {
+            conn.setAutoCommit(autoCommit);
+            db.setQueryCache(null);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.list.DataListEntry;
+import org.apache.empire.data.list.DataListHead;
+import org.apache.empire.db.context.DBContextStatic;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBQueryStreamTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    public static class Department
+    {
+        private String name;
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public void setName(String name)
+        {
+            this.name = name;
+        }
+    }
+
+    private DBContext context;
+    private CompanyDB.Departments DEP;
+
+    @Before
+    public void setup()
+    {
+        Connection conn = dbResource.getConnection();
+
+        context = new DBContextStatic(dbResource.newDriver(), conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        DEP = db.DEPARTMENT;
+        for (int i=0; i<20; i++)
+        {
+            DBRecord rec = new DBRecord(context, DEP);
+            rec.create();
+            rec.set(DEP.NAME, "dep"+(char)('a'+i));
+            rec.set(DEP.BUSINESS_UNIT, "A");
+            rec.update();
+        }
+    }
+
+    @Test
+    public void testQueryStreams()
+    {
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.ID, DEP.NAME);
+        cmd.orderBy(DEP.NAME);
+
+        // reader rows
+        Stream<DBRecordData> rows = context.getUtils().queryStream(cmd);
+        try
+        {
+            List<String> names = rows.map(new Function<DBRecordData, String>() {
+                @Override
+                public String apply(DBRecordData row)
+                {
+                    return row.getString(DEP.NAME);
+                }
+            }).collect(Collectors.<String>toList());
+            assertEquals(20, names.size());
+            assertEquals("depa", names.get(0));
+            assertEquals("dept", names.get(19));
+        }
+        finally
+        {
+            rows.close();
+        }
+
+        // data entries
+        List<DataListEntry> entries = context.getUtils().queryDataStream(cmd).collect(Collectors.<DataListEntry>toList());
+        assertEquals(20, entries.size());
+        assertEquals("depc", entries.get(2).getString(DEP.NAME));
+
+        // beans
+        cmd.clearSelect();
+        cmd.select(DEP.NAME);
+        List<Department> beans = context.getUtils().queryBeanStream(cmd, Department.class).skip(5).limit(3).collect(Collectors.<Department>toList());
+        assertEquals(3, beans.size());
+        assertEquals("depf", beans.get(0).getName());
+    }
+
+    @Test
+    public void testStreamClose()
+    {
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.ID, DEP.NAME);
+        cmd.orderBy(DEP.NAME);
+
+        Stream<DataListEntry> stream = context.getUtils().queryDataStream(cmd);
+        Iterator<DataListEntry> it = stream.iterator();
+        assertEquals("depa", it.next().getString(DEP.NAME));
+        stream.close();
+        assertTrue(!it.hasNext());
+    }
+
+    @Test
+    public void testPublisher()
+    {
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.ID, DEP.NAME);
+        cmd.orderBy(DEP.NAME);
+
+        final List<DataListEntry> received = new ArrayList<DataListEntry>();
+        final DBReaderPublisher.Subscription[] subscription = new DBReaderPublisher.Subscription[1];
+        final Throwable[] error = new Throwable[1];
+        final boolean[] complete = new boolean[1];
+        DBReaderPublisher<DataListEntry> publisher = context.getUtils().queryDataPublisher(cmd, context.getUtils().createDefaultDataListFactory(DataListEntry.class, new DataListHead(cmd.getSelectExprList())));
+        publisher.subscribe(new DBReaderPublisher.Subscriber<DataListEntry>() {
+            @Override
+            public void onSubscribe(DBReaderPublisher.Subscription s)
+            {
+                subscription[0] = s;
+            }
+            @Override
+            public void onNext(DataListEntry item)
+            {
+                received.add(item);
+            }
+            @Override
+            public void onError(Throwable throwable)
+            {
+                error[0] = throwable;
+            }
+            @Override
+            public void onComplete()
+            {
+                complete[0] = true;
+            }
+        });
+        assertNotNull(subscription[0]);
+        assertEquals(0, received.size());
+        // request in chunks
+        subscription[0].request(5);
+        assertEquals(5, received.size());
+        subscription[0].request(10);
+        assertEquals(15, received.size());
+        assertEquals("depo", received.get(14).getString(DEP.NAME));
+        subscription[0].request(100);
+        assertEquals(20, received.size());
+        assertTrue(complete[0]);
+        assertNull(error[0]);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.db.list.DBKeyedList;
+import org.apache.empire.dbms.DBMSHandlerBase;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBReadRecordsTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testReadRecords()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBMSHandlerBase dbms = (DBMSHandlerBase)dbResource.newDriver();
+        dbms.setMaxInListSize(10);
+        DBContextStatic context = new DBContextStatic(dbms, conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        Object[] ids = new Object[25];
+        for (int i=0; i<ids.length; i++)
+        {
+            DBRecord rec = new DBRecord(context, DEP);
+            rec.create();
+            rec.set(DEP.NAME, "dep"+i);
+            rec.set(DEP.BUSINESS_UNIT, "A");
+            rec.update();
+            ids[i] = rec.get(DEP.ID);
+        }
+
+        // reverse order with a missing key, a duplicate and a null key
+        Object[][] keys = new Object[ids.length+3][];
+        for (int i=0; i<ids.length; i++)
+            keys[i] = new Object[] { ids[ids.length-1-i] };
+        keys[ids.length  ] = new Object[] { -1 };
+        keys[ids.length+1] = new Object[] { ids[0] };
+        keys[ids.length+2] = new Object[] { null };
+
+        for (boolean prepared : new boolean[] { false, true })
+        {
+            context.setPreparedStatementsEnabled(prepared);
+            DBKeyedList<DBRecord> result = DEP.readRecords(context, keys, DBRecord.class);
+            List<DBRecord> records = result.getItems();
+            assertEquals(ids.length, records.size());
+            for (int i=0; i<records.size(); i++)
+                assertEquals("dep"+(ids.length-1-i), records.get(i).getString(DEP.NAME));
+            assertTrue(records.get(0).isValid());
+            assertTrue(result.hasMissingKeys());
+            assertEquals(2, result.getMissingKeys().size());
+            assertEquals(-1, result.getMissingKeys().get(0)[0]);
+        }
+
+        // all found
+        DBKeyedList<DBRecord> result = DEP.readRecords(context, new Object[][] { { ids[3] }, { ids[1] } }, DBRecord.class);
+        assertEquals("dep3", result.getItems().get(0).getString(DEP.NAME));
+        assertFalse(result.hasMissingKeys());
+
+        // keys of a different type
+        Object[][] decimalKeys = new Object[][] { { new BigDecimal(ids[3].toString()) }, { Integer.valueOf(ids[1].toString()) } };
+        result = DEP.readRecords(context, decimalKeys, DBRecord.class);
+        assertEquals(2, result.getItems().size());
+        assertEquals("dep3", result.getItems().get(0).getString(DEP.NAME));
+        assertEquals("dep1", result.getItems().get(1).getString(DEP.NAME));
+        assertFalse(result.hasMissingKeys());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.empire.db.DBReaderPipelineTest.Department;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.db.list.DBBeanListFactory;
+import org.apache.empire.dbms.hsql.DBMSHandlerHSql;
+
+/**
+ * DBReaderPipelineBenchmark
+ * Compares the sequential mapping of query rows to beans with the DBReaderPipeline
+ * for several chunk sizes, numbers of pending chunks and degrees of parallelism using an in-memory HSQLDB.<BR>
+ * This is not a unit test. Run it from the empire-db directory after "mvn test-compile" with
+ * <PRE>
+ * mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.apache.empire.db.DBReaderPipelineBenchmark -Dexec.args="200000 5"
+ * </PRE>
+ * The arguments are the number of rows (default 200000) and the number of measured runs per configuration (default 5).
+ * Each configuration is warmed up with the same number of runs and the median of the measured runs is reported.
+ * The sequential mapping is measured first and last in order to show the effect of JIT compilation.
+ */
+public class DBReaderPipelineBenchmark
+{
+    private static final int[] CHUNK_SIZES = new int[] { 50, 200, 500, 2000, 10000 };
+
+    public static void main(String[] args)
+        throws SQLException
+    {
+        int rows = (args.length>0 ? Integer.parseInt(args[0]) : 200000);
+        int runs = (args.length>1 ? Integer.parseInt(args[1]) : 5);
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        Connection conn = DriverManager.getConnection("jdbc:hsqldb:mem:benchmark", "sa", "");
+        try
+        {
+            DBContextStatic context = new DBContextStatic(new DBMSHandlerHSql(), conn);
+            context.setPreparedStatementsEnabled(true);
+            CompanyDB db = new CompanyDB();
+            db.open(context);
+            DBSQLScript script = new DBSQLScript(context);
+            db.getCreateDDLScript(script);
+            script.executeAll(false);
+            // insert rows
+            CompanyDB.Departments DEP = db.DEPARTMENT;
+            for (int i=0; i<rows; i++)
+            {
+                DBRecord rec = new DBRecord(context, DEP);
+                rec.create();
+                rec.set(DEP.NAME, "dep"+i);
+                rec.set(DEP.HEAD, (i%3==0 ? null : "head"+i));
+                rec.set(DEP.BUSINESS_UNIT, "A");
+                rec.update();
+            }
+            context.commit();
+
+            DBCommand cmd = context.createCommand();
+            cmd.select(DEP.ID, DEP.NAME, DEP.HEAD);
+            cmd.orderBy(DEP.ID);
+
+            System.out.println("rows="+rows+" runs="+runs+" processors="+processors);
+            System.out.println("sequential: "+measure(context, cmd, null, runs)+" ms");
+            int[] parallelisms = new int[] { 1, 2, 4, Math.max(processors, 1) };
+            for (int parallelism : distinct(parallelisms))
+            {
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try
+                {
+                    for (int chunkSize : CHUNK_SIZES)
+                    {
+                        DBBeanListFactory<Department> factory = context.getUtils().getCommandBeanListFactory(Department.class, cmd);
+                        DBReaderPipeline<Department> pipeline = new DBReaderPipeline<Department>(factory, pool, chunkSize);
+                        pipeline.setParallel(true);
+                        System.out.println("pipeline parallelism="+parallelism+" chunkSize="+chunkSize+" maxPendingChunks="+pipeline.getMaxPendingChunks()+": "+measure(context, cmd, pipeline, runs)+" ms");
+                    }
+                    for (int pending : distinct(new int[] { 1, parallelism, parallelism*4 }))
+                    {
+                        DBBeanListFactory<Department> factory = context.getUtils().getCommandBeanListFactory(Department.class, cmd);
+                        DBReaderPipeline<Department> pipeline = new DBReaderPipeline<Department>(factory, pool, DBReaderPipeline.DEFAULT_CHUNK_SIZE);
+                        pipeline.setParallel(true);
+                        pipeline.setMaxPendingChunks(pending);
+                        System.out.println("pipeline parallelism="+parallelism+" chunkSize="+pipeline.getChunkSize()+" maxPendingChunks="+pending+": "+measure(context, cmd, pipeline, runs)+" ms");
+                    }
+                }
+                finally
+                {
+                    pool.shutdown();
+                }
+            }
+            System.out.println("sequential: "+measure(context, cmd, null, runs)+" ms");
+        }
+        finally
+        {
+            conn.close();
+        }
+    }
+
+    private static long measure(DBContext context, DBCommand cmd, DBReaderPipeline<Department> pipeline, int runs)
+    {
+        long[] times = new long[runs];
+        for (int run=-runs; run<runs; run++)
+        {   // first runs are warm up
+            long start = System.nanoTime();
+            DBReader r = new DBReader(context);
+            try
+            {
+                r.setFetchSize(DBReader.FETCH_SIZE_ADAPTIVE);
+                r.open(cmd);
+                List<Department> list;
+                if (pipeline!=null)
+                    list = pipeline.readList(r, new ArrayList<Department>(), null, -1);
+                else
+                    list = r.getBeanList(new ArrayList<Department>(), Department.class, null, -1);
+                if (list.isEmpty())
+                    throw new IllegalStateException("No rows");
+            }
+            finally
+            {
+                r.close();
+            }
+            if (run>=0)
+                times[run] = (System.nanoTime()-start) / 1000000;
+        }
+        Arrays.sort(times);
+        return times[runs/2];
+    }
+
+    private static int[] distinct(int[] values)
+    {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i=0; i<sorted.length; i++)
+            if (i==0 || sorted[i]!=sorted[i-1])
+                sorted[count++] = sorted[i];
+        return Arrays.copyOf(sorted, count);
+    }
+}
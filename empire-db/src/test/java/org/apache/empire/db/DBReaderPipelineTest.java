@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.db.list.DBBeanListFactory;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBReaderPipelineTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    public static class Department
+    {
+        private long id;
+        private String name;
+        private String head;
+
+        public long getId()
+        {
+            return id;
+        }
+
+        public void setId(long id)
+        {
+            this.id = id;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public void setName(String name)
+        {
+            this.name = name;
+        }
+
+        public String getHead()
+        {
+            return head;
+        }
+
+        public void setHead(String head)
+        {
+            this.head = head;
+        }
+    }
+
+    @Test
+    public void testParallelBeanList()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBContext context = new DBContextStatic(dbResource.newDriver(), conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        for (int i=0; i<1234; i++)
+        {
+            DBRecord rec = new DBRecord(context, DEP);
+            rec.create();
+            rec.set(DEP.NAME, "dep"+i);
+            rec.set(DEP.HEAD, (i%3==0 ? null : "head"+i));
+            rec.set(DEP.BUSINESS_UNIT, "A");
+            rec.update();
+        }
+
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.ID, DEP.NAME, DEP.HEAD);
+        cmd.orderBy(DEP.ID);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {   // all rows in order
+            List<Department> list = context.getUtils().queryBeanListParallel(cmd, context.getUtils().getCommandBeanListFactory(Department.class, cmd), null, pool, 100);
+            assertEquals(1234, list.size());
+            for (int i=0; i<list.size(); i++)
+            {
+                assertEquals("dep"+i, list.get(i).getName());
+                assertEquals((i%3==0 ? null : "head"+i), list.get(i).getHead());
+            }
+
+            // limited with reader
+            for (boolean parallel : new boolean[] { true, false })
+            {
+                DBBeanListFactory<Department> factory = context.getUtils().getCommandBeanListFactory(Department.class, cmd);
+                DBReaderPipeline<Department> pipeline = new DBReaderPipeline<Department>(factory, pool, 64);
+                pipeline.setMaxPendingChunks(1);
+                pipeline.setParallel(parallel);
+                DBReader r = new DBReader(context);
+                try
+                {
+                    r.open(cmd);
+                    List<Department> page = pipeline.readList(r, new ArrayList<Department>(), null, 130);
+                    assertEquals(130, page.size());
+                    assertEquals(list.get(129).getId(), page.get(129).getId());
+                    // continue with remaining rows
+                    page = pipeline.readList(r, new ArrayList<Department>(), null, -1);
+                    assertEquals(1234-130, page.size());
+                    assertEquals("dep130", page.get(0).getName());
+                    assertFalse(r.isOpen());
+                }
+                finally
+                {
+                    r.close();
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.dbms.DBMSHandler;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBRecordBatchWriterTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testBatchWriter()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBMSHandler dbms = dbResource.newDriver();
+        DBContext context = new DBContextStatic(dbms, conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+
+        // insert
+        List<DBRecord> records = new ArrayList<DBRecord>();
+        DBRecordBatchWriter writer = new DBRecordBatchWriter(context, 100);
+        try {
+            for (int i=0; i<250; i++)
+            {
+                DBRecord rec = new DBRecord(context, DEP);
+                rec.create();
+                rec.set(DEP.NAME, "dep"+i);
+                rec.set(DEP.BUSINESS_UNIT, (i%2==0 ? "EVEN" : "ODD"));
+                if (i%5==0)
+                    rec.set(DEP.HEAD, "head"+i);
+                writer.add(rec);
+                records.add(rec);
+                if (i==10)
+                    assertEquals(11, writer.getPendingCount());
+            }
+        } finally {
+            writer.close();
+        }
+        assertEquals(0, writer.getPendingCount());
+        assertEquals(250, writer.getRecordCount());
+        assertTrue(writer.getBatchCount()<10);
+        // check records
+        for (DBRecord rec : records)
+        {
+            assertFalse(rec.isNew());
+            assertFalse(rec.isModified());
+            assertNotNull(rec.get(DEP.ID));
+            assertNotNull(rec.get(DEP.UPDATE_TIMESTAMP));
+        }
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.count());
+        assertEquals(250, context.getUtils().querySingleInt(cmd));
+
+        // update
+        for (DBRecord rec : records)
+        {
+            rec.set(DEP.BUSINESS_UNIT, "UPD");
+            writer.add(rec);
+        }
+        writer.flush();
+        cmd.where(DEP.BUSINESS_UNIT.is("UPD"));
+        assertEquals(250, context.getUtils().querySingleInt(cmd));
+
+        // update again using the timestamp
+        DBRecord rec = records.get(0);
+        rec.set(DEP.NAME, "changed");
+        writer.add(rec);
+        writer.flush();
+        assertEquals("changed", new DBRecord(context, DEP).read(rec.getKey()).getString(DEP.NAME));
+    }
+}
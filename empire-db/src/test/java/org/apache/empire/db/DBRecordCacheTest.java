@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Timestamp;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.DBRecordCache.EvictionPolicy;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.db.exceptions.RecordUpdateFailedException;
+import org.apache.empire.dbms.DBMSHandler;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBRecordCacheTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testRecordCache()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBMSHandler dbms = dbResource.newDriver();
+        DBContext context = new DBContextStatic(dbms, conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        DBRecordCache cache = new DBRecordCache(2);
+        DEP.setRecordCache(cache);
+
+        // not populated on insert
+        Object[] ids = new Object[3];
+        for (int i=0; i<ids.length; i++)
+        {
+            DBRecord rec = new DBRecord(context, DEP);
+            rec.create();
+            rec.set(DEP.NAME, "dep"+i);
+            rec.set(DEP.BUSINESS_UNIT, "A");
+            rec.update();
+            ids[i] = rec.get(DEP.ID);
+        }
+        assertEquals(0, cache.getSize());
+
+        // read
+        DBRecord rec = new DBRecord(context, DEP);
+        rec.read(ids[0]);
+        assertEquals(1, cache.getMissCount());
+        rec.read(ids[0]);
+        assertEquals(1, cache.getHitCount());
+        assertEquals("dep0", rec.getString(DEP.NAME));
+        assertTrue(DEP.recordExists(ids[0], context));
+
+        // keys of a different type
+        BigDecimal decimalId = new BigDecimal(ids[0].toString()).setScale(2);
+        assertTrue(cache.contains(new Object[] { decimalId }));
+        rec.read(decimalId);
+        assertEquals(2, cache.getHitCount());
+
+        // update removes the record
+        rec.set(DEP.NAME, "dep0a");
+        rec.update();
+        assertFalse(cache.contains(new Object[] { ids[0] }));
+        rec.read(ids[0]);
+        assertEquals(2, cache.getMissCount());
+        assertEquals("dep0a", rec.getString(DEP.NAME));
+        // update with expression
+        rec.set(DEP.NAME, DEP.NAME.concat(DEP.BUSINESS_UNIT));
+        rec.update();
+        assertFalse(cache.contains(new Object[] { ids[0] }));
+        rec.read(ids[0]);
+        assertEquals("dep0aA", rec.getString(DEP.NAME));
+        rec.read(ids[0]);
+        assertEquals(3, cache.getHitCount());
+        assertEquals("dep0aA", rec.getString(DEP.NAME));
+        rec.set(DEP.HEAD, "head");
+        rec.update();
+
+        // concurrent change
+        rec.read(ids[0]);
+        DBCommand cmd = context.createCommand();
+        cmd.set(DEP.UPDATE_TIMESTAMP.to(new Timestamp(System.currentTimeMillis()+1000)));
+        cmd.where(DEP.ID.is(ids[0]));
+        context.executeSQL(cmd.getUpdate(), cmd.getParamValues());
+        rec.set(DEP.NAME, "dep0b");
+        try {
+            rec.update();
+            fail("Concurrent change not detected");
+        } catch(RecordUpdateFailedException e) {
+            // expected
+        }
+        assertFalse(cache.contains(new Object[] { ids[0] }));
+
+        // set based update
+        rec.read(ids[1]);
+        rec.read(ids[2]);
+        assertEquals(2, cache.getSize());
+        context.executeUpdate(cmd);
+        assertEquals(0, cache.getSize());
+
+        // delete
+        rec.read(ids[2]);
+        rec.delete();
+        assertFalse(cache.contains(new Object[] { ids[2] }));
+        assertFalse(DEP.recordExists(ids[2], context));
+        DEP.setRecordCache(null);
+    }
+
+    @Test
+    public void testEvictionPolicy()
+    {
+        DBRecordCache lru = new DBRecordCache(2, EvictionPolicy.LRU);
+        DBRecordCache lfu = new DBRecordCache(2, EvictionPolicy.LFU);
+        for (DBRecordCache cache : new DBRecordCache[] { lru, lfu })
+        {
+            cache.put(new Object[] { 1 }, new Object[] { "a" }, cache.getSequence());
+            cache.put(new Object[] { 2 }, new Object[] { "b" }, cache.getSequence());
+            cache.get(new Object[] { 1L });
+            cache.get(new Object[] { 1L });
+            cache.get(new Object[] { 2 });
+            cache.put(new Object[] { 3 }, new Object[] { "c" }, cache.getSequence());
+            assertEquals(2, cache.getSize());
+            assertNotNull(cache.get(new Object[] { 3 }));
+        }
+        // LRU evicts 1, LFU evicts 2
+        assertNull(lru.get(new Object[] { 1 }));
+        assertNotNull(lru.get(new Object[] { 2 }));
+        assertNotNull(lfu.get(new Object[] { 1 }));
+        assertNull(lfu.get(new Object[] { 2 }));
+        // outdated sequence
+        long sequence = lru.getSequence();
+        lru.remove(new Object[] { 2 });
+        assertFalse(lru.put(new Object[] { 2 }, new Object[] { "b" }, sequence));
+    }
+}
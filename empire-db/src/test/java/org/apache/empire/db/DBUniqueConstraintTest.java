@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.commons.DateUtils;
+import org.apache.empire.data.DataType;
+import org.apache.empire.db.context.DBContextStatic;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBUniqueConstraintTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testCheckUniqueConstraints()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBContextStatic context = new DBContextStatic(dbResource.newDriver(), conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        CompanyDB.Employees EMP = db.EMPLOYEE;
+        DBRecord dep = new DBRecord(context, DEP);
+        dep.create();
+        dep.set(DEP.NAME, "dep");
+        dep.set(DEP.BUSINESS_UNIT, "A");
+        dep.update();
+        createEmployee(context, dep, "Jane", "Doe").update();
+        DBIndex nameIndex = EMP.getIndexes().get(1);
+
+        for (boolean prepared : new boolean[] { false, true })
+        {
+            context.setPreparedStatementsEnabled(prepared);
+            // single record
+            assertEquals(nameIndex, EMP.checkUniqueConstraints(createEmployee(context, dep, "Jane", "Doe")));
+            assertNull(EMP.checkUniqueConstraints(createEmployee(context, dep, "John", "Doe")));
+
+            // batch
+            List<DBRecord> records = new ArrayList<DBRecord>();
+            records.add(createEmployee(context, dep, "John", "Doe"));
+            records.add(createEmployee(context, dep, "Jane", "Doe"));
+            records.add(createEmployee(context, dep, "Jim", "Doe"));
+            records.add(createEmployee(context, dep, "John", "Doe"));
+            DBIndex[] result = EMP.checkUniqueConstraints(records);
+            assertNull(result[0]);
+            assertEquals(nameIndex, result[1]);
+            assertNull(result[2]);
+            assertEquals(nameIndex, result[3]);
+        }
+    }
+
+    /**
+     * Database with an autoinc key and a nullable unique index
+     */
+    public static class ItemDB extends DBDatabase
+    {
+        public static class Items extends DBTable
+        {
+            public final DBTableColumn ID;
+            public final DBTableColumn CODE;
+            public final DBTableColumn NAME;
+
+            public Items(DBDatabase db)
+            {
+                super("ITEMS", db);
+                ID   = addColumn("ID",   DataType.AUTOINC,  0, true, "ITEM_ID_SEQUENCE");
+                CODE = addColumn("CODE", DataType.VARCHAR, 20, false);
+                NAME = addColumn("NAME", DataType.VARCHAR, 40, true);
+                setPrimaryKey(ID);
+                addIndex("ITEM_CODE_IDX", true, new DBColumn[] { CODE });
+            }
+        }
+
+        public final Items ITEMS = new Items(this);
+    }
+
+    @Test
+    public void testNullValues()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBContextStatic context = new DBContextStatic(dbResource.newDriver(), conn);
+
+        ItemDB db = new ItemDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        ItemDB.Items ITEMS = db.ITEMS;
+        DBIndex codeIndex = ITEMS.getIndexes().get(1);
+        DBRecord item = new DBRecord(context, ITEMS);
+        item.create();
+        item.set(ITEMS.CODE, "B");
+        item.set(ITEMS.NAME, "existing");
+        item.update();
+        item = new DBRecord(context, ITEMS);
+        item.create();
+        item.set(ITEMS.NAME, "existing without code");
+        item.update();
+
+        // new records without key and partly without code
+        String[] codes = new String[] { null, null, "A", "A", "B" };
+        List<DBRecord> records = new ArrayList<DBRecord>();
+        for (int i=0; i<codes.length; i++)
+        {
+            DBRecord rec = new DBRecord(context, ITEMS);
+            rec.create(null);
+            rec.set(ITEMS.CODE, codes[i]);
+            rec.set(ITEMS.NAME, "item"+i);
+            assertNull(rec.get(ITEMS.ID));
+            records.add(rec);
+        }
+        DBIndex[] result = ITEMS.checkUniqueConstraints(records);
+        assertNull(result[0]);
+        assertNull(result[1]);
+        assertNull(result[2]);
+        assertEquals(codeIndex, result[3]);
+        assertEquals(codeIndex, result[4]);
+    }
+
+    private DBRecord createEmployee(DBContext context, DBRecord dep, String firstName, String lastName)
+    {
+        CompanyDB.Employees EMP = ((CompanyDB)dep.getDatabase()).EMPLOYEE;
+        DBRecord emp = new DBRecord(context, EMP);
+        emp.create();
+        emp.set(EMP.FIRSTNAME, firstName);
+        emp.set(EMP.LASTNAME, lastName);
+        emp.set(EMP.DATE_OF_BIRTH, DateUtils.getDate(1980, 0, 1));
+        emp.set(EMP.DEPARTMENT_ID, dep.get(((CompanyDB)dep.getDatabase()).DEPARTMENT.ID));
+        return emp;
+    }
+}
@@ -23,12 +23,21 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.empire.DBResource;
 import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBCmdParam;
+import org.apache.empire.db.DBDDLGenerator.DDLActionType;
 import org.apache.empire.db.context.DBContextStatic;
 import org.apache.empire.dbms.DBMSHandler;
+import org.apache.empire.dbms.DBMSFeature;
+import org.apache.empire.dbms.DBMSHandlerBase;
+import org.apache.empire.dbms.hsql.DBMSHandlerHSql;
+import org.apache.empire.dbms.postgresql.DBMSHandlerPostgreSQL;
+import org.apache.empire.dbms.sqlserver.DBMSHandlerMSSQL;
 import org.junit.Rule;
 import org.junit.Test;
 
@@ -90,4 +99,391 @@ public class PreparedStatementTest{
             r.close();
         }
     }
+    
+    @Test
+    public void testCompiledCommand()
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBMSHandler dbms = dbResource.newDriver();
+        DBContext context = new DBContextStatic(dbms, conn); 
+        
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+        
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        int[] ids = new int[3];
+        for (int i=0; i<ids.length; i++)
+        {
+            DBRecord department = new DBRecord(context, DEP);
+            department.create();
+            department.set(DEP.NAME, "junit"+i);
+            department.set(DEP.BUSINESS_UNIT, (i==1 ? "oth" : "test"));
+            department.update();
+            ids[i] = department.getInt(DEP.ID);
+        }
+        
+        // compile a command with a param used twice
+        DBCommand cmd = context.createCommand();
+        DBCmdParam unitParam = cmd.addParam(DEP.BUSINESS_UNIT, "test");
+        DBCmdParam idParam = cmd.addParam(DEP.ID, 0);
+        cmd.select(DEP.NAME);
+        cmd.where(DEP.ID.isMoreOrEqual(idParam));
+        cmd.where(DEP.BUSINESS_UNIT.is(unitParam).or(DEP.NAME.is(unitParam)));
+        cmd.orderBy(DEP.NAME);
+        DBCompiledCommand ccmd = cmd.compile();
+        assertEquals(2, ccmd.getParamCount());
+        assertEquals(cmd.getSelect(), ccmd.getSelect());
+        
+        // execute with different values
+        Object[] values = new Object[ccmd.getParamCount()];
+        values[ccmd.getParamIndex(unitParam)] = "test";
+        values[ccmd.getParamIndex(idParam)] = ids[0];
+        assertEquals(2, context.getUtils().queryObjectList(ccmd, values).size());
+        values[ccmd.getParamIndex(unitParam)] = "oth";
+        assertEquals("junit1", context.getUtils().querySingleString(ccmd, values, null));
+        values[ccmd.getParamIndex(idParam)] = ids[2];
+        assertEquals(null, context.getUtils().querySingleValue(ccmd, values, false));
+
+        // reader
+        DBReader r = new DBReader(context);
+        try {
+            r.open(ccmd, ids[1], "test");
+            assertEquals(true, r.moveNext());
+            assertEquals("junit2", r.getString(DEP.NAME));
+            assertEquals(false, r.moveNext());
+        } finally {
+            r.close();
+        }
+        
+        // read record by key
+        DBRecord rec = new DBRecord(context, DEP);
+        rec.read(ids[1]);
+        assertEquals("junit1", rec.getString(DEP.NAME));
+        rec.read(String.valueOf(ids[2]));
+        assertEquals("junit2", rec.getString(DEP.NAME));
+    }
+
+    @Test
+    public void testInsertRows()
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBMSHandlerBase dbms = (DBMSHandlerBase)dbResource.newDriver();
+        DBContextStatic context = new DBContextStatic(dbms, conn);
+        context.setPreparedStatementsEnabled(true);
+        
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+        
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        DBColumn[] columns = new DBColumn[] { DEP.ID, DEP.NAME, DEP.HEAD, DEP.BUSINESS_UNIT, DEP.UPDATE_TIMESTAMP };
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for (int i=0; i<95; i++)
+            rows.add(new Object[] { i+1, "dep"+i, (i%3==0 ? null : "head"+i), "ROWS", DBDatabase.SYSDATE });
+        
+        // multi-row insert with param limit
+        dbms.setMaxStatementParams(50);
+        DBCommand cmd = context.createCommand();
+        String sql = cmd.getInsertRows(DEP, columns, rows.subList(0, 2));
+        assertTrue(sql.contains("VALUES ( ?, ?, null, ?, "));
+        assertEquals(7, cmd.getParamValues().length);
+        assertEquals(95, context.getUtils().executeInsertRows(DEP, columns, rows));
+        
+        // literal values with statement length limit
+        context.setPreparedStatementsEnabled(false);
+        dbms.setMaxStatementLength(1000);
+        rows.clear();
+        for (int i=0; i<40; i++)
+            rows.add(new Object[] { i+101, "lit"+i, "head"+i, "LIT", DBDatabase.SYSDATE });
+        assertEquals(40, context.getUtils().executeInsertRows(DEP, columns, rows));
+        
+        // check
+        cmd = context.createCommand();
+        cmd.select(DEP.count());
+        cmd.where(DEP.BUSINESS_UNIT.is("ROWS"));
+        assertEquals(95, context.getUtils().querySingleInt(cmd));
+        cmd.where(DEP.HEAD.is(null));
+        assertEquals(32, context.getUtils().querySingleInt(cmd));
+        cmd = context.createCommand();
+        cmd.select(DEP.NAME);
+        cmd.where(DEP.ID.is(140));
+        assertEquals("lit39", context.getUtils().querySingleString(cmd, null));
+    }
+
+    @Test
+    public void testUpsert()
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBMSHandler dbms = dbResource.newDriver();
+        DBContextStatic context = new DBContextStatic(dbms, conn);
+        context.setPreparedStatementsEnabled(true);
+        
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+        
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        DBColumn[] nameKey = new DBColumn[] { DEP.NAME };
+        // insert
+        DBCommand cmd = context.createCommand();
+        cmd.set(DEP.ID.to(100));
+        cmd.set(DEP.NAME.to("upsert"));
+        cmd.set(DEP.HEAD.to("head"));
+        cmd.set(DEP.BUSINESS_UNIT.to("UPS"));
+        cmd.set(DEP.UPDATE_TIMESTAMP.to(DBDatabase.SYSDATE));
+        String sql = cmd.getUpsert(nameKey);
+        assertTrue(sql.startsWith("MERGE INTO"));
+        assertEquals(1, context.getUtils().executeSQL(sql, cmd.getParamValues(), null));
+        // update
+        cmd.set(DEP.HEAD.to("other"));
+        assertEquals(1, context.getUtils().executeSQL(cmd.getUpsert(nameKey), cmd.getParamValues(), null));
+        
+        // check
+        cmd = context.createCommand();
+        cmd.select(DEP.count());
+        assertEquals(1, context.getUtils().querySingleInt(cmd));
+        DBRecord rec = new DBRecord(context, DEP);
+        rec.read(100);
+        assertEquals("other", rec.getString(DEP.HEAD));
+        
+        // upsert record
+        rec.set(DEP.HEAD, "record");
+        rec.upsert();
+        assertTrue(rec.isValid() && !rec.isModified());
+        rec.read(100);
+        assertEquals("record", rec.getString(DEP.HEAD));
+        assertEquals("UPS", rec.getString(DEP.BUSINESS_UNIT));
+    }
+
+    /**
+     * Table with a generated column
+     */
+    public static class UpsertDB extends DBDatabase
+    {
+        public static class Codes extends DBTable
+        {
+            public final DBTableColumn CODE;
+            public final DBTableColumn NAME;
+            public final DBTableColumn NAME_UPPER;
+            public final DBTableColumn STATUS;
+
+            public Codes(DBDatabase db)
+            {
+                super("CODES", db);
+                CODE       = addColumn("CODE",       DataType.VARCHAR, 20, true);
+                NAME       = addColumn("NAME",       DataType.VARCHAR, 40, false);
+                NAME_UPPER = addColumn("NAME_UPPER", DataType.VARCHAR, 40, false, DBGeneratedValue.byFunction(this, "UPPER([NAME])"));
+                STATUS     = addColumn("STATUS",     DataType.VARCHAR,  1, false, "A");
+                setPrimaryKey(CODE);
+            }
+        }
+
+        public final Codes CODES = new Codes(this);
+    }
+
+    /**
+     * Handler without upsert statements
+     */
+    public static class NoUpsertHandler extends DBMSHandlerHSql
+    {
+        @Override
+        public boolean isSupported(DBMSFeature type)
+        {
+            if (type==DBMSFeature.UPSERT)
+                return false;
+            return super.isSupported(type);
+        }
+    }
+
+    @Test
+    public void testUpsertGeneratedValues()
+    {
+        DBMSHandler[] handlers = new DBMSHandler[] { dbResource.newDriver(), new NoUpsertHandler() };
+        for (DBMSHandler dbms : handlers)
+        {
+            Connection conn = dbResource.getConnection();
+            DBContext context = new DBContextStatic(dbms, conn);
+            
+            UpsertDB db = new UpsertDB();
+            db.open(context);
+            DBSQLScript script = new DBSQLScript(context);
+            db.getCreateDDLScript(script);
+            script.executeAll(false);
+            
+            UpsertDB.Codes T = db.CODES;
+            // insert
+            DBRecord rec = new DBRecord(context, T);
+            rec.create();
+            rec.set(T.CODE, "a");
+            rec.set(T.NAME, "abc");
+            rec.upsert();
+            rec.read(DBRecord.key("a"));
+            assertEquals("ABC", rec.getString(T.NAME_UPPER));
+            // update new record
+            rec = new DBRecord(context, T);
+            rec.create();
+            rec.set(T.CODE, "a");
+            rec.set(T.NAME, "xyz");
+            rec.upsert();
+            rec.read(DBRecord.key("a"));
+            assertEquals("XYZ", rec.getString(T.NAME_UPPER));
+            // update modified record
+            rec.set(T.NAME, "def");
+            rec.upsert();
+            rec.read(DBRecord.key("a"));
+            assertEquals("DEF", rec.getString(T.NAME_UPPER));
+            
+            // cleanup
+            script = new DBSQLScript(context);
+            dbms.getDDLScript(DDLActionType.DROP, T, script);
+            script.executeAll(true);
+            context.discard();
+        }
+    }
+
+    @Test
+    public void testInsertReturning()
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBMSHandler dbms = dbResource.newDriver();
+        DBContext context = new DBContextStatic(dbms, conn);
+        
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+        
+        // value generated by the database
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        DBRecord rec = new DBRecord(context, DEP);
+        rec.create();
+        rec.set(DEP.NAME, "returning");
+        rec.set(DEP.HEAD, db.getValueExpr("head").upper());
+        rec.update();
+        assertEquals("HEAD", rec.getString(DEP.HEAD));
+        
+        // batch writer
+        DBRecordBatchWriter writer = new DBRecordBatchWriter(context);
+        for (int i=0; i<3; i++)
+        {
+            rec = new DBRecord(context, DEP);
+            rec.create();
+            rec.set(DEP.NAME, "batch"+i);
+            rec.set(DEP.HEAD, db.getValueExpr("head"+i).upper());
+            writer.add(rec);
+        }
+        writer.close();
+        assertEquals("HEAD2", rec.getString(DEP.HEAD));
+    }
+
+    @Test
+    public void testInsertReturningDefaults()
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBMSHandler dbms = dbResource.newDriver();
+        DBContext context = new DBContextStatic(dbms, conn);
+        
+        UpsertDB db = new UpsertDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+        context.executeSQL("ALTER TABLE CODES ALTER COLUMN STATUS SET DEFAULT 'X'", null);
+        
+        // column default of the database
+        UpsertDB.Codes T = db.CODES;
+        DBRecord rec = new DBRecord(context, T);
+        rec.create();
+        rec.set(T.CODE, "a");
+        rec.set(T.NAME, "abc");
+        assertEquals("A", rec.getString(T.STATUS));
+        rec.set(T.STATUS, null);
+        rec.update();
+        assertEquals("X", rec.getString(T.STATUS));
+        assertEquals("ABC", rec.getString(T.NAME_UPPER));
+        
+        // insert statement
+        DBCommand cmd = context.createCommand();
+        cmd.set(T.CODE.to("b"));
+        assertEquals(cmd.getInsert(), cmd.getInsert(new DBColumn[] { T.STATUS }));
+        cmd = new DBMSHandlerMSSQL().createCommand(false);
+        cmd.set(T.CODE.to("b"));
+        assertTrue(cmd.getInsert(new DBColumn[] { T.STATUS }).contains(") OUTPUT INSERTED.STATUS VALUES ("));
+        cmd = new DBMSHandlerPostgreSQL().createCommand(false);
+        cmd.set(T.CODE.to("b"));
+        assertTrue(cmd.getInsert(new DBColumn[] { T.STATUS }).endsWith(") RETURNING STATUS"));
+        
+        // cleanup
+        script = new DBSQLScript(context);
+        dbms.getDDLScript(DDLActionType.DROP, T, script);
+        script.executeAll(true);
+    }
+
+    @Test
+    public void testStreamingReader()
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBMSHandler dbms = dbResource.newDriver();
+        DBContext context = new DBContextStatic(dbms, conn); 
+        
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+        
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        for (int i=0; i<30; i++)
+        {
+            DBRecord rec = new DBRecord(context, DEP);
+            rec.create();
+            rec.set(DEP.NAME, "dep"+i);
+            rec.update();
+        }
+        
+        // adaptive fetch size
+        int fetchSize = context.getUtils().getStreamingFetchSize(DEP.getColumns().toArray(new DBColumnExpr[0]));
+        assertTrue(fetchSize>=10 && fetchSize<=10000);
+        assertTrue(fetchSize>context.getUtils().getStreamingFetchSize(new DBColumnExpr[] { DEP.ID, DEP.NAME, DEP.HEAD, DEP.BUSINESS_UNIT, DEP.UPDATE_TIMESTAMP, DEP.NAME, DEP.HEAD }));
+        
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.ID, DEP.NAME, DEP.HEAD);
+        cmd.where(DEP.NAME.like("dep%"));
+        cmd.orderBy(DEP.ID);
+        int[] fetchSizes = new int[] { 7, DBReader.FETCH_SIZE_ADAPTIVE, 0 };
+        for (int f : fetchSizes)
+        {
+            DBReader r = new DBReader(context);
+            try {
+                r.setFetchSize(f);
+                r.open(cmd);
+                int count = 0;
+                while (r.moveNext())
+                {   // primitive access
+                    assertEquals(r.getLong(DEP.ID), ((Number)r.getValue(0)).longValue());
+                    assertTrue(r.getInt(DEP.ID)>0);
+                    assertTrue(r.isNull(DEP.HEAD));
+                    assertTrue(!r.isNull(DEP.ID));
+                    count++;
+                }
+                assertEquals(30, count);
+            } finally {
+                r.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.list.DataListEntry;
+import org.apache.empire.data.list.MappedRowFile;
+import org.apache.empire.data.list.SpillableDataList;
+import org.apache.empire.data.list.SpillableObjectList;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.dbms.hsql.DBMSHandlerHSql;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class SpillableListTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testRowFile()
+    {
+        MappedRowFile file = new MappedRowFile(null, 256);
+        try
+        {
+            Timestamp ts = new Timestamp(System.currentTimeMillis());
+            ts.setNanos(123456789);
+            Object[] row1 = new Object[] { null, "text äöü", 42, 42L, 1.5d, Boolean.TRUE, new BigDecimal("12.30"), ts, LocalDate.of(2024, 2, 29), new byte[] { 1, 2, 3 } };
+            Object[] row2 = new Object[] { new String(new char[300]).replace('\0', 'x') };
+            long addr1 = file.write(row1);
+            long addr2 = file.write(row2);
+            long addr3 = file.write(row1);
+            Object[] read = file.read(addr1);
+            assertNull(read[0]);
+            for (int i=1; i<row1.length-1; i++)
+                assertEquals(row1[i], read[i]);
+            assertArrayEquals((byte[])row1[9], (byte[])read[9]);
+            assertEquals(row2[0], file.read(addr2)[0]);
+            assertEquals(row1[1], file.read(addr3)[1]);
+        }
+        finally
+        {
+            file.close();
+        }
+        assertFalse(file.isOpen());
+    }
+
+    @Test
+    public void testSpillableQueries()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBContext context = new DBContextStatic(dbResource.newDriver(), conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        for (int i=0; i<50; i++)
+        {
+            DBRecord rec = new DBRecord(context, DEP);
+            rec.create();
+            rec.set(DEP.NAME, "dep"+i);
+            rec.set(DEP.HEAD, (i%4==0 ? null : "head"+i));
+            rec.set(DEP.BUSINESS_UNIT, "A");
+            rec.update();
+        }
+
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.ID, DEP.NAME, DEP.HEAD, DEP.UPDATE_TIMESTAMP);
+        cmd.orderBy(DEP.ID);
+        List<DataListEntry> expected = context.getUtils().queryDataList(cmd);
+
+        // data list
+        SpillableDataList list = context.getUtils().querySpillableDataList(cmd, 10);
+        try
+        {
+            assertEquals(50, list.size());
+            assertEquals(40, list.getSpillCount());
+            for (int i=0; i<list.size(); i++)
+            {
+                for (int c=0; c<4; c++)
+                    assertEquals(expected.get(i).getValue(c), list.get(i).getValue(c));
+            }
+            // write back
+            list.get(30).modifyValue(DEP.NAME, "changed");
+            assertEquals("changed", list.get(30).getString(DEP.NAME));
+            // remove
+            list.remove(5);
+            list.remove(20);
+            assertEquals(48, list.size());
+            assertEquals("dep22", list.get(20).getString(DEP.NAME));
+        }
+        finally
+        {
+            list.close();
+        }
+        assertTrue(list.size()<=10);
+
+        // object list
+        SpillableObjectList objects = context.getUtils().querySpillableObjectList(cmd, 0);
+        try
+        {
+            assertTrue(objects.isSpilled());
+            assertEquals(50, objects.size());
+            assertEquals("dep49", objects.get(49)[1]);
+        }
+        finally
+        {
+            objects.close();
+        }
+    }
+
+    /**
+     * A handler which records the fetch size of the statements of all queries
+     */
+    public static class FetchSizeHandler extends DBMSHandlerHSql
+    {
+        public final List<Integer> fetchSizes = new ArrayList<Integer>();
+
+        @Override
+        public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, int fetchSize, Connection conn)
+            throws SQLException
+        {
+            ResultSet rs = super.executeQuery(sqlCmd, sqlParams, scrollable, fetchSize, conn);
+            fetchSizes.add(rs.getStatement().getFetchSize());
+            return rs;
+        }
+    }
+
+    @Test
+    public void testStreaming()
+    {
+        Connection conn = dbResource.getConnection();
+
+        FetchSizeHandler dbms = new FetchSizeHandler();
+        DBContext context = new DBContextStatic(dbms, conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        for (int i=0; i<20; i++)
+        {
+            DBRecord rec = new DBRecord(context, DEP);
+            rec.create();
+            rec.set(DEP.NAME, "dep"+i);
+            rec.set(DEP.BUSINESS_UNIT, "A");
+            rec.update();
+        }
+
+        DBCommand cmd = context.createCommand();
+        cmd.select(DEP.ID, DEP.NAME);
+        cmd.orderBy(DEP.ID);
+        int fetchSize = context.getUtils().getStreamingFetchSize(cmd.getSelectExprList());
+        assertTrue(fetchSize>0);
+
+        // data list
+        dbms.fetchSizes.clear();
+        SpillableDataList list = context.getUtils().querySpillableDataList(cmd, 5);
+        try
+        {
+            assertEquals(20, list.size());
+            assertEquals(1, dbms.fetchSizes.size());
+            assertEquals(fetchSize, dbms.fetchSizes.get(0).intValue());
+        }
+        finally
+        {
+            list.close();
+        }
+
+        // object list
+        dbms.fetchSizes.clear();
+        SpillableObjectList objects = context.getUtils().querySpillableObjectList(cmd, 5);
+        try
+        {
+            assertEquals(20, objects.size());
+            assertEquals(1, dbms.fetchSizes.size());
+            assertEquals(fetchSize, dbms.fetchSizes.get(0).intValue());
+        }
+        finally
+        {
+            objects.close();
+        }
+
+        // other queries are not streamed
+        dbms.fetchSizes.clear();
+        context.getUtils().queryObjectList(cmd);
+        assertEquals(0, dbms.fetchSizes.get(0).intValue());
+    }
+
+    @Test
+    public void testTempFileDeleted()
+    {
+        final File[] created = new File[1];
+        SpillableObjectList list = new SpillableObjectList(1, null)
+        {
+            @Override
+            protected MappedRowFile createRowFile()
+            {
+                MappedRowFile file = super.createRowFile();
+                created[0] = file.getFile();
+                return file;
+            }
+        };
+        list.add(new Object[] { 1 });
+        list.add(new Object[] { 2 });
+        assertTrue(created[0].exists());
+        assertEquals(2, list.get(1)[0]);
+        list.close();
+        assertEquals(1, list.size());
+    }
+}
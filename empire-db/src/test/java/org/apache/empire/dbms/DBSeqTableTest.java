@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.dbms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.commons.ObjectUtils;
+import org.apache.empire.db.CompanyDB;
+import org.apache.empire.db.DBCommand;
+import org.apache.empire.db.DBContext;
+import org.apache.empire.db.DBDatabase;
+import org.apache.empire.db.DBRecord;
+import org.apache.empire.db.DBSQLScript;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.dbms.DBMSHandlerBase.DBSeqTable;
+import org.apache.empire.exceptions.InvalidOperationException;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBSeqTableTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    private static class SeqDB extends DBDatabase
+    {
+        public final DBSeqTable SEQUENCES = new DBSeqTable("SEQUENCES", this);
+    }
+
+    @Test
+    public void testBlockAllocation()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBMSHandler dbms = dbResource.newDriver();
+        DBContext context = new DBContextStatic(dbms, conn);
+
+        SeqDB db = new SeqDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        DBSeqTable seq = db.SEQUENCES;
+
+        // single values
+        assertEquals(1L, seq.getNextValue("SINGLE", 1, conn));
+        assertEquals(2L, seq.getNextValue("SINGLE", 1, conn));
+        assertEquals(2, getSeqValue(context, seq, "SINGLE"));
+
+        // blocks require a DataSource
+        try
+        {
+            seq.setBlockSize("BLOCK", 10);
+            fail("InvalidOperationException expected");
+        }
+        catch (InvalidOperationException e)
+        {
+            // expected
+        }
+        seq.setDataSource(createDataSource());
+
+        // blocks
+        seq.setBlockSize("BLOCK", 10);
+        for (int i=1; i<=25; i++)
+            assertEquals((long)i, seq.getNextValue("BLOCK", 1, conn));
+        assertEquals(30, getSeqValue(context, seq, "BLOCK"));
+        // other sequence not affected
+        assertEquals(3L, seq.getNextValue("SINGLE", 1, conn));
+
+        // adaptive block size
+        seq.clearBlocks();
+        seq.setMaxBlockSize(40);
+        seq.setBlockTargetMillis(3600000);
+        for (int i=31; i<=100; i++)
+            assertEquals((long)i, seq.getNextValue("BLOCK", 1, conn));
+        // blocks of 10, 20 and 40
+        assertEquals(100, getSeqValue(context, seq, "BLOCK"));
+        // minValue
+        assertEquals(500L, seq.getNextValue("BLOCK", 500, conn));
+        assertEquals(501L, seq.getNextValue("BLOCK", 500, conn));
+        // DataSource cannot be removed
+        try
+        {
+            seq.setDataSource(null);
+            fail("InvalidOperationException expected");
+        }
+        catch (InvalidOperationException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBlockRollback()
+        throws SQLException
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBMSHandler dbms = dbResource.newDriver();
+        DBContext context = new DBContextStatic(dbms, conn);
+
+        SeqDB db = new SeqDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+        context.commit();
+
+        DBSeqTable seq = db.SEQUENCES;
+        seq.setDataSource(createDataSource());
+        seq.setBlockSize("ROLLBACK", 10);
+
+        Set<Long> values = new HashSet<Long>();
+        conn.setAutoCommit(false);
+        try
+        {   // reserve within a transaction which is rolled back
+            for (int i=0; i<5; i++)
+                assertTrue(values.add((Long)seq.getNextValue("ROLLBACK", 1, conn)));
+            context.rollback();
+            // the reservation is not affected by the rollback
+            assertEquals(10, getSeqValue(context, seq, "ROLLBACK"));
+            for (int i=0; i<15; i++)
+                assertTrue("Value issued twice", values.add((Long)seq.getNextValue("ROLLBACK", 1, conn)));
+            context.rollback();
+            // another node or a restart must not reserve the same values
+            seq.clearBlocks();
+            for (int i=0; i<10; i++)
+                assertTrue("Value issued twice", values.add((Long)seq.getNextValue("ROLLBACK", 1, conn)));
+            context.rollback();
+        }
+        finally
+        {
+            conn.setAutoCommit(true);
+        }
+        assertEquals(30, values.size());
+        assertEquals(30, getSeqValue(context, seq, "ROLLBACK"));
+    }
+
+    @Test
+    public void testSequencePrefetch()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBMSHandlerBase dbms = (DBMSHandlerBase)dbResource.newDriver();
+        dbms.setSequencePrefetchSize(10);
+        DBContext context = new DBContextStatic(dbms, conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        long lastId = 0;
+        for (int i=0; i<25; i++)
+        {   // insert departments
+            DBRecord dep = new DBRecord(context, db.DEPARTMENT);
+            dep.create();
+            dep.set(db.DEPARTMENT.NAME, "Dep"+i);
+            dep.update();
+            long id = ObjectUtils.getLong(dep.get(db.DEPARTMENT.ID));
+            assertTrue("Sequence values not ascending", id>lastId);
+            lastId = id;
+        }
+        assertEquals(3, dbms.getSequenceCache().getFetchCount());
+    }
+
+    private DataSource createDataSource()
+    {
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:data/derby/test");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        return dataSource;
+    }
+
+    private int getSeqValue(DBContext context, DBSeqTable seq, String seqName)
+    {
+        DBCommand cmd = context.createCommand();
+        cmd.select(seq.C_SEQVALUE);
+        cmd.where(seq.C_SEQNAME.is(seqName));
+        return context.getUtils().querySingleInt(cmd);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.dbms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.CompanyDB;
+import org.apache.empire.db.DBCmdParam;
+import org.apache.empire.db.DBCommand;
+import org.apache.empire.db.DBContext;
+import org.apache.empire.db.DBDDLGenerator.DDLActionType;
+import org.apache.empire.db.DBReader;
+import org.apache.empire.db.DBRecord;
+import org.apache.empire.db.DBSQLScript;
+import org.apache.empire.db.context.DBContextStatic;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBStatementCacheTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testStatementCache()
+    {
+        Connection conn = dbResource.getConnection();
+
+        DBMSHandlerBase dbms = (DBMSHandlerBase)dbResource.newDriver();
+        DBContext context = new DBContextStatic(dbms, conn).setPreparedStatementsEnabled(true);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        // enable cache
+        dbms.setStatementCacheSize(8);
+        DBStatementCache cache = dbms.getStatementCache();
+
+        // insert
+        for (int i=0; i<3; i++)
+        {
+            DBRecord dep = new DBRecord(context, db.DEPARTMENT);
+            dep.create();
+            dep.set(db.DEPARTMENT.NAME, "junit"+i);
+            dep.set(db.DEPARTMENT.BUSINESS_UNIT, "test");
+            dep.update();
+        }
+        assertTrue("Insert statement not reused", cache.getHitCount()>=2);
+
+        // query
+        DBCommand cmd = context.createCommand();
+        DBCmdParam nameParam = cmd.addParam("junit0");
+        cmd.select(db.DEPARTMENT.count());
+        cmd.where(db.DEPARTMENT.NAME.is(nameParam));
+
+        cache.resetStatistics();
+        assertEquals(1, context.getUtils().querySingleInt(cmd));
+        nameParam.setValue("junit1");
+        assertEquals(1, context.getUtils().querySingleInt(cmd));
+        nameParam.setValue("none");
+        assertEquals(0, context.getUtils().querySingleInt(cmd));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+
+        // nested use of the same statement
+        DBCommand sel = context.createCommand();
+        sel.select(db.DEPARTMENT.NAME);
+        sel.where(db.DEPARTMENT.BUSINESS_UNIT.is(sel.addParam("test")));
+        DBReader r1 = new DBReader(context);
+        DBReader r2 = new DBReader(context);
+        try {
+            r1.open(sel);
+            r2.open(sel);
+            int count = 0;
+            while (r1.moveNext() && r2.moveNext())
+            {
+                assertEquals(r1.getString(db.DEPARTMENT.NAME), r2.getString(db.DEPARTMENT.NAME));
+                count++;
+            }
+            assertEquals(3, count);
+        } finally {
+            r1.close();
+            r2.close();
+        }
+
+        // release
+        assertTrue(cache.getSize()>0);
+        context.discard();
+        assertEquals(0, cache.getSize());
+
+        // cleanup
+        dbms.setStatementCache(null);
+        script = new DBSQLScript(context);
+        db.getDbms().getDDLScript(DDLActionType.DROP, db.EMPLOYEE, script);
+        db.getDbms().getDDLScript(DDLActionType.DROP, db.DEPARTMENT, script);
+        script.executeAll(true);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.dbms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.DataType;
+import org.apache.empire.db.CompanyDB;
+import org.apache.empire.db.DBCommand;
+import org.apache.empire.db.DBContext;
+import org.apache.empire.db.DBReader;
+import org.apache.empire.db.DBRecord;
+import org.apache.empire.db.DBSQLScript;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.dbms.hsql.DBMSHandlerHSql;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBValueExtractorTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    /**
+     * A handler which converts text values by overriding getResultValue()
+     */
+    public static class UpperCaseHandler extends DBMSHandlerHSql
+    {
+        @Override
+        public Object getResultValue(ResultSet rset, int columnIndex, DataType dataType)
+            throws SQLException
+        {
+            Object value = super.getResultValue(rset, columnIndex, dataType);
+            if (dataType==DataType.VARCHAR && value!=null)
+                return value.toString().toUpperCase();
+            return value;
+        }
+    }
+
+    @Test
+    public void testOverriddenResultValue()
+    {
+        // default extractors
+        DBMSHandlerBase hsql = new DBMSHandlerHSql();
+        assertFalse(hsql.getValueExtractor(DataType.VARCHAR) instanceof DBValueExtractor.ResultValueExtractor);
+        assertTrue(new UpperCaseHandler().getValueExtractor(DataType.VARCHAR) instanceof DBValueExtractor.ResultValueExtractor);
+
+        Connection conn = dbResource.getConnection();
+        DBContext context = new DBContextStatic(new UpperCaseHandler(), conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        DBRecord dep = new DBRecord(context, db.DEPARTMENT);
+        dep.create();
+        dep.set(db.DEPARTMENT.NAME, "junit");
+        dep.set(db.DEPARTMENT.BUSINESS_UNIT, "test");
+        dep.update();
+
+        // read with reader
+        DBCommand cmd = context.createCommand();
+        cmd.select(db.DEPARTMENT.NAME, db.DEPARTMENT.ID);
+        DBReader reader = new DBReader(context);
+        try
+        {
+            reader.open(cmd);
+            assertTrue(reader.moveNext());
+            assertEquals("JUNIT", reader.getString(db.DEPARTMENT.NAME));
+            assertEquals(dep.getLong(db.DEPARTMENT.ID), reader.getLong(db.DEPARTMENT.ID));
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.dbms.h2;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.list.DataListEntry;
+import org.apache.empire.data.list.DataListFactoryImpl;
+import org.apache.empire.data.list.DataListHead;
+import org.apache.empire.db.CompanyDB;
+import org.apache.empire.db.DBCommand;
+import org.apache.empire.db.DBContext;
+import org.apache.empire.db.DBReader;
+import org.apache.empire.db.DBRecord;
+import org.apache.empire.db.DBSQLScript;
+import org.apache.empire.db.context.DBContextStatic;
+import org.apache.empire.db.list.DBListPage;
+import org.apache.empire.dbms.DBMSHandler;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBMSHandlerH2Test
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.H2);
+
+    /**
+     * Obtains the total count with the page query
+     */
+    @Test
+    public void testTotalCount()
+    {
+        Connection conn = dbResource.getConnection();
+        DBMSHandler dbms = dbResource.newDriver();
+        DBContext context = new DBContextStatic(dbms, conn);
+
+        CompanyDB db = new CompanyDB();
+        db.open(context);
+        DBSQLScript script = new DBSQLScript(context);
+        db.getCreateDDLScript(script);
+        script.executeAll(false);
+
+        for (int i=0; i<25; i++)
+        {
+            DBRecord dep = new DBRecord(context, db.DEPARTMENT);
+            dep.create();
+            dep.set(db.DEPARTMENT.NAME, "dep"+i);
+            dep.set(db.DEPARTMENT.BUSINESS_UNIT, (i%5==0 ? "A" : "B"));
+            dep.update();
+        }
+
+        DBCommand cmd = context.createCommand();
+        cmd.select(db.DEPARTMENT.ID, db.DEPARTMENT.NAME);
+        cmd.where(db.DEPARTMENT.BUSINESS_UNIT.is("B"));
+        cmd.orderBy(db.DEPARTMENT.ID);
+
+        // the total count column is not part of the entries
+        DataListHead head = new DataListHead(cmd.getSelectExprList());
+        DBListPage<DataListEntry> page = context.getUtils().queryDataListPage(cmd, new DataListFactoryImpl<DataListEntry>(DataListEntry.class, head), 15, 10);
+        assertEquals(20, page.getTotalCount());
+        assertEquals(5, page.getItems().size());
+
+        // reader
+        DBReader r = new DBReader(context);
+        try {
+            r.setQueryTotalCount(true);
+            cmd.clearLimit();
+            cmd.limitRows(3);
+            r.open(cmd);
+            assertEquals(2, r.getFieldCount());
+            int count = 0;
+            while (r.moveNext())
+                count++;
+            assertEquals(3, count);
+            assertEquals(20, r.getTotalCount());
+        } finally {
+            r.close();
+        }
+    }
+}
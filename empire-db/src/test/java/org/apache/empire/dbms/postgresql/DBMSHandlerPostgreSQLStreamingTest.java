@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.dbms.postgresql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.commons.ObjectUtils;
+import org.apache.empire.data.DataType;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests the auto-commit handling of streaming queries (see DBMSHandlerPostgreSQL.setStreamInTransaction()).<BR>
+ * The handling does not depend on the database, hence HSQLDB is used.
+ */
+public class DBMSHandlerPostgreSQLStreamingTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testInterleavedQuery() throws SQLException
+    {
+        Connection conn = dbResource.getConnection();
+        conn.setAutoCommit(true);
+        Statement stmt = conn.createStatement();
+        try
+        {
+            stmt.executeUpdate("CREATE TABLE STREAM_ITEMS (ID INTEGER PRIMARY KEY)");
+            for (int i=1; i<=10; i++)
+                stmt.executeUpdate("INSERT INTO STREAM_ITEMS VALUES ("+i+")");
+        }
+        finally
+        {
+            stmt.close();
+        }
+
+        DBMSHandlerPostgreSQL dbms = new DBMSHandlerPostgreSQL();
+        dbms.setStreamInTransaction(true);
+
+        ResultSet stream = dbms.executeQuery("SELECT ID FROM STREAM_ITEMS ORDER BY ID", null, false, 2, conn);
+        assertFalse(conn.getAutoCommit());
+        int count = 0;
+        while (stream.next())
+        {
+            count++;
+            // a lookup on the same connection must not end the streaming transaction
+            Object value = dbms.querySingleValue("SELECT COUNT(*) FROM STREAM_ITEMS", null, DataType.INTEGER, conn);
+            assertEquals(10, ObjectUtils.getInteger(value));
+            ResultSet lookup = dbms.executeQuery("SELECT ID FROM STREAM_ITEMS WHERE ID=1", null, false, 0, conn);
+            dbms.closeResultSet(lookup);
+            assertFalse(conn.getAutoCommit());
+        }
+        assertEquals(10, count);
+
+        // a second stream keeps the transaction open
+        ResultSet second = dbms.executeQuery("SELECT ID FROM STREAM_ITEMS", null, false, 2, conn);
+        dbms.closeResultSet(stream);
+        assertFalse(conn.getAutoCommit());
+        dbms.closeResultSet(second);
+        assertTrue(conn.getAutoCommit());
+    }
+}